@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rti.dds.domain.DomainParticipant;
+import com.rti.dds.domain.DomainParticipantFactory;
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.infrastructure.RETCODE_NO_DATA;
+import com.rti.dds.infrastructure.ResourceLimitsQosPolicy;
+import com.rti.dds.infrastructure.StatusKind;
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.InstanceStateKind;
+import com.rti.dds.subscription.ReadCondition;
+import com.rti.dds.subscription.SampleInfoSeq;
+import com.rti.dds.subscription.SampleStateKind;
+import com.rti.dds.subscription.Subscriber;
+import com.rti.dds.subscription.ViewStateKind;
+import com.rti.dds.topic.Topic;
+
+/**
+ * Compares the reflective read path formerly used by InstanceModelImpl and
+ * AbstractFxList with {@link TopicAccess}. A single waveform instance is
+ * written to a local reader and then read (never taken) repeatedly.
+ *
+ * Requires the RTI native libraries on java.library.path. Runs on domain
+ * 99 unless -Dmdpnp.domain is specified.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TopicAccessBenchmark {
+    private static final int SAMPLES_PER_ARRAY = 500;
+
+    private DomainParticipant participant;
+    private ice.SampleArrayDataWriter writer;
+    private ice.SampleArrayDataReader reader;
+    private ReadCondition anySample, noSample;
+
+    private final ice.SampleArraySeq data_seq = new ice.SampleArraySeq();
+    private final SampleInfoSeq info_seq = new SampleInfoSeq();
+
+    private TopicAccess<ice.SampleArray, ice.SampleArrayDataReader, ice.SampleArrayDataWriter> access;
+    private Method readWCondition, returnLoan;
+
+    @Setup
+    public void setUp() throws Exception {
+        int domainId = Integer.getInteger("mdpnp.domain", 99);
+        participant = DomainParticipantFactory.get_instance().create_participant(domainId, DomainParticipantFactory.PARTICIPANT_QOS_DEFAULT,
+                null, StatusKind.STATUS_MASK_NONE);
+        Topic topic = TopicUtil.findOrCreateTopic(participant, ice.SampleArrayTopic.VALUE, ice.SampleArrayTypeSupport.class);
+        writer = (ice.SampleArrayDataWriter) participant.create_datawriter(topic, Publisher.DATAWRITER_QOS_DEFAULT, null,
+                StatusKind.STATUS_MASK_NONE);
+        reader = (ice.SampleArrayDataReader) participant.create_datareader(topic, Subscriber.DATAREADER_QOS_DEFAULT, null,
+                StatusKind.STATUS_MASK_NONE);
+        anySample = reader.create_readcondition(SampleStateKind.ANY_SAMPLE_STATE, ViewStateKind.ANY_VIEW_STATE,
+                InstanceStateKind.ANY_INSTANCE_STATE);
+        // Only matches instances that are disposed; there are none so every read is NO_DATA
+        noSample = reader.create_readcondition(SampleStateKind.ANY_SAMPLE_STATE, ViewStateKind.ANY_VIEW_STATE,
+                InstanceStateKind.NOT_ALIVE_DISPOSED_INSTANCE_STATE);
+
+        access = new TopicAccess<ice.SampleArray, ice.SampleArrayDataReader, ice.SampleArrayDataWriter>(ice.SampleArray.class,
+                ice.SampleArrayDataReader.class, ice.SampleArrayDataWriter.class, ice.SampleArraySeq.class);
+        readWCondition = ice.SampleArrayDataReader.class.getMethod("read_w_condition", ice.SampleArraySeq.class, SampleInfoSeq.class, int.class,
+                ReadCondition.class);
+        returnLoan = ice.SampleArrayDataReader.class.getMethod("return_loan", ice.SampleArraySeq.class, SampleInfoSeq.class);
+
+        ice.SampleArray sample = new ice.SampleArray();
+        sample.unique_device_identifier = "benchmark";
+        sample.metric_id = "MDC_PRESS_BLD_ART_ABP";
+        for (int i = 0; i < SAMPLES_PER_ARRAY; i++) {
+            sample.values.userData.addFloat((float) Math.sin(i / 10.0));
+        }
+
+        // Keep writing until the reader has matched; the default QoS is volatile
+        long giveup = System.currentTimeMillis() + 10000L;
+        while (true) {
+            writer.write(sample, InstanceHandle_t.HANDLE_NIL);
+            try {
+                reader.read_w_condition(data_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, anySample);
+                reader.return_loan(data_seq, info_seq);
+                break;
+            } catch (RETCODE_NO_DATA noData) {
+                if (System.currentTimeMillis() > giveup) {
+                    throw new IllegalStateException("Sample never arrived at the local reader");
+                }
+                Thread.sleep(10L);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        reader.delete_readcondition(anySample);
+        reader.delete_readcondition(noSample);
+        participant.delete_contained_entities();
+        DomainParticipantFactory.get_instance().delete_participant(participant);
+    }
+
+    @Benchmark
+    public int readReflective() throws Exception {
+        try {
+            readWCondition.invoke(reader, data_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, anySample);
+            return info_seq.size();
+        } finally {
+            returnLoan.invoke(reader, data_seq, info_seq);
+        }
+    }
+
+    @Benchmark
+    public int readMethodHandle() {
+        try {
+            access.readWCondition(reader, data_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, anySample);
+            return info_seq.size();
+        } finally {
+            access.returnLoan(reader, data_seq, info_seq);
+        }
+    }
+
+    @Benchmark
+    public int readDirect() {
+        try {
+            reader.read_w_condition(data_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, anySample);
+            return info_seq.size();
+        } finally {
+            reader.return_loan(data_seq, info_seq);
+        }
+    }
+
+    @Benchmark
+    public boolean noDataReflective() throws Exception {
+        try {
+            readWCondition.invoke(reader, data_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, noSample);
+            return true;
+        } catch (InvocationTargetException ite) {
+            return ite.getCause() instanceof RETCODE_NO_DATA;
+        } finally {
+            returnLoan.invoke(reader, data_seq, info_seq);
+        }
+    }
+
+    @Benchmark
+    public boolean noDataMethodHandle() {
+        try {
+            access.readWCondition(reader, data_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, noSample);
+            return true;
+        } catch (RETCODE_NO_DATA noData) {
+            return true;
+        } finally {
+            access.returnLoan(reader, data_seq, info_seq);
+        }
+    }
+
+    @Benchmark
+    public Object newDataReflective() throws Exception {
+        return ice.SampleArray.class.newInstance();
+    }
+
+    @Benchmark
+    public Object newDataMethodHandle() {
+        return access.newData();
+    }
+}
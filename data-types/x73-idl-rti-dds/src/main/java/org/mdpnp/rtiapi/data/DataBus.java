@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import com.rti.dds.infrastructure.Copyable;
+
+/**
+ * Transport for the ice topics. Keyed instances, KEEP_LAST history, device
+ * filters and instance liveliness follow the same semantics as the DDS
+ * entities the rest of this package creates so that a single-host deployment
+ * or a benchmark may substitute {@link InMemoryDataBus}.
+ */
+public interface DataBus {
+    <D extends Copyable> DataBusWriter<D> createWriter(DataBusTopic<D> topic);
+
+    /**
+     * @param depth
+     *            samples kept per instance (KEEP_LAST)
+     * @param listener
+     *            notified on the writing thread; may be null to only poll
+     */
+    <D extends Copyable> DataBusReader<D> createReader(DataBusTopic<D> topic, DeviceFilter filter, int depth, DataBusListener<D> listener);
+}
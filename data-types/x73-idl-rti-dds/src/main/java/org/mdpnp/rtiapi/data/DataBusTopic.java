@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.rti.dds.infrastructure.Copyable;
+
+/**
+ * Describes a topic to a {@link DataBus}: how to make samples, which fields
+ * form the instance key (mirroring the keylist in ice.idl) and where to find
+ * the unique_device_identifier used for content filtering.
+ */
+public final class DataBusTopic<D extends Copyable> {
+    private final String name;
+    private final Supplier<D> factory;
+    private final Function<D, Object> key;
+    private final Function<D, String> uniqueDeviceIdentifier;
+    private final boolean durable;
+
+    /**
+     * @param durable
+     *            whether readers created after an instance was written are
+     *            given its latest sample (as TRANSIENT_LOCAL would in DDS)
+     */
+    public DataBusTopic(String name, Supplier<D> factory, Function<D, Object> key, Function<D, String> uniqueDeviceIdentifier, boolean durable) {
+        this.name = name;
+        this.factory = factory;
+        this.key = key;
+        this.uniqueDeviceIdentifier = uniqueDeviceIdentifier;
+        this.durable = durable;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public D newData() {
+        return factory.get();
+    }
+
+    /**
+     * @return an object with value semantics identifying the instance of the sample
+     */
+    public Object key(D data) {
+        return key.apply(data);
+    }
+
+    public String uniqueDeviceIdentifier(D data) {
+        return null == uniqueDeviceIdentifier ? null : uniqueDeviceIdentifier.apply(data);
+    }
+
+    public boolean isDurable() {
+        return durable;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static final DataBusTopic<ice.HeartBeat> HEARTBEAT = new DataBusTopic<ice.HeartBeat>(ice.HeartBeatTopic.VALUE, ice.HeartBeat::new,
+            (d) -> d.unique_device_identifier, (d) -> d.unique_device_identifier, false);
+
+    public static final DataBusTopic<ice.TimeSync> TIME_SYNC = new DataBusTopic<ice.TimeSync>(ice.TimeSyncTopic.VALUE, ice.TimeSync::new,
+            (d) -> Arrays.asList(d.heartbeat_source, d.heartbeat_recipient), (d) -> d.heartbeat_source, false);
+
+    public static final DataBusTopic<ice.DeviceIdentity> DEVICE_IDENTITY = new DataBusTopic<ice.DeviceIdentity>(ice.DeviceIdentityTopic.VALUE,
+            ice.DeviceIdentity::new, (d) -> d.unique_device_identifier, (d) -> d.unique_device_identifier, true);
+
+    public static final DataBusTopic<ice.DeviceConnectivity> DEVICE_CONNECTIVITY = new DataBusTopic<ice.DeviceConnectivity>(
+            ice.DeviceConnectivityTopic.VALUE, ice.DeviceConnectivity::new, (d) -> d.unique_device_identifier, (d) -> d.unique_device_identifier,
+            true);
+
+    public static final DataBusTopic<ice.Numeric> NUMERIC = new DataBusTopic<ice.Numeric>(ice.NumericTopic.VALUE, ice.Numeric::new,
+            (d) -> Arrays.<Object> asList(d.unique_device_identifier, d.metric_id, d.vendor_metric_id, d.instance_id, d.unit_id),
+            (d) -> d.unique_device_identifier, false);
+
+    public static final DataBusTopic<ice.SampleArray> SAMPLE_ARRAY = new DataBusTopic<ice.SampleArray>(ice.SampleArrayTopic.VALUE,
+            ice.SampleArray::new,
+            (d) -> Arrays.<Object> asList(d.unique_device_identifier, d.metric_id, d.vendor_metric_id, d.instance_id, d.unit_id, d.frequency),
+            (d) -> d.unique_device_identifier, false);
+
+    public static final DataBusTopic<ice.InfusionStatus> INFUSION_STATUS = new DataBusTopic<ice.InfusionStatus>(ice.InfusionStatusTopic.VALUE,
+            ice.InfusionStatus::new, (d) -> d.unique_device_identifier, (d) -> d.unique_device_identifier, true);
+
+    public static final DataBusTopic<ice.AlarmLimit> ALARM_LIMIT = new DataBusTopic<ice.AlarmLimit>(ice.AlarmLimitTopic.VALUE,
+            ice.AlarmLimit::new, (d) -> Arrays.<Object> asList(d.unique_device_identifier, d.metric_id, d.limit_type),
+            (d) -> d.unique_device_identifier, true);
+
+    public static final DataBusTopic<ice.LocalAlarmLimitObjective> LOCAL_ALARM_LIMIT_OBJECTIVE = new DataBusTopic<ice.LocalAlarmLimitObjective>(
+            ice.LocalAlarmLimitObjectiveTopic.VALUE, ice.LocalAlarmLimitObjective::new,
+            (d) -> Arrays.<Object> asList(d.unique_device_identifier, d.metric_id, d.limit_type), (d) -> d.unique_device_identifier, true);
+
+    public static final DataBusTopic<ice.GlobalAlarmLimitObjective> GLOBAL_ALARM_LIMIT_OBJECTIVE = new DataBusTopic<ice.GlobalAlarmLimitObjective>(
+            ice.GlobalAlarmLimitObjectiveTopic.VALUE, ice.GlobalAlarmLimitObjective::new, (d) -> Arrays.<Object> asList(d.metric_id, d.limit_type),
+            null, true);
+
+    public static final DataBusTopic<ice.Alert> PATIENT_ALERT = new DataBusTopic<ice.Alert>(ice.PatientAlertTopic.VALUE, ice.Alert::new,
+            (d) -> Arrays.asList(d.unique_device_identifier, d.identifier), (d) -> d.unique_device_identifier, true);
+
+    public static final DataBusTopic<ice.Alert> TECHNICAL_ALERT = new DataBusTopic<ice.Alert>(ice.TechnicalAlertTopic.VALUE, ice.Alert::new,
+            (d) -> Arrays.asList(d.unique_device_identifier, d.identifier), (d) -> d.unique_device_identifier, true);
+}
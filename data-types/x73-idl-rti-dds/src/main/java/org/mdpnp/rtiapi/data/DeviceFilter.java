@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import com.rti.dds.infrastructure.StringSeq;
+
+/**
+ * A content filter on unique_device_identifier in the two forms used across
+ * OpenICE ("unique_device_identifier = %0" and "unique_device_identifier <> %0").
+ * Evaluated directly by in-memory transports; {@link #getExpression()} and
+ * {@link #getParameters()} give the equivalent DDS filter.
+ */
+public final class DeviceFilter {
+    private final String uniqueDeviceIdentifier;
+    private final boolean exclude;
+
+    private DeviceFilter(String uniqueDeviceIdentifier, boolean exclude) {
+        this.uniqueDeviceIdentifier = uniqueDeviceIdentifier;
+        this.exclude = exclude;
+    }
+
+    public static final DeviceFilter ALL = new DeviceFilter(null, false);
+
+    public static DeviceFilter only(String uniqueDeviceIdentifier) {
+        return new DeviceFilter(uniqueDeviceIdentifier, false);
+    }
+
+    public static DeviceFilter except(String uniqueDeviceIdentifier) {
+        return new DeviceFilter(uniqueDeviceIdentifier, true);
+    }
+
+    public boolean accept(String uniqueDeviceIdentifier) {
+        if (null == this.uniqueDeviceIdentifier) {
+            return true;
+        }
+        return exclude ^ this.uniqueDeviceIdentifier.equals(uniqueDeviceIdentifier);
+    }
+
+    /**
+     * @return the DDS content filter expression or null for no filter
+     */
+    public String getExpression() {
+        if (null == uniqueDeviceIdentifier) {
+            return null;
+        }
+        return exclude ? "unique_device_identifier <> %0" : "unique_device_identifier = %0";
+    }
+
+    public StringSeq getParameters() {
+        if (null == uniqueDeviceIdentifier) {
+            return null;
+        }
+        StringSeq params = new StringSeq();
+        params.add("'" + uniqueDeviceIdentifier + "'");
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return null == uniqueDeviceIdentifier ? "all devices" : ((exclude ? "except " : "only ") + uniqueDeviceIdentifier);
+    }
+}
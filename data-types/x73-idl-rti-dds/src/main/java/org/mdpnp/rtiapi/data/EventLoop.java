@@ -13,9 +13,9 @@
 package org.mdpnp.rtiapi.data;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +29,26 @@ import com.rti.dds.infrastructure.WaitSet;
 import com.rti.dds.infrastructure.WaitSetProperty_t;
 
 /**
+ * Dispatches DDS conditions to their {@link ConditionHandler}s.
+ * <p>
+ * The event loop is divided into one or more shards, each with its own
+ * WaitSet. Every condition is attached to exactly one shard and a shard is
+ * serviced by at most one thread at a time so the handler for a given
+ * condition is never invoked concurrently and always sees its triggers in
+ * order. With more than one shard, handlers attached to different shards
+ * run concurrently on different service threads; handlers that share state
+ * should either synchronize or be pinned to the same shard with
+ * {@link #addHandler(int, Condition, ConditionHandler)}.
+ * <p>
+ * Runnables passed to {@link #doLater(Runnable)} and {@link #doNow(Runnable)}
+ * are always executed by the thread servicing shard 0.
+ * <p>
+ * A handler that blocks on another shard, by calling {@link #doNow(Runnable)}
+ * from a shard other than 0 or by removing a condition whose handler is
+ * running on another shard, must not be part of a cycle of such waits. The
+ * call that would close the cycle throws IllegalStateException rather than
+ * deadlocking; use {@link #doLater(Runnable)} to hand work across shards.
+ *
  * @author Jeff Plourde
  *
  */
@@ -40,48 +60,43 @@ public class EventLoop {
         void conditionChanged(Condition condition);
     }
 
-    private final Map<Condition, ConditionHandler> conditionHandlers = new HashMap<Condition, ConditionHandler>();
-    private final List<Mutation> queuedMutations = new ArrayList<Mutation>();
-    private final List<Runnable> queuedRunnables = new ArrayList<Runnable>();
-    private final WaitSet waitSet;
-    private final GuardCondition mutate = new GuardCondition();
-    private final GuardCondition runnable = new GuardCondition();
+    private static class Registration {
+        private final ConditionHandler conditionHandler;
+        private final Shard shard;
 
-    protected void handleMutation(Mutation m) {
-        if (m.isAdd()) {
-            // log.debug("Handling an add mutation for " + m.getCondition());
-            conditionHandlers.put(m.getCondition(), m.getConditionHandler());
-            waitSet.attach_condition(m.getCondition());
-        } else {
-            // log.debug("Handling a remove mutation for " + m.getCondition());
-            if (null == conditionHandlers.remove(m.getCondition())) {
-                log.warn("Attempt to detach unknown condition:" + m.getCondition());
-                for (int i = 0; i < m.getTrace().length; i++) {
-                    log.warn("\tat " + m.getTrace()[i]);
-                }
-            } else {
-                waitSet.detach_condition(m.getCondition());
-            }
+        public Registration(ConditionHandler conditionHandler, Shard shard) {
+            this.conditionHandler = conditionHandler;
+            this.shard = shard;
         }
-        m.done();
     }
 
-    private final ConditionHandler mutateHandler = new ConditionHandler() {
+    private static class Shard {
+        private final int index;
+        private final WaitSet waitSet;
+        // Number of attached conditions, only a hint for balancing
+        private volatile int attached;
+
+        private Thread currentServiceThread;
+        // The shard the service thread is blocked on (if any), guarded by the shards array
+        private Shard blockedOn;
+        // The condition whose handler is being invoked right now (if any)
+        private volatile Condition dispatching;
+
+        public Shard(int index, WaitSetProperty_t properties) {
+            this.index = index;
+            this.waitSet = null == properties ? new WaitSet() : new WaitSet(properties);
+        }
+
         @Override
-        public void conditionChanged(Condition condition) {
-            Mutation[] mutations = new Mutation[0];
-            synchronized (queuedMutations) {
-                mutations = queuedMutations.toArray(mutations);
-                queuedMutations.clear();
-                ((GuardCondition) condition).set_trigger_value(false);
-            }
-            for (Mutation m : mutations) {
-                handleMutation(m);
-            }
+        public String toString() {
+            return "Shard" + index;
         }
-    };
+    }
 
-    private Thread currentServiceThread;
+    private final Map<Condition, Registration> conditionHandlers = new ConcurrentHashMap<Condition, Registration>();
+    private final List<Runnable> queuedRunnables = new ArrayList<Runnable>();
+    private final Shard[] shards;
+    private final GuardCondition runnable = new GuardCondition();
 
     private final ConditionHandler runnableHandler = new ConditionHandler() {
         public void conditionChanged(Condition condition) {
@@ -97,84 +112,63 @@ public class EventLoop {
         }
     };
 
-    private static class Mutation {
-        private final boolean add;
-        private final Condition condition;
-        private final ConditionHandler conditionHandler;
-        private final StackTraceElement[] trace;
-
-        private boolean done = false;
-
-        public Mutation(boolean add, Condition condition, ConditionHandler conditionHandler) {
-            this.add = add;
-            this.condition = condition;
-            this.conditionHandler = conditionHandler;
-            this.trace = Thread.currentThread().getStackTrace();
-        }
-
-        public boolean isAdd() {
-            return add;
-        }
+    public EventLoop() {
+        this(1, null);
+    }
 
-        public Condition getCondition() {
-            return condition;
-        }
+    public EventLoop(WaitSetProperty_t properties) {
+        this(1, properties);
+    }
 
-        public ConditionHandler getConditionHandler() {
-            return conditionHandler;
-        }
+    public EventLoop(int shardCount) {
+        this(shardCount, null);
+    }
 
-        public StackTraceElement[] getTrace() {
-            return trace;
+    public EventLoop(int shardCount, WaitSetProperty_t properties) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("EventLoop requires at least one shard, not " + shardCount);
         }
-
-        public synchronized void done() {
-            this.done = true;
-            this.notifyAll();
-        }
-
-        public synchronized void await() {
-            while (!done) {
-                try {
-                    this.wait();
-                } catch (InterruptedException e) {
-                }
-            }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, properties);
         }
+        attach(shards[0], runnable, runnableHandler);
     }
 
-    public EventLoop() {
-        this(null);
+    /**
+     * @return the number of WaitSets conditions are spread across; each
+     *         needs its own service thread calling
+     *         {@link #waitAndHandle(int, ConditionSeq, Duration_t)}
+     */
+    public int getShardCount() {
+        return shards.length;
     }
 
-    public EventLoop(WaitSetProperty_t properties) {
-        waitSet = null == properties ? new WaitSet() : new WaitSet(properties);
-        waitSet.attach_condition(mutate);
-        waitSet.attach_condition(runnable);
-        conditionHandlers.put(mutate, mutateHandler);
-        conditionHandlers.put(runnable, runnableHandler);
-    }
-    
     private static final long WARNING_ELAPSED_TIME_NANOSECONDS = 100000000L;
 
     public boolean waitAndHandle(ConditionSeq condSeq, Duration_t dur) {
-        // Only one thread at a time can currently service the event loop
+        return waitAndHandle(0, condSeq, dur);
+    }
+
+    public boolean waitAndHandle(int shardIndex, ConditionSeq condSeq, Duration_t dur) {
+        final Shard shard = shards[shardIndex];
+        // Only one thread at a time can service a shard of the event loop
         long giveup = dur.is_infinite() ? Long.MAX_VALUE : (System.currentTimeMillis() + dur.sec * 1000L + dur.nanosec / 1000000L);
 
         long now = System.currentTimeMillis();
-        synchronized (this) {
-            while (currentServiceThread != null && now < giveup) {
+        synchronized (shard) {
+            while (shard.currentServiceThread != null && now < giveup) {
                 if (dur.is_zero()) {
                     throw new RETCODE_TIMEOUT("Timed out waiting to become service thread");
                 }
                 try {
-                    this.wait(giveup - now);
+                    shard.wait(giveup - now);
                 } catch (InterruptedException e) {
                     log.error("Interrupted", e);
                 }
                 now = System.currentTimeMillis();
             }
-            currentServiceThread = Thread.currentThread();
+            shard.currentServiceThread = Thread.currentThread();
         }
 
         if (!dur.is_zero() && now >= giveup) {
@@ -183,65 +177,184 @@ public class EventLoop {
 
         condSeq.clear();
         try {
-            waitSet.wait(condSeq, dur);
+            shard.waitSet.wait(condSeq, dur);
             for (int i = 0; i < condSeq.size(); i++) {
                 Condition c = (Condition) condSeq.get(i);
-                ConditionHandler ch = conditionHandlers.get(c);
-                if (null != ch) {
-                    long s = System.nanoTime();
-                    ch.conditionChanged(c);
-                    long elapsed = System.nanoTime() - s;
-                    if(elapsed >= WARNING_ELAPSED_TIME_NANOSECONDS) {
-                        log.warn(elapsed + "ns to service " + ch);
+                // Publish the condition before looking up its handler so that
+                // a concurrent removeHandler either sees it being dispatched
+                // or we see the handler already gone.
+                shard.dispatching = c;
+                try {
+                    Registration r = conditionHandlers.get(c);
+                    if (null != r) {
+                        long s = System.nanoTime();
+                        r.conditionHandler.conditionChanged(c);
+                        long elapsed = System.nanoTime() - s;
+                        if(elapsed >= WARNING_ELAPSED_TIME_NANOSECONDS) {
+                            log.warn(elapsed + "ns to service " + r.conditionHandler + " on " + shard);
+                        }
+                    } else {
+                        // Can legitimately happen when the handler was removed
+                        // by another thread while the WaitSet was triggered
+                        log.debug("No ConditionHandler for Condition " + c);
+                    }
+                } finally {
+                    synchronized (shard) {
+                        shard.dispatching = null;
+                        shard.notifyAll();
                     }
-                } else {
-                    log.warn("No ConditionHandler for Condition " + c);
                 }
             }
             return true;
         } catch (RETCODE_TIMEOUT timeout) {
             return false;
         } finally {
-            synchronized (this) {
-                currentServiceThread = null;
-                this.notifyAll();
+            synchronized (shard) {
+                shard.currentServiceThread = null;
+                shard.notifyAll();
             }
         }
     }
 
-    public synchronized boolean isCurrentServiceThread() {
-        return Thread.currentThread().equals(currentServiceThread);
+    /**
+     * @return true on the thread servicing any shard
+     */
+    public boolean isCurrentServiceThread() {
+        for (Shard shard : shards) {
+            if (isServicing(shard)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    public void addHandler(Condition condition, ConditionHandler conditionHandler) {
-        Mutation m = new Mutation(true, condition, conditionHandler);
-        if (isCurrentServiceThread()) {
-            handleMutation(m);
-        } else {
-            synchronized (queuedMutations) {
-                // log.debug("Queue add condition:"+condition);
-                queuedMutations.add(m);
-                mutate.set_trigger_value(true);
+    /**
+     * @return true on the thread servicing the given shard
+     */
+    public boolean isCurrentServiceThread(int shardIndex) {
+        return isServicing(shards[shardIndex]);
+    }
+
+    private static boolean isServicing(Shard shard) {
+        synchronized (shard) {
+            return Thread.currentThread().equals(shard.currentServiceThread);
+        }
+    }
+
+    // the shard serviced by the calling thread, or null
+    private Shard currentShard() {
+        for (Shard shard : shards) {
+            if (isServicing(shard)) {
+                return shard;
             }
-            m.await();
         }
-        // log.debug("addHandler complete for " + condition);
+        return null;
     }
 
-    public void removeHandler(Condition condition) {
+    /**
+     * Records that the service thread of self is about to block on target.
+     * Must not be called while holding any shard's monitor other than target's.
+     *
+     * @throws IllegalStateException if target is already, directly or through
+     *             other shards, blocked on self
+     */
+    private void beginWait(Shard self, Shard target) {
+        synchronized (shards) {
+            for (Shard s = target; null != s; s = s.blockedOn) {
+                if (s == self) {
+                    throw new IllegalStateException(self + " cannot wait on " + target + " which is waiting on " + self);
+                }
+            }
+            self.blockedOn = target;
+        }
+    }
 
-        Mutation m = new Mutation(false, condition, null);
-        if (isCurrentServiceThread()) {
-            handleMutation(m);
-        } else {
-            synchronized (queuedMutations) {
-                // log.debug("Queue remove condition:"+condition);
-                queuedMutations.add(m);
-                mutate.set_trigger_value(true);
+    private void endWait(Shard self) {
+        synchronized (shards) {
+            self.blockedOn = null;
+        }
+    }
+
+    private void attach(Shard shard, Condition condition, ConditionHandler conditionHandler) {
+        // The handler must be visible before the condition can trigger
+        conditionHandlers.put(condition, new Registration(conditionHandler, shard));
+        // WaitSets permit attaching conditions while another thread waits
+        shard.waitSet.attach_condition(condition);
+        synchronized (shard) {
+            shard.attached++;
+        }
+    }
+
+    private Shard leastLoadedShard() {
+        Shard least = shards[0];
+        for (int i = 1; i < shards.length; i++) {
+            if (shards[i].attached < least.attached) {
+                least = shards[i];
+            }
+        }
+        return least;
+    }
+
+    /**
+     * Attaches the condition to the least loaded shard. May be called from
+     * any thread and does not wait for the service thread.
+     */
+    public void addHandler(Condition condition, ConditionHandler conditionHandler) {
+        attach(leastLoadedShard(), condition, conditionHandler);
+    }
+
+    /**
+     * Attaches the condition to a specific shard so that its handler is
+     * serialized with every other handler on that shard.
+     */
+    public void addHandler(int shardIndex, Condition condition, ConditionHandler conditionHandler) {
+        attach(shards[shardIndex], condition, conditionHandler);
+    }
+
+    /**
+     * Detaches the condition. May be called from any thread. On return the
+     * handler is guaranteed not to be running (unless called from within
+     * that handler) and will not be invoked again, so the condition may be
+     * safely deleted.
+     *
+     * @throws IllegalStateException if called from a handler and waiting for
+     *             the removed handler to complete would deadlock
+     */
+    public void removeHandler(Condition condition) {
+        Registration r = conditionHandlers.remove(condition);
+        if (null == r) {
+            log.warn("Attempt to detach unknown condition:" + condition);
+            StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+            for (int i = 0; i < trace.length; i++) {
+                log.warn("\tat " + trace[i]);
+            }
+            return;
+        }
+        final Shard shard = r.shard;
+        final Shard self = currentShard();
+        shard.waitSet.detach_condition(condition);
+        synchronized (shard) {
+            shard.attached--;
+            // A handler looked up before the removal may still be running
+            if (condition.equals(shard.dispatching) && !Thread.currentThread().equals(shard.currentServiceThread)) {
+                if (null != self) {
+                    beginWait(self, shard);
+                }
+                try {
+                    while (condition.equals(shard.dispatching)) {
+                        try {
+                            shard.wait();
+                        } catch (InterruptedException e) {
+                            log.error("Interrupted waiting for handler of " + condition + " to complete", e);
+                        }
+                    }
+                } finally {
+                    if (null != self) {
+                        endWait(self);
+                    }
+                }
             }
-            m.await();
         }
-        // log.debug("removeHandler complete for " + condition);
     }
 
     public void doLater(Runnable r) {
@@ -251,16 +364,33 @@ public class EventLoop {
         }
     }
     
+    /**
+     * Runs r on the thread servicing shard 0 and waits for it to finish; the
+     * service thread of any other shard waits like any other caller.
+     *
+     * @throws IllegalStateException if called from a handler on another shard
+     *             while shard 0 is waiting on that shard
+     */
     public void doNow(Runnable r) {
-        if(isCurrentServiceThread()) {
+        Shard self = currentShard();
+        if(shards[0] == self) {
             r.run();
         } else {
-            NestedRunnable nr = new NestedRunnable(r);
-            synchronized (queuedRunnables) {
-                queuedRunnables.add(nr);
-                runnable.set_trigger_value(true);
+            if (null != self) {
+                beginWait(self, shards[0]);
+            }
+            try {
+                NestedRunnable nr = new NestedRunnable(r);
+                synchronized (queuedRunnables) {
+                    queuedRunnables.add(nr);
+                    runnable.set_trigger_value(true);
+                }
+                nr.waitTillDone();
+            } finally {
+                if (null != self) {
+                    endWait(self);
+                }
             }
-            nr.waitTillDone();
         }
     }
 
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.infrastructure.Copyable;
+
+/**
+ * A {@link DataBus} confined to one JVM with no dependence on the native DDS
+ * libraries. Writes copy the sample once, shared by all matching readers, and
+ * deliver it on the writing thread. Instance tables are concurrent maps and
+ * histories are atomic ring buffers; writes to one instance are delivered
+ * one at a time under that instance's lock, so every history has a single
+ * writer, while writers of different instances never block one another.
+ * Readers and writers may be created and closed from any thread.
+ */
+public class InMemoryDataBus implements DataBus {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryDataBus.class);
+
+    private final ConcurrentMap<String, TopicState<?>> topics = new ConcurrentHashMap<String, TopicState<?>>();
+
+    @SuppressWarnings("unchecked")
+    private <D extends Copyable> TopicState<D> topicState(DataBusTopic<D> topic) {
+        TopicState<?> state = topics.get(topic.getName());
+        if (null == state) {
+            TopicState<D> newState = new TopicState<D>(topic);
+            state = topics.putIfAbsent(topic.getName(), newState);
+            if (null == state) {
+                state = newState;
+            }
+        }
+        return (TopicState<D>) state;
+    }
+
+    @Override
+    public <D extends Copyable> DataBusWriter<D> createWriter(DataBusTopic<D> topic) {
+        return new Writer<D>(topicState(topic));
+    }
+
+    @Override
+    public <D extends Copyable> DataBusReader<D> createReader(DataBusTopic<D> topic, DeviceFilter filter, int depth, DataBusListener<D> listener) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("history depth must be at least 1, not " + depth);
+        }
+        TopicState<D> state = topicState(topic);
+        Reader<D> reader = new Reader<D>(state, null == filter ? DeviceFilter.ALL : filter, depth, listener);
+        state.readers.add(reader);
+        if (topic.isDurable()) {
+            // Late joiners see the current state of durable topics
+            for (Instance<D> instance : state.instances.values()) {
+                // under the instance lock so a concurrent write is either
+                // replayed here or delivered to the reader itself, never both
+                // and never out of order
+                synchronized (instance) {
+                    D latest = instance.latest;
+                    if (null != latest && !reader.histories.containsKey(instance.key)) {
+                        reader.deliver(instance.key, instance.uniqueDeviceIdentifier, latest);
+                    }
+                }
+            }
+        }
+        return reader;
+    }
+
+    private static final class TopicState<D extends Copyable> {
+        private final DataBusTopic<D> topic;
+        private final ConcurrentMap<Object, Instance<D>> instances = new ConcurrentHashMap<Object, Instance<D>>();
+        private final List<Reader<D>> readers = new CopyOnWriteArrayList<Reader<D>>();
+
+        public TopicState(DataBusTopic<D> topic) {
+            this.topic = topic;
+        }
+
+        public Instance<D> instance(Object key, String uniqueDeviceIdentifier) {
+            Instance<D> instance = instances.get(key);
+            if (null == instance) {
+                Instance<D> newInstance = new Instance<D>(key, uniqueDeviceIdentifier);
+                instance = instances.putIfAbsent(key, newInstance);
+                if (null == instance) {
+                    instance = newInstance;
+                }
+            }
+            return instance;
+        }
+
+        public void write(Writer<D> writer, D data) {
+            Object key = topic.key(data);
+            String udi = topic.uniqueDeviceIdentifier(data);
+            // One copy per write, shared by every reader
+            D sample = topic.newData();
+            sample.copy_from(data);
+
+            Instance<D> instance = instance(key, udi);
+            if (instance.writers.add(writer)) {
+                writer.keys.put(key, instance);
+            }
+            synchronized (instance) {
+                instance.latest = sample;
+                for (Reader<D> reader : readers) {
+                    reader.deliver(key, udi, sample);
+                }
+            }
+        }
+
+        public void unregister(Writer<D> writer, Object key) {
+            Instance<D> instance = instances.get(key);
+            if (null == instance || !instance.writers.remove(writer)) {
+                log.warn("Attempt to unregister " + key + " from " + topic + " by a writer that never wrote it");
+                return;
+            }
+            writer.keys.remove(key);
+            if (instance.writers.isEmpty() && instances.remove(key, instance)) {
+                synchronized (instance) {
+                    D keyHolder = instance.latest;
+                    for (Reader<D> reader : readers) {
+                        reader.notAlive(key, keyHolder);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Instance<D extends Copyable> {
+        private final Object key;
+        private final String uniqueDeviceIdentifier;
+        private final Set<Writer<D>> writers = Collections.newSetFromMap(new ConcurrentHashMap<Writer<D>, Boolean>());
+        private volatile D latest;
+
+        public Instance(Object key, String uniqueDeviceIdentifier) {
+            this.key = key;
+            this.uniqueDeviceIdentifier = uniqueDeviceIdentifier;
+        }
+    }
+
+    private static final class Writer<D extends Copyable> implements DataBusWriter<D> {
+        private final TopicState<D> state;
+        private final Map<Object, Instance<D>> keys = new ConcurrentHashMap<Object, Instance<D>>();
+        private volatile boolean closed;
+
+        public Writer(TopicState<D> state) {
+            this.state = state;
+        }
+
+        @Override
+        public DataBusTopic<D> getTopic() {
+            return state.topic;
+        }
+
+        @Override
+        public void write(D data) {
+            if (closed) {
+                throw new IllegalStateException("write to closed writer for " + state.topic);
+            }
+            state.write(this, data);
+        }
+
+        @Override
+        public void unregister(D keyHolder) {
+            state.unregister(this, state.topic.key(keyHolder));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (Object key : new ArrayList<Object>(keys.keySet())) {
+                state.unregister(this, key);
+            }
+        }
+    }
+
+    /**
+     * KEEP_LAST history of one instance as seen by one reader. There is one
+     * writer at a time (the instance lock) and any number of readers. The
+     * sample is stored before the count that publishes it, and the ring has
+     * one spare slot so a write in progress never overwrites any of the last
+     * depth published samples.
+     */
+    private static final class History<D> {
+        private final int depth;
+        private final AtomicReferenceArray<D> ring;
+        private final AtomicLong written = new AtomicLong();
+
+        public History(int depth) {
+            this.depth = depth;
+            ring = new AtomicReferenceArray<D>(depth + 1);
+        }
+
+        public void add(D sample) {
+            long n = written.get();
+            ring.set((int) (n % ring.length()), sample);
+            written.lazySet(n + 1);
+        }
+
+        public D latest() {
+            long n = written.get();
+            return 0 == n ? null : ring.get((int) ((n - 1) % ring.length()));
+        }
+
+        public List<D> toList() {
+            final int length = ring.length();
+            for (;;) {
+                // a stable count, then its last samples oldest first
+                long n = written.get();
+                int count = (int) Math.min(n, depth);
+                List<D> list = new ArrayList<D>(count);
+                for (long i = n - count; i < n; i++) {
+                    list.add(ring.get((int) (i % length)));
+                }
+                // writes published while copying, and the one that may be
+                // in progress, reuse the slots of the oldest samples copied
+                long m = written.get();
+                long overwritten = m - n + count - depth;
+                if (overwritten <= 0) {
+                    return list;
+                } else if (overwritten < count) {
+                    list.subList(0, (int) overwritten).clear();
+                    return list;
+                }
+            }
+        }
+    }
+
+    private static final class Reader<D extends Copyable> implements DataBusReader<D> {
+        private final TopicState<D> state;
+        private final DeviceFilter filter;
+        private final int depth;
+        private final DataBusListener<D> listener;
+        private final ConcurrentMap<Object, History<D>> histories = new ConcurrentHashMap<Object, History<D>>();
+
+        public Reader(TopicState<D> state, DeviceFilter filter, int depth, DataBusListener<D> listener) {
+            this.state = state;
+            this.filter = filter;
+            this.depth = depth;
+            this.listener = listener;
+        }
+
+        public void deliver(Object key, String uniqueDeviceIdentifier, D sample) {
+            if (!filter.accept(uniqueDeviceIdentifier)) {
+                return;
+            }
+            History<D> history = histories.get(key);
+            boolean alive = false;
+            if (null == history) {
+                History<D> newHistory = new History<D>(depth);
+                history = histories.putIfAbsent(key, newHistory);
+                if (null == history) {
+                    history = newHistory;
+                    alive = true;
+                }
+            }
+            history.add(sample);
+            if (null != listener) {
+                try {
+                    if (alive) {
+                        listener.instanceAlive(this, sample);
+                    }
+                    listener.instanceSample(this, sample);
+                } catch (RuntimeException e) {
+                    log.error("Listener failure on " + state.topic, e);
+                }
+            }
+        }
+
+        public void notAlive(Object key, D keyHolder) {
+            if (null != histories.remove(key) && null != listener) {
+                try {
+                    listener.instanceNotAlive(this, keyHolder);
+                } catch (RuntimeException e) {
+                    log.error("Listener failure on " + state.topic, e);
+                }
+            }
+        }
+
+        @Override
+        public DataBusTopic<D> getTopic() {
+            return state.topic;
+        }
+
+        @Override
+        public DeviceFilter getFilter() {
+            return filter;
+        }
+
+        @Override
+        public int getDepth() {
+            return depth;
+        }
+
+        @Override
+        public D read(D keyHolder) {
+            History<D> history = histories.get(state.topic.key(keyHolder));
+            return null == history ? null : history.latest();
+        }
+
+        @Override
+        public List<D> history(D keyHolder) {
+            History<D> history = histories.get(state.topic.key(keyHolder));
+            return null == history ? Collections.<D> emptyList() : history.toList();
+        }
+
+        @Override
+        public List<D> instances() {
+            List<D> list = new ArrayList<D>(histories.size());
+            for (History<D> history : histories.values()) {
+                D d = history.latest();
+                if (null != d) {
+                    list.add(d);
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void close() {
+            state.readers.remove(this);
+            histories.clear();
+        }
+    }
+}
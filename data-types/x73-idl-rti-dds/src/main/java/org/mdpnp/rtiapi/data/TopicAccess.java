@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import com.rti.dds.infrastructure.Copyable;
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.publication.DataWriter;
+import com.rti.dds.subscription.DataReader;
+import com.rti.dds.subscription.ReadCondition;
+import com.rti.dds.subscription.SampleInfoSeq;
+import com.rti.dds.util.Sequence;
+
+/**
+ * Typed entry points into the reader and writer classes generated by rtiddsgen.
+ * The generated read/return_loan/get_key_value/write methods share no common
+ * interface so they are resolved once per topic type and bound as
+ * MethodHandles. Unlike Method.invoke, exceptions such as RETCODE_NO_DATA
+ * propagate unwrapped and no argument arrays are allocated per call.
+ */
+public class TopicAccess<D extends Copyable, R extends DataReader, W extends DataWriter> {
+    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+    private final MethodHandle newData, newSequence, getKeyValue, returnLoan, readWCondition, readInstance, write;
+
+    public TopicAccess(Class<D> dataClass, Class<R> readerClass, Class<W> writerClass, Class<? extends Sequence> sequenceClass) {
+        try {
+            newData = lookup.findConstructor(dataClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Copyable.class));
+            newSequence = lookup.findConstructor(sequenceClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Sequence.class));
+            getKeyValue = lookup.findVirtual(readerClass, "get_key_value", MethodType.methodType(void.class, dataClass, InstanceHandle_t.class))
+                    .asType(MethodType.methodType(void.class, DataReader.class, Copyable.class, InstanceHandle_t.class));
+            returnLoan = lookup.findVirtual(readerClass, "return_loan", MethodType.methodType(void.class, sequenceClass, SampleInfoSeq.class))
+                    .asType(MethodType.methodType(void.class, DataReader.class, Sequence.class, SampleInfoSeq.class));
+            readWCondition = lookup.findVirtual(readerClass, "read_w_condition",
+                    MethodType.methodType(void.class, sequenceClass, SampleInfoSeq.class, int.class, ReadCondition.class))
+                    .asType(MethodType.methodType(void.class, DataReader.class, Sequence.class, SampleInfoSeq.class, int.class, ReadCondition.class));
+            readInstance = lookup.findVirtual(readerClass, "read_instance",
+                    MethodType.methodType(void.class, sequenceClass, SampleInfoSeq.class, int.class, InstanceHandle_t.class, int.class, int.class, int.class))
+                    .asType(MethodType.methodType(void.class, DataReader.class, Sequence.class, SampleInfoSeq.class, int.class, InstanceHandle_t.class, int.class, int.class, int.class));
+            // Some topics (builtin topics) are read-only
+            write = null == writerClass ? null : lookup.findVirtual(writerClass, "write", MethodType.methodType(void.class, dataClass, InstanceHandle_t.class))
+                    .asType(MethodType.methodType(void.class, DataWriter.class, Copyable.class, InstanceHandle_t.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public D newData() {
+        try {
+            return (D) (Copyable) newData.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public Sequence newSequence() {
+        try {
+            return (Sequence) newSequence.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void getKeyValue(R reader, D keyHolder, InstanceHandle_t handle) {
+        try {
+            getKeyValue.invokeExact((DataReader) reader, (Copyable) keyHolder, handle);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void returnLoan(R reader, Sequence data_seq, SampleInfoSeq info_seq) {
+        try {
+            returnLoan.invokeExact((DataReader) reader, data_seq, info_seq);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void readWCondition(R reader, Sequence data_seq, SampleInfoSeq info_seq, int max_samples, ReadCondition condition) {
+        try {
+            readWCondition.invokeExact((DataReader) reader, data_seq, info_seq, max_samples, condition);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void readInstance(R reader, Sequence data_seq, SampleInfoSeq info_seq, int max_samples, InstanceHandle_t handle, int sample_states,
+            int view_states, int instance_states) {
+        try {
+            readInstance.invokeExact((DataReader) reader, data_seq, info_seq, max_samples, handle, sample_states, view_states, instance_states);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void write(W writer, D data, InstanceHandle_t handle) {
+        if (null == write) {
+            throw new UnsupportedOperationException("No writer for " + data.getClass());
+        }
+        try {
+            write.invokeExact((DataWriter) writer, (Copyable) data, handle);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // RTI return codes are RuntimeExceptions and pass through untouched
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else {
+            return new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.mdpnp.rtiapi.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InMemoryDataBusTest {
+
+    private static ice.Numeric numeric(String udi, String metric, float value) {
+        ice.Numeric n = new ice.Numeric();
+        n.unique_device_identifier = udi;
+        n.metric_id = metric;
+        n.value = value;
+        return n;
+    }
+
+    private static class RecordingListener implements DataBusListener<ice.Numeric> {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void instanceAlive(DataBusReader<ice.Numeric> reader, ice.Numeric data) {
+            events.add("alive " + data.metric_id);
+        }
+
+        @Override
+        public void instanceNotAlive(DataBusReader<ice.Numeric> reader, ice.Numeric keyHolder) {
+            events.add("notalive " + keyHolder.metric_id);
+        }
+
+        @Override
+        public void instanceSample(DataBusReader<ice.Numeric> reader, ice.Numeric data) {
+            events.add("sample " + data.metric_id + " " + data.value);
+        }
+    }
+
+    @Test
+    public void testLifecycle() {
+        DataBus bus = new InMemoryDataBus();
+        RecordingListener listener = new RecordingListener();
+        DataBusReader<ice.Numeric> reader = bus.createReader(DataBusTopic.NUMERIC, DeviceFilter.ALL, 1, listener);
+        DataBusWriter<ice.Numeric> writer = bus.createWriter(DataBusTopic.NUMERIC);
+
+        ice.Numeric n = numeric("udi1", "HR", 60f);
+        writer.write(n);
+        // the bus holds its own copy
+        n.value = 61f;
+        writer.write(n);
+        Assert.assertEquals(61f, reader.read(n).value, 0f);
+        writer.unregister(n);
+        Assert.assertNull(reader.read(n));
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("alive HR");
+        expected.add("sample HR 60.0");
+        expected.add("sample HR 61.0");
+        expected.add("notalive HR");
+        Assert.assertEquals(expected, listener.events);
+    }
+
+    @Test
+    public void testFilterAndHistory() {
+        DataBus bus = new InMemoryDataBus();
+        DataBusReader<ice.Numeric> mine = bus.createReader(DataBusTopic.NUMERIC, DeviceFilter.only("udi1"), 3, null);
+        DataBusReader<ice.Numeric> others = bus.createReader(DataBusTopic.NUMERIC, DeviceFilter.except("udi1"), 1, null);
+        DataBusWriter<ice.Numeric> writer = bus.createWriter(DataBusTopic.NUMERIC);
+
+        for (int i = 0; i < 5; i++) {
+            writer.write(numeric("udi1", "HR", i));
+        }
+        writer.write(numeric("udi2", "HR", 100f));
+
+        List<ice.Numeric> history = mine.history(numeric("udi1", "HR", 0f));
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals(2f, history.get(0).value, 0f);
+        Assert.assertEquals(4f, history.get(2).value, 0f);
+        Assert.assertEquals(1, mine.instances().size());
+        Assert.assertEquals(1, others.instances().size());
+        Assert.assertEquals("udi2", others.instances().get(0).unique_device_identifier);
+    }
+
+    @Test
+    public void testSharedInstanceAndDurability() {
+        DataBus bus = new InMemoryDataBus();
+        DataBusWriter<ice.Numeric> w1 = bus.createWriter(DataBusTopic.NUMERIC);
+        DataBusWriter<ice.Numeric> w2 = bus.createWriter(DataBusTopic.NUMERIC);
+        RecordingListener listener = new RecordingListener();
+        DataBusReader<ice.Numeric> reader = bus.createReader(DataBusTopic.NUMERIC, DeviceFilter.ALL, 1, listener);
+
+        ice.Numeric n = numeric("udi1", "SPO2", 98f);
+        w1.write(n);
+        w2.write(n);
+        w1.close();
+        Assert.assertNotNull("instance stays alive while another writer has it", reader.read(n));
+        w2.close();
+        Assert.assertNull(reader.read(n));
+
+        ice.DeviceIdentity id = new ice.DeviceIdentity();
+        id.unique_device_identifier = "udi1";
+        bus.createWriter(DataBusTopic.DEVICE_IDENTITY).write(id);
+        DataBusReader<ice.DeviceIdentity> late = bus.createReader(DataBusTopic.DEVICE_IDENTITY, DeviceFilter.ALL, 1, null);
+        Assert.assertEquals("durable topics are delivered to late readers", 1, late.instances().size());
+
+        DataBusReader<ice.Numeric> lateNumeric = bus.createReader(DataBusTopic.NUMERIC, DeviceFilter.ALL, 1, null);
+        bus.createWriter(DataBusTopic.NUMERIC).write(n);
+        reader.close();
+        Assert.assertEquals(1, lateNumeric.instances().size());
+        Assert.assertTrue(reader.instances().isEmpty());
+    }
+
+    @Test
+    public void testSampleArrayKeys() {
+        DataBus bus = new InMemoryDataBus();
+        DataBusReader<ice.SampleArray> reader = bus.createReader(DataBusTopic.SAMPLE_ARRAY, DeviceFilter.ALL, 1, null);
+        DataBusWriter<ice.SampleArray> writer = bus.createWriter(DataBusTopic.SAMPLE_ARRAY);
+
+        // the same metric from two vendor codes, as the Draeger realtime streams send
+        ice.SampleArray a = new ice.SampleArray();
+        a.unique_device_identifier = "udi1";
+        a.metric_id = "MDC_PRESS_AWAY";
+        a.vendor_metric_id = "AirwayPressure";
+        a.frequency = 125;
+        ice.SampleArray b = new ice.SampleArray();
+        b.copy_from(a);
+        b.vendor_metric_id = "AirwayPressureAtTube";
+        writer.write(a);
+        writer.write(b);
+
+        Assert.assertEquals(2, reader.instances().size());
+        Assert.assertEquals("AirwayPressure", reader.read(a).vendor_metric_id);
+        Assert.assertEquals("AirwayPressureAtTube", reader.read(b).vendor_metric_id);
+    }
+
+    @Test
+    public void testConcurrentHistory() throws InterruptedException {
+        DataBus bus = new InMemoryDataBus();
+        final DataBusReader<ice.Numeric> reader = bus.createReader(DataBusTopic.NUMERIC, DeviceFilter.ALL, 4, null);
+        final DataBusWriter<ice.Numeric> writer = bus.createWriter(DataBusTopic.NUMERIC);
+        final int samples = 200000;
+        Thread writing = new Thread(new Runnable() {
+            public void run() {
+                ice.Numeric n = numeric("udi1", "HR", 0f);
+                for (int i = 1; i <= samples; i++) {
+                    n.value = i;
+                    writer.write(n);
+                }
+            }
+        });
+        writing.start();
+        ice.Numeric key = numeric("udi1", "HR", 0f);
+        float last = 0f;
+        while (writing.isAlive() || last < samples) {
+            ice.Numeric latest = reader.read(key);
+            if (null != latest) {
+                Assert.assertTrue("latest never goes back", latest.value >= last);
+                last = latest.value;
+            }
+            List<ice.Numeric> history = reader.history(key);
+            for (int i = 1; i < history.size(); i++) {
+                Assert.assertEquals("history is consecutive", history.get(i - 1).value + 1f, history.get(i).value, 0f);
+            }
+        }
+        writing.join();
+        Assert.assertEquals(samples, reader.read(key).value, 0f);
+    }
+}
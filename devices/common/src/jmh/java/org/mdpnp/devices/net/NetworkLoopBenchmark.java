@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many loopback datagram channels, one per simulated monitor, registered with a
+ * NetworkLoopGroup. round sends one datagram to every channel and waits until the
+ * loops have read them all; the score is the cost of one round. register adds
+ * and removes one more channel while the others are being serviced, which used
+ * to pause the whole loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NetworkLoopBenchmark {
+    @Param({ "256" })
+    public int channels;
+
+    @Param({ "1", "4" })
+    public int loops;
+
+    private static final class Counter implements NetworkConnection {
+        private final ByteBuffer buffer = ByteBuffer.allocate(64);
+        private final AtomicInteger received;
+
+        Counter(AtomicInteger received) {
+            this.received = received;
+        }
+
+        @Override
+        public void read(SelectionKey sk) throws IOException {
+            DatagramChannel channel = (DatagramChannel) sk.channel();
+            buffer.clear();
+            while (null != channel.receive(buffer)) {
+                received.incrementAndGet();
+                buffer.clear();
+            }
+        }
+
+        @Override
+        public void write(SelectionKey sk) throws IOException {
+        }
+
+        @Override
+        public void registered(NetworkLoop networkLoop, SelectionKey sk) {
+        }
+
+        @Override
+        public void unregistered(NetworkLoop networkLoop, SelectionKey sk) {
+        }
+    }
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final ByteBuffer payload = ByteBuffer.allocate(32);
+    private NetworkLoopGroup group;
+    private DatagramChannel[] receivers;
+    private SocketAddress[] addresses;
+    private DatagramChannel sender;
+    private int expected;
+
+    private static DatagramChannel open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return channel;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        group = new NetworkLoopGroup(loops);
+        receivers = new DatagramChannel[channels];
+        addresses = new SocketAddress[channels];
+        for (int i = 0; i < channels; i++) {
+            receivers[i] = open();
+            addresses[i] = receivers[i].getLocalAddress();
+            group.register(new Counter(received), receivers[i]);
+        }
+        sender = DatagramChannel.open();
+        expected = received.get();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        group.shutdown();
+        sender.close();
+        for (DatagramChannel channel : receivers) {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public int round() throws IOException {
+        for (int i = 0; i < channels; i++) {
+            payload.clear();
+            sender.send(payload, addresses[i]);
+        }
+        expected += channels;
+        long giveup = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+        int n;
+        while ((n = received.get()) - expected < 0) {
+            if (System.nanoTime() - giveup > 0L) {
+                // a datagram was dropped; start over from what arrived
+                expected = n;
+                break;
+            }
+            Thread.yield();
+        }
+        return n;
+    }
+
+    @Benchmark
+    public SelectionKey register() throws IOException {
+        DatagramChannel channel = open();
+        try {
+            Counter counter = new Counter(received);
+            NetworkLoop loop = group.next();
+            SelectionKey key = loop.register(counter, channel);
+            loop.unregister(key, counter);
+            return key;
+        } finally {
+            channel.close();
+        }
+    }
+}
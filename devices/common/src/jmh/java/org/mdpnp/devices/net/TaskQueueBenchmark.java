@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the TaskQueue operations the NetworkLoop thread performs with many
+ * recurring tasks (watchdogs, keep-alives, polls) pending. The tasks run at a
+ * fixed rate and are spread evenly over one period so that advancing the clock
+ * by one step makes one task due; expire measures taking that task, running it
+ * and putting it back. reschedule moves a pending task to a new deadline and
+ * cancel removes one and schedules it again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TaskQueueBenchmark {
+    private static final long STEP = TimeUnit.MICROSECONDS.toNanos(1L);
+
+    @Param({ "10000" })
+    public int tasks;
+
+    private static final class Noop extends TaskQueue.TaskImpl<Void> {
+        @Override
+        public Void doExecute(TaskQueue queue) {
+            return null;
+        }
+    }
+
+    private TaskQueue queue;
+    private Noop[] scheduled;
+    private TaskQueue.Entry[] entries;
+    private long now;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        queue = new TaskQueue();
+        scheduled = new Noop[tasks];
+        entries = new TaskQueue.Entry[tasks];
+        for (int i = 0; i < tasks; i++) {
+            scheduled[i] = new Noop();
+            entries[i] = queue.scheduleAtFixedRate(scheduled[i], i * STEP, tasks * STEP, TimeUnit.NANOSECONDS);
+        }
+        now = entries[0].getDeadline();
+    }
+
+    @TearDown
+    public void tearDown() {
+        queue.clear();
+    }
+
+    @Benchmark
+    public long expire() {
+        now += STEP;
+        return queue.doExpiredTasks(now);
+    }
+
+    @Benchmark
+    public TaskQueue.Entry reschedule() {
+        int i = next++ % tasks;
+        return queue.scheduleAtFixedRate(scheduled[i], (tasks - i) * STEP, tasks * STEP, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public TaskQueue.Entry cancel() {
+        int i = next++ % tasks;
+        entries[i].cancel();
+        return entries[i] = queue.scheduleAtFixedRate(scheduled[i], i * STEP, tasks * STEP, TimeUnit.NANOSECONDS);
+    }
+}
@@ -10,6 +10,27 @@ public interface DeviceClock {
      */
     Reading instant();
 
+    /**
+     * Records the current instant into a reading owned by the caller rather than allocating a new one.
+     * Clocks on a per-sample path should override this; by default the reading is copied from {@link #instant()}.
+     *
+     * @return the supplied reading
+     */
+    default Reading instant(MutableReading reading) {
+        return reading.set(instant());
+    }
+
+    long NANOS_PER_SECOND = 1000000000L;
+    long NANOS_PER_MILLI  = 1000000L;
+
+    static long toNanos(Instant t) {
+        return t.getEpochSecond() * NANOS_PER_SECOND + t.getNano();
+    }
+
+    static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
     /**
      * A point on the time-line as perceived by the instance of the clock that is returning this reading.
      *
@@ -26,8 +47,31 @@ public interface DeviceClock {
         boolean hasDeviceTime();
         Instant getDeviceTime();
         Reading refineResolutionForFrequency(int hertz, int size);
+
+        /**
+         * @return {@link #getTime()} as nanoseconds since the epoch
+         */
+        default long getTimeNanos() {
+            return toNanos(getTime());
+        }
+
+        /**
+         * @return {@link #getDeviceTime()} as nanoseconds since the epoch; only meaningful if {@link #hasDeviceTime()}
+         */
+        default long getDeviceTimeNanos() {
+            return toNanos(getDeviceTime());
+        }
     };
 
+    /**
+     * Reduces the resolution of timestamps as {@link Reading#refineResolutionForFrequency(int, int)} requires
+     * for clocks (such as the DomainClock) that do so.
+     */
+    public interface Resolution {
+        long truncate(long timeNanos);
+        void refineForFrequency(int hertz, int size);
+    }
+
 
     public static class WallClock implements DeviceClock {
 
@@ -36,6 +80,12 @@ public interface DeviceClock {
             return new ReadingImpl(getTimeInMillis());
         }
 
+        @Override
+        public Reading instant(MutableReading reading) {
+            long t = getTimeInMillis() * NANOS_PER_MILLI;
+            return reading.set(t, t);
+        }
+
         protected long getTimeInMillis()
         {
             return System.currentTimeMillis();
@@ -60,28 +110,38 @@ public interface DeviceClock {
     }
 
     public static class ReadingImpl implements DeviceClock.Reading {
-        private final Instant ms;
+        private final long nanos;
 
         public ReadingImpl(long time) {
-            this(Instant.ofEpochMilli(time));
+            nanos = time * NANOS_PER_MILLI;
         }
         public ReadingImpl(Instant time) {
-            ms = time;
+            nanos = toNanos(time);
         }
 
         @Override
         public String toString() {
-            return ms.toString();
+            return getTime().toString();
         }
 
         @Override
         public Instant getTime() {
-            return ms;
+            return toInstant(nanos);
         }
 
         @Override
         public Instant getDeviceTime() {
-            return ms;
+            return getTime();
+        }
+
+        @Override
+        public long getTimeNanos() {
+            return nanos;
+        }
+
+        @Override
+        public long getDeviceTimeNanos() {
+            return nanos;
         }
 
         @Override
@@ -125,10 +185,155 @@ public interface DeviceClock {
             return dev.getTime();
         }
 
+        @Override
+        public long getTimeNanos() {
+            return ref.getTimeNanos();
+        }
+
+        @Override
+        public long getDeviceTimeNanos() {
+            return dev.getTimeNanos();
+        }
+
         @Override
         public Reading refineResolutionForFrequency(int hertz, int size) {
             ref.refineResolutionForFrequency(hertz, size);
             return this;
         }
     }
+
+    /**
+     * A reading held by a device (typically one per publishing thread) and refilled by
+     * {@link DeviceClock#instant(MutableReading)} for each sample.  Times are kept as
+     * epoch nanoseconds so that nothing is allocated per sample; the Instant accessors
+     * remain for callers that need them.  A reading must not be retained past the
+     * publication it was taken for.
+     */
+    public static class MutableReading implements DeviceClock.Reading {
+        private long timeNanos;
+        private long deviceTimeNanos;
+        private boolean hasDeviceTime;
+        private Resolution resolution;
+        private Reading source;
+
+        /**
+         * Reference time and device time, both in epoch nanoseconds.
+         */
+        public MutableReading set(long timeNanos, long deviceTimeNanos) {
+            this.timeNanos = timeNanos;
+            this.deviceTimeNanos = deviceTimeNanos;
+            this.hasDeviceTime = true;
+            this.resolution = null;
+            this.source = null;
+            return this;
+        }
+
+        /**
+         * Reference time only, reduced by the supplied resolution (which may be null) when read.
+         */
+        public MutableReading setTime(long timeNanos, Resolution resolution) {
+            this.timeNanos = timeNanos;
+            this.hasDeviceTime = false;
+            this.resolution = resolution;
+            this.source = null;
+            return this;
+        }
+
+        public MutableReading setDeviceTime(long deviceTimeNanos) {
+            this.deviceTimeNanos = deviceTimeNanos;
+            this.hasDeviceTime = true;
+            return this;
+        }
+
+        public MutableReading clearDeviceTime() {
+            this.hasDeviceTime = false;
+            return this;
+        }
+
+        /**
+         * Copies another reading; refinement of resolution is passed through to it.
+         */
+        public MutableReading set(Reading reading) {
+            this.timeNanos = reading.getTimeNanos();
+            this.hasDeviceTime = reading.hasDeviceTime();
+            this.deviceTimeNanos = hasDeviceTime ? reading.getDeviceTimeNanos() : 0L;
+            this.resolution = null;
+            this.source = reading;
+            return this;
+        }
+
+        @Override
+        public long getTimeNanos() {
+            return null == resolution ? timeNanos : resolution.truncate(timeNanos);
+        }
+
+        @Override
+        public long getDeviceTimeNanos() {
+            return deviceTimeNanos;
+        }
+
+        @Override
+        public Instant getTime() {
+            return toInstant(getTimeNanos());
+        }
+
+        @Override
+        public boolean hasDeviceTime() {
+            return hasDeviceTime;
+        }
+
+        @Override
+        public Instant getDeviceTime() {
+            return hasDeviceTime ? toInstant(deviceTimeNanos) : null;
+        }
+
+        @Override
+        public Reading refineResolutionForFrequency(int hertz, int size) {
+            if (null != resolution) {
+                resolution.refineForFrequency(hertz, size);
+            } else if (null != source) {
+                source.refineResolutionForFrequency(hertz, size);
+                timeNanos = source.getTimeNanos();
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return hasDeviceTime ? (getTime() + " " + getDeviceTime()) : getTime().toString();
+        }
+    }
+
+    /**
+     * Pairs a reference clock (usually the device's DomainClock) with a clock for the
+     * device's own notion of time, as CombinedReading does for individual readings.
+     */
+    public static class CombinedClock implements DeviceClock {
+        private final DeviceClock ref;
+        private final DeviceClock dev;
+        private final ThreadLocal<MutableReading> devReading = new ThreadLocal<MutableReading>() {
+            @Override
+            protected MutableReading initialValue() {
+                return new MutableReading();
+            }
+        };
+
+        public CombinedClock(DeviceClock ref, DeviceClock dev) {
+            this.ref = ref;
+            this.dev = dev;
+        }
+
+        @Override
+        public Reading instant() {
+            return new CombinedReading(ref.instant(), dev.instant());
+        }
+
+        @Override
+        public Reading instant(MutableReading reading) {
+            Reading d = dev.instant(devReading.get());
+            ref.instant(reading);
+            // as with CombinedReading the device time is the time of the device clock
+            return d.hasDeviceTime() ? reading.setDeviceTime(d.getTimeNanos()) : reading.clearDeviceTime();
+        }
+    }
 }
@@ -19,11 +19,24 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Services the channels registered with one Selector, and the tasks of a
+ * {@link TaskQueue}, on a single thread. Channels may be registered and
+ * unregistered from any thread; the change is queued for the loop thread, which
+ * applies it before its next select, so other connections are not held up while
+ * it happens.
+ *
  * @author Jeff Plourde
  *
  */
@@ -37,18 +50,6 @@ public class NetworkLoop implements Runnable {
          * Running state, processing continues
          */
         Resumed,
-        /**
-         * The interrupt has concluded, processing may continue
-         */
-        Resuming,
-        /**
-         * Processing has been successfully interrupted
-         */
-        Paused,
-        /**
-         * Interrupt of processing is requested
-         */
-        Pausing,
         /**
          * Termination of runLoop has been requested
          */
@@ -61,9 +62,11 @@ public class NetworkLoop implements Runnable {
 
     private final Selector select;
     private final TaskQueue taskQueue = new TaskQueue();
-    private LoopState loopState = LoopState.New;
+    // registration changes for the loop thread to apply
+    private final Queue<FutureTask<?>> changes = new ConcurrentLinkedQueue<FutureTask<?>>();
+    private volatile LoopState loopState = LoopState.New;
 
-    private Thread myThread;
+    private volatile Thread myThread;
 
     private static final Logger log = LoggerFactory.getLogger(NetworkLoop.class);
 
@@ -75,78 +78,123 @@ public class NetworkLoop implements Runnable {
         this.select = select;
     }
 
-    private synchronized void pause(String action) {
-        long start = System.currentTimeMillis();
-        if (!Thread.currentThread().equals(myThread)) {
-            while (!LoopState.Paused.equals(loopState)) {
-                long now = System.currentTimeMillis();
-                switch (loopState) {
-                case New:
-                    if (now >= (start + 5000L)) {
-                        throw new IllegalStateException("RunLoop not started after five seconds, unable to register connection");
-                    }
-                    break;
-                case Terminating:
-                case Terminated:
-                    throw new IllegalStateException("Cannot " + action + "; runLoop is " + loopState);
-                case Resuming:
-                case Pausing:
-                case Paused:
-                    break;
-                case Resumed:
-                    loopState = LoopState.Pausing;
-                    select.wakeup();
-                    break;
-                }
+    /**
+     * Runs the change on the loop thread and waits for it. The change is made
+     * directly when called on the loop thread or before the loop has started.
+     */
+    private <T> T change(String action, Callable<T> change) throws Exception {
+        if (Thread.currentThread() == myThread) {
+            return change.call();
+        }
+        synchronized (this) {
+            switch (loopState) {
+            case New:
+                // runLoop cannot start selecting while the lock is held
+                return change.call();
+            case Terminating:
+            case Terminated:
+                throw new IllegalStateException("Cannot " + action + "; runLoop is " + loopState);
+            default:
+                break;
+            }
+        }
 
+        FutureTask<T> task = new FutureTask<T>(change);
+        changes.offer(task);
+        select.wakeup();
+        if (LoopState.Terminated.equals(loopState)) {
+            // the loop may have ended before seeing the change
+            cancelChanges();
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true) {
                 try {
-                    this.wait(250L);
+                    return task.get();
                 } catch (InterruptedException e) {
-                    log.error("Interrupted", e);
+                    interrupted = true;
+                } catch (CancellationException e) {
+                    throw new IllegalStateException("Cannot " + action + "; runLoop is " + loopState);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new RuntimeException(cause);
+                    }
                 }
             }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    private synchronized void resume() {
-        loopState = LoopState.Resuming;
-        this.notifyAll();
+    private void applyChanges() {
+        FutureTask<?> task;
+        while (null != (task = changes.poll())) {
+            task.run();
+        }
     }
 
-    public SelectionKey register(NetworkConnection conn, SelectableChannel channel) throws ClosedChannelException {
-        SelectionKey key = null;
-        synchronized (this) {
-            if (LoopState.New.equals(loopState)) {
-                key = channel.register(select, SelectionKey.OP_READ, conn);
-            }
+    private void cancelChanges() {
+        FutureTask<?> task;
+        while (null != (task = changes.poll())) {
+            task.cancel(false);
         }
-        if (null != key) {
-            conn.registered(this, key);
-            return key;
-        } else {
-            pause("register a new connection");
-            key = channel.register(select, SelectionKey.OP_READ, conn);
-            conn.registered(this, key);
-            resume();
-            return key;
+    }
+
+    public SelectionKey register(final NetworkConnection conn, final SelectableChannel channel) throws ClosedChannelException {
+        try {
+            return change("register a new connection", new Callable<SelectionKey>() {
+                @Override
+                public SelectionKey call() throws ClosedChannelException {
+                    SelectionKey key = channel.register(select, SelectionKey.OP_READ, conn);
+                    conn.registered(NetworkLoop.this, key);
+                    return key;
+                }
+            });
+        } catch (ClosedChannelException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
-    public void unregister(SelectionKey key, NetworkConnection conn) {
-        boolean canceled = false;
-        synchronized (this) {
-            if (LoopState.New.equals(loopState)) {
-                key.cancel();
-                canceled = true;
-            }
+    public void unregister(final SelectionKey key, final NetworkConnection conn) {
+        try {
+            change("unregister a connection", new Callable<Void>() {
+                @Override
+                public Void call() {
+                    key.cancel();
+                    conn.unregistered(NetworkLoop.this, key);
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
-        if (canceled) {
-            conn.unregistered(this, key);
+    }
+
+    /**
+     * @param nanos until the next task is due
+     * @return milliseconds for select(long); rounded up so that the loop does not wake
+     *         before the task is due
+     */
+    static long selectTimeout(long nanos) {
+        if (Long.MAX_VALUE == nanos) {
+            // no tasks, wait for I/O or wakeup
+            return 0L;
+        } else if (nanos <= 0L) {
+            return -1L;
         } else {
-            pause("unregister a connection");
-            key.cancel();
-            conn.unregistered(this, key);
-            resume();
+            return TimeUnit.NANOSECONDS.toMillis(nanos - 1L) + 1L;
         }
     }
 
@@ -247,36 +295,15 @@ public class NetworkLoop implements Runnable {
 
         try {
             while (true) {
-                synchronized (this) {
-                    while (!LoopState.Resumed.equals(loopState)) {
-                        switch (loopState) {
-                        case New:
-                        case Terminated:
-                            throw new IllegalStateException();
-                        case Terminating:
-                            log.info("runLoop in Terminating state; runLoop will end");
-                            return;
-                        case Pausing:
-                            loopState = LoopState.Paused;
-                            this.notifyAll();
-                            break;
-                        case Resuming:
-                            loopState = LoopState.Resumed;
-                            this.notifyAll();
-                            continue;
-                        case Paused:
-                        case Resumed:
-                        }
-                        try {
-                            this.wait();
-                        } catch (InterruptedException e) {
-                            log.error("Interrupted", e);
-                        }
-                    }
+                if (LoopState.Terminating.equals(loopState)) {
+                    log.info("runLoop in Terminating state; runLoop will end");
+                    return;
                 }
 
+                applyChanges();
+
                 try {
-                    select(taskQueue.doExpiredTasks(System.currentTimeMillis()));
+                    select(selectTimeout(taskQueue.doExpiredTasks(System.nanoTime())));
                 } catch (IOException e) {
                     log.error("in select", e);
                     break;
@@ -350,34 +377,33 @@ public class NetworkLoop implements Runnable {
                 loopState = LoopState.Terminated;
                 this.notifyAll();
             }
+            cancelChanges();
         }
     }
 
     public synchronized void cancelThread() {
-        while (!LoopState.Resumed.equals(loopState)) {
-            switch (loopState) {
-            case New:
-                throw new IllegalStateException("runLoop has not been started");
-            case Paused:
-            case Pausing:
-            case Resuming:
-            case Resumed:
-                break;
-            case Terminating:
-            case Terminated:
-                return;
-            }
-
-            try {
-                this.wait();
-            } catch (InterruptedException e) {
-                log.error("Interrupted", e);
-            }
+        switch (loopState) {
+        case New:
+            throw new IllegalStateException("runLoop has not been started");
+        case Terminating:
+        case Terminated:
+            return;
+        default:
+            break;
         }
         this.loopState = LoopState.Terminating;
         select.wakeup();
     }
 
+    /**
+     * Waits for a thread to call runLoop
+     */
+    synchronized void awaitRunLoop() throws InterruptedException {
+        while (LoopState.New.equals(loopState)) {
+            this.wait();
+        }
+    }
+
     public void cancelThreadAndWait() {
         cancelThread();
         synchronized (this) {
@@ -396,6 +422,28 @@ public class NetworkLoop implements Runnable {
         select.wakeup();
     }
 
+    public TaskQueue.Entry schedule(TaskQueue.Task<?> task, long delay, TimeUnit unit) {
+        TaskQueue.Entry e = taskQueue.schedule(task, delay, unit);
+        select.wakeup();
+        return e;
+    }
+
+    public TaskQueue.Entry scheduleAtFixedRate(TaskQueue.Task<?> task, long initialDelay, long period, TimeUnit unit) {
+        TaskQueue.Entry e = taskQueue.scheduleAtFixedRate(task, initialDelay, period, unit);
+        select.wakeup();
+        return e;
+    }
+
+    public TaskQueue.Entry scheduleWithFixedDelay(TaskQueue.Task<?> task, long initialDelay, long delay, TimeUnit unit) {
+        TaskQueue.Entry e = taskQueue.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+        select.wakeup();
+        return e;
+    }
+
+    public boolean cancel(TaskQueue.Task<?> task) {
+        return taskQueue.cancel(task);
+    }
+
     public void clearTasks() {
         taskQueue.clear();
         select.wakeup();
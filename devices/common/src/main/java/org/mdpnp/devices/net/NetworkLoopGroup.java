@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed set of {@link NetworkLoop}s, each with its own Selector and thread,
+ * over which connections are spread round-robin. A connection stays on the loop
+ * it was given; its reads, writes and tasks all run on that loop's thread.
+ */
+public class NetworkLoopGroup {
+    private final NetworkLoop[] loops;
+    private final Thread[] threads;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private static final Logger log = LoggerFactory.getLogger(NetworkLoopGroup.class);
+
+    private static final AtomicInteger groups = new AtomicInteger();
+
+    /**
+     * One loop per available processor
+     */
+    public NetworkLoopGroup() throws IOException {
+        this(0);
+    }
+
+    /**
+     * @param size number of loops; zero or less for one per available processor
+     */
+    public NetworkLoopGroup(int size) throws IOException {
+        this(size, new ThreadFactory() {
+            private final int group = groups.incrementAndGet();
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Network Loop " + group + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public NetworkLoopGroup(int size, ThreadFactory threadFactory) throws IOException {
+        if (size <= 0) {
+            size = Runtime.getRuntime().availableProcessors();
+        }
+        loops = new NetworkLoop[size];
+        threads = new Thread[size];
+        for (int i = 0; i < size; i++) {
+            loops[i] = new NetworkLoop();
+        }
+        for (int i = 0; i < size; i++) {
+            final NetworkLoop loop = loops[i];
+            threads[i] = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        loop.runLoop();
+                    } finally {
+                        log.info("NetworkLoop.runLoop ended");
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        try {
+            for (NetworkLoop loop : loops) {
+                loop.awaitRunLoop();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdown();
+            throw new IOException("Interrupted starting network loops", e);
+        }
+    }
+
+    /**
+     * @return the loop for the next connection
+     */
+    public NetworkLoop next() {
+        return loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    /**
+     * Registers the connection with the next loop; unregister it with
+     * {@link NetworkLoop#unregister(SelectionKey, NetworkConnection)} on the loop
+     * passed to {@link NetworkConnection#registered(NetworkLoop, SelectionKey)}.
+     */
+    public SelectionKey register(NetworkConnection conn, SelectableChannel channel) throws ClosedChannelException {
+        return next().register(conn, channel);
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    public NetworkLoop getLoop(int i) {
+        return loops[i];
+    }
+
+    public void shutdown() {
+        for (NetworkLoop loop : loops) {
+            loop.clearTasks();
+            try {
+                loop.cancelThread();
+            } catch (IllegalStateException e) {
+                log.warn("NetworkLoop was not started", e);
+            }
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                log.error("Interrupted", e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
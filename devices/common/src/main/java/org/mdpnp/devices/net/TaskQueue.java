@@ -13,52 +13,175 @@
 package org.mdpnp.devices.net;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Tasks run by the {@link NetworkLoop} thread at nanosecond (System.nanoTime) deadlines.
+ * Pending tasks are kept in a binary heap ordered by deadline and then by the order in
+ * which they were scheduled, so scheduling, cancelling and taking the next task are
+ * O(log n). Recurring tasks run at a fixed rate or with a fixed delay between the end
+ * of one run and the start of the next.
+ *
  * @author Jeff Plourde
  *
  */
 public class TaskQueue {
-    private final ThreadLocal<List<Task<?>>> tasksToDo = new ThreadLocal<List<Task<?>>>() {
-        protected java.util.List<TaskQueue.Task<?>> initialValue() {
-            return new ArrayList<Task<?>>();
+    private final ThreadLocal<List<Entry>> tasksToDo = new ThreadLocal<List<Entry>>() {
+        protected List<Entry> initialValue() {
+            return new ArrayList<Entry>();
         }
     };
 
+    /**
+     * Cancellation handle for a scheduled task.
+     */
+    public final class Entry {
+        private final Task<?> task;
+        private final boolean fixedRate;
+        // zero for a one-shot task; negative to follow the interval of the task itself
+        private final long period;
+        private long deadline;
+        private long sequence;
+        private int index = -1;
+        private boolean cancelled;
+        // between the recheck of cancelled in doExpiredTasks and reschedule
+        private boolean running;
+
+        private Entry(Task<?> task, long deadline, long period, boolean fixedRate) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+            this.fixedRate = fixedRate;
+        }
+
+        public Task<?> getTask() {
+            return task;
+        }
+
+        /**
+         * @return the System.nanoTime at which the task will next run
+         */
+        public long getDeadline() {
+            synchronized (TaskQueue.this) {
+                return deadline;
+            }
+        }
+
+        /**
+         * The task will not run again; a run already in progress is not interrupted.
+         *
+         * @return false if the task had already been cancelled or was not recurring and has run
+         */
+        public boolean cancel() {
+            synchronized (TaskQueue.this) {
+                if (cancelled) {
+                    return false;
+                }
+                cancelled = true;
+                entries.remove(task, this);
+                if (index >= 0) {
+                    removeAt(index);
+                    return true;
+                }
+                // expired but not yet run, or mid-execution; a recurring task will not
+                // be rescheduled
+                return !running || nextPeriod() > 0L;
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (TaskQueue.this) {
+                return cancelled;
+            }
+        }
+
+        private long nextPeriod() {
+            if (period >= 0L) {
+                return period;
+            }
+            return task.isRecurrent() ? TimeUnit.MILLISECONDS.toNanos(task.getInterval()) : 0L;
+        }
+    }
+
+    private Entry[] heap = new Entry[16];
+    private int size;
+    private long nextSequence;
+    // to find the entry of a task that is cancelled or added again
+    private final Map<Task<?>, Entry> entries = new IdentityHashMap<Task<?>, Entry>();
+
+    /**
+     * Runs every task whose deadline has passed.
+     *
+     * @param now a reading of System.nanoTime()
+     * @return nanoseconds until the next deadline, which may be zero or negative if another
+     *         task is already due, or Long.MAX_VALUE if there are no tasks
+     */
     public long doExpiredTasks(long now) {
-        List<Task<?>> tasksToDo = this.tasksToDo.get();
+        List<Entry> tasksToDo = this.tasksToDo.get();
 
         tasksToDo.clear();
 
         synchronized (this) {
-            for (Task<?> t : queue) {
-                if (t.getScheduledTime() <= now) {
-                    tasksToDo.add(t);
-                }
+            while (size > 0 && heap[0].deadline - now <= 0L) {
+                tasksToDo.add(heap[0]);
+                removeAt(0);
             }
-            queue.removeAll(tasksToDo);
-            this.notifyAll();
         }
         if (!tasksToDo.isEmpty()) {
-            for (Task<?> t : tasksToDo) {
-                t.execute(this);
+            for (int i = 0; i < tasksToDo.size(); i++) {
+                Entry e = tasksToDo.get(i);
+                // an earlier task in this batch may have cancelled it
+                synchronized (this) {
+                    if (e.cancelled) {
+                        continue;
+                    }
+                    e.running = true;
+                }
+                e.task.execute(this);
+                reschedule(e);
             }
+            tasksToDo.clear();
         }
-        return timeToNextTask(now);
+        return timeToNextTask(System.nanoTime());
     }
 
+    /**
+     * @param now a reading of System.nanoTime()
+     * @return nanoseconds until the next deadline or Long.MAX_VALUE if there are no tasks
+     */
     public final synchronized long timeToNextTask(long now) {
-        if (queue.isEmpty()) {
-            return 0L;
+        if (0 == size) {
+            return Long.MAX_VALUE;
         } else {
-            return queue.first().getScheduledTime() - now;
+            return heap[0].deadline - now;
+        }
+    }
+
+    private synchronized void reschedule(Entry e) {
+        e.running = false;
+        if (e.cancelled) {
+            return;
+        }
+        long period = e.nextPeriod();
+        if (period <= 0L) {
+            e.cancelled = true;
+            entries.remove(e.task, e);
+            return;
+        }
+        e.deadline = e.fixedRate ? e.deadline + period : System.nanoTime() + period;
+        if (e.period < 0L) {
+            // keep the wall clock view of legacy tasks current
+            e.task.setScheduledTime(System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(period));
         }
+        offer(e);
     }
 
     public interface Task<T> extends Comparable<Task<T>> {
@@ -78,6 +201,9 @@ public class TaskQueue {
     }
 
     public abstract static class TaskImpl<T> implements Task<T> {
+        private static final AtomicLong instances = new AtomicLong();
+
+        private final long instance = instances.incrementAndGet();
         private long scheduledTime;
         private T t;
         private Throwable e;
@@ -108,15 +234,13 @@ public class TaskQueue {
             try {
                 T t = doExecute(queue);
                 synchronized (this) {
-                    if (isRecurrent()) {
-                        setScheduledTime(System.currentTimeMillis() + getInterval());
-                        queue.add(this);
-                    }
                     this.t = t;
                     this.notifyAll();
                 }
                 return t;
             } catch (Throwable e) {
+                // a recurring task that fails is not run again
+                queue.cancel(this);
                 synchronized (this) {
                     log.error("Caught Throwable in TaskImpl.execute; may not be reported if no call to waitForResult", e);
                     this.e = e;
@@ -142,15 +266,14 @@ public class TaskQueue {
                 return -1;
             } else if (scheduledTime > o.getScheduledTime()) {
                 return 1;
+            } else if (this == o) {
+                return 0;
+            } else if (o instanceof TaskImpl) {
+                // creation order keeps the ordering total and consistent
+                return Long.compare(instance, ((TaskImpl<?>) o).instance);
             } else {
-                if (this.equals(o)) {
-                    return 0;
-                } else {
-                    // TODO terribly arbitrary
-                    return -1;
-                }
+                return Integer.compare(System.identityHashCode(this), System.identityHashCode(o));
             }
-
         }
 
         public boolean isRecurrent() {
@@ -169,13 +292,152 @@ public class TaskQueue {
 
     }
 
-    private final SortedSet<Task<?>> queue = new TreeSet<Task<?>>();
+    /**
+     * Schedules the task at its getScheduledTime(), in milliseconds since the epoch, or
+     * immediately if that time has passed. While the task isRecurrent() it runs again
+     * getInterval() milliseconds after each run completes. A task that is already
+     * scheduled is moved to the new time.
+     */
+    public void add(Task<?> task) {
+        long delay = Math.max(0L, task.getScheduledTime() - System.currentTimeMillis());
+        schedule(task, TimeUnit.MILLISECONDS.toNanos(delay), -1L, false);
+    }
 
-    public synchronized void add(Task<?> task) {
-        queue.add(task);
+    /**
+     * Runs the task once after the delay.
+     */
+    public Entry schedule(Task<?> task, long delay, TimeUnit unit) {
+        return schedule(task, unit.toNanos(delay), 0L, false);
+    }
+
+    /**
+     * Runs the task after initialDelay and then every period after that, regardless
+     * of how long each run takes. Runs that fall behind are not skipped.
+     */
+    public Entry scheduleAtFixedRate(Task<?> task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0L) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        return schedule(task, unit.toNanos(initialDelay), unit.toNanos(period), true);
+    }
+
+    /**
+     * Runs the task after initialDelay and then delay after each run completes.
+     */
+    public Entry scheduleWithFixedDelay(Task<?> task, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0L) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        return schedule(task, unit.toNanos(initialDelay), unit.toNanos(delay), false);
+    }
+
+    private synchronized Entry schedule(Task<?> task, long delayNanos, long period, boolean fixedRate) {
+        Entry e = entries.remove(task);
+        if (null != e) {
+            e.cancelled = true;
+            if (e.index >= 0) {
+                removeAt(e.index);
+            }
+        }
+        e = new Entry(task, System.nanoTime() + delayNanos, period, fixedRate);
+        entries.put(task, e);
+        offer(e);
+        return e;
+    }
+
+    /**
+     * @return true if the task was scheduled and will not run again
+     */
+    public synchronized boolean cancel(Task<?> task) {
+        Entry e = entries.get(task);
+        return null != e && e.cancel();
+    }
+
+    public synchronized int size() {
+        return size;
     }
 
     public synchronized void clear() {
-        queue.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i].cancelled = true;
+            heap[i].index = -1;
+            heap[i] = null;
+        }
+        for (Entry e : entries.values()) {
+            e.cancelled = true;
+        }
+        entries.clear();
+        size = 0;
+        if (heap.length > 16) {
+            heap = new Entry[16];
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // binary heap on (deadline, sequence); callers hold the lock
+
+    private static boolean before(Entry a, Entry b) {
+        long d = a.deadline - b.deadline;
+        return d < 0L || (d == 0L && a.sequence < b.sequence);
+    }
+
+    private void offer(Entry e) {
+        e.sequence = nextSequence++;
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size << 1);
+        }
+        siftUp(size++, e);
+    }
+
+    private void removeAt(int i) {
+        Entry removed = heap[i];
+        removed.index = -1;
+        int last = --size;
+        if (last == i) {
+            heap[last] = null;
+        } else {
+            Entry moved = heap[last];
+            heap[last] = null;
+            siftDown(i, moved);
+            if (heap[i] == moved) {
+                siftUp(i, moved);
+            }
+        }
+    }
+
+    private void siftUp(int i, Entry e) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            Entry p = heap[parent];
+            if (!before(e, p)) {
+                break;
+            }
+            heap[i] = p;
+            p.index = i;
+            i = parent;
+        }
+        heap[i] = e;
+        e.index = i;
+    }
+
+    private void siftDown(int i, Entry e) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            Entry c = heap[child];
+            int right = child + 1;
+            if (right < size && before(heap[right], c)) {
+                child = right;
+                c = heap[child];
+            }
+            if (!before(c, e)) {
+                break;
+            }
+            heap[i] = c;
+            c.index = i;
+            i = child;
+        }
+        heap[i] = e;
+        e.index = i;
     }
 }
@@ -117,6 +117,53 @@ public class DeviceClockTest {
 
   }
 
+  @Test
+  public void testMutableReading() throws Exception {
+    final long wallTime = 507303553040L;
+
+    DeviceClock ref = new DeviceClock.WallClock() {
+      @Override
+      protected long getTimeInMillis() {
+        return wallTime;
+      }
+    };
+    DeviceClock dev = new DeviceClock.WallClock() {
+      @Override
+      protected long getTimeInMillis() {
+        return wallTime - 50L;
+      }
+    };
+
+    DeviceClock.CombinedClock clock = new DeviceClock.CombinedClock(ref, dev);
+    DeviceClock.Reading expected = clock.instant();
+
+    DeviceClock.MutableReading reading = new DeviceClock.MutableReading();
+    Assert.assertSame(reading, clock.instant(reading));
+    Assert.assertEquals(expected.getTime(), reading.getTime());
+    Assert.assertEquals(expected.getDeviceTime(), reading.getDeviceTime());
+    Assert.assertEquals(wallTime * 1000000L, reading.getTimeNanos());
+    Assert.assertEquals((wallTime - 50L) * 1000000L, reading.getDeviceTimeNanos());
+
+    // refilled in place for the next sample
+    reading.setTime(wallTime * 1000000L + 1L, null);
+    Assert.assertFalse(reading.hasDeviceTime());
+    Assert.assertNull(reading.getDeviceTime());
+    Assert.assertEquals(wallTime * 1000000L + 1L, reading.getTimeNanos());
+
+    // clocks that do not override instant(MutableReading) are copied
+    DeviceClockImpl legacy = new DeviceClockImpl(ref);
+    legacy.instant(reading);
+    Assert.assertEquals(wallTime * 1000000L, reading.getTimeNanos());
+    Assert.assertTrue(reading.hasDeviceTime());
+  }
+
+  @Test
+  public void testNanosRoundTrip() throws Exception {
+    java.time.Instant t = java.time.Instant.ofEpochSecond(-1L, 5L);
+    Assert.assertEquals(t, DeviceClock.toInstant(DeviceClock.toNanos(t)));
+    Assert.assertEquals(-999999995L, DeviceClock.toNanos(t));
+  }
+
   // This was modeled after the Draeger Clock
   //
   static class DeviceClockImpl implements DeviceClock  {
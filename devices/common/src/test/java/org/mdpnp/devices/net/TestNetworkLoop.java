@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestNetworkLoop {
+
+    private static class Receiver implements NetworkConnection {
+        private final ByteBuffer buffer = ByteBuffer.allocate(64);
+        private final AtomicInteger received;
+        private final CountDownLatch latch;
+        volatile NetworkLoop loop;
+        volatile boolean unregistered;
+
+        Receiver(AtomicInteger received, CountDownLatch latch) {
+            this.received = received;
+            this.latch = latch;
+        }
+
+        @Override
+        public void read(SelectionKey sk) throws IOException {
+            buffer.clear();
+            if (null != ((DatagramChannel) sk.channel()).receive(buffer)) {
+                received.incrementAndGet();
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void write(SelectionKey sk) throws IOException {
+        }
+
+        @Override
+        public void registered(NetworkLoop networkLoop, SelectionKey sk) {
+            this.loop = networkLoop;
+        }
+
+        @Override
+        public void unregistered(NetworkLoop networkLoop, SelectionKey sk) {
+            unregistered = true;
+        }
+    }
+
+    private static DatagramChannel open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return channel;
+    }
+
+    @Test
+    public void testRegisterWhileRunning() throws Exception {
+        NetworkLoopGroup group = new NetworkLoopGroup(1);
+        NetworkLoop loop = group.getLoop(0);
+        List<DatagramChannel> channels = new ArrayList<DatagramChannel>();
+        DatagramChannel sender = DatagramChannel.open();
+        try {
+            AtomicInteger received = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(50);
+            List<SelectionKey> keys = new ArrayList<SelectionKey>();
+            List<Receiver> receivers = new ArrayList<Receiver>();
+            long start = System.nanoTime();
+            for (int i = 0; i < 50; i++) {
+                DatagramChannel channel = open();
+                channels.add(channel);
+                Receiver r = new Receiver(received, latch);
+                receivers.add(r);
+                keys.add(loop.register(r, channel));
+                assertSame(loop, r.loop);
+            }
+            assertTrue("registration must not wait on the loop", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2L));
+
+            for (DatagramChannel channel : channels) {
+                sender.send(ByteBuffer.wrap(new byte[] { 1 }), channel.getLocalAddress());
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < keys.size(); i++) {
+                loop.unregister(keys.get(i), receivers.get(i));
+                assertTrue(receivers.get(i).unregistered);
+                assertFalse(keys.get(i).isValid());
+            }
+        } finally {
+            group.shutdown();
+            sender.close();
+            for (DatagramChannel channel : channels) {
+                channel.close();
+            }
+        }
+
+        DatagramChannel channel = open();
+        try {
+            loop.register(new Receiver(new AtomicInteger(), new CountDownLatch(1)), channel);
+            fail("registered with a terminated loop");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testGroupSpreadsConnections() throws Exception {
+        NetworkLoopGroup group = new NetworkLoopGroup(3);
+        List<DatagramChannel> channels = new ArrayList<DatagramChannel>();
+        try {
+            int[] perLoop = new int[group.size()];
+            for (int i = 0; i < 9; i++) {
+                DatagramChannel channel = open();
+                channels.add(channel);
+                Receiver r = new Receiver(new AtomicInteger(), new CountDownLatch(1));
+                group.register(r, channel);
+                for (int j = 0; j < group.size(); j++) {
+                    if (group.getLoop(j) == r.loop) {
+                        perLoop[j]++;
+                    }
+                }
+            }
+            for (int n : perLoop) {
+                assertEquals(3, n);
+            }
+        } finally {
+            group.shutdown();
+            for (DatagramChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestTaskQueue {
+
+    private static class Recorder extends TaskQueue.TaskImpl<Void> {
+        private final List<String> log;
+        private final String name;
+        int runs;
+
+        Recorder(List<String> log, String name) {
+            this.log = log;
+            this.name = name;
+        }
+
+        @Override
+        public Void doExecute(TaskQueue queue) {
+            runs++;
+            log.add(name);
+            return null;
+        }
+    }
+
+    @Test
+    public void testDeadlineThenSchedulingOrder() {
+        TaskQueue queue = new TaskQueue();
+        List<String> log = new ArrayList<String>();
+        queue.schedule(new Recorder(log, "c"), 2, TimeUnit.SECONDS);
+        queue.schedule(new Recorder(log, "a"), 0, TimeUnit.SECONDS);
+        queue.schedule(new Recorder(log, "b"), 0, TimeUnit.SECONDS);
+        queue.schedule(new Recorder(log, "d"), 3, TimeUnit.SECONDS);
+
+        long now = System.nanoTime();
+        long next = queue.doExpiredTasks(now + TimeUnit.MILLISECONDS.toNanos(1L));
+        assertEquals("[a, b]", log.toString());
+        assertTrue(next > 0L);
+        queue.doExpiredTasks(now + TimeUnit.SECONDS.toNanos(5L));
+        assertEquals("[a, b, c, d]", log.toString());
+        assertEquals(0, queue.size());
+        assertEquals(Long.MAX_VALUE, queue.timeToNextTask(System.nanoTime()));
+    }
+
+    @Test
+    public void testCancel() {
+        TaskQueue queue = new TaskQueue();
+        List<String> log = new ArrayList<String>();
+        List<TaskQueue.Entry> entries = new ArrayList<TaskQueue.Entry>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(queue.schedule(new Recorder(log, Integer.toString(i)), i, TimeUnit.MILLISECONDS));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(entries.get(i).cancel());
+            assertFalse(entries.get(i).cancel());
+        }
+        assertEquals(50, queue.size());
+        queue.doExpiredTasks(System.nanoTime() + TimeUnit.SECONDS.toNanos(1L));
+        assertEquals(50, log.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.toString(2 * i + 1), log.get(i));
+        }
+    }
+
+    @Test
+    public void testCancelledByTaskExpiringTogether() {
+        final TaskQueue queue = new TaskQueue();
+        List<String> log = new ArrayList<String>();
+        final List<TaskQueue.Entry> b = new ArrayList<TaskQueue.Entry>();
+        final List<Boolean> cancelled = new ArrayList<Boolean>();
+        queue.schedule(new Recorder(log, "a") {
+            @Override
+            public Void doExecute(TaskQueue queue) {
+                cancelled.add(b.get(0).cancel());
+                return super.doExecute(queue);
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        b.add(queue.scheduleAtFixedRate(new Recorder(log, "b"), 0, 1, TimeUnit.MILLISECONDS));
+
+        queue.doExpiredTasks(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1L));
+        assertEquals("[a]", log.toString());
+        assertEquals("[true]", cancelled.toString());
+        assertTrue(b.get(0).isCancelled());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testFixedRateAndFixedDelay() {
+        TaskQueue queue = new TaskQueue();
+        List<String> log = new ArrayList<String>();
+        Recorder rate = new Recorder(log, "rate");
+        Recorder delay = new Recorder(log, "delay");
+        TaskQueue.Entry rateEntry = queue.scheduleAtFixedRate(rate, 0L, 10L, TimeUnit.MILLISECONDS);
+        TaskQueue.Entry delayEntry = queue.scheduleWithFixedDelay(delay, 0L, 10L, TimeUnit.MILLISECONDS);
+
+        long start = rateEntry.getDeadline();
+        long before = System.nanoTime();
+        // each call runs every task that is due once
+        queue.doExpiredTasks(start + TimeUnit.SECONDS.toNanos(1L));
+        assertEquals(1, rate.runs);
+        assertEquals(1, delay.runs);
+        assertEquals("fixed rate advances from the previous deadline", start + TimeUnit.MILLISECONDS.toNanos(10L), rateEntry.getDeadline());
+        assertTrue("fixed delay advances from the end of the run", delayEntry.getDeadline() - before >= TimeUnit.MILLISECONDS.toNanos(10L));
+
+        queue.doExpiredTasks(rateEntry.getDeadline());
+        assertEquals("a fixed rate task catches up", 2, rate.runs);
+        assertEquals(1, delay.runs);
+
+        assertTrue(queue.cancel(rate));
+        assertTrue(rateEntry.isCancelled());
+        queue.doExpiredTasks(start + TimeUnit.SECONDS.toNanos(1L));
+        assertEquals(2, rate.runs);
+    }
+
+    @Test
+    public void testLegacyRecurringTask() {
+        TaskQueue queue = new TaskQueue();
+        List<String> log = new ArrayList<String>();
+        Recorder task = new Recorder(log, "task");
+        task.setInterval(5000L);
+        queue.add(task);
+        // added twice is scheduled once
+        queue.add(task);
+        assertEquals(1, queue.size());
+
+        queue.doExpiredTasks(System.nanoTime());
+        assertEquals(1, task.runs);
+        assertEquals(1, queue.size());
+        assertTrue(task.getScheduledTime() > System.currentTimeMillis());
+
+        task.setInterval(0L);
+        queue.doExpiredTasks(System.nanoTime() + TimeUnit.SECONDS.toNanos(10L));
+        assertEquals(2, task.runs);
+        assertEquals("not recurrent once the interval is cleared", 0, queue.size());
+    }
+
+    @Test
+    public void testFailingTaskIsNotRepeated() {
+        TaskQueue queue = new TaskQueue();
+        TaskQueue.TaskImpl<Void> task = new TaskQueue.TaskImpl<Void>() {
+            @Override
+            public Void doExecute(TaskQueue queue) {
+                throw new IllegalStateException("expected");
+            }
+        };
+        queue.scheduleAtFixedRate(task, 0L, 1L, TimeUnit.MILLISECONDS);
+        queue.doExpiredTasks(System.nanoTime());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testCompareToIsConsistent() {
+        TreeSet<TaskQueue.Task<?>> set = new TreeSet<TaskQueue.Task<?>>();
+        List<String> log = new ArrayList<String>();
+        List<Recorder> tasks = new ArrayList<Recorder>();
+        for (int i = 0; i < 10; i++) {
+            Recorder r = new Recorder(log, Integer.toString(i));
+            tasks.add(r);
+            set.add(r);
+        }
+        assertEquals(10, set.size());
+        for (Recorder r : tasks) {
+            assertTrue(set.remove(r));
+        }
+        assertTrue(set.isEmpty());
+        assertEquals(0, tasks.get(0).compareTo(tasks.get(0)));
+        assertEquals(-tasks.get(1).compareTo(tasks.get(2)), tasks.get(2).compareTo(tasks.get(1)));
+    }
+
+    @Test
+    public void testSelectTimeout() {
+        assertEquals(0L, NetworkLoop.selectTimeout(Long.MAX_VALUE));
+        assertEquals(-1L, NetworkLoop.selectTimeout(0L));
+        assertEquals(-1L, NetworkLoop.selectTimeout(-5L));
+        assertEquals(1L, NetworkLoop.selectTimeout(1L));
+        assertEquals(1L, NetworkLoop.selectTimeout(1000000L));
+        assertEquals(2L, NetworkLoop.selectTimeout(1000001L));
+    }
+}
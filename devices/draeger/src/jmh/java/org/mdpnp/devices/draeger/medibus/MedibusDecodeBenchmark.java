@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.draeger.medibus.MedibusStreams.Profile;
+import org.mdpnp.devices.draeger.medibus.MedibusStreams.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One minute of a ventilator's serial traffic through RTMedibus: decoded on
+ * the thread calling receive(), pushed in 64 byte reads as a reactor would,
+ * and through the partition thread and pipe that Medibus used before
+ * MedibusDecoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MedibusDecodeBenchmark {
+    @Param({ "EvitaXL", "V500", "Apollo" })
+    public Profile profile;
+
+    private static final int READ = 64;
+
+    private Recording recording;
+    private ByteBuffer read;
+    private CountingRTMedibus pushed;
+
+    @Setup
+    public void setUp() throws IOException {
+        recording = MedibusStreams.generate(profile, 60);
+        read = ByteBuffer.wrap(recording.bytes);
+        pushed = new CountingRTMedibus(profile);
+    }
+
+    @Benchmark
+    public long decoder() throws IOException {
+        CountingRTMedibus medibus = new CountingRTMedibus(new ByteArrayInputStream(recording.bytes), false, profile);
+        medibus.receive();
+        return medibus.values.get();
+    }
+
+    @Benchmark
+    public long pushed() throws IOException {
+        int length = recording.bytes.length;
+        for (int off = 0; off < length; off += READ) {
+            read.limit(Math.min(length, off + READ));
+            read.position(off);
+            pushed.receive(read);
+        }
+        return pushed.values.get();
+    }
+
+    @Benchmark
+    public long partitioned() throws IOException {
+        CountingRTMedibus medibus = new CountingRTMedibus(new ByteArrayInputStream(recording.bytes), true, profile);
+        medibus.receive();
+        return medibus.values.get();
+    }
+}
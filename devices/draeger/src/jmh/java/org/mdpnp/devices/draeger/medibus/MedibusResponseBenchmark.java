@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and dispatch of the slow responses a ventilator answers with,
+ * checksum included, down to the numbers and phrases a driver publishes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MedibusResponseBenchmark {
+    @Param({ "ReqMeasuredDataCP1", "ReqAlarmsCP1", "ReqDeviceSetting", "ReqTextMessages", "ReqDateTime" })
+    public Command command;
+
+    @Param({ "true", "false" })
+    public boolean validateChecksum;
+
+    private ByteBuffer frame;
+    private Consumer medibus;
+
+    private static final class Consumer extends Medibus {
+        float sum;
+        int length;
+        long time;
+
+        Consumer() throws IOException {
+            super(new ByteArrayOutputStream());
+        }
+
+        private void consume(Data[] data) {
+            for (Data d : data) {
+                if (null != d) {
+                    sum += d.floatValue();
+                }
+            }
+        }
+
+        @Override
+        protected void receiveMeasuredData(int codepage, Data[] data) {
+            consume(data);
+        }
+
+        @Override
+        protected void receiveDeviceSetting(Data[] data) {
+            consume(data);
+        }
+
+        @Override
+        protected void receiveTextMessage(Data[] data) {
+            for (Data d : data) {
+                if (null != d) {
+                    length += d.data().length();
+                }
+            }
+        }
+
+        @Override
+        protected void receiveAlarms(Alarm[] alarms) {
+            for (Alarm a : alarms) {
+                if (null != a) {
+                    length += a.priority + a.alarmPhrase().length();
+                }
+            }
+        }
+
+        @Override
+        protected void receiveDateTime(Date date) {
+            time += date.getTime();
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        frame = ByteBuffer.wrap(MedibusStreams.response(command, 1));
+        medibus = new Consumer();
+        medibus.setValidateChecksum(validateChecksum);
+    }
+
+    @Benchmark
+    public float receive() throws IOException {
+        frame.rewind();
+        medibus.receive(frame);
+        return medibus.sum + medibus.length + medibus.time;
+    }
+}
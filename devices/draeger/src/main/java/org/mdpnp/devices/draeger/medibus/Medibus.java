@@ -18,14 +18,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.mdpnp.devices.ASCIIByte;
 import org.mdpnp.devices.draeger.medibus.types.AlarmMessageCP1;
@@ -74,15 +71,62 @@ public class Medibus {
     private int versionMajor = 3;
     private int versionMinor = 0;
 
+    // the demultiplexed slow bytes when partitioned, otherwise null
     protected final InputStream slowIn;
+    // everything from the device when not partitioned
+    private final InputStream in;
     protected final ChecksumOutputStream out;
 
+    private final MedibusDecoder decoder = new MedibusDecoder(new MedibusDecoder.Handler() {
+        @Override
+        public void receiveSyncByte(int syncByte) {
+            Medibus.this.receiveSyncByte(syncByte);
+        }
+
+        @Override
+        public void receiveSyncCommand(int command, int argument) {
+            Medibus.this.receiveSyncCommand(command, argument);
+        }
+
+        @Override
+        public void receiveData(int first, int second) {
+            Medibus.this.receiveData(first, second);
+        }
+
+        @Override
+        public void receiveFrame(boolean command, byte[] buffer, int len) throws IOException {
+            if (validateChecksum && !validChecksum(command ? ASCIIByte.ESC : ASCIIByte.SOH, buffer, len)) {
+                checksumErrors++;
+                log.warn("Bad checksum " + (command ? "Command" : "Response") + ":" + HexUtil.dump(ByteBuffer.wrap(buffer, 0, len), 80));
+                return;
+            }
+            try {
+                if (command) {
+                    receiveCommand(buffer, len);
+                } else {
+                    receiveResponse(buffer, len);
+                }
+            } catch (CorruptMedibusException cme) {
+                // The contents of this frame were invalid, but we will continue onto the next frame
+                // depending on intended use this might not be a desired behaviour; or perhaps more likely
+                // better reporting of this type of error is required.
+                String msg = (command ? "Command" : "Response") + ":" + HexUtil.dump(ByteBuffer.wrap(buffer, 0, len), 80);
+                log.error(msg);
+            }
+        }
+    });
+
+    private boolean validateChecksum = true;
+    private long checksumErrors;
+
     /**
      * When a consumer of this API has established a connection to a Draeger
      * device they may use this constructor to create a Medibus instance for
      * composing messages to send to the device as well as for parsing received
      * messages.
      * 
+     * Received data are decoded by the thread calling receive().
+     * 
      * @param in
      *            Source of data from Draeger device
      * @param out
@@ -90,77 +134,119 @@ public class Medibus {
      * @throws IOException 
      */
     public Medibus(InputStream in, OutputStream out) throws IOException {
-        // partition the slow and fast data
-        // fast data have the high order bit set and slow data do not
-        InputStreamPartition isp = new InputStreamPartition(new InputStreamPartition.Filter[] { 
-                new InputStreamPartition.Filter() {
-
-                    @Override
-                    public boolean passes(int b) {
-                        if(0 != (b & 0x80)) {
-                            fastByte(b);
-                            return true;
-                        } else {
-                            return false;
-                        }
+        this(in, out, false);
+    }
 
-                    }
-                    // This is an optimization.  Data will be handled in the passes call and there is 
-                    // not need to enqueue data onto a pipe
-                    public boolean createPipe() { return false; }
+    /**
+     * Creates a Medibus instance that does not read on its own. Whoever reads
+     * from the device (a reactor, for instance) passes what it read to
+     * receive(ByteBuffer).
+     * 
+     * @param out
+     *            Destination of data bound for Draeger device
+     * @throws IOException
+     */
+    public Medibus(OutputStream out) throws IOException {
+        this(null, out, false);
+    }
 
-                }, new InputStreamPartition.Filter() {
+    /**
+     * @param partitioned
+     *            when true a daemon thread separates the realtime and slow
+     *            bytes of in with an InputStreamPartition and receive() reads
+     *            the slow bytes from a pipe, as in earlier versions of this
+     *            class; retained so the two can be compared
+     */
+    protected Medibus(InputStream in, OutputStream out, boolean partitioned) throws IOException {
+        if (partitioned) {
+            // partition the slow and fast data
+            // fast data have the high order bit set and slow data do not
+            InputStreamPartition isp = new InputStreamPartition(new InputStreamPartition.Filter[] { 
+                    new InputStreamPartition.Filter() {
+
+                        @Override
+                        public boolean passes(int b) {
+                            if(0 != (b & 0x80)) {
+                                decoder.fastByte(b);
+                                return true;
+                            } else {
+                                return false;
+                            }
 
-            @Override
-            public boolean passes(int b) {
-                switch(b) {
-                case ASCIIByte.DC1:
-                    log.warn("DC1 (0x11) ignored in stream");
-                    return false;
-                case ASCIIByte.DC3:
-                    log.warn("DC3 (0x13) ignored in stream");
-                    return false;
+                        }
+                        // This is an optimization.  Data will be handled in the passes call and there is 
+                        // not need to enqueue data onto a pipe
+                        public boolean createPipe() { return false; }
+
+                    }, new InputStreamPartition.Filter() {
+
+                @Override
+                public boolean passes(int b) {
+                    return 0 == (b & 0x80);
+                }
+                
+                @Override
+                public boolean createPipe() {
+                    return true;
                 }
-                return 0 == (b & 0x80);
-            }
-            
-            @Override
-            public boolean createPipe() {
-                return true;
-            }
 
-        },  }, in);
-        isp.getProcessingThread().setName("Medibus I/O Multiplexor");
-        this.slowIn = isp.getInputStream(1);
+            },  }, in);
+            isp.getProcessingThread().setName("Medibus I/O Multiplexor");
+            this.slowIn = isp.getInputStream(1);
+            this.in = null;
+        } else {
+            this.slowIn = null;
+            this.in = in;
+        }
         this.out = new ChecksumOutputStream(out);
         log.trace("Initialized Medibus");
     }
 
-    protected void fastByte(int b) {
-        
+    /**
+     * @param validateChecksum
+     *            when true (the default) received frames whose checksum does
+     *            not match their contents are logged and dropped
+     */
+    public void setValidateChecksum(boolean validateChecksum) {
+        this.validateChecksum = validateChecksum;
     }
-    
-    private static final byte asciiChar(byte b) {
-        if (b < 10) {
-            return (byte) ('0' + b);
-        } else {
-            return (byte) ('A' + (b - 10));
-        }
+
+    public boolean isValidateChecksum() {
+        return validateChecksum;
     }
 
-    private static final int asciiValue(int v) throws CorruptMedibusException {
-        if (v >= '0' && v <= '9') {
-            return v - '0';
-        } else if (v >= 'A' && v <= 'F') {
-            return 10 + v - 'A';
-        } else if (v >= 'a' && v <= 'f') {
-            return 10 + v - 'a';
-        } else if(' ' == v) {
-            // attribute no value to spaces
-            return 0;
-        } else {
-            throw new CorruptMedibusException(v + " is not a valid ascii character representing a hex digit");
+    /**
+     * @return the number of received frames dropped for a bad checksum
+     */
+    public long getChecksumErrors() {
+        return checksumErrors;
+    }
+
+    protected void receiveSyncByte(int syncByte) {
+
+    }
+
+    protected void receiveSyncCommand(int command, int argument) {
+
+    }
+
+    protected void receiveData(int first, int second) {
+
+    }
+
+    // the value of each ASCII hex digit or -1; spaces are attributed no value
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+            HEX_VALUES['a' + i] = (byte) (10 + i);
         }
+        HEX_VALUES[' '] = 0;
     }
 
     protected static final int recvASCIIHex(byte[] buf, int off) throws CorruptMedibusException {
@@ -169,31 +255,47 @@ public class Medibus {
 
     protected static final int recvASCIIHex(byte[] buf, int off, int len) throws CorruptMedibusException {
         int v = 0;
-        int totalmask = 0;
         for (int i = 0; i < len; i++) {
-            v |= (asciiValue(buf[off + i]) << asciiHexShifts[len - i - 1]) & asciiHexMasks[len - i - 1];
-            totalmask |= asciiHexMasks[len - i - 1];
+            int b = buf[off + i];
+            int digit = b < 0 ? -1 : HEX_VALUES[b];
+            if (digit < 0) {
+                throw new CorruptMedibusException(b + " is not a valid ascii character representing a hex digit");
+            }
+            v = (v << 4) | digit;
         }
-        return totalmask & v;
+        return v;
     }
 
-    private static final byte[] asciihexbuffer = new byte[2];
-
-    @SuppressWarnings("unused")
-    private static final int recvASCIIHex(InputStream in) throws IOException {
-        in.read(asciihexbuffer);
-        return recvASCIIHex(asciihexbuffer, 0);
+    protected static final void sendASCIIHex(OutputStream out, byte b) throws IOException {
+        out.write(HEX_DIGITS[(0xF0 & b) >> 4]);
+        out.write(HEX_DIGITS[0x0F & b]);
     }
 
-    private static final int[] asciiHexMasks = new int[] { 0x0F, 0xF0, 0x0F00, 0xF000 };
-    private static final int[] asciiHexShifts = new int[] { 0, 4, 8, 12 };
-
-    protected static final void sendASCIIHex(OutputStream out, byte b) throws IOException {
-        short s = (short) (0xFF & b);
-        int len = 2;
-        for (int i = 0; i < len; i++) {
-            out.write(asciiChar((byte) ((s & asciiHexMasks[len - i - 1]) >> asciiHexShifts[len - i - 1])));
+    /**
+     * Verifies the checksum of a received frame, the sum of the leading ESC or
+     * SOH and every byte up to the two ASCII hex digits that end the frame.
+     * 
+     * @param leading
+     *            ESC for a command or SOH for a response
+     * @param buffer
+     *            the frame without its leading byte or trailing CR
+     * @param len
+     *            length of the frame
+     * @return true if the frame carries the checksum of its contents
+     */
+    protected static final boolean validChecksum(int leading, byte[] buffer, int len) {
+        if (len < 3) {
+            return false;
+        }
+        int sum = leading;
+        for (int i = 0; i < len - 2; i++) {
+            sum += 0xFF & buffer[i];
         }
+        int hi = buffer[len - 2], lo = buffer[len - 1];
+        if (hi < 0 || lo < 0 || HEX_VALUES[hi] < 0 || HEX_VALUES[lo] < 0 || ' ' == hi || ' ' == lo) {
+            return false;
+        }
+        return (0xFF & sum) == ((HEX_VALUES[hi] << 4) | HEX_VALUES[lo]);
     }
 
     private final void sendASCIIHex(byte b) throws IOException {
@@ -358,7 +460,9 @@ public class Medibus {
             return;
         }
         Object cmdEcho = Command.fromByteIf(buffer[0]);
-        log.trace("Received response:" + cmdEcho);
+        if (log.isTraceEnabled()) {
+            log.trace("Received response:" + cmdEcho);
+        }
         if (cmdEcho instanceof Command) {
             Command cmd = (Command) cmdEcho;
 
@@ -409,36 +513,65 @@ public class Medibus {
         }
     }
     
+    /**
+     * A coded value in a response. The value is not copied out of the
+     * received frame so a Data is only valid until the receiveXXX method it
+     * was passed to returns; the same instances are reused for the next
+     * response.
+     */
     static final class Data {
         Object code;
-        String data;
-        Data next;
+        private byte[] buffer;
+        private int offset, length;
+
+        void set(Object code, byte[] buffer, int offset, int length) {
+            this.code = code;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return the value as a number or Float.NaN if it is not one
+         */
+        float floatValue() {
+            return parseFloat(buffer, offset, length);
+        }
+
+        /**
+         * @return a copy of the value
+         */
+        String data() {
+            return new String(buffer, offset, length, ASCII);
+        }
 
         @Override
         public String toString() {
-            return "[code=" + Medibus.toString(code) + ", data=" + data + "]";
+            return "[code=" + Medibus.toString(code) + ", data=" + data() + "]";
         }
-        
-        private static Data root;
-        
-        public synchronized static final Data alloc() {
-            if(null == root) {
-                return new Data();
-            } else {
-                Data root = Data.root;
-                Data.root = root.next;
-                return root;
+    }
+
+    // Records are per connection and reused for every response; the arrays
+    // passed to receiveXXX hold n records followed by nulls
+    private Data[] dataRecords = new Data[0];
+    private Data[] data = new Data[1];
+
+    private Data[] data(int n) {
+        if (dataRecords.length < n) {
+            int i = dataRecords.length;
+            dataRecords = Arrays.copyOf(dataRecords, n);
+            for (; i < n; i++) {
+                dataRecords[i] = new Data();
             }
         }
-        public synchronized static final void free(Data data) {
-            if(null != data) {
-                data.next = Data.root;
-                Data.root = data;
-            }
+        if (data.length < n) {
+            data = new Data[n];
         }
+        System.arraycopy(dataRecords, 0, data, 0, n);
+        Arrays.fill(data, n, data.length, null);
+        return data;
     }
 
-    private Data[] data = new Data[1];
     protected void receiveDataCodes(Command cmdEcho, byte[] response, int len) throws CorruptMedibusException {
         int codepage = 0;
 
@@ -458,26 +591,11 @@ public class Medibus {
         }
         len -= 3;
         int n = len / 6;
-        if(data.length < n) {
-            data = new Data[n];
-        }
+        Data[] data = data(n);
 
         for (int i = 0; i < n; i++) {
-            data[i] = Data.alloc();
-            switch (codepage) {
-            case 1:
-                data[i].code = MeasuredDataCP1.fromByteIf((byte) recvASCIIHex(response, 1 + i * 6));
-                break;
-            case 2:
-                data[i].code = MeasuredDataCP2.fromByteIf((byte) recvASCIIHex(response, 1 + i * 6));
-                break;
-            }
-
-            data[i].data = new String(response, 1 + i * 6 + 2, 4).intern();
-        }
-        for(int i = n; i < data.length; i++) {
-            Data.free(data[i]);
-            data[i] = null;
+            byte code = (byte) recvASCIIHex(response, 1 + i * 6);
+            data[i].set(1 == codepage ? MeasuredDataCP1.fromByteIf(code) : MeasuredDataCP2.fromByteIf(code), response, 1 + i * 6 + 2, 4);
         }
         switch (cmdEcho) {
         case ReqMeasuredDataCP1:
@@ -503,31 +621,27 @@ public class Medibus {
         }
     }
 
-    protected void receiveMeasuredData(int codepage, Data[] data) {
-        log.debug("Measured Data");
-        for (Data d : data) {
-            if(null != d) {
-                log.debug("\t" + d);
+    private static final void debug(String title, Object[] items) {
+        if (log.isDebugEnabled()) {
+            log.debug(title);
+            for (Object o : items) {
+                if (null != o) {
+                    log.debug("\t" + o);
+                }
             }
         }
     }
 
+    protected void receiveMeasuredData(int codepage, Data[] data) {
+        debug("Measured Data", data);
+    }
+
     protected void receiveLowAlarmLimits(int codepage, Data[] data) {
-        log.debug("Low Alarm Limits");
-        for (Data d : data) {
-            if(null != d) {
-                log.debug("\t" + d);
-            }
-        }
+        debug("Low Alarm Limits", data);
     }
 
     protected void receiveHighAlarmLimits(int codepage, Data[] data) {
-        log.debug("High Alarm Limits");
-        for (Data d : data) {
-            if(null != d) {
-                log.debug("\t" + d);
-            }
-        }
+        debug("High Alarm Limits", data);
     }
 
     public static final String toString(Object o) {
@@ -540,77 +654,71 @@ public class Medibus {
         }
     }
 
+    /**
+     * An alarm in a response. Like Data the phrase is not copied out of the
+     * received frame so an Alarm is only valid until receiveAlarms returns.
+     */
     static final class Alarm {
         byte priority;
         Object alarmCode;
-        String alarmPhrase;
-        Alarm next;
+        private byte[] buffer;
+        private int offset;
+
+        /**
+         * @return a copy of the 12 character alarm phrase
+         */
+        String alarmPhrase() {
+            return new String(buffer, offset, 12, ASCII);
+        }
 
         @Override
         public String toString() {
-            return "[priority=" + priority + ", alarmCode=" + Medibus.toString(alarmCode) + ", alarmPhrase=" + alarmPhrase + "]";
-        }
-        private static Alarm root;
-        
-        public synchronized static final Alarm alloc() {
-            if(null == root) {
-                return new Alarm();
-            } else {
-                Alarm root = Alarm.root;
-                Alarm.root = root.next;
-                return root;
-            }
+            return "[priority=" + priority + ", alarmCode=" + Medibus.toString(alarmCode) + ", alarmPhrase=" + alarmPhrase() + "]";
         }
-        public synchronized static final void free(Alarm alarm) {
-            if(null != alarm) {
-                alarm.next = Alarm.root;
-                Alarm.root = alarm;
-            }
-        }        
     }
+
+    private Alarm[] alarmRecords = new Alarm[0];
     private Alarm[] alarm = new Alarm[1];
+
     protected void receiveAlarmCodes(Command cmdEcho, byte[] response, int len) throws CorruptMedibusException {
         int n = len / 15;
-        if(alarm.length < n) {
+        if (alarmRecords.length < n) {
+            int i = alarmRecords.length;
+            alarmRecords = Arrays.copyOf(alarmRecords, n);
+            for (; i < n; i++) {
+                alarmRecords[i] = new Alarm();
+            }
+        }
+        if (alarm.length < n) {
             alarm = new Alarm[n];
         }
         for (int i = 0; i < n; i++) {
-            alarm[i] = Alarm.alloc();
-            alarm[i].priority = (byte)(response[1 + 15 * i] - '0');
+            Alarm a = alarm[i] = alarmRecords[i];
+            a.priority = (byte)(response[1 + 15 * i] - '0');
             switch (cmdEcho) {
             case ReqAlarmsCP1:
-                alarm[i].alarmCode = AlarmMessageCP1.fromByteIf((byte) recvASCIIHex(response, 1 + 15 * i + 1));
+                a.alarmCode = AlarmMessageCP1.fromByteIf((byte) recvASCIIHex(response, 1 + 15 * i + 1));
                 break;
             case ReqAlarmsCP2:
-                alarm[i].alarmCode = AlarmMessageCP2.fromByteIf((byte) recvASCIIHex(response, 1 + 15 * i + 1));
+                a.alarmCode = AlarmMessageCP2.fromByteIf((byte) recvASCIIHex(response, 1 + 15 * i + 1));
                 break;
             default:
                 throw new RuntimeException("Unknown cmd:" + cmdEcho);
             }
-
-            alarm[i].alarmPhrase = new String(response, 1 + 15 * i + 3, 12).intern();
-        }
-        for(int i = n; i < alarm.length; i++) {
-            Alarm.free(alarm[i]);
-            alarm[i] = null;
+            a.buffer = response;
+            a.offset = 1 + 15 * i + 3;
         }
+        Arrays.fill(alarm, n, alarm.length, null);
         receiveAlarms(alarm);
     }
 
     protected void receiveAlarms(Alarm[] alarms) {
-        log.debug("Alarms");
-        for (int i = 0; i < alarms.length; i++) {
-            if(alarms[i]!=null) {
-                log.debug("\t" + alarms[i]);
-            }
-        }
-
+        debug("Alarms", alarms);
     }
 
-    // This regex is deliberately constructed
     // Sometimes the evitaXL doesn't emit seconds
     // Sometimes the V500 emits no space
-    protected static final Pattern dateTimePattern = Pattern.compile("^\\s*(\\d{1,2}):(\\d{2}):?(\\d{0,2})\\s*(\\d+)-([A-Z]+)-(\\d+)");    
+    // so a datetime is HH:MM[:][SS] DD-MON-YY with optional whitespace
     protected static final Map<String, Integer> germanMonths = new HashMap<String, Integer>();
     static {
         // In October 2014 our EvitaXL started emitting OCT as the month;
@@ -632,78 +740,228 @@ public class Medibus {
         germanMonths.put("DEC", Calendar.DECEMBER);
     }
 
-    private final ThreadLocal<Calendar> calendar = new ThreadLocal<Calendar>() {
-        protected Calendar initialValue() {
-            return Calendar.getInstance();
-        };
-    };
+    // germanMonths keyed by the three letters packed into an int
+    private static final int[] monthKeys = new int[germanMonths.size()];
+    private static final int[] monthValues = new int[germanMonths.size()];
+    static {
+        int i = 0;
+        for (Map.Entry<String, Integer> e : germanMonths.entrySet()) {
+            String k = e.getKey();
+            monthKeys[i] = k.charAt(0) << 16 | k.charAt(1) << 8 | k.charAt(2);
+            monthValues[i++] = e.getValue();
+        }
+    }
 
-    protected void receiveDateTime(byte[] response, int len) {
-        Calendar cal = this.calendar.get();
-        String s = null;
-        Matcher m = dateTimePattern.matcher(s = new String(response, 1, len - 3).intern());
-        log.trace("Attempting to parse datetime " + s);
-        if (m.matches()) {
-            if(m.groupCount()<6) {
-                // This shouldn't happen because the regex wouldn't have matched
-                log.warn("Insufficient capture groups in datetime:" + s);
-            } else {
-                int field = 1;
-                try {
-                    cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(m.group(field++)));
-                    cal.set(Calendar.MINUTE, Integer.parseInt(m.group(field++)));
-                    String seconds = m.group(field++);
-                    cal.set(Calendar.SECOND, seconds.length()>0?Integer.parseInt(seconds):0);
-                    cal.set(Calendar.MILLISECOND, 0);
-                    cal.set(Calendar.DATE, Integer.parseInt(m.group(field++)));
-                    String germanMonth = m.group(field++);
-                    Integer month = germanMonths.get(germanMonth);
-                    if(null != month) {
-                        cal.set(Calendar.MONTH, month);
-                        // Note the V500 as of 12-Mar-2014 emits "14" as the year
-                        cal.set(Calendar.YEAR, 2000 + Integer.parseInt(m.group(field++)));
-                        receiveDateTime(cal.getTime());
-                    } else {
-                        log.warn("Cannot process German month \""+germanMonth+"\" in " + s);
-                    }
-                    
-                } catch (NumberFormatException nfe) {
-                    log.warn("Unable to parse a field in datetime " + s + " field was \"" + m.group(field)+"\"");
-                }
+    private static final boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static final boolean isWhitespace(int b) {
+        return ' ' == b || (b >= '\t' && b <= '\r');
+    }
+
+    private static final int parseInt(byte[] buf, int off, int len) {
+        int v = 0;
+        for (int i = 0; i < len; i++) {
+            v = v * 10 + buf[off + i] - '0';
+        }
+        return v;
+    }
+
+    /**
+     * Parses a Medibus datetime such as " 9:33 7-OKT-14" or "09:33:00 07-OKT-14"
+     * into cal without allocating. Seconds are optional and the space before
+     * the day sometimes is not sent; when seconds and day run together the
+     * day keeps at least one digit.
+     * 
+     * @return false if the text is not a datetime; cal may then be partially
+     *         set
+     */
+    protected static final boolean parseDateTime(byte[] buf, int off, int len, Calendar cal) {
+        int end = off + len, i = off;
+        while (i < end && isWhitespace(buf[i])) {
+            i++;
+        }
+        // hours
+        int start = i;
+        while (i < end && i - start < 2 && isDigit(buf[i])) {
+            i++;
+        }
+        if (i == start || i >= end || ':' != buf[i]) {
+            return false;
+        }
+        int hour = parseInt(buf, start, i - start);
+        i++;
+        // minutes
+        if (i + 2 > end || !isDigit(buf[i]) || !isDigit(buf[i + 1])) {
+            return false;
+        }
+        int minute = parseInt(buf, i, 2);
+        i += 2;
+        if (i < end && ':' == buf[i]) {
+            i++;
+        }
+        // seconds, whitespace and day
+        start = i;
+        while (i < end && isDigit(buf[i])) {
+            i++;
+        }
+        int digits = i - start;
+        int second = 0, secondDigits = 0;
+        if (i < end && isWhitespace(buf[i])) {
+            secondDigits = Math.min(2, digits);
+            if (digits > 2) {
+                return false;
+            }
+            second = parseInt(buf, start, secondDigits);
+            while (i < end && isWhitespace(buf[i])) {
+                i++;
+            }
+            start = i;
+            while (i < end && isDigit(buf[i])) {
+                i++;
+            }
+            digits = i - start;
+        } else {
+            secondDigits = Math.min(2, digits - 1);
+            if (secondDigits > 0) {
+                second = parseInt(buf, start, secondDigits);
+                start += secondDigits;
+                digits -= secondDigits;
             }
+        }
+        if (digits < 1 || digits > 9) {
+            return false;
+        }
+        int day = parseInt(buf, start, digits);
+        // month
+        if (i >= end || '-' != buf[i]) {
+            return false;
+        }
+        i++;
+        start = i;
+        while (i < end && buf[i] >= 'A' && buf[i] <= 'Z') {
+            i++;
+        }
+        if (i - start != 3 || i >= end || '-' != buf[i]) {
+            return false;
+        }
+        int key = buf[start] << 16 | buf[start + 1] << 8 | buf[start + 2];
+        int month = -1;
+        for (int m = 0; m < monthKeys.length; m++) {
+            if (key == monthKeys[m]) {
+                month = monthValues[m];
+                break;
+            }
+        }
+        if (month < 0) {
+            return false;
+        }
+        i++;
+        // year
+        start = i;
+        while (i < end && isDigit(buf[i])) {
+            i++;
+        }
+        if (i == start || i - start > 9 || i != end) {
+            return false;
+        }
+        cal.set(Calendar.HOUR_OF_DAY, hour);
+        cal.set(Calendar.MINUTE, minute);
+        cal.set(Calendar.SECOND, second);
+        cal.set(Calendar.MILLISECOND, 0);
+        cal.set(Calendar.DATE, day);
+        cal.set(Calendar.MONTH, month);
+        // Note the V500 as of 12-Mar-2014 emits "14" as the year
+        cal.set(Calendar.YEAR, 2000 + parseInt(buf, start, i - start));
+        return true;
+    }
+
+    private final Calendar calendar = Calendar.getInstance();
+
+    protected void receiveDateTime(byte[] response, int len) {
+        if (parseDateTime(response, 1, len - 3, calendar)) {
+            receiveDateTime(calendar.getTime());
         } else {
-            log.warn("Received a bad datetime:" + s);
+            log.warn("Received a bad datetime:" + new String(response, 1, Math.max(0, len - 3), ASCII));
         }
     }
 
     protected void receiveDateTime(Date date) {
-        log.trace("DateTime:" + date);
+        if (log.isTraceEnabled()) {
+            log.trace("DateTime:" + date);
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18 };
+
+    /**
+     * Parses a decimal number as Float.parseFloat would after a trim, but in
+     * place and returning Float.NaN rather than throwing when the text is not
+     * a number (Medibus sends "----" and the like for a missing value).
+     */
+    protected static final float parseFloat(byte[] buf, int off, int len) {
+        int i = off, end = off + len;
+        while (i < end && (0xFF & buf[i]) <= ' ') {
+            i++;
+        }
+        while (end > i && (0xFF & buf[end - 1]) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && ('-' == buf[i] || '+' == buf[i])) {
+            negative = '-' == buf[i++];
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            int b = buf[i];
+            if (isDigit(b)) {
+                if (++digits > 18) {
+                    // beyond what a long holds exactly; not worth doing here
+                    try {
+                        return Float.parseFloat(new String(buf, off, len, ASCII).trim());
+                    } catch (NumberFormatException nfe) {
+                        return Float.NaN;
+                    }
+                }
+                mantissa = mantissa * 10 + b - '0';
+                if (point) {
+                    scale++;
+                }
+            } else if ('.' == b && !point) {
+                point = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (0 == digits) {
+            return Float.NaN;
+        }
+        double v = mantissa / POWERS_OF_TEN[scale];
+        return (float) (negative ? -v : v);
     }
 
     protected void receiveDeviceSetting(byte[] response, int len) throws CorruptMedibusException {
         len -= 3; // leading command and trailing 2byte checksum
         int n = len / 7;
-        if(data.length < n) {
-            data = new Data[n];
-        }
-        
+        Data[] data = data(n);
+
         for (int i = 0; i < n; i++) {
-            data[i] = Data.alloc();
-            data[i].code = Setting.fromByteIf((byte) recvASCIIHex(response, 1 + i * 7));
-            data[i].data = new String(response, 1 + i * 7 + 2, 5).intern();
-        }
-        for(int i = n; i < data.length; i++) {
-            Data.free(data[i]);
-            data[i] = null;
+            data[i].set(Setting.fromByteIf((byte) recvASCIIHex(response, 1 + i * 7)), response, 1 + i * 7 + 2, 5);
         }
         receiveDeviceSetting(data);
     }
 
     protected void receiveDeviceSetting(Data[] data) {
-        log.trace("Device Setting");
-        for (Data d : data) {
-            if(null != d) {
-                log.trace("\t" + d);
+        if (log.isTraceEnabled()) {
+            log.trace("Device Setting");
+            for (Data d : data) {
+                if(null != d) {
+                    log.trace("\t" + d);
+                }
             }
         }
     }
@@ -716,35 +974,25 @@ public class Medibus {
         int n = 0;
         while(off < len) {
             int length = (0xFF & response[1 + off + 2]) - 0x30;
+            if (length < 0 || off + 4 + length > len) {
+                throw new CorruptMedibusException("Text message of length " + length + " overruns the response");
+            }
             off += 4 + length;
             n++;
         }
-        if(data.length < n) {
-            data = new Data[n];
-        }
+        Data[] data = data(n);
         off = 0; 
         for(int i = 0; i < n; i++) {
-            Data d = data[i] = Data.alloc();
-            d.code = TextMessage.fromByteIf((byte) recvASCIIHex(response, 1 + off));
             int length = (0xFF & response[1 + off + 2]) - 0x30;
-            d.data = new String(response, 1 + off + 3, length);
+            data[i].set(TextMessage.fromByteIf((byte) recvASCIIHex(response, 1 + off)), response, 1 + off + 3, length);
             off += 4 + length; // 4 = 2byte code, 1 byte length, 1 byte trailing ETX
         }
-        for(int i = n; i < data.length; i++) {
-            Data.free(data[i]);
-            data[i] = null;
-        }
         
         receiveTextMessage(data);
     }
 
     protected void receiveTextMessage(Data[] data) {
-        log.debug("Text Messages");
-        for (Data d : data) {
-            if(null != d) {
-                log.debug("\t" + d);
-            }
-        }
+        debug("Text Messages", data);
     }
 
     private final static Charset ASCII = Charset.forName("ASCII");
@@ -808,112 +1056,52 @@ public class Medibus {
         log.trace("DeviceId=" + idNumber + " name=" + name + " revision=" + revision);
     }
 
-    private static class Buffer {
-        public Buffer(Type type) {
-            this.type = type;
-        }
-
-        public Type getType() {
-            return type;
-        }
-
-        public int getCount() {
-            return count;
-        }
-
-        public byte[] getReceiveBuffer() {
-            return receiveBuffer;
-        }
-
-        public void addByte(byte b) {
-            receiveBuffer[count++] = b;
-        }
-
-        public Buffer reset(Type type) {
-            this.type = type;
-            this.count = 0;
-            return this;
-        }
-
-        private final byte[] receiveBuffer = new byte[8000];
-        private int count;
-        private Type type;
-
-        public enum Type {
-            Command, Response
-        }
-    }
-
-    private static final Buffer aFreeBuffer(Buffer.Type type, List<Buffer> freeBuffers) {
-        if (freeBuffers.isEmpty()) {
-            return new Buffer(type);
-        } else {
-            return freeBuffers.remove(0).reset(type);
-        }
-    }
+    private final byte[] receiveBuffer = new byte[MedibusDecoder.MAX_FRAME_LENGTH];
 
+    /**
+     * Reads and handles data from the device until the end of the stream
+     * 
+     * @return false at the end of the stream
+     * @throws IOException
+     */
     public boolean receive() throws IOException {
-        int leading = 0;
-
-        List<Buffer> buffers = new ArrayList<Buffer>();
-        List<Buffer> freeBuffers = new ArrayList<Buffer>();
-
-        Buffer topBuffer = null;
-
-        while (true) {
-            leading = slowIn.read();
-            if (leading < 0) {
-                log.trace("receive got " + leading + " from slowIn.read");
-                // EOF
-                return false;
-            }
-
-            switch (leading) {
-            case ASCIIByte.SOH:
-                buffers.add(0, topBuffer = aFreeBuffer(Buffer.Type.Response, freeBuffers));
-                break;
-            case ASCIIByte.ESC:
-                buffers.add(0, topBuffer = aFreeBuffer(Buffer.Type.Command, freeBuffers));
-                break;
-            case ASCIIByte.CR:
-                if (null != topBuffer) {
-                    if(log.isTraceEnabled()) {
-                        String msg = topBuffer.getType() + ":"+HexUtil.dump(ByteBuffer.wrap(topBuffer.receiveBuffer, 0, topBuffer.getCount()), 80);
-                        log.trace(msg);
-                    }
-                    try {
-                        switch (topBuffer.getType()) {
-                        case Command:
-                            receiveCommand(topBuffer.getReceiveBuffer(), topBuffer.getCount());
-                            break;
-                        case Response:
-                            receiveResponse(topBuffer.getReceiveBuffer(), topBuffer.getCount());
-                            break;
-                        }
-                    } catch (CorruptMedibusException cme) {
-                        // The contents of this frame were invalid, but we will continue onto the next frame
-                        // depending on intended use this might not be a desired behaviour; or perhaps more likely
-                        // better reporting of this type of error is required.
-                        String msg = topBuffer.getType() + ":"+HexUtil.dump(ByteBuffer.wrap(topBuffer.receiveBuffer, 0, topBuffer.getCount()), 80);
-                        log.error(msg);
-                    }
-                    freeBuffers.add(topBuffer);
-                    buffers.remove(0);
-                    topBuffer = buffers.isEmpty() ? null : buffers.get(0);
-                } else {
-                    log.warn("Received a CR with no matching SOH or ESC");
+        if (null != slowIn) {
+            while (true) {
+                int b = slowIn.read();
+                if (b < 0) {
+                    log.trace("receive got " + b + " from slowIn.read");
+                    // EOF
+                    return false;
                 }
-                break;
-            default:
-                if (topBuffer != null) {
-                    topBuffer.addByte((byte) leading);
-                } else {
-                    log.error("Unknown byte: 0x" + Integer.toHexString(leading));
+                decoder.slowByte(b);
+            }
+        } else if (null != in) {
+            while (true) {
+                int n = in.read(receiveBuffer, 0, receiveBuffer.length);
+                if (n < 0) {
+                    log.trace("receive got " + n + " from in.read");
+                    // EOF
+                    return false;
                 }
+                decoder.decode(receiveBuffer, 0, n);
             }
+        } else {
+            throw new IllegalStateException("No InputStream; pass received data to receive(ByteBuffer)");
         }
     }
 
+    /**
+     * Handles data read from the device by the caller. Everything remaining
+     * in bb is consumed; a message may span calls.
+     * 
+     * @param bb
+     *            data from the device
+     * @throws IOException
+     */
+    public void receive(ByteBuffer bb) throws IOException {
+        decoder.decode(bb);
+    }
+
     protected String getIdNumber() {
         return "0161";
     }
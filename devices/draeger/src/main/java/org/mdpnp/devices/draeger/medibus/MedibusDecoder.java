@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.mdpnp.devices.ASCIIByte;
+import org.mdpnp.devices.io.util.HexUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental decoder for the bytes a Draeger device sends on its one serial
+ * line. Realtime bytes (high order bit set) are paired into sync commands and
+ * data values; slow protocol bytes are collected into ESC (command) or SOH
+ * (response) frames that are handed over when their CR arrives. A response
+ * may be interrupted by a command, so open frames are kept on a stack just as
+ * Medibus.receive() always did.
+ * 
+ * Bytes are pushed in whatever chunks the caller happens to read and every
+ * event is delivered to the Handler from within decode, so a single I/O thread
+ * or reactor can drive a device with no further threads, pipes or copies.
+ * 
+ * Not thread safe; exactly one thread at a time may call decode.
+ */
+public class MedibusDecoder {
+    /**
+     * Receives what the decoder finds in the byte stream
+     */
+    public interface Handler {
+        void receiveSyncByte(int syncByte);
+
+        void receiveSyncCommand(int command, int argument);
+
+        void receiveData(int first, int second);
+
+        /**
+         * A complete slow protocol frame without its leading ESC or SOH and
+         * trailing CR; the trailing two byte checksum is included. The buffer
+         * is reused once this call returns.
+         * 
+         * @param command
+         *            true for an ESC framed command, false for an SOH framed
+         *            response
+         */
+        void receiveFrame(boolean command, byte[] buffer, int len) throws IOException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MedibusDecoder.class);
+
+    static final int SYNC_BYTE = 0xD0;
+    static final int SYNC_MASK = 0xF0;
+    static final int SYNC_CMD_BYTE = 0xC0;
+    static final int RT_BYTE = 0x80;
+    static final int RT_BYTE_MASK = 0xC0;
+
+    // Medibus.receive() has always collected frames into 8000 bytes
+    public static final int MAX_FRAME_LENGTH = 8000;
+
+    private final Handler handler;
+
+    private int lastFastByte = -1;
+
+    // open frames, innermost last
+    private byte[][] frames = new byte[2][];
+    private boolean[] command = new boolean[2];
+    private int[] count = new int[2];
+    private int depth;
+
+    private long overflows;
+
+    public MedibusDecoder(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Decodes everything remaining in bb, leaving its position at its limit
+     */
+    public void decode(ByteBuffer bb) throws IOException {
+        if (bb.hasArray()) {
+            byte[] array = bb.array();
+            int off = bb.arrayOffset() + bb.position();
+            int end = bb.arrayOffset() + bb.limit();
+            bb.position(bb.limit());
+            decode(array, off, end - off);
+        } else {
+            while (bb.hasRemaining()) {
+                decode(0xFF & bb.get());
+            }
+        }
+    }
+
+    public void decode(byte[] buf, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            decode(0xFF & buf[i]);
+        }
+    }
+
+    /**
+     * Decodes a single byte from the device
+     */
+    public void decode(int b) throws IOException {
+        if (0 != (0x80 & b)) {
+            fastByte(b);
+        } else {
+            slowByte(b);
+        }
+    }
+
+    /**
+     * Decodes a realtime byte; the high order bit of b must be set
+     */
+    public void fastByte(int b) {
+        if (lastFastByte < 0) {
+            if ((SYNC_MASK & b) == SYNC_BYTE) {
+                handler.receiveSyncByte(b);
+            } else {
+                lastFastByte = b;
+            }
+        } else if ((RT_BYTE_MASK & lastFastByte) == RT_BYTE) {
+            int first = lastFastByte;
+            lastFastByte = -1;
+            handler.receiveData(first, b);
+        } else if ((SYNC_MASK & lastFastByte) == SYNC_CMD_BYTE) {
+            int syncCommand = lastFastByte;
+            lastFastByte = -1;
+            handler.receiveSyncCommand(syncCommand, b);
+        } else {
+            log.warn("Unknown r/t byte:" + Integer.toHexString(lastFastByte));
+            lastFastByte = -1;
+            fastByte(b);
+        }
+    }
+
+    /**
+     * Decodes a slow protocol byte; the high order bit of b must be clear
+     */
+    public void slowByte(int b) throws IOException {
+        switch (b) {
+        case ASCIIByte.DC1:
+            log.warn("DC1 (0x11) ignored in stream");
+            break;
+        case ASCIIByte.DC3:
+            log.warn("DC3 (0x13) ignored in stream");
+            break;
+        case ASCIIByte.SOH:
+            open(false);
+            break;
+        case ASCIIByte.ESC:
+            open(true);
+            break;
+        case ASCIIByte.CR:
+            if (depth > 0) {
+                int top = --depth;
+                if (count[top] < 0) {
+                    log.warn("Discarded a " + (command[top] ? "command" : "response") + " longer than " + MAX_FRAME_LENGTH + " bytes");
+                } else {
+                    if (log.isTraceEnabled()) {
+                        log.trace((command[top] ? "Command:" : "Response:") + HexUtil.dump(ByteBuffer.wrap(frames[top], 0, count[top]), 80));
+                    }
+                    handler.receiveFrame(command[top], frames[top], count[top]);
+                }
+            } else {
+                log.warn("Received a CR with no matching SOH or ESC");
+            }
+            break;
+        default:
+            if (depth > 0) {
+                int top = depth - 1;
+                int n = count[top];
+                if (n >= MAX_FRAME_LENGTH) {
+                    // marks the frame for discarding at its CR
+                    overflows++;
+                    count[top] = -1;
+                } else if (n >= 0) {
+                    frames[top][n] = (byte) b;
+                    count[top] = n + 1;
+                }
+            } else {
+                log.error("Unknown byte: 0x" + Integer.toHexString(b));
+            }
+            break;
+        }
+    }
+
+    private void open(boolean isCommand) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, 2 * depth);
+            command = Arrays.copyOf(command, 2 * depth);
+            count = Arrays.copyOf(count, 2 * depth);
+        }
+        if (null == frames[depth]) {
+            frames[depth] = new byte[MAX_FRAME_LENGTH];
+        }
+        command[depth] = isCommand;
+        count[depth] = 0;
+        depth++;
+    }
+
+    /**
+     * Forgets any partially received realtime pair and slow frames, as after
+     * reconnecting to the device
+     */
+    public void reset() {
+        lastFastByte = -1;
+        depth = 0;
+    }
+
+    /**
+     * Slow frames that were discarded for exceeding MAX_FRAME_LENGTH
+     */
+    public long getOverflows() {
+        return overflows;
+    }
+}
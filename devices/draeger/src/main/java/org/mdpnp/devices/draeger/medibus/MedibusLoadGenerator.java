@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Many simulated ventilators, each a MedibusSimulator behind its own loopback
+ * port, as a DemoEvitaXL (or any Draeger driver) reaches them with a
+ * TCPSerialProvider. Pair them with as many drivers to find how many vents an
+ * adapter host can keep up with.
+ * 
+ * Like a serial port each port serves one connection at a time, read by a
+ * thread of its own; realtime cycles for every vent are written from a small
+ * shared scheduler.
+ * 
+ * Run from the command line it prints a JSON object of the totals every
+ * reporting interval.
+ */
+public class MedibusLoadGenerator {
+    public static final String THREAD_NAME = "Medibus Load Generator";
+
+    private static final Logger log = LoggerFactory.getLogger(MedibusLoadGenerator.class);
+
+    private final ScheduledExecutorService executor;
+    private final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+    private final List<Vent> vents = new CopyOnWriteArrayList<Vent>();
+
+    private volatile byte[] replay;
+    private volatile int replayBaud;
+    private volatile double replaySpeed;
+
+    private final class Vent implements Runnable {
+        final int index;
+        final ServerSocket serverSocket;
+        volatile MedibusSimulator simulator;
+        volatile Socket socket;
+        // totals of the simulators that came before this one
+        long values, responses;
+
+        Vent(int index, ServerSocket serverSocket) {
+            this.index = index;
+            this.serverSocket = serverSocket;
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                } catch (IOException e) {
+                    // closed
+                    break;
+                }
+                ScheduledFuture<?> cycle = null;
+                try {
+                    MedibusSimulator simulator = createSimulator(index, socket.getInputStream(), socket.getOutputStream());
+                    replace(simulator);
+                    cycle = simulator.schedule(executor);
+                    simulator.receive();
+                } catch (IOException e) {
+                    log.debug("vent " + index + " connection failed", e);
+                } finally {
+                    if (null != cycle) {
+                        cycle.cancel(false);
+                    }
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        log.debug("closing vent " + index, e);
+                    }
+                }
+            }
+        }
+
+        private synchronized void replace(MedibusSimulator next) {
+            MedibusSimulator previous = simulator;
+            if (null != previous) {
+                values += previous.getValuesSent();
+                responses += previous.getResponsesSent();
+            }
+            simulator = next;
+        }
+
+        synchronized long getValuesSent() {
+            MedibusSimulator current = simulator;
+            return values + (null == current ? 0L : current.getValuesSent());
+        }
+
+        synchronized long getResponsesSent() {
+            MedibusSimulator current = simulator;
+            return responses + (null == current ? 0L : current.getResponsesSent());
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            Socket socket = this.socket;
+            if (null != socket) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * @param threads
+     *            to write realtime cycles; zero or less for one per available
+     *            processor
+     */
+    public MedibusLoadGenerator(int threads) {
+        executor = Executors.newScheduledThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, THREAD_NAME + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                MedibusLoadGenerator.this.threads.add(t);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Vents connected from now on replay the recording instead of generating
+     * data
+     * 
+     * @see MedibusSimulator#setReplay(byte[], int, double)
+     */
+    public void setReplay(byte[] recording, int baud, double speed) {
+        this.replayBaud = baud;
+        this.replaySpeed = speed;
+        this.replay = recording;
+    }
+
+    /**
+     * Creates the simulator for a connection to a vent; override to configure
+     * other streams or data
+     */
+    protected MedibusSimulator createSimulator(int vent, InputStream in, OutputStream out) throws IOException {
+        MedibusSimulator simulator = new MedibusSimulator(in, out);
+        simulator.setDeviceIdentification(String.format("%04d", vent % 10000), "Simulator", "04.03");
+        byte[] replay = this.replay;
+        if (null != replay) {
+            simulator.setReplay(replay, replayBaud, replaySpeed);
+        }
+        return simulator;
+    }
+
+    /**
+     * Starts a vent
+     * 
+     * @param address
+     *            where the vent accepts a connection; port zero for any
+     * @return where the vent accepts a connection
+     */
+    public InetSocketAddress start(InetSocketAddress address) throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address);
+        Vent vent = new Vent(vents.size(), serverSocket);
+        Thread t = new Thread(vent, THREAD_NAME + " Vent-" + vent.index);
+        t.setDaemon(true);
+        threads.add(t);
+        vents.add(vent);
+        t.start();
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * Starts vents on the loopback interface at consecutive ports
+     * 
+     * @param basePort
+     *            port of the first vent; zero for any free ports
+     */
+    public void start(int count, int basePort) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < count; i++) {
+            start(new InetSocketAddress(loopback, 0 == basePort ? 0 : basePort + i));
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (Vent vent : vents) {
+            addresses.add((InetSocketAddress) vent.serverSocket.getLocalSocketAddress());
+        }
+        return addresses;
+    }
+
+    public int getVents() {
+        return vents.size();
+    }
+
+    /**
+     * @return the simulator for the current or most recent connection to a
+     *         vent, or null if there has been none
+     */
+    public MedibusSimulator getSimulator(int vent) {
+        return vents.get(vent).simulator;
+    }
+
+    /**
+     * @return vents with a connection that has enabled realtime data
+     */
+    public int getStreaming() {
+        int n = 0;
+        for (Vent vent : vents) {
+            MedibusSimulator simulator = vent.simulator;
+            Socket socket = vent.socket;
+            if (null != simulator && simulator.getCycles() > 0L && null != socket && !socket.isClosed()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public long getValuesSent() {
+        long n = 0L;
+        for (Vent vent : vents) {
+            n += vent.getValuesSent();
+        }
+        return n;
+    }
+
+    public long getResponsesSent() {
+        long n = 0L;
+        for (Vent vent : vents) {
+            n += vent.getResponsesSent();
+        }
+        return n;
+    }
+
+    /**
+     * @return nanoseconds of CPU used by the generator's threads, or -1 if the
+     *         JVM does not measure it
+     */
+    public long getCpuTime() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadCpuTimeSupported()) {
+            return -1L;
+        }
+        long n = 0L;
+        for (Thread t : threads) {
+            long cpu = bean.getThreadCpuTime(t.getId());
+            if (cpu > 0L) {
+                n += cpu;
+            }
+        }
+        return n;
+    }
+
+    public void shutdown() {
+        for (Vent vent : vents) {
+            try {
+                vent.close();
+            } catch (IOException e) {
+                log.error("closing a simulated vent", e);
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: MedibusLoadGenerator vents [basePort [threads [reportSeconds [recording baud speed]]]]");
+            System.exit(1);
+        }
+        int count = Integer.parseInt(args[0]);
+        int basePort = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        long report = TimeUnit.SECONDS.toNanos(args.length > 3 ? Long.parseLong(args[3]) : 10L);
+
+        final MedibusLoadGenerator generator = new MedibusLoadGenerator(threads);
+        if (args.length > 6) {
+            generator.setReplay(Files.readAllBytes(new File(args[4]).toPath()), Integer.parseInt(args[5]), Double.parseDouble(args[6]));
+        }
+        generator.start(count, basePort);
+        List<String> hosts = new ArrayList<String>();
+        for (InetSocketAddress a : generator.getAddresses()) {
+            hosts.add(a.getAddress().getHostAddress() + ":" + a.getPort());
+        }
+        log.info(count + " vents at " + hosts);
+
+        long start = System.nanoTime(), last = start, lastValues = 0L, lastResponses = 0L, lastCpu = 0L;
+        while (true) {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(report));
+            long now = System.nanoTime(), values = generator.getValuesSent(), responses = generator.getResponsesSent(), cpu = generator.getCpuTime();
+            double seconds = (now - last) / 1e9;
+            System.out.println("{\"elapsed\":" + Math.round((now - start) / 1e6) + ",\"vents\":" + count + ",\"streaming\":" + generator.getStreaming()
+                    + ",\"valuesPerSecond\":" + Math.round((values - lastValues) / seconds) + ",\"responsesPerSecond\":"
+                    + Math.round((responses - lastResponses) / seconds) + ",\"cpuCores\":"
+                    + (cpu < 0L ? -1.0 : Math.round((cpu - lastCpu) / 1e7 / seconds) / 100.0) + "}");
+            last = now;
+            lastValues = values;
+            lastResponses = responses;
+            lastCpu = cpu;
+        }
+    }
+}
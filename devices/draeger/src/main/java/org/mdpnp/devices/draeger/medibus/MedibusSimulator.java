@@ -0,0 +1,668 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.draeger.medibus.types.AlarmMessageCP1;
+import org.mdpnp.devices.draeger.medibus.types.AlarmMessageCP2;
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.mdpnp.devices.draeger.medibus.types.MeasuredDataCP1;
+import org.mdpnp.devices.draeger.medibus.types.MeasuredDataCP2;
+import org.mdpnp.devices.draeger.medibus.types.RealtimeData;
+import org.mdpnp.devices.draeger.medibus.types.Setting;
+import org.mdpnp.devices.draeger.medibus.types.TextMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The device side of a Medibus connection; a stand-in for a ventilator that
+ * answers the commands an RTMedibus (and so AbstractDraegerVent) sends and
+ * streams realtime curves once the host enables them. Bind it to a socket
+ * accepted on behalf of a TCPSerialProvider or to piped streams to keep
+ * everything in memory.
+ * 
+ * One thread runs receive() to answer commands. tick() writes a cycle of
+ * realtime data and is usually called every getCycleInterval() microseconds
+ * by schedule(...).
+ * 
+ * Instead of generating data the simulator can replay the bytes a device sent
+ * during a recorded session, faster than they were recorded if need be. See
+ * setReplay(...).
+ */
+public class MedibusSimulator extends Medibus {
+    private static final Logger log = LoggerFactory.getLogger(MedibusSimulator.class);
+
+    private static final Charset ASCII = Charset.forName("ASCII");
+
+    private static final String[] GERMAN_MONTHS = { "JAN", "FEB", "MAR", "APR", "MAI", "JUN", "JUL", "AUG", "SEP", "OKT", "NOV", "DEZ" };
+
+    /**
+     * A realtime curve
+     */
+    public interface Curve {
+        /**
+         * @param seconds
+         *            device time since realtime transmission began
+         * @return the value in the units of the stream
+         */
+        double value(double seconds);
+    }
+
+    /**
+     * @return a curve between low and high repeating every period seconds
+     */
+    public static Curve sine(final double low, final double high, final double period) {
+        return new Curve() {
+            @Override
+            public double value(double seconds) {
+                return low + (high - low) * 0.5 * (1.0 - Math.cos(2.0 * Math.PI * seconds / period));
+            }
+        };
+    }
+
+    private static final class Stream {
+        final Object realtimeData;
+        final int interval, min, max, maxbin;
+        final Curve curve;
+        // zero until the host requests the stream with ConfigureRealtime
+        int multiplier;
+        // cycles between samples
+        int every = 1;
+
+        Stream(Object realtimeData, int interval, int min, int max, int maxbin, Curve curve) {
+            this.realtimeData = realtimeData;
+            this.interval = interval;
+            this.min = min;
+            this.max = max;
+            this.maxbin = maxbin;
+            this.curve = curve;
+        }
+    }
+
+    private static final class ActiveAlarm {
+        final int priority;
+        final String phrase;
+
+        ActiveAlarm(int priority, String phrase) {
+            this.priority = priority;
+            this.phrase = phrase;
+        }
+    }
+
+    // at most 12 streams, in the order reported by ReqRealtimeConfig
+    private final List<Stream> streams = new ArrayList<Stream>();
+    private final Map<Object, Float> measuredCP1 = new LinkedHashMap<Object, Float>();
+    private final Map<Object, Float> measuredCP2 = new LinkedHashMap<Object, Float>();
+    private final Map<Object, Float> lowLimitsCP1 = new LinkedHashMap<Object, Float>();
+    private final Map<Object, Float> lowLimitsCP2 = new LinkedHashMap<Object, Float>();
+    private final Map<Object, Float> highLimitsCP1 = new LinkedHashMap<Object, Float>();
+    private final Map<Object, Float> highLimitsCP2 = new LinkedHashMap<Object, Float>();
+    private final Map<Object, Float> settings = new LinkedHashMap<Object, Float>();
+    private final Map<Object, ActiveAlarm> alarmsCP1 = new LinkedHashMap<Object, ActiveAlarm>();
+    private final Map<Object, ActiveAlarm> alarmsCP2 = new LinkedHashMap<Object, ActiveAlarm>();
+    private final Map<Object, String> textMessages = new LinkedHashMap<Object, String>();
+
+    private String idNumber = "0161", name = "Simulator", revision = "04.03";
+
+    // Realtime data bypass the checksum of out
+    private final OutputStream device;
+    // sync byte, two transmitted data stream commands and 12 values
+    private final byte[] cycle = new byte[1 + 4 + 2 * 12];
+
+    // bit i set when the host has enabled stream i
+    private int enabled;
+    // streams 5 through 12 announced in the previous cycle
+    private int lastHigh;
+    private int cycleInterval = 16000;
+    private volatile long cycles, valuesSent, responsesSent, commandsReceived;
+    private final long[] cycleTimes = new long[1024];
+
+    private byte[] replay;
+    private double replayBytesPerNano;
+    private long replayStart = -1L, replayed;
+
+    /**
+     * A simulator with three realtime curves, a handful of measured data and
+     * settings and a text message. Call clear() first to configure everything
+     * yourself.
+     * 
+     * @param in
+     *            commands from the host
+     * @param out
+     *            to the host; buffered here
+     */
+    public MedibusSimulator(InputStream in, OutputStream out) throws IOException {
+        this(new BufferedOutputStream(out), in);
+    }
+
+    private MedibusSimulator(BufferedOutputStream out, InputStream in) throws IOException {
+        super(in, out);
+        this.device = out;
+        // breathing every four seconds
+        addStream(RealtimeData.AirwayPressure, 16000, -20, 80, 0xFFF, sine(5.0, 25.0, 4.0));
+        addStream(RealtimeData.FlowInspExp, 16000, -200, 200, 0xFFF, sine(-40.0, 40.0, 4.0));
+        addStream(RealtimeData.ExpiratoryCO2mmHg, 32000, 0, 100, 0xFFF, sine(0.0, 38.0, 4.0));
+        setMeasuredData(MeasuredDataCP1.PeakBreathingPressure, 25f);
+        setMeasuredData(MeasuredDataCP1.MeanBreathingPressure, 12f);
+        setMeasuredData(MeasuredDataCP1.PEEPBreathingPressure, 5f);
+        setMeasuredData(MeasuredDataCP1.TidalVolume, 450f);
+        setLowAlarmLimit(MeasuredDataCP1.TidalVolume, 200f);
+        setHighAlarmLimit(MeasuredDataCP1.TidalVolume, 800f);
+        setDeviceSetting(Setting.Oxygen, 40f);
+        setDeviceSetting(Setting.FrequencyIPPV, 15f);
+        setTextMessage(TextMessage.VentModeIPPV, "IPPV");
+    }
+
+    /**
+     * Removes every stream, datum, alarm and text message
+     */
+    public synchronized void clear() {
+        if (0 != enabled) {
+            throw new IllegalStateException("realtime transmission has begun");
+        }
+        streams.clear();
+        for (Map<?, ?> m : new Map<?, ?>[] { measuredCP1, measuredCP2, lowLimitsCP1, lowLimitsCP2, highLimitsCP1, highLimitsCP2, settings,
+                alarmsCP1, alarmsCP2, textMessages }) {
+            m.clear();
+        }
+    }
+
+    /**
+     * Adds a realtime stream; the host sees streams in the order they are
+     * added
+     * 
+     * @param realtimeData
+     *            a RealtimeData or a Byte code
+     * @param interval
+     *            microseconds between samples
+     * @param min
+     *            the value of binary zero
+     * @param max
+     *            the value of maxbin
+     * @param maxbin
+     *            largest binary value, at most 0xFFF
+     */
+    public synchronized void addStream(Object realtimeData, int interval, int min, int max, int maxbin, Curve curve) {
+        if (streams.size() >= 12) {
+            throw new IllegalStateException("Medibus carries at most 12 realtime streams");
+        }
+        if (maxbin < 1 || maxbin > 0xFFF || max <= min || interval <= 0) {
+            throw new IllegalArgumentException("interval=" + interval + " min=" + min + " max=" + max + " maxbin=" + maxbin);
+        }
+        toByte(realtimeData);
+        streams.add(new Stream(realtimeData, interval, min, max, maxbin, curve));
+        cycleInterval = streams.get(0).interval;
+        for (Stream s : streams) {
+            cycleInterval = Math.min(cycleInterval, s.interval);
+        }
+    }
+
+    /**
+     * @param code
+     *            a MeasuredDataCP1 or MeasuredDataCP2; a Byte for codepage 1
+     * @param value
+     *            or null to stop reporting it
+     */
+    public synchronized void setMeasuredData(Object code, Float value) {
+        put(code instanceof MeasuredDataCP2 ? measuredCP2 : measuredCP1, code, value);
+    }
+
+    public synchronized void setLowAlarmLimit(Object code, Float value) {
+        put(code instanceof MeasuredDataCP2 ? lowLimitsCP2 : lowLimitsCP1, code, value);
+    }
+
+    public synchronized void setHighAlarmLimit(Object code, Float value) {
+        put(code instanceof MeasuredDataCP2 ? highLimitsCP2 : highLimitsCP1, code, value);
+    }
+
+    public synchronized void setDeviceSetting(Object code, Float value) {
+        put(settings, code, value);
+    }
+
+    /**
+     * @param code
+     *            an AlarmMessageCP1 or AlarmMessageCP2; a Byte for codepage 1
+     * @param phrase
+     *            up to 12 characters or null to clear the alarm
+     */
+    public synchronized void setAlarm(Object code, int priority, String phrase) {
+        if (null != phrase && phrase.length() > 12) {
+            throw new IllegalArgumentException("alarm phrases are at most 12 characters");
+        }
+        put(code instanceof AlarmMessageCP2 ? alarmsCP2 : alarmsCP1, code, null == phrase ? null : new ActiveAlarm(priority, phrase));
+    }
+
+    /**
+     * @param text
+     *            up to 79 characters or null to remove the message
+     */
+    public synchronized void setTextMessage(Object code, String text) {
+        if (null != text && text.length() > 0x7F - '0') {
+            throw new IllegalArgumentException("text messages are at most " + (0x7F - '0') + " characters");
+        }
+        put(textMessages, code, text);
+    }
+
+    public synchronized void setDeviceIdentification(String idNumber, String name, String revision) {
+        if (4 != idNumber.length()) {
+            throw new IllegalArgumentException("the id number is 4 characters");
+        }
+        this.idNumber = idNumber;
+        this.name = name;
+        this.revision = revision;
+    }
+
+    private static <T> void put(Map<Object, T> map, Object code, T value) {
+        toByte(code);
+        if (null == value) {
+            map.remove(code);
+        } else {
+            map.put(code, value);
+        }
+    }
+
+    /**
+     * Replays what a device sent during a recorded session instead of
+     * generating data. Replay begins when the host enables realtime data and
+     * starts over at the end of the recording. Requests for slow data go
+     * unanswered; the recording is expected to hold the responses.
+     * 
+     * @param recording
+     *            the bytes as read from the device
+     * @param baud
+     *            the rate at which they were recorded
+     * @param speed
+     *            1.0 to replay at the recorded pace, 10.0 for ten times
+     *            faster
+     */
+    public synchronized void setReplay(byte[] recording, int baud, double speed) {
+        if (recording.length == 0 || baud <= 0 || speed <= 0.0) {
+            throw new IllegalArgumentException("nothing to replay");
+        }
+        this.replay = recording;
+        // ten bits a byte on the wire
+        this.replayBytesPerNano = baud / 10.0 * speed / 1e9;
+        this.replayStart = -1L;
+        this.replayed = 0L;
+    }
+
+    @Override
+    protected String getIdNumber() {
+        return idNumber;
+    }
+
+    @Override
+    protected String getName() {
+        return name;
+    }
+
+    @Override
+    protected String getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return microseconds between calls to tick()
+     */
+    public synchronized int getCycleInterval() {
+        return cycleInterval;
+    }
+
+    /**
+     * @return realtime cycles written since the host enabled realtime data
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getValuesSent() {
+        return valuesSent;
+    }
+
+    public long getResponsesSent() {
+        return responsesSent;
+    }
+
+    public long getCommandsReceived() {
+        return commandsReceived;
+    }
+
+    /**
+     * @param cycle
+     *            zero for the first realtime cycle
+     * @return System.nanoTime() when that cycle was written or -1 if it was not
+     *         written or is one of more than 1024 since
+     */
+    public synchronized long getCycleTime(long cycle) {
+        if (cycle < 0L || cycle >= cycles || cycles - cycle > cycleTimes.length) {
+            return -1L;
+        }
+        return cycleTimes[(int) (cycle % cycleTimes.length)];
+    }
+
+    /**
+     * Calls tick() every getCycleInterval() until the connection fails or the
+     * returned future is cancelled
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService executor) {
+        long interval = getCycleInterval();
+        return executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick();
+                } catch (IOException e) {
+                    log.debug("realtime cycle failed", e);
+                    // stops further executions
+                    throw new RuntimeException(e);
+                }
+            }
+        }, interval, interval, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Writes a cycle of realtime data, or in replay the recorded bytes due
+     * since the last call. Nothing is written until the host enables realtime
+     * data.
+     */
+    public synchronized void tick() throws IOException {
+        if (0 == enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (null != replay) {
+            if (replayStart < 0L) {
+                replayStart = now;
+            }
+            long due = (long) ((now - replayStart) * replayBytesPerNano);
+            while (replayed < due) {
+                int off = (int) (replayed % replay.length);
+                int len = (int) Math.min(replay.length - off, due - replayed);
+                device.write(replay, off, len);
+                replayed += len;
+            }
+            device.flush();
+            return;
+        }
+        double seconds = cycles * (cycleInterval / 1e6);
+        int transmitted = 0;
+        int n = streams.size();
+        for (int i = 0; i < n; i++) {
+            Stream s = streams.get(i);
+            if (0 != (enabled & (1 << i)) && 0 != s.multiplier && 0 == cycles % s.every) {
+                transmitted |= 1 << i;
+            }
+        }
+        int len = 0;
+        cycle[len++] = (byte) (MedibusDecoder.SYNC_BYTE | (0x0F & transmitted));
+        int high = transmitted >> 4;
+        if (high != lastHigh) {
+            cycle[len++] = (byte) RTMedibus.SC_TX_DATASTREAM_5_8;
+            cycle[len++] = (byte) (MedibusDecoder.SYNC_CMD_BYTE | (0x0F & high));
+            cycle[len++] = (byte) RTMedibus.SC_TX_DATASTREAM_9_12;
+            cycle[len++] = (byte) (MedibusDecoder.SYNC_CMD_BYTE | (0x0F & (high >> 4)));
+            lastHigh = high;
+        }
+        int values = 0;
+        for (int i = 0; i < n; i++) {
+            if (0 != (transmitted & (1 << i))) {
+                Stream s = streams.get(i);
+                double value = s.curve.value(seconds);
+                int binval = (int) Math.round((value - s.min) * s.maxbin / (s.max - s.min));
+                binval = Math.max(0, Math.min(s.maxbin, binval));
+                cycle[len++] = (byte) (MedibusDecoder.RT_BYTE | (0x3F & binval));
+                cycle[len++] = (byte) (MedibusDecoder.RT_BYTE | (0x3F & (binval >> 6)));
+                values++;
+            }
+        }
+        device.write(cycle, 0, len);
+        device.flush();
+        cycleTimes[(int) (cycles % cycleTimes.length)] = now;
+        cycles++;
+        valuesSent += values;
+    }
+
+    @Override
+    protected synchronized void receiveSyncCommand(int command, int argument) {
+        int offset;
+        switch (command) {
+        case RTMedibus.SC_DATASTREAM_1_4:
+            offset = 0;
+            break;
+        case RTMedibus.SC_DATASTREAM_5_8:
+            offset = 4;
+            break;
+        case RTMedibus.SC_DATASTREAM_9_12:
+            offset = 8;
+            break;
+        default:
+            return;
+        }
+        enabled = (enabled & ~(0x0F << offset)) | ((0x0F & argument) << offset);
+    }
+
+    @Override
+    public synchronized void sendResponse(Object command, byte[] response) throws IOException {
+        super.sendResponse(command, response);
+        responsesSent++;
+    }
+
+    @Override
+    public synchronized void sendResponse(Object command, ByteArrayOutputStream baos) throws IOException {
+        super.sendResponse(command, baos);
+        responsesSent++;
+    }
+
+    @Override
+    protected synchronized void receiveCommand(byte[] buffer, int len) throws IOException {
+        commandsReceived++;
+        Object cmdCode = len < 1 ? null : Command.fromByteIf(buffer[0]);
+        if (cmdCode instanceof Command) {
+            Command cmd = (Command) cmdCode;
+            switch (cmd) {
+            case ReqRealtimeConfig:
+                sendRealtimeConfig();
+                return;
+            case ConfigureRealtime:
+                configureRealtime(buffer, len);
+                sendResponse(cmd);
+                return;
+            case StopComm:
+                enabled = 0;
+                break;
+            case ReqMeasuredDataCP1:
+            case ReqMeasuredDataCP2:
+            case ReqLowAlarmLimitsCP1:
+            case ReqLowAlarmLimitsCP2:
+            case ReqHighAlarmLimitsCP1:
+            case ReqHighAlarmLimitsCP2:
+            case ReqDeviceSetting:
+            case ReqAlarmsCP1:
+            case ReqAlarmsCP2:
+            case ReqTextMessages:
+            case ReqDateTime:
+                if (null == replay) {
+                    sendSlowData(cmd);
+                }
+                // in replay the recording answers
+                return;
+            default:
+                break;
+            }
+        }
+        super.receiveCommand(buffer, len);
+    }
+
+    private void sendRealtimeConfig() throws IOException {
+        scratchpad.reset();
+        for (Stream s : streams) {
+            sendASCIIHex(scratchpad, toByte(s.realtimeData));
+            ascii(String.format(Locale.ROOT, "%8d%5d%5d", s.interval, s.min, s.max));
+            scratchpad.write(Character.toUpperCase(Character.forDigit(0x0F & (s.maxbin >> 8), 16)));
+            sendASCIIHex(scratchpad, (byte) s.maxbin);
+        }
+        sendResponse(Command.ReqRealtimeConfig, scratchpad);
+    }
+
+    private void configureRealtime(byte[] buffer, int len) throws CorruptMedibusException {
+        for (Stream s : streams) {
+            s.multiplier = 0;
+        }
+        // command, then a code and a multiplier per stream, then the checksum
+        for (int off = 1; off + 4 <= len - 2; off += 4) {
+            byte code = (byte) recvASCIIHex(buffer, off);
+            int multiplier = recvASCIIHex(buffer, off + 2);
+            for (Stream s : streams) {
+                if (code == toByte(s.realtimeData)) {
+                    s.multiplier = Math.max(1, multiplier);
+                    s.every = Math.max(1, s.interval * s.multiplier / cycleInterval);
+                }
+            }
+        }
+    }
+
+    private void sendSlowData(Command cmd) throws IOException {
+        scratchpad.reset();
+        switch (cmd) {
+        case ReqMeasuredDataCP1:
+            data(measuredCP1, 4);
+            break;
+        case ReqMeasuredDataCP2:
+            data(measuredCP2, 4);
+            break;
+        case ReqLowAlarmLimitsCP1:
+            data(lowLimitsCP1, 4);
+            break;
+        case ReqLowAlarmLimitsCP2:
+            data(lowLimitsCP2, 4);
+            break;
+        case ReqHighAlarmLimitsCP1:
+            data(highLimitsCP1, 4);
+            break;
+        case ReqHighAlarmLimitsCP2:
+            data(highLimitsCP2, 4);
+            break;
+        case ReqDeviceSetting:
+            data(settings, 5);
+            break;
+        case ReqAlarmsCP1:
+            alarms(alarmsCP1);
+            break;
+        case ReqAlarmsCP2:
+            alarms(alarmsCP2);
+            break;
+        case ReqTextMessages:
+            for (Map.Entry<Object, String> e : textMessages.entrySet()) {
+                sendASCIIHex(scratchpad, toByte(e.getKey()));
+                scratchpad.write('0' + e.getValue().length());
+                ascii(e.getValue());
+                scratchpad.write(0x03);
+            }
+            break;
+        case ReqDateTime:
+            Calendar now = Calendar.getInstance();
+            ascii(String.format(Locale.ROOT, "%2d:%02d:%02d %2d-%s-%02d", now.get(Calendar.HOUR_OF_DAY), now.get(Calendar.MINUTE),
+                    now.get(Calendar.SECOND), now.get(Calendar.DATE), GERMAN_MONTHS[now.get(Calendar.MONTH)], now.get(Calendar.YEAR) % 100));
+            break;
+        default:
+            throw new IllegalArgumentException("Not a request for slow data:" + cmd);
+        }
+        sendResponse(cmd, scratchpad);
+    }
+
+    private void data(Map<Object, Float> data, int width) throws IOException {
+        for (Map.Entry<Object, Float> e : data.entrySet()) {
+            sendASCIIHex(scratchpad, toByte(e.getKey()));
+            ascii(field(e.getValue(), width));
+        }
+    }
+
+    private void alarms(Map<Object, ActiveAlarm> alarms) throws IOException {
+        for (Map.Entry<Object, ActiveAlarm> e : alarms.entrySet()) {
+            scratchpad.write('0' + e.getValue().priority);
+            sendASCIIHex(scratchpad, toByte(e.getKey()));
+            ascii(String.format(Locale.ROOT, "%-12s", e.getValue().phrase));
+        }
+    }
+
+    private void ascii(String s) throws IOException {
+        scratchpad.write(s.getBytes(ASCII));
+    }
+
+    /**
+     * @return value right justified in width characters with as many
+     *         decimals as fit
+     */
+    static String field(float value, int width) {
+        for (int decimals = width - 2; decimals > 0; decimals--) {
+            String s = String.format(Locale.ROOT, "%" + width + "." + decimals + "f", value);
+            if (s.length() == width) {
+                // trailing zeros say nothing
+                int end = s.length();
+                while ('0' == s.charAt(end - 1)) {
+                    end--;
+                }
+                if ('.' == s.charAt(end - 1)) {
+                    end--;
+                }
+                s = s.substring(0, end);
+                while (s.length() < width) {
+                    s = " " + s;
+                }
+                return s;
+            }
+        }
+        String s = String.format(Locale.ROOT, "%" + width + "d", Math.round(value));
+        if (s.length() > width) {
+            throw new IllegalArgumentException(value + " does not fit in " + width + " characters");
+        }
+        return s;
+    }
+
+    private static byte toByte(Object code) {
+        if (code instanceof Byte) {
+            return (Byte) code;
+        } else if (code instanceof MeasuredDataCP1) {
+            return ((MeasuredDataCP1) code).toByte();
+        } else if (code instanceof MeasuredDataCP2) {
+            return ((MeasuredDataCP2) code).toByte();
+        } else if (code instanceof Setting) {
+            return ((Setting) code).toByte();
+        } else if (code instanceof AlarmMessageCP1) {
+            return ((AlarmMessageCP1) code).toByte();
+        } else if (code instanceof AlarmMessageCP2) {
+            return ((AlarmMessageCP2) code).toByte();
+        } else if (code instanceof TextMessage) {
+            return ((TextMessage) code).toByte();
+        } else if (code instanceof RealtimeData) {
+            return ((RealtimeData) code).toByte();
+        } else {
+            throw new IllegalArgumentException("Not a Medibus code:" + code);
+        }
+    }
+}
@@ -32,17 +32,22 @@ public class RTMedibus extends Medibus {
         super(in, out);
     }
 
-    private static final int SYNC_BYTE = 0xD0;
-    private static final int SYNC_MASK = 0xF0;
-    private static final int SYNC_CMD_BYTE = 0xC0;
-    private static final int RT_BYTE = 0x80;
-    private static final int RT_BYTE_MASK = 0xC0;
-    private static final int SC_END_OF_SEQUENCE = 0xC0;
-    private static final int SC_DATASTREAM_1_4 = 0xC1;
-    private static final int SC_DATASTREAM_5_8 = 0xC2;
-    private static final int SC_DATASTREAM_9_12 = 0xC3;
-    private static final int SC_TX_DATASTREAM_5_8 = 0xC4;
-    private static final int SC_TX_DATASTREAM_9_12 = 0xC5;
+    public RTMedibus(OutputStream out) throws IOException {
+        super(out);
+    }
+
+    protected RTMedibus(InputStream in, OutputStream out, boolean partitioned) throws IOException {
+        super(in, out, partitioned);
+    }
+
+    private static final int SYNC_BYTE = MedibusDecoder.SYNC_BYTE;
+    private static final int SYNC_CMD_BYTE = MedibusDecoder.SYNC_CMD_BYTE;
+    static final int SC_END_OF_SEQUENCE = 0xC0;
+    static final int SC_DATASTREAM_1_4 = 0xC1;
+    static final int SC_DATASTREAM_5_8 = 0xC2;
+    static final int SC_DATASTREAM_9_12 = 0xC3;
+    static final int SC_TX_DATASTREAM_5_8 = 0xC4;
+    static final int SC_TX_DATASTREAM_9_12 = 0xC5;
     private static final int SC_START_CYCLE = 0xC6;
     private static final int SC_CORRUPT_DATA = 0xCF;
 
@@ -89,6 +94,7 @@ public class RTMedibus extends Medibus {
 
     }
 
+    @Override
     public void receiveSyncByte(int syncByte) {
         dataCounter = 0;
         transmittedDataStreams[0] = 0 != (0x01 & syncByte);
@@ -100,6 +106,7 @@ public class RTMedibus extends Medibus {
         }
     }
 
+    @Override
     public void receiveSyncCommand(int command, int argument) {
         int offset = 0;
 
@@ -153,6 +160,7 @@ public class RTMedibus extends Medibus {
         return lastTransmitted;
     }
 
+    @Override
     public void receiveData(int first, int second) {
         // which of the transmitted streams is this
         int idx = dataCounter++;
@@ -188,63 +196,6 @@ public class RTMedibus extends Medibus {
         log.debug("Received(" + Medibus.toString(realtimeData) + "):" + data);
     }
 
-    
-    private int lastFastByte = -1;
-    @Override
-    protected void fastByte(int b) {
-        if(lastFastByte < 0) {
-            // No previous byte
-            switch(SYNC_MASK & b) {
-            case SYNC_BYTE:
-                receiveSyncByte(b);
-                return;
-            }
-            lastFastByte = b;
-        } else {
-            if ((RT_BYTE_MASK & lastFastByte) == RT_BYTE) { 
-                receiveData(lastFastByte, b);
-                lastFastByte = -1;
-            } else {
-                switch(SYNC_MASK&lastFastByte) {
-                case SYNC_CMD_BYTE:
-                    receiveSyncCommand(lastFastByte, b);
-                    lastFastByte = -1;
-                    break;
-                default:
-                    log.warn("Unknown r/t byte:" + Integer.toHexString(lastFastByte));
-                    lastFastByte = -1;
-                    fastByte(b);
-                    break;
-                }
-            }
-            
-        }
-    }
-    
-//    public boolean receiveFast() throws IOException {
-//        int leading = 0;
-//        while (true) {
-//            leading = fastIn.read();
-//            if (leading < 0) {
-//                return false;
-//            }
-//            if ((RT_BYTE_MASK & leading) == RT_BYTE) {
-//                receiveData(leading, fastIn.read());
-//            } else {
-//                int syncMasked = SYNC_MASK & leading;
-//                switch (syncMasked) {
-//                case SYNC_BYTE:
-//                    receiveSyncByte(leading);
-//                    break;
-//                case SYNC_CMD_BYTE:
-//                    receiveSyncCommand(leading, fastIn.read());
-//                    break;
-//                default:
-//                    log.warn("Unknown r/t byte:" + Integer.toHexString(leading));
-//                }
-//            }
-//        }
-//    }
 
     public static final class RTTransmit {
 
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what an RTMedibus hands to its subclasses. Realtime values arrive on
+ * the partition thread when partitioned, hence the atomic counter. Nothing is
+ * read before the first call to receive(), so a partition thread cannot see
+ * this instance before it is constructed and configured.
+ */
+public class CountingRTMedibus extends RTMedibus {
+    public static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    public final AtomicLong values = new AtomicLong();
+    public volatile double sum;
+    public long responses, commands;
+
+    private static final class Gate extends FilterInputStream {
+        private final CountDownLatch open = new CountDownLatch(1);
+
+        Gate(InputStream in) {
+            super(in);
+        }
+
+        private void await() throws IOException {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            await();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            await();
+            return super.read(b, off, len);
+        }
+    }
+
+    private final Gate gate;
+
+    public CountingRTMedibus(InputStream in, boolean partitioned, MedibusStreams.Profile profile) throws IOException {
+        this(new Gate(in), partitioned, profile);
+    }
+
+    private CountingRTMedibus(Gate gate, boolean partitioned, MedibusStreams.Profile profile) throws IOException {
+        super(gate, DISCARD, partitioned);
+        this.gate = gate;
+        sendRTTransmissionCommand(profile.transmits());
+    }
+
+    public CountingRTMedibus(MedibusStreams.Profile profile) throws IOException {
+        super(DISCARD);
+        this.gate = null;
+        sendRTTransmissionCommand(profile.transmits());
+    }
+
+    @Override
+    public boolean receive() throws IOException {
+        gate.open.countDown();
+        return super.receive();
+    }
+
+    @Override
+    public void receiveDataValue(RTDataConfig config, int multiplier, int streamIndex, Object realtimeData, double data) {
+        values.incrementAndGet();
+        sum += data;
+    }
+
+    @Override
+    protected void receiveResponse(byte[] response, int len) throws CorruptMedibusException {
+        responses++;
+        super.receiveResponse(response, len);
+    }
+
+    @Override
+    protected void receiveCommand(byte[] argument, int len) throws IOException {
+        commands++;
+        super.receiveCommand(argument, len);
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mdpnp.devices.draeger.medibus.MedibusStreams.Profile;
+import org.mdpnp.devices.draeger.medibus.MedibusStreams.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MedibusDecoderTest {
+    private static final Logger log = LoggerFactory.getLogger(MedibusDecoderTest.class);
+
+    private static class Events implements MedibusDecoder.Handler {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void receiveSyncByte(int syncByte) {
+            events.add("sync " + Integer.toHexString(syncByte));
+        }
+
+        @Override
+        public void receiveSyncCommand(int command, int argument) {
+            events.add("command " + Integer.toHexString(command) + " " + Integer.toHexString(argument));
+        }
+
+        @Override
+        public void receiveData(int first, int second) {
+            events.add("data " + Integer.toHexString(first) + " " + Integer.toHexString(second));
+        }
+
+        @Override
+        public void receiveFrame(boolean command, byte[] buffer, int len) {
+            events.add((command ? "ESC " : "SOH ") + new String(buffer, 0, len));
+        }
+    }
+
+    private static ByteBuffer bytes(int... b) {
+        ByteBuffer bb = ByteBuffer.allocate(b.length);
+        for (int x : b) {
+            bb.put((byte) x);
+        }
+        bb.flip();
+        return bb;
+    }
+
+    @Test
+    public void testRealtime() throws IOException {
+        Events events = new Events();
+        MedibusDecoder decoder = new MedibusDecoder(events);
+        // sync byte, a data pair, a sync command, and a stray byte before a data pair
+        decoder.decode(bytes(0xD3, 0x81, 0x82, 0xC1, 0xC5, 0xF0, 0x83));
+        decoder.decode(bytes(0x84));
+        assertEquals("[sync d3, data 81 82, command c1 c5, data 83 84]", events.events.toString());
+    }
+
+    @Test
+    public void testInterleavedFrames() throws IOException {
+        Events events = new Events();
+        MedibusDecoder decoder = new MedibusDecoder(events);
+        // a response interrupted by realtime data, a DC1 and a whole command
+        decoder.decode(bytes(0x01, '$', '1', 0xD1, '2', 0x11, 0x81, 0x80, 0x1B, '0', '4', 'B', 0x0D, '3', 0x0D));
+        assertEquals("[sync d1, data 81 80, ESC 04B, SOH $123]", events.events.toString());
+    }
+
+    @Test
+    public void testOverflow() throws IOException {
+        Events events = new Events();
+        MedibusDecoder decoder = new MedibusDecoder(events);
+        ByteBuffer bb = ByteBuffer.allocate(MedibusDecoder.MAX_FRAME_LENGTH + 3);
+        bb.put((byte) 0x01);
+        while (bb.position() < bb.capacity() - 1) {
+            bb.put((byte) 'A');
+        }
+        bb.put((byte) 0x0D);
+        bb.flip();
+        decoder.decode(bb);
+        decoder.decode(bytes(0x01, 'B', 0x0D));
+        assertEquals(1L, decoder.getOverflows());
+        assertEquals("[SOH B]", events.events.toString());
+    }
+
+    @Test
+    public void testChunking() throws IOException {
+        Recording r = MedibusStreams.generate(Profile.V500, 30);
+        Random random = new Random(0L);
+        CountingRTMedibus medibus = new CountingRTMedibus(Profile.V500);
+        ByteBuffer bb = ByteBuffer.wrap(r.bytes);
+        while (bb.hasRemaining()) {
+            bb.limit(Math.min(r.bytes.length, bb.position() + 1 + random.nextInt(64)));
+            medibus.receive(bb);
+            bb.limit(r.bytes.length);
+        }
+        assertEquals(r.values, medibus.values.get());
+        assertEquals(r.responses, medibus.responses);
+        assertEquals(r.commands, medibus.commands);
+    }
+
+    private static long receive(CountingRTMedibus medibus, Recording r) throws IOException {
+        long start = System.nanoTime();
+        medibus.receive();
+        long elapsed = System.nanoTime() - start;
+        assertEquals(r.values, medibus.values.get());
+        assertEquals(r.responses, medibus.responses);
+        assertEquals(r.commands, medibus.commands);
+        return elapsed;
+    }
+
+    /**
+     * Ten minutes of each ventilator through the decoder on the reading thread
+     * and through the partition thread and its pipe. Both must see everything;
+     * the throughput of each is logged.
+     */
+    @Test
+    public void testAgainstPartition() throws IOException {
+        for (Profile profile : Profile.values()) {
+            Recording r = MedibusStreams.generate(profile, 600);
+            long decoder = Long.MAX_VALUE, partitioned = Long.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                decoder = Math.min(decoder, receive(new CountingRTMedibus(new ByteArrayInputStream(r.bytes), false, profile), r));
+                partitioned = Math.min(partitioned, receive(new CountingRTMedibus(new ByteArrayInputStream(r.bytes), true, profile), r));
+            }
+            log.info(profile + " " + r.bytes.length + " bytes: decoder " + (1000L * r.bytes.length / decoder) + "MB/s, partitioned "
+                    + (1000L * r.bytes.length / partitioned) + "MB/s");
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.mdpnp.devices.draeger.medibus.MedibusStreams.Profile;
+import org.mdpnp.devices.draeger.medibus.MedibusStreams.Recording;
+import org.mdpnp.devices.draeger.medibus.types.AlarmMessageCP1;
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.mdpnp.devices.draeger.medibus.types.MeasuredDataCP1;
+import org.mdpnp.devices.draeger.medibus.types.RealtimeData;
+import org.mdpnp.devices.draeger.medibus.types.Setting;
+import org.mdpnp.devices.draeger.medibus.types.TextMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MedibusSimulatorTest {
+    private static final Logger log = LoggerFactory.getLogger(MedibusSimulatorTest.class);
+
+    /**
+     * What a host hears from the simulator
+     */
+    private static class Host extends RTMedibus {
+        final Map<Object, Object> received = new ConcurrentHashMap<Object, Object>();
+        final List<Double> airway = new ArrayList<Double>(), co2 = new ArrayList<Double>();
+        volatile RTDataConfig[] config;
+
+        Host(InputStream in, PipedOutputStream out) throws IOException {
+            super(in, out);
+        }
+
+        @Override
+        protected void receiveResponse(byte[] response, int len) throws CorruptMedibusException {
+            super.receiveResponse(response, len);
+            received.put(Command.fromByteIf(response[0]), Boolean.TRUE);
+        }
+
+        @Override
+        protected void receiveDeviceIdentification(String idNumber, String name, String revision) {
+            received.put("id", idNumber + " " + name + " " + revision.trim());
+        }
+
+        @Override
+        protected void receiveRealtimeConfig(RTDataConfig[] config) {
+            this.config = config;
+        }
+
+        private void put(Data[] data) {
+            for (Data d : data) {
+                if (null != d) {
+                    received.put(d.code, d.data().trim());
+                }
+            }
+        }
+
+        @Override
+        protected void receiveMeasuredData(int codepage, Data[] data) {
+            put(data);
+        }
+
+        @Override
+        protected void receiveDeviceSetting(Data[] data) {
+            put(data);
+        }
+
+        @Override
+        protected void receiveTextMessage(Data[] data) {
+            put(data);
+        }
+
+        @Override
+        protected void receiveAlarms(Alarm[] alarms) {
+            for (Alarm a : alarms) {
+                if (null != a) {
+                    received.put(a.alarmCode, a.priority + a.alarmPhrase().trim());
+                }
+            }
+        }
+
+        @Override
+        protected void receiveDateTime(Date date) {
+            received.put("date", date);
+        }
+
+        @Override
+        public synchronized void receiveDataValue(RTDataConfig config, int multiplier, int streamIndex, Object realtimeData, double data) {
+            if (RealtimeData.AirwayPressure.equals(realtimeData)) {
+                airway.add(data);
+            } else if (RealtimeData.ExpiratoryCO2mmHg.equals(realtimeData)) {
+                co2.add(data);
+            }
+        }
+
+        synchronized int airway() {
+            return airway.size();
+        }
+
+        synchronized int co2() {
+            return co2.size();
+        }
+    }
+
+    private static void await(String what, Callable<Boolean> condition) throws Exception {
+        long giveup = System.currentTimeMillis() + 5000L;
+        while (!condition.call()) {
+            assertTrue("timed out waiting for " + what, System.currentTimeMillis() < giveup);
+            Thread.sleep(5L);
+        }
+    }
+
+    private static Thread receive(final Medibus medibus, String name) {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    medibus.receive();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void request(final Host host, final Command command) throws Exception {
+        host.received.remove(command);
+        host.sendCommand(command);
+        await(command.toString(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return host.received.containsKey(command);
+            }
+        });
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        PipedOutputStream toSimulator = new PipedOutputStream(), toHost = new PipedOutputStream();
+        final MedibusSimulator simulator = new MedibusSimulator(new PipedInputStream(toSimulator, 65536), toHost);
+        simulator.setAlarm(AlarmMessageCP1.ApneaCombinedSource, 5, "APNEA");
+        final Host host = new Host(new PipedInputStream(toHost, 65536), toSimulator);
+        receive(simulator, "simulator");
+        receive(host, "host");
+
+        request(host, Command.InitializeComm);
+        request(host, Command.ReqDeviceId);
+        assertEquals("0161 Simulator 04.03", host.received.get("id"));
+
+        request(host, Command.ReqRealtimeConfig);
+        RTMedibus.RTDataConfig[] config = host.config;
+        assertEquals(3, config.length);
+        assertEquals(RealtimeData.AirwayPressure, config[0].realtimeData);
+        assertEquals(16000, config[0].interval);
+        assertEquals(-20, config[0].min);
+        assertEquals(80, config[0].max);
+        assertEquals(0xFFF, config[0].maxbin);
+        assertEquals(32000, config[2].interval);
+
+        RTMedibus.RTTransmit[] transmits = new RTMedibus.RTTransmit[config.length];
+        for (int i = 0; i < config.length; i++) {
+            transmits[i] = new RTMedibus.RTTransmit(config[i].realtimeData, 1, config[i]);
+        }
+        host.received.remove(Command.ConfigureRealtime);
+        host.sendRTTransmissionCommand(transmits);
+        await("ConfigureRealtime", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return host.received.containsKey(Command.ConfigureRealtime);
+            }
+        });
+        host.sendEnableRealtime(new int[] { 0, 1, 2 });
+        await("realtime", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                simulator.tick();
+                return simulator.getCycles() >= 20L;
+            }
+        });
+        final long cycles = simulator.getCycles();
+        await("realtime values", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return host.airway() >= cycles && host.co2() >= (cycles + 1) / 2;
+            }
+        });
+        assertEquals(cycles, host.airway());
+        assertEquals((cycles + 1) / 2, host.co2());
+        assertEquals(cycles * 2 + (cycles + 1) / 2, simulator.getValuesSent());
+        MedibusSimulator.Curve pressure = MedibusSimulator.sine(5.0, 25.0, 4.0);
+        for (int i = 0; i < cycles; i++) {
+            assertEquals(pressure.value(i * 0.016), host.airway.get(i), 100.0 / 0xFFF);
+        }
+        assertTrue(simulator.getCycleTime(cycles - 1) > 0L);
+        assertEquals(-1L, simulator.getCycleTime(cycles));
+
+        request(host, Command.ReqMeasuredDataCP1);
+        assertEquals("450", host.received.get(MeasuredDataCP1.TidalVolume));
+        request(host, Command.ReqDeviceSetting);
+        assertEquals("40", host.received.get(Setting.Oxygen));
+        request(host, Command.ReqTextMessages);
+        assertEquals("IPPV", host.received.get(TextMessage.VentModeIPPV));
+        request(host, Command.ReqAlarmsCP1);
+        assertEquals("5APNEA", host.received.get(AlarmMessageCP1.ApneaCombinedSource));
+        request(host, Command.ReqDateTime);
+        assertNotNull(host.received.get("date"));
+        assertEquals(0L, host.getChecksumErrors());
+
+        toSimulator.close();
+        toHost.close();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        Recording recording = MedibusStreams.generate(Profile.EvitaXL, 2);
+        ByteArrayOutputStream toHost = new ByteArrayOutputStream();
+        MedibusSimulator simulator = new MedibusSimulator(new ByteArrayInputStream(new byte[0]), toHost);
+        simulator.setReplay(recording.bytes, Profile.EvitaXL.baud, 100.0);
+
+        // enable realtime, then ask for data the recording answers
+        ByteArrayOutputStream commands = new ByteArrayOutputStream();
+        RTMedibus host = new RTMedibus(commands);
+        host.sendEnableRealtime(new int[] { 0, 1, 2 });
+        host.sendCommand(Command.ReqMeasuredDataCP1);
+        simulator.receive(ByteBuffer.wrap(commands.toByteArray()));
+
+        long start = System.nanoTime();
+        while (toHost.size() < recording.bytes.length) {
+            simulator.tick();
+            Thread.sleep(1L);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("replayed " + recording.bytes.length + " bytes recorded over 2s in " + elapsed / 1000000L + "ms");
+        assertTrue("replay took " + elapsed / 1000000L + "ms", elapsed < 2000000000L);
+
+        byte[] replayed = toHost.toByteArray();
+        assertTrue(Arrays.equals(recording.bytes, Arrays.copyOf(replayed, recording.bytes.length)));
+        // and starts over
+        for (int i = recording.bytes.length; i < replayed.length; i++) {
+            assertEquals(recording.bytes[i - recording.bytes.length], replayed[i]);
+        }
+
+        CountingRTMedibus counting = new CountingRTMedibus(Profile.EvitaXL);
+        counting.receive(ByteBuffer.wrap(replayed, 0, recording.bytes.length));
+        assertEquals(recording.values, counting.values.get());
+        assertEquals(recording.responses, counting.responses);
+    }
+
+    @Test
+    public void testField() {
+        assertEquals("  25", MedibusSimulator.field(25f, 4));
+        assertEquals("12.5", MedibusSimulator.field(12.5f, 4));
+        assertEquals("0.25", MedibusSimulator.field(0.25f, 4));
+        assertEquals(" 450", MedibusSimulator.field(450f, 4));
+        assertEquals("-4.5", MedibusSimulator.field(-4.5f, 4));
+        assertEquals("1235", MedibusSimulator.field(1234.5f, 4));
+        assertEquals("   40", MedibusSimulator.field(40f, 5));
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import org.mdpnp.devices.ASCIIByte;
+import org.mdpnp.devices.draeger.medibus.RTMedibus.RTDataConfig;
+import org.mdpnp.devices.draeger.medibus.RTMedibus.RTTransmit;
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.mdpnp.devices.draeger.medibus.types.RealtimeData;
+
+/**
+ * What a ventilator sends once AbstractDraegerVent has configured it: realtime
+ * cycles (a sync byte and one data pair per transmitted stream) at the
+ * configured interval, with the responses to the slow data requests made
+ * every 200ms and an occasional keep alive command squeezed into whatever the
+ * baud rate leaves between cycles.
+ */
+public final class MedibusStreams {
+    private MedibusStreams() {
+    }
+
+    public enum Profile {
+        EvitaXL(19200, 16000, RealtimeData.AirwayPressure, RealtimeData.FlowInspExp, RealtimeData.RespiratoryVolumeSinceInspBegin),
+        V500(38400, 8000, RealtimeData.AirwayPressure, RealtimeData.FlowInspExp, RealtimeData.ExpiratoryCO2mmHg, RealtimeData.Ptrach),
+        Apollo(9600, 32000, RealtimeData.AirwayPressure, RealtimeData.InspiratoryFlow, RealtimeData.ExpiratoryFlow);
+
+        final int baud, interval;
+        final RealtimeData[] streams;
+
+        private Profile(int baud, int interval, RealtimeData... streams) {
+            this.baud = baud;
+            this.interval = interval;
+            this.streams = streams;
+        }
+
+        /**
+         * The RTMedibus.sendRTTransmissionCommand argument that would have
+         * requested these streams
+         */
+        public RTTransmit[] transmits() {
+            RTTransmit[] transmits = new RTTransmit[streams.length];
+            for (int i = 0; i < streams.length; i++) {
+                RTDataConfig config = new RTDataConfig();
+                config.realtimeData = streams[i];
+                config.interval = interval;
+                config.min = -100;
+                config.max = 100;
+                config.maxbin = 0xFFF;
+                config.ordinal = i;
+                transmits[i] = new RTTransmit(streams[i], 1, config);
+            }
+            return transmits;
+        }
+    }
+
+    /**
+     * A generated stream and what it holds
+     */
+    public static final class Recording {
+        public final Profile profile;
+        public final byte[] bytes;
+        public final long values, responses, commands;
+
+        Recording(Profile profile, byte[] bytes, long values, long responses, long commands) {
+            this.profile = profile;
+            this.bytes = bytes;
+            this.values = values;
+            this.responses = responses;
+            this.commands = commands;
+        }
+    }
+
+    private static final Charset ASCII = Charset.forName("ASCII");
+
+    private static final Command[] SLOW = new Command[] { Command.ReqDateTime, Command.ReqDeviceSetting, Command.ReqAlarmsCP1,
+            Command.ReqMeasuredDataCP1, Command.ReqLowAlarmLimitsCP1, Command.ReqHighAlarmLimitsCP1, Command.ReqTextMessages };
+
+    private static void hex(ByteArrayOutputStream out, int b) {
+        out.write(Character.toUpperCase(Character.forDigit(0x0F & (b >> 4), 16)));
+        out.write(Character.toUpperCase(Character.forDigit(0x0F & b, 16)));
+    }
+
+    private static void ascii(ByteArrayOutputStream out, String s) {
+        byte[] b = s.getBytes(ASCII);
+        out.write(b, 0, b.length);
+    }
+
+    private static String field(float value, int width) {
+        StringBuilder sb = new StringBuilder(Integer.toString(Math.round(value)));
+        while (sb.length() < width) {
+            sb.insert(0, ' ');
+        }
+        return sb.toString();
+    }
+
+    private static byte[] frame(int leading, Command command, ByteArrayOutputStream payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(leading);
+        out.write(command.toByte());
+        byte[] p = payload.toByteArray();
+        out.write(p, 0, p.length);
+        int checksum = leading + (0xFF & command.toByte());
+        for (byte b : p) {
+            checksum += 0xFF & b;
+        }
+        hex(out, checksum);
+        out.write(ASCIIByte.CR);
+        return out.toByteArray();
+    }
+
+    /**
+     * A response to command like a device sends, varied by n
+     */
+    static byte[] response(Command command, int n) {
+        ByteArrayOutputStream p = new ByteArrayOutputStream();
+        switch (command) {
+        case ReqDateTime:
+            ascii(p, " 9:33:00 7-OKT-14");
+            break;
+        case ReqDeviceSetting:
+            for (int i = 0; i < 12; i++) {
+                hex(p, 0x01 + i);
+                ascii(p, field(5 * i + n % 3, 5));
+            }
+            break;
+        case ReqAlarmsCP1:
+            for (int i = 0; i < 2; i++) {
+                p.write('0' + (i + 5));
+                hex(p, 0x10 + i);
+                ascii(p, "APNEA       ");
+            }
+            break;
+        case ReqMeasuredDataCP1:
+        case ReqLowAlarmLimitsCP1:
+        case ReqHighAlarmLimitsCP1:
+            for (int i = 0; i < 24; i++) {
+                hex(p, 0x05 + i);
+                ascii(p, field(i * 3 + n % 5, 4));
+            }
+            break;
+        case ReqTextMessages:
+            for (String text : new String[] { "IPPV", "Standby" }) {
+                hex(p, 0x01);
+                p.write('0' + text.length());
+                ascii(p, text);
+                p.write(0x03);
+            }
+            break;
+        default:
+            break;
+        }
+        return frame(ASCIIByte.SOH, command, p);
+    }
+
+    /**
+     * @param seconds
+     *            of traffic to generate
+     */
+    public static Recording generate(Profile profile, int seconds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int streams = profile.streams.length;
+        long cycles = 1000000L * seconds / profile.interval;
+        // 10 bits a byte
+        int slowPerCycle = Math.max(1, (int) (profile.baud / 10L * profile.interval / 1000000L) - 1 - 2 * streams);
+        long cyclesPerRequest = Math.max(1L, 200000L / profile.interval);
+        long cyclesPerKeepAlive = Math.max(1L, 1500000L / profile.interval);
+        byte[] keepAlive = frame(ASCIIByte.ESC, Command.NoOperation, new ByteArrayOutputStream());
+
+        byte[] pending = new byte[0];
+        int sent = 0;
+        long values = 0L, responses = 0L, commands = 0L;
+        int request = 0;
+
+        for (long c = 0; c < cycles; c++) {
+            out.write(MedibusDecoder.SYNC_BYTE | ((1 << streams) - 1));
+            for (int s = 0; s < streams; s++) {
+                int binval = (int) (0x800 + 0x7FF * Math.sin(2.0 * Math.PI * (c + 8 * s) / 250.0));
+                out.write(MedibusDecoder.RT_BYTE | (0x3F & binval));
+                out.write(MedibusDecoder.RT_BYTE | (0x3F & (binval >> 6)));
+                values++;
+            }
+            if (sent == pending.length) {
+                if (c % cyclesPerKeepAlive == 0L) {
+                    pending = keepAlive;
+                    sent = 0;
+                    commands++;
+                } else if (c % cyclesPerRequest == 0L) {
+                    pending = response(SLOW[request % SLOW.length], request);
+                    sent = 0;
+                    request++;
+                    responses++;
+                }
+            }
+            int n = Math.min(slowPerCycle, pending.length - sent);
+            out.write(pending, sent, n);
+            sent += n;
+        }
+        // let the last slow message finish
+        out.write(pending, sent, pending.length - sent);
+        return new Recording(profile, out.toByteArray(), values, responses, commands);
+    }
+}
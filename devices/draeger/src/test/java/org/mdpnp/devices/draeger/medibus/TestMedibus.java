@@ -2,13 +2,22 @@ package org.mdpnp.devices.draeger.medibus;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mdpnp.devices.ASCIIByte;
+import org.mdpnp.devices.draeger.medibus.types.AlarmMessageCP1;
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.mdpnp.devices.draeger.medibus.types.MeasuredDataCP1;
+import org.mdpnp.devices.draeger.medibus.types.TextMessage;
 
 public class TestMedibus {
 
@@ -37,47 +46,116 @@ public class TestMedibus {
     };
     
     @Test
-    public void testDateTime() {
+    public void testDateTime() throws Exception {
         Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
         int i = 0;
         
         for(String dt : validation_timestamps) {
             long expected = validation_expected[i++];
-            Matcher m = Medibus.dateTimePattern.matcher(dt);
-            // TODO this code should be sahred in common with Medibus
-            if (m.matches()) {
-                if(m.groupCount()<6) {
-                    // This shouldn't happen because the regex wouldn't have matched
-                    fail("Insufficient capture groups in datetime:" + dt);
-                } else {
-                    int field = 1;
-                    try {
-                        cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(m.group(field++)));
-                        cal.set(Calendar.MINUTE, Integer.parseInt(m.group(field++)));
-                        String seconds = m.group(field++);
-                        cal.set(Calendar.SECOND, seconds.length()>0?Integer.parseInt(seconds):0);
-                        cal.set(Calendar.MILLISECOND, 0);
-                        cal.set(Calendar.DATE, Integer.parseInt(m.group(field++)));
-                        String germanMonth = m.group(field++);
-                        Integer month = Medibus.germanMonths.get(germanMonth);
-                        if(null != month) {
-                            cal.set(Calendar.MONTH, month);
-                            // Note the V500 as of 12-Mar-2014 emits "14" as the year
-                            cal.set(Calendar.YEAR, 2000 + Integer.parseInt(m.group(field++)));
-                            assertEquals(expected, cal.getTime().getTime());
-                        } else {
-                            fail("Cannot process German month \""+germanMonth+"\" in " + dt);
-                        }
-                        
-                    } catch (NumberFormatException nfe) {
-                        fail("Unable to parse a field in datetime " + dt + " field was \"" + m.group(field)+"\"");
+            byte[] b = dt.getBytes("ASCII");
+            assertTrue("Received a bad datetime:" + dt, Medibus.parseDateTime(b, 0, b.length, cal));
+            assertEquals(dt, expected, cal.getTime().getTime());
+        }
+    }
+
+    @Test
+    public void testDateTimeRunTogether() throws Exception {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        // no space between seconds and day; the day keeps at least a digit
+        byte[] b = "09:33:007-OKT-14".getBytes("ASCII");
+        assertTrue(Medibus.parseDateTime(b, 0, b.length, cal));
+        assertEquals(1412674380000L, cal.getTime().getTime());
+        b = "09:33:0507-OKT-14".getBytes("ASCII");
+        assertTrue(Medibus.parseDateTime(b, 0, b.length, cal));
+        assertEquals(1412674385000L, cal.getTime().getTime());
+
+        for (String dt : new String[] { "", "9:33", "09:3 7-OKT-14", "09:33:000 7-OKT-14", "09:33 7-XYZ-14", "09:33 7-OKT-", "09:33 7-OKT-14 " }) {
+            b = dt.getBytes("ASCII");
+            assertFalse(dt, Medibus.parseDateTime(b, 0, b.length, cal));
+        }
+    }
+
+    @Test
+    public void testParseFloat() throws Exception {
+        for (String s : new String[] { "  12", "-4.5 ", " 0.25", "999", "+7", "1.", ".5", "12345678901234567890" }) {
+            byte[] b = s.getBytes("ASCII");
+            assertEquals(s, Float.parseFloat(s.trim()), Medibus.parseFloat(b, 0, b.length), 0f);
+        }
+        for (String s : new String[] { "", "    ", "----", " - ", "1.2.3", "12a" }) {
+            byte[] b = s.getBytes("ASCII");
+            assertTrue(s, Float.isNaN(Medibus.parseFloat(b, 0, b.length)));
+        }
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        // a response frame without its SOH and trailing CR
+        byte[] frame = "& 9:33".getBytes("ASCII");
+        int sum = ASCIIByte.SOH;
+        for (byte b : frame) {
+            sum += b;
+        }
+        byte[] checked = new byte[frame.length + 2];
+        System.arraycopy(frame, 0, checked, 0, frame.length);
+        checked[frame.length] = (byte) Character.toUpperCase(Character.forDigit(0x0F & (sum >> 4), 16));
+        checked[frame.length + 1] = (byte) Character.toUpperCase(Character.forDigit(0x0F & sum, 16));
+        assertTrue(Medibus.validChecksum(ASCIIByte.SOH, checked, checked.length));
+        assertFalse(Medibus.validChecksum(ASCIIByte.ESC, checked, checked.length));
+        checked[1]++;
+        assertFalse(Medibus.validChecksum(ASCIIByte.SOH, checked, checked.length));
+        assertFalse(Medibus.validChecksum(ASCIIByte.SOH, checked, 2));
+    }
+
+    @Test
+    public void testResponses() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        Medibus medibus = new Medibus(new ByteArrayOutputStream()) {
+            @Override
+            protected void receiveMeasuredData(int codepage, Data[] data) {
+                for (Data d : data) {
+                    if (null != d) {
+                        received.add(d.code + "=" + d.floatValue());
                     }
                 }
-            } else {
-                fail("Received a bad datetime:" + dt);
             }
 
-        }
+            @Override
+            protected void receiveAlarms(Alarm[] alarms) {
+                for (Alarm a : alarms) {
+                    if (null != a) {
+                        received.add(a.alarmCode + "=" + a.priority + a.alarmPhrase().trim());
+                    }
+                }
+            }
+
+            @Override
+            protected void receiveTextMessage(Data[] data) {
+                for (Data d : data) {
+                    if (null != d) {
+                        received.add(d.code + "=" + d.data());
+                    }
+                }
+            }
+        };
+        medibus.receive(ByteBuffer.wrap(MedibusStreams.response(Command.ReqMeasuredDataCP1, 0)));
+        assertEquals(24, received.size());
+        assertEquals(MeasuredDataCP1.fromByteIf((byte) 0x06) + "=3.0", received.get(1));
+
+        received.clear();
+        medibus.receive(ByteBuffer.wrap(MedibusStreams.response(Command.ReqAlarmsCP1, 0)));
+        assertEquals(Arrays.asList(AlarmMessageCP1.fromByteIf((byte) 0x10) + "=5APNEA", AlarmMessageCP1.fromByteIf((byte) 0x11) + "=6APNEA"), received);
+
+        received.clear();
+        medibus.receive(ByteBuffer.wrap(MedibusStreams.response(Command.ReqTextMessages, 0)));
+        assertEquals(Arrays.asList(TextMessage.fromByteIf((byte) 0x01) + "=IPPV", TextMessage.fromByteIf((byte) 0x01) + "=Standby"), received);
+
+        // a corrupted frame is dropped
+        received.clear();
+        byte[] corrupt = MedibusStreams.response(Command.ReqMeasuredDataCP1, 0);
+        corrupt[4]++;
+        medibus.receive(ByteBuffer.wrap(corrupt));
+        assertTrue(received.isEmpty());
+        assertEquals(1L, medibus.getChecksumErrors());
     }
 
 }
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.philips.intellivue.data.Label;
+import org.mdpnp.devices.philips.intellivue.data.OIDType;
+import org.mdpnp.devices.philips.intellivue.data.ObservedValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per attribute lookups of the parser: the boxed HashMaps built by
+ * OrdinalEnum.buildInt and buildLong against the tables now behind
+ * ObservedValue.valueOf, Label.valueOf and OIDType.lookup. One in eight
+ * ordinals is not a constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OrdinalEnumBenchmark {
+    private static final int ORDINALS = 1024;
+
+    private final Map<Integer, ObservedValue> observedValueMap = OrdinalEnum.buildInt(ObservedValue.class);
+    private final Map<Long, Label> labelMap = OrdinalEnum.buildLong(Label.class);
+
+    private final int[] observedValues = new int[ORDINALS];
+    private final long[] labels = new long[ORDINALS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0L);
+        ObservedValue[] ov = ObservedValue.values();
+        Label[] l = Label.values();
+        for (int i = 0; i < ORDINALS; i++) {
+            boolean miss = random.nextInt(8) == 0;
+            observedValues[i] = miss ? random.nextInt(0x10000) : ov[random.nextInt(ov.length)].asInt();
+            labels[i] = miss ? random.nextInt() : l[random.nextInt(l.length)].asLong();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDINALS)
+    public void observedValueMap(Blackhole bh) {
+        for (int x : observedValues) {
+            bh.consume(observedValueMap.get(x));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDINALS)
+    public void observedValueTable(Blackhole bh) {
+        for (int x : observedValues) {
+            bh.consume(ObservedValue.valueOf(x));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDINALS)
+    public void labelMap(Blackhole bh) {
+        for (long x : labels) {
+            bh.consume(labelMap.get(x));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDINALS)
+    public void labelTable(Blackhole bh) {
+        for (long x : labels) {
+            bh.consume(Label.valueOf(x));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDINALS)
+    public void oidLookup(Blackhole bh) {
+        for (int x : observedValues) {
+            bh.consume(OIDType.lookup(x));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.philips.intellivue.action.impl.PollDataFixtures;
+import org.mdpnp.devices.philips.intellivue.association.impl.AssociationAcceptImpl;
+import org.mdpnp.devices.philips.intellivue.association.impl.AssociationConnectImpl;
+import org.mdpnp.devices.philips.intellivue.connectindication.ConnectIndicationImpl;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.data.ProtocolSupport.ProtocolSupportEntry;
+import org.mdpnp.devices.philips.intellivue.data.ProtocolSupport.ProtocolSupportEntry.ApplicationProtocol;
+import org.mdpnp.devices.philips.intellivue.data.ProtocolSupport.ProtocolSupportEntry.TransportProtocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CompoundProtocol.parse and format of each kind of datagram the driver
+ * exchanges with a monitor. The datagrams are formatted once from message
+ * objects at setup; parse reads the same bytes every time. Run with
+ * -Pjmh.args="-prof gc" for B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProtocolBenchmark {
+    @Param({ "connectIndication", "associationConnect", "associationAccept", "pollRequest", "numericPoll", "wavePoll" })
+    public String message;
+
+    private final CompoundProtocol protocol = new CompoundProtocol();
+    private final ByteBuffer out = ByteBuffer.allocate(65536);
+    private Message built;
+    private ByteBuffer datagram;
+
+    private static Message connectIndication() throws Exception {
+        ConnectIndicationImpl ci = new ConnectIndicationImpl();
+        ProtocolSupportEntry e = new ProtocolSupportEntry();
+        e.setAppProtocol(ApplicationProtocol.DataOut);
+        e.setTransProtocol(TransportProtocol.UDP);
+        e.setPortNumber(Intellivue.DEFAULT_UNICAST_PORT);
+        e.setOptions(0);
+        ci.getProtocolSupport().getList().add(e);
+        ci.getIpAddressInformation().setInetAddress(InetAddress.getLoopbackAddress());
+        Network.prefix(ci.getIpAddressInformation().getSubnetMask(), (short) 8);
+        return ci;
+    }
+
+    private static Message build(String message) throws Exception {
+        if ("connectIndication".equals(message)) {
+            return connectIndication();
+        } else if ("associationConnect".equals(message)) {
+            return new AssociationConnectImpl();
+        } else if ("associationAccept".equals(message)) {
+            return new AssociationAcceptImpl();
+        } else if ("pollRequest".equals(message)) {
+            return PollRequestTemplate.build(true, ObjectClass.NOM_MOC_VMO_METRIC_SA_RT, 600000L, null, 1, 1);
+        } else if ("numericPoll".equals(message)) {
+            return PollDataFixtures.numericPoll(1, 40);
+        } else if ("wavePoll".equals(message)) {
+            return PollDataFixtures.wavePoll(1, 8, 64);
+        } else {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        built = build(message);
+        out.clear();
+        protocol.format(built, out);
+        out.flip();
+        datagram = ByteBuffer.allocate(out.remaining());
+        datagram.put(out);
+        datagram.flip();
+        if (null == protocol.parse(datagram)) {
+            throw new IllegalStateException("cannot parse the " + message + " fixture");
+        }
+    }
+
+    @Benchmark
+    public Message parse() {
+        datagram.position(0);
+        return protocol.parse(datagram);
+    }
+
+    @Benchmark
+    public int format() {
+        out.clear();
+        protocol.format(built, out);
+        return out.position();
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.philips.intellivue.CompoundProtocol;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Handling one received extended poll datagram: parse builds the message
+ * tree as Intellivue did for every datagram, decode hands the same contents
+ * to an ExtendedPollDataHandler. Run with -prof gc to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PollDataDecodeBenchmark {
+    @Param({ "numeric", "wave" })
+    public String poll;
+
+    private static final int DATAGRAMS = 16;
+
+    private final ByteBuffer[] datagrams = new ByteBuffer[DATAGRAMS];
+    private final CompoundProtocol protocol = new CompoundProtocol();
+    private final ExtendedPollDataDecoder decoder = new ExtendedPollDataDecoder();
+    private int next;
+
+    private static final class Consumer implements ExtendedPollDataHandler {
+        Blackhole bh;
+
+        @Override
+        public boolean beginPoll(int pollNumber, int sequenceNumber, long relativeTime, int objectPartition, int objectType, int attributeGroup) {
+            bh.consume(relativeTime);
+            return true;
+        }
+
+        @Override
+        public void numeric(int handle, int physioId, int state, int unitCode, double value) {
+            bh.consume(value);
+        }
+
+        @Override
+        public void sampleArray(int handle, int physioId, int state, ByteBuffer samples, int length) {
+            for (int i = 0; i < length; i++) {
+                bh.consume(samples.get());
+            }
+        }
+
+        @Override
+        public void attribute(int handle, int attributeId, ByteBuffer value, int length) {
+            bh.consume(attributeId);
+        }
+
+        @Override
+        public void endPoll() {
+        }
+    }
+
+    private final Consumer consumer = new Consumer();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < DATAGRAMS; i++) {
+            datagrams[i] = PollDataFixtures.format("wave".equals(poll) ? PollDataFixtures.wavePoll(i + 1, 8, 64) : PollDataFixtures.numericPoll(
+                    i + 1, 40));
+        }
+    }
+
+    private ByteBuffer nextDatagram() {
+        ByteBuffer bb = datagrams[next++ % DATAGRAMS];
+        bb.position(0);
+        return bb;
+    }
+
+    @Benchmark
+    public Object parse() {
+        return protocol.parse(nextDatagram());
+    }
+
+    @Benchmark
+    public boolean decode(Blackhole bh) {
+        consumer.bh = bh;
+        return decoder.decode(nextDatagram(), consumer);
+    }
+}
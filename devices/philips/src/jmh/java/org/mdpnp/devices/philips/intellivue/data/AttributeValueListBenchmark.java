@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
+import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * AttributeValueList.parse of one observation's attributes, which leaves
+ * each value as raw bytes, and the same parse followed by the get(...) calls
+ * that materialize the values the driver reads into reused attributes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AttributeValueListBenchmark {
+    @Param({ "numeric", "wave" })
+    public String observation;
+
+    private final AttributeValueList list = new AttributeValueList();
+    private ByteBuffer attributes;
+
+    private final Attribute<RelativeTime> timestamp = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_STAMP_REL, RelativeTime.class);
+    private final Attribute<NumericObservedValue> numeric = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_NU_VAL_OBS,
+            NumericObservedValue.class);
+    private final Attribute<SampleArraySpecification> spec = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_SPECN,
+            SampleArraySpecification.class);
+    private final Attribute<RelativeTime> period = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_SAMP, RelativeTime.class);
+    private final Attribute<SampleArrayObservedValue> wave = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS,
+            SampleArrayObservedValue.class);
+
+    private static AttributeValueList numericAttributes() {
+        AttributeValueList list = new AttributeValueList();
+        Attribute<RelativeTime> timestamp = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_STAMP_REL, RelativeTime.class);
+        timestamp.getValue().setRelativeTime(8000L);
+        list.add(timestamp);
+        Attribute<NumericObservedValue> numeric = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_NU_VAL_OBS, NumericObservedValue.class);
+        numeric.getValue().setPhysioId(ObservedValue.NOM_PULS_OXIM_SAT_O2.asOID());
+        numeric.getValue().setUnitCode(UnitCode.NOM_DIM_PERCENT.asOID());
+        numeric.getValue().getValue().setFloat(98.0);
+        list.add(numeric);
+        return list;
+    }
+
+    private static AttributeValueList waveAttributes() {
+        AttributeValueList list = new AttributeValueList();
+        Attribute<SampleArraySpecification> spec = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_SPECN, SampleArraySpecification.class);
+        spec.getValue().setArraySize(64);
+        spec.getValue().setSampleSize((short) 8);
+        spec.getValue().setSignificantBits((short) 8);
+        list.add(spec);
+        Attribute<RelativeTime> period = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_SAMP, RelativeTime.class);
+        period.getValue().setRelativeTime(32L);
+        list.add(period);
+        Attribute<SampleArrayObservedValue> wave = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS, SampleArrayObservedValue.class);
+        short[] value = new short[64];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (short) (0xFF & (i * 4));
+        }
+        wave.getValue().setPhysioId(ObservedValue.NOM_PLETH.asOID());
+        wave.getValue().setValue(value);
+        wave.getValue().setLength(value.length);
+        list.add(wave);
+        return list;
+    }
+
+    @Setup
+    public void setUp() {
+        ByteBuffer bb = ByteBuffer.allocate(4096);
+        ("wave".equals(observation) ? waveAttributes() : numericAttributes()).format(bb);
+        bb.flip();
+        attributes = ByteBuffer.allocate(bb.remaining());
+        attributes.put(bb);
+        attributes.flip();
+    }
+
+    private void parseList() {
+        list.reset();
+        attributes.position(0);
+        list.parse(attributes);
+    }
+
+    @Benchmark
+    public AttributeValueList parse() {
+        parseList();
+        return list;
+    }
+
+    @Benchmark
+    public void parseAndGet(Blackhole bh) {
+        parseList();
+        if ("wave".equals(observation)) {
+            bh.consume(list.get(spec));
+            bh.consume(list.get(period));
+            bh.consume(list.get(wave));
+            bh.consume(wave.getValue().getLength());
+        } else {
+            bh.consume(list.get(timestamp));
+            bh.consume(list.get(numeric));
+            bh.consume(numeric.getValue().getValue().floatValue());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding and encoding one SampleArrayObservedValue of one byte samples.
+ * The value instance is reused, so after the first parse its array is large
+ * enough and parse should not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SampleArrayObservedValueBenchmark {
+    @Param({ "16", "64", "256" })
+    public int samples;
+
+    private final SampleArrayObservedValue value = new SampleArrayObservedValue();
+    private final ByteBuffer out = ByteBuffer.allocate(4096);
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        SampleArrayObservedValue source = new SampleArrayObservedValue();
+        short[] s = new short[samples];
+        for (int i = 0; i < samples; i++) {
+            s[i] = (short) (0xFF & (i * 3));
+        }
+        source.setPhysioId(ObservedValue.NOM_ECG_ELEC_POTL_II.asOID());
+        source.setValue(s);
+        source.setLength(samples);
+
+        out.clear();
+        source.format(out);
+        out.flip();
+        encoded = ByteBuffer.allocate(out.remaining());
+        encoded.put(out);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public int parse() {
+        encoded.position(0);
+        value.parse(encoded);
+        return value.getLength();
+    }
+
+    @Benchmark
+    public int format() {
+        out.clear();
+        value.format(out);
+        return out.position();
+    }
+}
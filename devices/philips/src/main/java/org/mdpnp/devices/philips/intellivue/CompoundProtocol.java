@@ -37,6 +37,10 @@ public class CompoundProtocol implements Protocol {
     private final ConnectIndicationProtocol connectIndicationProtocol = new ConnectIndicationProtocolImpl();
     private final AssociationProtocol associationProtocol = new AssociationProtocolImpl();
 
+    public DataExportProtocol getDataExportProtocol() {
+        return dataExportProtocol;
+    }
+
     @Override
     public Message parse(ByteBuffer bb) {
         try {
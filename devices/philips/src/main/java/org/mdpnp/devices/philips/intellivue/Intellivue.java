@@ -20,6 +20,7 @@ import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -28,12 +29,12 @@ import java.util.List;
 import org.mdpnp.devices.io.util.HexUtil;
 import org.mdpnp.devices.net.NetworkConnection;
 import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataHandler;
 import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataRequest;
 import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataResult;
 import org.mdpnp.devices.philips.intellivue.action.SinglePollDataRequest;
 import org.mdpnp.devices.philips.intellivue.action.SinglePollDataResult;
-import org.mdpnp.devices.philips.intellivue.action.impl.ExtendedPollDataRequestImpl;
-import org.mdpnp.devices.philips.intellivue.action.impl.SinglePollDataRequestImpl;
+import org.mdpnp.devices.philips.intellivue.action.impl.ExtendedPollDataDecoder;
 import org.mdpnp.devices.philips.intellivue.association.AssociationAbort;
 import org.mdpnp.devices.philips.intellivue.association.AssociationAccept;
 import org.mdpnp.devices.philips.intellivue.association.AssociationConnect;
@@ -45,23 +46,23 @@ import org.mdpnp.devices.philips.intellivue.association.impl.AssociationConnectI
 import org.mdpnp.devices.philips.intellivue.association.impl.AssociationDisconnectImpl;
 import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
 import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.mdpnp.devices.philips.intellivue.capture.CaptureWriter;
 import org.mdpnp.devices.philips.intellivue.connectindication.ConnectIndication;
 import org.mdpnp.devices.philips.intellivue.data.AttributeId;
 import org.mdpnp.devices.philips.intellivue.data.Label;
 import org.mdpnp.devices.philips.intellivue.data.MdibObjectSupport;
-import org.mdpnp.devices.philips.intellivue.data.NomPartition;
 import org.mdpnp.devices.philips.intellivue.data.OIDType;
 import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
 import org.mdpnp.devices.philips.intellivue.data.PollProfileSupport;
 import org.mdpnp.devices.philips.intellivue.data.ProtocolSupport;
 import org.mdpnp.devices.philips.intellivue.data.ProtocolSupport.ProtocolSupportEntry;
-import org.mdpnp.devices.philips.intellivue.data.RelativeTime;
 import org.mdpnp.devices.philips.intellivue.data.TextIdList;
 import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportError;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportInvoke;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportMessage;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportResult;
+import org.mdpnp.devices.philips.intellivue.dataexport.LinkedResultTable;
 import org.mdpnp.devices.philips.intellivue.dataexport.ModifyOperator;
 import org.mdpnp.devices.philips.intellivue.dataexport.command.Action;
 import org.mdpnp.devices.philips.intellivue.dataexport.command.ActionResult;
@@ -87,7 +88,7 @@ public class Intellivue implements NetworkConnection {
 
     private final ByteBuffer inBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
     private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
-    private final Protocol protocol = new CompoundProtocol();
+    private final CompoundProtocol protocol = new CompoundProtocol();
 
     public Intellivue() {
         inBuffer.order(ByteOrder.BIG_ENDIAN);
@@ -214,17 +215,24 @@ public class Intellivue implements NetworkConnection {
 
     private final static int MAX_U_SHORT = (1 << Short.SIZE);
 
-    private synchronized int nextInvoke() {
-        return (invoke = ++invoke >= MAX_U_SHORT ? 0 : invoke);
+    // invoke ids and poll numbers are drawn while holding sendLock
+    private int nextInvoke() {
+        synchronized (sendLock) {
+            return (invoke = ++invoke >= MAX_U_SHORT ? 0 : invoke);
+        }
     }
 
-    private synchronized int nextPoll() {
-        return (poll = ++poll >= MAX_U_SHORT ? 0 : poll);
+    private int nextPoll() {
+        synchronized (sendLock) {
+            return (poll = ++poll >= MAX_U_SHORT ? 0 : poll);
+        }
     }
 
     @SuppressWarnings("unused")
-    private synchronized int lastPoll() {
-        return poll;
+    private int lastPoll() {
+        synchronized (sendLock) {
+            return poll;
+        }
     }
 
     public int requestKeepAlive() throws IOException {
@@ -232,31 +240,7 @@ public class Intellivue implements NetworkConnection {
     }
 
     public int requestSinglePoll(ObjectClass objectType, AttributeId attrGroup) throws IOException {
-        int invoke = nextInvoke();
-        DataExportInvoke message = new DataExportInvokeImpl();
-        message.setCommandType(CommandType.ConfirmedAction);
-        message.setInvoke(invoke);
-
-        Action action = (Action) CommandFactory.buildCommand(CommandType.ConfirmedAction, false);
-        action.getManagedObject().setOidType(OIDType.lookup(ObjectClass.NOM_MOC_VMS_MDS.asInt()));
-        action.getManagedObject().getGlobalHandle().setMdsContext(0);
-        action.getManagedObject().getGlobalHandle().setHandle(0);
-        action.setScope(0);
-        action.setActionType(OIDType.lookup(ObjectClass.NOM_ACT_POLL_MDIB_DATA.asInt()));
-
-        message.setCommand(action);
-
-        SinglePollDataRequest req = new SinglePollDataRequestImpl();
-        req.setPollNumber(nextPoll());
-        req.setPolledAttributeGroup(null == attrGroup ? OIDType.lookup(0) : attrGroup.asOid());
-        req.getPolledObjectType().setNomPartition(NomPartition.Object);
-        req.getPolledObjectType().setOidType(OIDType.lookup(objectType.asInt()));
-
-        action.setAction(req);
-
-        send(message);
-
-        return invoke;
+        return requestPoll(false, objectType, null, attrGroup);
     }
 
     public int requestExtendedPoll(ObjectClass objectType, Long time) throws IOException {
@@ -264,39 +248,39 @@ public class Intellivue implements NetworkConnection {
     }
 
     public int requestExtendedPoll(ObjectClass objectType, Long time, AttributeId attrGroup) throws IOException {
+        return requestPoll(true, objectType, time, attrGroup);
+    }
 
-        int invoke = nextInvoke();
-        DataExportInvoke message = new DataExportInvokeImpl();
-        message.setCommandType(CommandType.ConfirmedAction);
-        message.setInvoke(invoke);
-
-        Action action = (Action) CommandFactory.buildCommand(CommandType.ConfirmedAction, false);
-        action.getManagedObject().setOidType(OIDType.lookup(ObjectClass.NOM_MOC_VMS_MDS.asInt()));
-        action.getManagedObject().getGlobalHandle().setMdsContext(0);
-        action.getManagedObject().getGlobalHandle().setHandle(0);
-        action.setScope(0);
-        action.setActionType(OIDType.lookup(ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asInt()));
-
-        message.setCommand(action);
-
-        ExtendedPollDataRequest req = new ExtendedPollDataRequestImpl();
-        req.setPollNumber(nextPoll());
-        req.setPolledAttributeGroup(null == attrGroup ? OIDType.lookup(0) : attrGroup.asOid());
+    // polls recur with the same few parameters; each is encoded once
+    private final List<PollRequestTemplate> pollTemplates = new ArrayList<PollRequestTemplate>();
 
-        req.getPolledObjectType().setNomPartition(NomPartition.Object);
-        req.getPolledObjectType().setOidType(OIDType.lookup(objectType.asInt()));
+    private int requestPoll(boolean extended, ObjectClass objectType, Long time, AttributeId attrGroup) throws IOException {
+        synchronized (sendLock) {
+            PollRequestTemplate template = null;
+            for (int i = 0; i < pollTemplates.size(); i++) {
+                if (pollTemplates.get(i).matches(extended, objectType, time, attrGroup)) {
+                    template = pollTemplates.get(i);
+                    break;
+                }
+            }
+            if (null == template) {
+                template = new PollRequestTemplate(protocol, extended, objectType, time, attrGroup);
+                pollTemplates.add(template);
+            }
 
-        if (null != time) {
-            Attribute<RelativeTime> timePeriod = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_POLL, RelativeTime.class);
-            timePeriod.getValue().fromMilliseconds(time);
-            req.getPollExtra().add(timePeriod);
+            int invoke = nextInvoke();
+            int pollNumber = nextPoll();
+            if (log.isTraceEnabled()) {
+                this.time.setTime(System.currentTimeMillis());
+                log.trace("Out Message(" + simpleDateformat.format(this.time) + "):\n"
+                        + lineWrap(PollRequestTemplate.build(extended, objectType, time, attrGroup, invoke, pollNumber).toString()));
+            }
+            outBuffer.clear();
+            template.encode(outBuffer, invoke, pollNumber);
+            outBuffer.flip();
+            send(outBuffer);
+            return invoke;
         }
-
-        action.setAction(req);
-
-        send(message);
-
-        return invoke;
     }
 
     public int requestGet(OIDType oids) throws IOException {
@@ -542,41 +526,77 @@ public class Intellivue implements NetworkConnection {
 
     }
 
-    private List<Message> messageQueue = new ArrayList<Message>();
+    // Guards the outgoing state below but not the read path; uncontended
+    // when, as usual, everything is sent from the NetworkLoop thread
+    private final Object sendLock = new Object();
+    // encoded datagrams the channel could not yet take, in order
+    private final ArrayDeque<ByteBuffer> sendQueue = new ArrayDeque<ByteBuffer>();
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<ByteBuffer>();
+    private static final int MAX_FREE_BUFFERS = 8;
+
+    private int write(DatagramChannel channel, ByteBuffer datagram) throws IOException {
+        datagram.mark();
 
-    private final synchronized int write(DatagramChannel channel, Message message) throws IOException {
-        outBuffer.clear();
-        protocol.format(message, outBuffer);
-        outBuffer.flip();
-        outBuffer.mark();
+        int cnt = channel.write(datagram);
 
-        int cnt = channel.write(outBuffer);
+        if (cnt > 0 && null != capture) {
+            datagram.reset();
+            capture(CaptureWriter.SENT, datagram);
+        }
 
         if (cnt > 0 && log.isTraceEnabled()) {
-            outBuffer.reset();
+            datagram.reset();
             time.setTime(System.currentTimeMillis());
-            log.trace("To " + channel.getRemoteAddress() + "\n" + HexUtil.dump(outBuffer, 50));
+            log.trace("To " + channel.getRemoteAddress() + "\n" + HexUtil.dump(datagram, 50));
         }
         return cnt;
     }
 
-    @Override
-    public synchronized void write(SelectionKey sk) throws IOException {
-        @SuppressWarnings("unused")
-        DatagramChannel channel = (DatagramChannel) sk.channel();
+    private volatile CaptureWriter capture;
 
-        Message message = null;
+    /**
+     * Records every datagram read or written from now on, or stops recording
+     * when capture is null. The caller remains responsible for closing it.
+     */
+    public void setCapture(CaptureWriter capture) {
+        this.capture = capture;
+    }
 
-        message = messageQueue.isEmpty() ? null : messageQueue.remove(0);
+    public CaptureWriter getCapture() {
+        return capture;
+    }
 
-        if (write((DatagramChannel) sk.channel(), message) == 0) {
-            messageQueue.add(0, message);
+    private void capture(byte direction, ByteBuffer datagram) {
+        CaptureWriter capture = this.capture;
+        if (null != capture) {
+            try {
+                capture.record(direction, datagram);
+            } catch (IOException e) {
+                // losing the capture should not cost the connection
+                log.error("Stopping capture", e);
+                this.capture = null;
+            }
         }
+    }
 
-        if (messageQueue.isEmpty()) {
-            sk.interestOps(sk.interestOps() & ~SelectionKey.OP_WRITE);
-        } else {
-            sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
+    @Override
+    public void write(SelectionKey sk) throws IOException {
+        synchronized (sendLock) {
+            DatagramChannel channel = (DatagramChannel) sk.channel();
+
+            ByteBuffer datagram;
+            while (null != (datagram = sendQueue.peek()) && write(channel, datagram) > 0) {
+                sendQueue.poll();
+                if (freeBuffers.size() < MAX_FREE_BUFFERS) {
+                    freeBuffers.add(datagram);
+                }
+            }
+
+            if (sendQueue.isEmpty()) {
+                sk.interestOps(sk.interestOps() & ~SelectionKey.OP_WRITE);
+            } else {
+                sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
+            }
         }
     }
 
@@ -590,27 +610,52 @@ public class Intellivue implements NetworkConnection {
      * @return
      * @throws IOException
      */
-    public synchronized boolean send(Message message) throws IOException {
+    public boolean send(Message message) throws IOException {
         if (null == message) {
             return false;
         }
 
-        if (log.isTraceEnabled()) {
-            time.setTime(System.currentTimeMillis());
-            log.trace("Out Message(" + simpleDateformat.format(time) + "):\n" + lineWrap(message.toString()));
+        synchronized (sendLock) {
+            if (log.isTraceEnabled()) {
+                time.setTime(System.currentTimeMillis());
+                log.trace("Out Message(" + simpleDateformat.format(time) + "):\n" + lineWrap(message.toString()));
+            }
+
+            outBuffer.clear();
+            protocol.format(message, outBuffer);
+            outBuffer.flip();
+            return send(outBuffer);
         }
+    }
 
-        // Try to write the datagram, if unavailable then set interestOps
+    /**
+     * Called before every outgoing datagram is written or queued
+     */
+    protected void sending() {
+    }
 
-        int cnt = write(registeredChannel, message);
-        if (cnt == 0) {
-            registeredKey.interestOps(registeredKey.interestOps() | SelectionKey.OP_WRITE);
-            messageQueue.add(message);
-            registeredNetworkLoop.wakeup();
-            return false;
-        } else {
+    // with sendLock held
+    private boolean send(ByteBuffer datagram) throws IOException {
+        sending();
+
+        // Try to write the datagram unless others are waiting, if unavailable
+        // then copy it into the queue and set interestOps
+        if (sendQueue.isEmpty() && write(registeredChannel, datagram) > 0) {
             return true;
         }
+        ByteBuffer pending = freeBuffers.poll();
+        if (null == pending) {
+            pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        pending.clear();
+        datagram.rewind();
+        pending.put(datagram);
+        pending.flip();
+        sendQueue.add(pending);
+
+        registeredKey.interestOps(registeredKey.interestOps() | SelectionKey.OP_WRITE);
+        registeredNetworkLoop.wakeup();
+        return false;
     }
 
     private final Date time = new Date();
@@ -644,6 +689,34 @@ public class Intellivue implements NetworkConnection {
         this.registeredNetworkLoop = null;
     }
 
+    private final ExtendedPollDataDecoder pollDataDecoder = new ExtendedPollDataDecoder();
+
+    /**
+     * Linked results still being received, with counters of those that never
+     * completed
+     */
+    public LinkedResultTable getLinkedResults() {
+        return protocol.getDataExportProtocol().getLinkedResults();
+    }
+
+    /**
+     * Discards linked results whose remaining segments did not arrive in time.
+     * Call periodically from the thread that reads (the NetworkLoop).
+     */
+    public void expireLinkedResults() {
+        protocol.getDataExportProtocol().getLinkedResults().expire(System.nanoTime());
+    }
+
+    /**
+     * Override to receive extended poll results as they are decoded from the datagram
+     * rather than as ExtendedPollDataResult messages.
+     *
+     * @return null to parse every datagram into a message
+     */
+    protected ExtendedPollDataHandler getExtendedPollDataHandler() {
+        return null;
+    }
+
     @Override
     public void read(SelectionKey sk) throws IOException {
         if (sk.channel() instanceof DatagramChannel) {
@@ -653,11 +726,16 @@ public class Intellivue implements NetworkConnection {
             SocketAddress sockaddr = channel.receive(inBuffer);
             inBuffer.flip();
             if (inBuffer.hasRemaining()) {
+                capture(CaptureWriter.RECEIVED, inBuffer);
                 if (log.isTraceEnabled()) {
                     time.setTime(System.currentTimeMillis());
                     log.trace("From " + channel.getRemoteAddress() + " on " + channel.socket().getLocalAddress() + "\n" + HexUtil.dump(inBuffer, 50));
                 }
-                handle(sockaddr, protocol.parse(inBuffer), sk);
+                ExtendedPollDataHandler handler = getExtendedPollDataHandler();
+                // with trace logging on every message is parsed so that it can be logged
+                if (null == handler || log.isTraceEnabled() || !pollDataDecoder.decode(inBuffer, handler)) {
+                    handle(sockaddr, protocol.parse(inBuffer), sk);
+                }
             }
         }
     }
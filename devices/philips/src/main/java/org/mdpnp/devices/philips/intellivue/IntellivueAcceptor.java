@@ -21,6 +21,7 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
 import java.util.List;
 
 import org.mdpnp.devices.net.NetworkLoop;
@@ -119,13 +120,22 @@ public class IntellivueAcceptor extends Intellivue {
         AssociationAccept acc = new AssociationAcceptImpl();
         log.debug("Sending accept:" + acc);
         try {
-            final DatagramChannel channel = DatagramChannel.open();
-            channel.configureBlocking(false);
-            channel.socket().setReuseAddress(true);
+            if (null != address) {
+                // answer from the bound socket so that the client's connected channel hears it
+                if (registeredChannel.isConnected()) {
+                    registeredChannel.disconnect();
+                }
+                registeredChannel.connect(sockaddr);
+            } else {
+                final DatagramChannel channel = DatagramChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setReuseAddress(true);
 
-            channel.connect(new InetSocketAddress(((InetSocketAddress) sockaddr).getAddress(), port));
+                channel.connect(new InetSocketAddress(((InetSocketAddress) sockaddr).getAddress(), port));
 
-            networkLoop.register(this, channel);
+                networkLoop.register(this, channel);
+            }
+            associations++;
             send(acc);
         } catch (IOException e1) {
             throw new RuntimeException(e1);
@@ -170,13 +180,34 @@ public class IntellivueAcceptor extends Intellivue {
         super();
         beacon.setInterval(10000L);
         this.port = port;
+        this.address = null;
+    }
 
+    /**
+     * Accepts associations only at the given address, without a beacon, and
+     * answers each client from that same socket; several may then run side by
+     * side on the loopback interface.
+     */
+    public IntellivueAcceptor(InetSocketAddress address) throws IOException {
+        super();
+        this.port = address.getPort();
+        this.address = address;
     }
 
     private NetworkLoop networkLoop;
 
     public void accept(final NetworkLoop networkLoop) throws IOException {
         this.networkLoop = networkLoop;
+        if (null != address) {
+            // the caller learns of a failure to bind
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setReuseAddress(true);
+            channel.bind(address);
+            boundChannel = channel;
+            boundKey = networkLoop.register(this, channel);
+            return;
+        }
         networkLoop.add(new TaskQueue.TaskImpl<Void>() {
             @Override
             public Void doExecute(TaskQueue queue) {
@@ -214,6 +245,36 @@ public class IntellivueAcceptor extends Intellivue {
     }
 
     protected final int port;
+    private final InetSocketAddress address;
+    private volatile int associations;
+    private DatagramChannel boundChannel;
+    private SelectionKey boundKey;
+
+    /**
+     * @return where associations are accepted once accept has been called on an
+     *         acceptor constructed with an address
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) boundChannel.getLocalAddress();
+    }
+
+    /**
+     * Stops accepting at the address given to the constructor
+     */
+    public void close() throws IOException {
+        if (null != boundKey) {
+            networkLoop.unregister(boundKey, this);
+            boundChannel.close();
+            boundKey = null;
+        }
+    }
+
+    /**
+     * @return associations accepted so far
+     */
+    public int getAssociations() {
+        return associations;
+    }
 
     public static void main(String[] args) throws IOException {
         final int port = args.length > 0 ? Integer.parseInt(args[0]) : Intellivue.DEFAULT_UNICAST_PORT;
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.net.NetworkLoopGroup;
+import org.mdpnp.devices.net.TaskQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Many simulated monitors, each a SimulatedPulseOximeterImpl with its own
+ * loopback port, spread over a few NetworkLoops. Pair them with as many
+ * Intellivue adapters to find how many monitors an adapter host can keep up
+ * with.
+ * 
+ * Run from the command line it prints a JSON object of the totals every
+ * reporting interval.
+ */
+public class IntellivueLoadGenerator {
+    public static final String THREAD_NAME = "Intellivue Load Generator";
+
+    private final NetworkLoopGroup loops;
+    private final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+    private final List<SimulatedPulseOximeterImpl> monitors = new CopyOnWriteArrayList<SimulatedPulseOximeterImpl>();
+    private final List<InetSocketAddress> addresses = new CopyOnWriteArrayList<InetSocketAddress>();
+
+    private static final Logger log = LoggerFactory.getLogger(IntellivueLoadGenerator.class);
+
+    /**
+     * @param threads
+     *            NetworkLoops to serve the monitors; zero or less for one per
+     *            available processor
+     */
+    public IntellivueLoadGenerator(int threads) throws IOException {
+        loops = new NetworkLoopGroup(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, THREAD_NAME + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                IntellivueLoadGenerator.this.threads.add(t);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Starts a monitor
+     * 
+     * @param address
+     *            where the monitor accepts associations; port zero for any
+     * @return where the monitor accepts associations
+     */
+    public InetSocketAddress start(InetSocketAddress address, int numerics, int waves) throws IOException {
+        SimulatedPulseOximeterImpl monitor = new SimulatedPulseOximeterImpl(address, numerics, waves);
+        NetworkLoop loop = loops.next();
+        monitor.accept(loop);
+        TaskQueue.Task<Void> task = monitor.createMyTask();
+        task.setInterval(SimulatedPulseOximeterImpl.UPDATE_PERIOD);
+        loop.add(task);
+        monitors.add(monitor);
+        InetSocketAddress local = monitor.getLocalAddress();
+        addresses.add(local);
+        return local;
+    }
+
+    /**
+     * Starts monitors on the loopback interface at consecutive ports
+     * 
+     * @param basePort
+     *            port of the first monitor; zero for any free ports
+     */
+    public void start(int count, int basePort, int numerics, int waves) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < count; i++) {
+            start(new InetSocketAddress(loopback, 0 == basePort ? 0 : basePort + i), numerics, waves);
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        return addresses;
+    }
+
+    public int getMonitors() {
+        return monitors.size();
+    }
+
+    public int getAssociations() {
+        int n = 0;
+        for (SimulatedPulseOximeterImpl monitor : monitors) {
+            n += monitor.getAssociations();
+        }
+        return n;
+    }
+
+    public long getResultsSent() {
+        long n = 0L;
+        for (SimulatedPulseOximeterImpl monitor : monitors) {
+            n += monitor.getResultsSent();
+        }
+        return n;
+    }
+
+    public long getSamplesSent() {
+        long n = 0L;
+        for (SimulatedPulseOximeterImpl monitor : monitors) {
+            n += monitor.getSamplesSent();
+        }
+        return n;
+    }
+
+    /**
+     * @return nanoseconds of CPU used by the generator's threads, or -1 if the
+     *         JVM does not measure it
+     */
+    public long getCpuTime() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadCpuTimeSupported()) {
+            return -1L;
+        }
+        long n = 0L;
+        for (Thread t : threads) {
+            long cpu = bean.getThreadCpuTime(t.getId());
+            if (cpu > 0L) {
+                n += cpu;
+            }
+        }
+        return n;
+    }
+
+    public void shutdown() {
+        for (SimulatedPulseOximeterImpl monitor : monitors) {
+            try {
+                monitor.close();
+            } catch (IOException e) {
+                log.error("closing a simulated monitor", e);
+            }
+        }
+        loops.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: IntellivueLoadGenerator monitors [numerics [waves [basePort [threads [reportSeconds]]]]]");
+            System.exit(1);
+        }
+        int count = Integer.parseInt(args[0]);
+        int numerics = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int waves = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int basePort = args.length > 3 ? Integer.parseInt(args[3]) : Intellivue.DEFAULT_UNICAST_PORT;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        long report = TimeUnit.SECONDS.toNanos(args.length > 5 ? Long.parseLong(args[5]) : 10L);
+
+        final IntellivueLoadGenerator generator = new IntellivueLoadGenerator(threads);
+        generator.start(count, basePort, numerics, waves);
+        List<String> hosts = new ArrayList<String>();
+        for (InetSocketAddress a : generator.getAddresses()) {
+            hosts.add(a.getAddress().getHostAddress() + ":" + a.getPort());
+        }
+        log.info(count + " monitors with " + numerics + " numerics and " + waves + " waves at " + hosts);
+
+        long start = System.nanoTime(), last = start, lastResults = 0L, lastSamples = 0L, lastCpu = 0L;
+        while (true) {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(report));
+            long now = System.nanoTime(), results = generator.getResultsSent(), samples = generator.getSamplesSent(), cpu = generator.getCpuTime();
+            double seconds = (now - last) / 1e9;
+            System.out.println("{\"elapsed\":" + Math.round((now - start) / 1e6) + ",\"monitors\":" + count + ",\"numerics\":" + numerics
+                    + ",\"waves\":" + waves + ",\"associations\":" + generator.getAssociations() + ",\"resultsPerSecond\":"
+                    + Math.round((results - lastResults) / seconds) + ",\"samplesPerSecond\":" + Math.round((samples - lastSamples) / seconds)
+                    + ",\"cpuCores\":" + (cpu < 0L ? -1.0 : Math.round((cpu - lastCpu) / 1e7 / seconds) / 100.0) + "}");
+            last = now;
+            lastResults = results;
+            lastSamples = samples;
+            lastCpu = cpu;
+        }
+    }
+}
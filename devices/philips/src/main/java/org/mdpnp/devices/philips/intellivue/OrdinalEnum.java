@@ -12,6 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue;
 
+import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -50,6 +51,43 @@ public class OrdinalEnum {
         return map;
     }
 
+    /**
+     * Immutable lookup of the constants of an IntType by ordinal without
+     * boxing. Ordinals are mostly unsigned 16 bit OIDs so those index an
+     * array; any others are kept in a map.
+     */
+    public static final class IntTable<T extends IntType> {
+        private static final int SIZE = 0x10000;
+
+        private final T[] dense;
+        private final Map<Integer, T> sparse = new HashMap<Integer, T>();
+
+        @SuppressWarnings("unchecked")
+        private IntTable(Class<T> cls, Map<Integer, T> map) {
+            dense = (T[]) Array.newInstance(cls, SIZE);
+            for (T t : map.values()) {
+                int x = t.asInt();
+                if (x >= 0 && x < SIZE) {
+                    dense[x] = t;
+                } else {
+                    sparse.put(x, t);
+                }
+            }
+        }
+
+        public T get(int x) {
+            if (x >= 0 && x < SIZE) {
+                return dense[x];
+            } else {
+                return sparse.isEmpty() ? null : sparse.get(x);
+            }
+        }
+    }
+
+    public static final <T extends IntType> IntTable<T> buildIntTable(Class<T> cls) {
+        return new IntTable<T>(cls, buildInt(cls));
+    }
+
     public interface LongType {
         long asLong();
     }
@@ -64,4 +102,49 @@ public class OrdinalEnum {
         }
         return map;
     }
+
+    /**
+     * Immutable open addressing lookup of the constants of a LongType by
+     * ordinal without boxing; at most half full so probes stay short.
+     */
+    public static final class LongTable<T extends LongType> {
+        private final long[] keys;
+        private final T[] values;
+        private final int shift;
+
+        @SuppressWarnings("unchecked")
+        private LongTable(Class<T> cls, Map<Long, T> map) {
+            int capacity = Integer.highestOneBit(Math.max(1, map.size()) * 2 - 1) << 1;
+            keys = new long[capacity];
+            values = (T[]) Array.newInstance(cls, capacity);
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            for (T t : map.values()) {
+                int i = index(t.asLong());
+                while (null != values[i]) {
+                    i = (i + 1) & (capacity - 1);
+                }
+                keys[i] = t.asLong();
+                values[i] = t;
+            }
+        }
+
+        private int index(long x) {
+            // fibonacci hashing spreads the clustered label codes
+            return (int) ((x * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        public T get(long x) {
+            int mask = values.length - 1;
+            for (int i = index(x);; i = (i + 1) & mask) {
+                T t = values[i];
+                if (null == t || keys[i] == x) {
+                    return t;
+                }
+            }
+        }
+    }
+
+    public static final <T extends LongType> LongTable<T> buildLongTable(Class<T> cls) {
+        return new LongTable<T>(cls, buildLong(cls));
+    }
 }
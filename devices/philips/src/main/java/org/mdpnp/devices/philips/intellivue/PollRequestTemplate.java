@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import java.nio.ByteBuffer;
+
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataRequest;
+import org.mdpnp.devices.philips.intellivue.action.SinglePollDataRequest;
+import org.mdpnp.devices.philips.intellivue.action.impl.ExtendedPollDataRequestImpl;
+import org.mdpnp.devices.philips.intellivue.action.impl.SinglePollDataRequestImpl;
+import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
+import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.NomPartition;
+import org.mdpnp.devices.philips.intellivue.data.OIDType;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.data.RelativeTime;
+import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportInvoke;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.Action;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.CommandFactory;
+import org.mdpnp.devices.philips.intellivue.dataexport.impl.DataExportInvokeImpl;
+
+/**
+ * A single or extended poll request encoded once. Polls for the same object
+ * type and attribute group differ only in their invoke id and poll number, so
+ * each request copies the encoded bytes and patches those two fields.
+ */
+public class PollRequestTemplate {
+    // SPpdu(4) ROapdus(4) then the invoke id opens the ROIVapdu
+    static final int INVOKE_OFFSET = 8;
+    // ROIVapdu(6) ActionArgument(14) then the poll number opens the request
+    static final int POLL_NUMBER_OFFSET = INVOKE_OFFSET + 6 + 14;
+
+    private final boolean extended;
+    private final int objectType;
+    private final long time;
+    private final int attrGroup;
+    private final byte[] encoded;
+
+    /**
+     * @param time
+     *            the extended poll period in milliseconds, null for none
+     * @param attrGroup
+     *            null to poll every attribute group
+     */
+    public PollRequestTemplate(Protocol protocol, boolean extended, ObjectClass objectType, Long time, AttributeId attrGroup) {
+        this.extended = extended;
+        this.objectType = objectType.asInt();
+        this.time = toKey(time);
+        this.attrGroup = toKey(attrGroup);
+
+        ByteBuffer bb = ByteBuffer.allocate(Intellivue.BUFFER_SIZE);
+        protocol.format(build(extended, objectType, time, attrGroup, 0, 0), bb);
+        bb.flip();
+        encoded = new byte[bb.remaining()];
+        bb.get(encoded);
+    }
+
+    private static long toKey(Long time) {
+        return null == time ? -1L : time;
+    }
+
+    private static int toKey(AttributeId attrGroup) {
+        return null == attrGroup ? 0 : attrGroup.asInt();
+    }
+
+    public boolean matches(boolean extended, ObjectClass objectType, Long time, AttributeId attrGroup) {
+        return this.extended == extended && this.objectType == objectType.asInt() && this.time == toKey(time) && this.attrGroup == toKey(attrGroup);
+    }
+
+    /**
+     * Puts the request with this invoke id and poll number at the position of
+     * bb
+     */
+    public void encode(ByteBuffer bb, int invoke, int pollNumber) {
+        int start = bb.position();
+        bb.put(encoded);
+        bb.putShort(start + INVOKE_OFFSET, (short) invoke);
+        bb.putShort(start + POLL_NUMBER_OFFSET, (short) pollNumber);
+    }
+
+    public int size() {
+        return encoded.length;
+    }
+
+    /**
+     * The request as a message; what the template encodes
+     */
+    public static DataExportInvoke build(boolean extended, ObjectClass objectType, Long time, AttributeId attrGroup, int invoke, int pollNumber) {
+        DataExportInvoke message = new DataExportInvokeImpl();
+        message.setCommandType(CommandType.ConfirmedAction);
+        message.setInvoke(invoke);
+
+        Action action = (Action) CommandFactory.buildCommand(CommandType.ConfirmedAction, false);
+        action.getManagedObject().setOidType(OIDType.lookup(ObjectClass.NOM_MOC_VMS_MDS.asInt()));
+        action.getManagedObject().getGlobalHandle().setMdsContext(0);
+        action.getManagedObject().getGlobalHandle().setHandle(0);
+        action.setScope(0);
+        message.setCommand(action);
+
+        if (extended) {
+            action.setActionType(OIDType.lookup(ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asInt()));
+
+            ExtendedPollDataRequest req = new ExtendedPollDataRequestImpl();
+            req.setPollNumber(pollNumber);
+            req.setPolledAttributeGroup(null == attrGroup ? OIDType.lookup(0) : attrGroup.asOid());
+            req.getPolledObjectType().setNomPartition(NomPartition.Object);
+            req.getPolledObjectType().setOidType(OIDType.lookup(objectType.asInt()));
+
+            if (null != time) {
+                Attribute<RelativeTime> timePeriod = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_POLL, RelativeTime.class);
+                timePeriod.getValue().fromMilliseconds(time);
+                req.getPollExtra().add(timePeriod);
+            }
+            action.setAction(req);
+        } else {
+            action.setActionType(OIDType.lookup(ObjectClass.NOM_ACT_POLL_MDIB_DATA.asInt()));
+
+            SinglePollDataRequest req = new SinglePollDataRequestImpl();
+            req.setPollNumber(pollNumber);
+            req.setPolledAttributeGroup(null == attrGroup ? OIDType.lookup(0) : attrGroup.asOid());
+            req.getPolledObjectType().setNomPartition(NomPartition.Object);
+            req.getPolledObjectType().setOidType(OIDType.lookup(objectType.asInt()));
+            action.setAction(req);
+        }
+        return message;
+    }
+}
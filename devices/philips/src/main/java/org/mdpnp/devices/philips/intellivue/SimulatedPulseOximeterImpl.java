@@ -13,9 +13,14 @@
 package org.mdpnp.devices.philips.intellivue;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ScheduledFuture;
 
@@ -34,6 +39,7 @@ import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
 import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
 import org.mdpnp.devices.philips.intellivue.data.AttributeId;
 import org.mdpnp.devices.philips.intellivue.data.CompoundNumericObservedValue;
+import org.mdpnp.devices.philips.intellivue.data.EnumValue;
 import org.mdpnp.devices.philips.intellivue.data.NumericObservedValue;
 import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
 import org.mdpnp.devices.philips.intellivue.data.ObservedValue;
@@ -41,6 +47,7 @@ import org.mdpnp.devices.philips.intellivue.data.RelativeTime;
 import org.mdpnp.devices.philips.intellivue.data.SampleArrayCompoundObservedValue;
 import org.mdpnp.devices.philips.intellivue.data.SampleArrayObservedValue;
 import org.mdpnp.devices.philips.intellivue.data.SampleArraySpecification;
+import org.mdpnp.devices.philips.intellivue.data.ScaleAndRangeSpecification;
 import org.mdpnp.devices.philips.intellivue.data.UnitCode;
 import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportResult;
@@ -104,8 +111,50 @@ public class SimulatedPulseOximeterImpl extends IntellivueAcceptor {
     protected void handle(ExtendedPollDataRequest action) {
         super.handle(action);
         invoke = action.getAction().getMessage().getInvoke();
+        pollNumber = action.getPollNumber();
 
         log.debug("extended poll invoke=" + invoke);
+
+        if (!loadNumerics.isEmpty() || !loadWaves.isEmpty()) {
+            // like a monitor, answer the poll at once rather than at the next update
+            try {
+                sendResults();
+            } catch (IOException e) {
+                log.error("error answering poll", e);
+            }
+        }
+    }
+
+    private int pollNumber;
+    private volatile long resultsSent, samplesSent;
+
+    /**
+     * @return datagrams of poll results sent
+     */
+    public long getResultsSent() {
+        return resultsSent;
+    }
+
+    /**
+     * @return wave samples sent
+     */
+    public long getSamplesSent() {
+        return samplesSent;
+    }
+
+    private void sendResults() throws IOException {
+        int samples = plethSpec.getValue().getArraySize();
+        for (int i = 0; i < loadWaves.size(); i++) {
+            samples += loadWaveSamples[i];
+        }
+        for (int i = 0; i < results.size(); i++) {
+            DataExportResult result = results.get(i);
+            result.setInvoke(invoke);
+            pollResults.get(i).setPollNumber(pollNumber);
+            send(result);
+            resultsSent++;
+        }
+        samplesSent += samples;
     }
 
     private final class MyTask extends TaskQueue.TaskImpl<Void> {
@@ -134,11 +183,10 @@ public class SimulatedPulseOximeterImpl extends IntellivueAcceptor {
                 ePollResult.getAbsoluteTime().setNow();
                 pulse.getValue().setFloat(currentDraw.getHeartRate());
                 spo2.getValue().setFloat(currentDraw.getSpO2());
+                nextLoad();
 
                 if (null != invoke) {
-                    der.setInvoke(invoke);
-
-                    send(der);
+                    sendResults();
                 } else {
                     // log.debug("NOT SENDING DATA");
                 }
@@ -210,7 +258,42 @@ public class SimulatedPulseOximeterImpl extends IntellivueAcceptor {
 
     public SimulatedPulseOximeterImpl(int port) throws IOException {
         super(port);
+        init();
+    }
+
+    /**
+     * A monitor for load generation that, alongside the pulse oximeter,
+     * reports additional numerics and waves at their usual sample rates. Waves
+     * are sent UPDATE_PERIOD at a time; run createMyTask() at that interval.
+     * Results that outgrow a datagram are split across several, as a monitor
+     * does.
+     * 
+     * @param address
+     *            where to accept associations, see
+     *            IntellivueAcceptor(InetSocketAddress)
+     */
+    public SimulatedPulseOximeterImpl(InetSocketAddress address, int numerics, int waves) throws IOException {
+        super(address);
+        init();
+        for (int i = 0; i < numerics; i++) {
+            addNumeric(i);
+        }
+        for (int i = 0; i < waves; i++) {
+            addWave(i);
+        }
+        loadWaveSamples = new int[waves];
+        loadWavePhase = new int[waves];
+        loadWaveStep = new int[waves];
+        for (int i = 0; i < waves; i++) {
+            long period = LOAD_WAVE_PERIODS[i % LOAD_WAVE_PERIODS.length];
+            loadWaveSamples[i] = (int) (UPDATE_PERIOD * 1000L / period);
+            // about 72 cycles per minute whatever the sample rate
+            loadWaveStep[i] = (int) (WAVE_TABLE.length * 65536L * 12L * period / 10000000L);
+        }
+        nextLoad();
+    }
 
+    private void init() {
         cnov.getValue().getList().add(pulse);
         cnov.getValue().getList().add(spo2);
 
@@ -244,6 +327,157 @@ public class SimulatedPulseOximeterImpl extends IntellivueAcceptor {
             task = null;
         }
 
+        results.add(der);
+        pollResults.add(ePollResult);
+        contexts.add(scp);
+    }
+
+    /**
+     * Milliseconds of waveform in each result of a load generating monitor;
+     * that of the monitor's real time sample arrays
+     */
+    public static final long UPDATE_PERIOD = 256L;
+
+    private static final ObservedValue[] LOAD_NUMERICS = new ObservedValue[] { ObservedValue.NOM_ECG_CARD_BEAT_RATE, ObservedValue.NOM_RESP_RATE,
+            ObservedValue.NOM_AWAY_CO2_ET, ObservedValue.NOM_PRESS_BLD_NONINV_SYS, ObservedValue.NOM_PRESS_BLD_NONINV_DIA,
+            ObservedValue.NOM_PRESS_BLD_NONINV_MEAN, ObservedValue.NOM_PRESS_BLD_NONINV_PULS_RATE, ObservedValue.NOM_VENT_RESP_RATE };
+    private static final UnitCode[] LOAD_NUMERIC_UNITS = new UnitCode[] { UnitCode.NOM_DIM_BEAT_PER_MIN, UnitCode.NOM_DIM_RESP_PER_MIN,
+            UnitCode.NOM_DIM_MMHG, UnitCode.NOM_DIM_MMHG, UnitCode.NOM_DIM_MMHG, UnitCode.NOM_DIM_MMHG, UnitCode.NOM_DIM_BEAT_PER_MIN,
+            UnitCode.NOM_DIM_RESP_PER_MIN };
+    private static final double[] LOAD_NUMERIC_MEANS = new double[] { 72, 14, 38, 120, 80, 93, 72, 12 };
+
+    private static final ObservedValue[] LOAD_WAVES = new ObservedValue[] { ObservedValue.NOM_ECG_ELEC_POTL_II, ObservedValue.NOM_PRESS_BLD_ART_ABP,
+            ObservedValue.NOM_RESP, ObservedValue.NOM_AWAY_CO2, ObservedValue.NOM_ECG_ELEC_POTL_I, ObservedValue.NOM_ECG_ELEC_POTL_III };
+    private static final UnitCode[] LOAD_WAVE_UNITS = new UnitCode[] { UnitCode.NOM_DIM_MILLI_VOLT, UnitCode.NOM_DIM_MMHG, UnitCode.NOM_DIM_DIMLESS,
+            UnitCode.NOM_DIM_MMHG, UnitCode.NOM_DIM_MILLI_VOLT, UnitCode.NOM_DIM_MILLI_VOLT };
+    // microseconds per sample; ECG at 500Hz, pressure at 125Hz, respiration and CO2 at 62.5Hz
+    private static final long[] LOAD_WAVE_PERIODS = new long[] { 2000L, 8000L, 16000L, 16000L, 2000L, 2000L };
+    private static final double[][] LOAD_WAVE_RANGES = new double[][] { { -2, 2 }, { 0, 200 }, { -1, 1 }, { 0, 60 }, { -2, 2 }, { -2, 2 } };
+
+    private static final int WAVE_BITS = 12;
+    private static final short[] WAVE_TABLE = new short[1024];
+
+    static {
+        int max = (1 << WAVE_BITS) - 1;
+        for (int i = 0; i < WAVE_TABLE.length; i++) {
+            double x = 2.0 * Math.PI * i / WAVE_TABLE.length;
+            // a fundamental with a sharper second harmonic is close enough to a pulse
+            WAVE_TABLE[i] = (short) Math.round(max / 2.0 + max / 3.0 * Math.sin(x) + max / 8.0 * Math.sin(2.0 * x));
+        }
+    }
+
+    private final List<DataExportResult> results = new ArrayList<DataExportResult>();
+    private final List<ExtendedPollDataResult> pollResults = new ArrayList<ExtendedPollDataResult>();
+    private final List<SingleContextPoll> contexts = new ArrayList<SingleContextPoll>();
+
+    private final List<NumericObservedValue> loadNumerics = new ArrayList<NumericObservedValue>();
+    private final List<SampleArrayObservedValue> loadWaves = new ArrayList<SampleArrayObservedValue>();
+    private int[] loadWaveSamples, loadWavePhase, loadWaveStep;
+    private final Random loadRandom = new Random();
+
+    private final CompoundProtocol protocol = new CompoundProtocol();
+    private final ByteBuffer scratch = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private void addNumeric(int i) {
+        ObservationPoll op = new ObservationPollImpl();
+        op.getHandle().setHandle(0x100 + i);
+        Attribute<NumericObservedValue> numeric = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_NU_VAL_OBS, NumericObservedValue.class);
+        numeric.getValue().setPhysioId(LOAD_NUMERICS[i % LOAD_NUMERICS.length].asOID());
+        numeric.getValue().setUnitCode(LOAD_NUMERIC_UNITS[i % LOAD_NUMERICS.length].asOID());
+        op.getAttributes().add(numeric);
+        loadNumerics.add(numeric.getValue());
+        place(op);
+    }
+
+    private void addWave(int i) {
+        int w = i % LOAD_WAVES.length;
+        int samples = (int) (UPDATE_PERIOD * 1000L / LOAD_WAVE_PERIODS[w]);
+        ObservationPoll op = new ObservationPollImpl();
+        op.getHandle().setHandle(0x200 + i);
+
+        Attribute<SampleArraySpecification> spec = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_SPECN, SampleArraySpecification.class);
+        spec.getValue().setArraySize(samples);
+        spec.getValue().setSampleSize((short) Short.SIZE);
+        spec.getValue().setSignificantBits((short) WAVE_BITS);
+        op.getAttributes().add(spec);
+
+        Attribute<RelativeTime> period = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_SAMP, RelativeTime.class);
+        period.getValue().fromMicroseconds(LOAD_WAVE_PERIODS[w]);
+        op.getAttributes().add(period);
+
+        Attribute<ScaleAndRangeSpecification> sar = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SCALE_SPECN_I16, ScaleAndRangeSpecification.class);
+        sar.getValue().getLowerAbsoluteValue().setFloat(LOAD_WAVE_RANGES[w][0]);
+        sar.getValue().getUpperAbsoluteValue().setFloat(LOAD_WAVE_RANGES[w][1]);
+        sar.getValue().setLowerScaledValue(0);
+        sar.getValue().setUpperScaledValue((1 << WAVE_BITS) - 1);
+        op.getAttributes().add(sar);
+
+        Attribute<EnumValue<UnitCode>> unit = AttributeFactory.getEnumAttribute(AttributeId.NOM_ATTR_UNIT_CODE.asOid(), UnitCode.class);
+        unit.getValue().setEnum(LOAD_WAVE_UNITS[w]);
+        op.getAttributes().add(unit);
+
+        Attribute<SampleArrayObservedValue> wave = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS, SampleArrayObservedValue.class);
+        int byteLength = samples * Short.SIZE / Byte.SIZE;
+        wave.getValue().setPhysioId(LOAD_WAVES[w].asOID());
+        wave.getValue().setValue(new short[byteLength]);
+        wave.getValue().setLength(byteLength);
+        op.getAttributes().add(wave);
+        loadWaves.add(wave.getValue());
+        place(op);
+    }
+
+    // adds the observation to the last result, or to a new one if it would not fit in a datagram
+    private void place(ObservationPoll op) {
+        contexts.get(contexts.size() - 1).getPollInfo().add(op);
+        if (!fits(results.get(results.size() - 1))) {
+            contexts.get(contexts.size() - 1).getPollInfo().remove(op);
+
+            DataExportResult result = new DataExportResultImpl();
+            ActionResult action = new ActionResultImpl();
+            ExtendedPollDataResult pollResult = new ExtendedPollDataResultImpl();
+            SingleContextPoll context = new SingleContextPollImpl();
+            result.setCommandType(CommandType.ConfirmedAction);
+            result.setCommand(action);
+            action.setActionType(ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asOID());
+            action.setAction(pollResult);
+            pollResult.setPolledAttributeGroup(AttributeId.NOM_ATTR_GRP_METRIC_VAL_OBS.asOid());
+            pollResult.getPollInfoList().add(context);
+            context.getPollInfo().add(op);
+            if (!fits(result)) {
+                throw new IllegalArgumentException("observation does not fit in a datagram " + op);
+            }
+            results.add(result);
+            pollResults.add(pollResult);
+            contexts.add(context);
+        }
+    }
+
+    private boolean fits(DataExportResult result) {
+        scratch.clear();
+        try {
+            protocol.format(result, scratch);
+            return true;
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+    }
+
+    private void nextLoad() {
+        for (int i = 0; i < loadNumerics.size(); i++) {
+            double mean = LOAD_NUMERIC_MEANS[i % LOAD_NUMERIC_MEANS.length];
+            loadNumerics.get(i).getValue().setFloat(Math.round(mean + loadRandom.nextGaussian()));
+        }
+        for (int i = 0; i < loadWaves.size(); i++) {
+            short[] values = loadWaves.get(i).getValue();
+            int phase = loadWavePhase[i];
+            for (int j = 0; j < loadWaveSamples[i]; j++) {
+                int v = WAVE_TABLE[(phase >>> 16) & (WAVE_TABLE.length - 1)];
+                values[2 * j] = (short) (0xFF & (v >> Byte.SIZE));
+                values[2 * j + 1] = (short) (0xFF & v);
+                phase += loadWaveStep[i];
+            }
+            loadWavePhase[i] = phase;
+        }
     }
 
     private static class State {
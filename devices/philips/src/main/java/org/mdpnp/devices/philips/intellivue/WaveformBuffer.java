@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import java.util.Arrays;
+
+import org.mdpnp.devices.philips.intellivue.data.SampleArraySpecification;
+import org.mdpnp.devices.philips.intellivue.data.ScaleAndRangeSpecification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples of one wave (one handle) on their way from the thread receiving
+ * SampleArrayObservedValues to the task that publishes them at a fixed
+ * period. Received samples are decoded and scaled straight into a float ring;
+ * each emission takes up to the samples for one period from the ring into a
+ * window that still holds the previous emission, so a shortfall repeats the
+ * most recent old samples and, at startup, zeros.
+ *
+ * Exactly one thread may call {@link #add(short[], int)} and exactly one
+ * (possibly another) may call {@link #emit(int, String)}.
+ */
+public class WaveformBuffer {
+    private static final Logger log = LoggerFactory.getLogger(WaveformBuffer.class);
+
+    // four emissions of 500Hz at a two second period
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final float[] ring;
+    private final int mask;
+    // total samples ever written and read; the difference is what the ring holds
+    private volatile long written, read;
+
+    // producer state: the specifications last used and what was derived from them
+    private SampleArraySpecification sas;
+    private ScaleAndRangeSpecification sar;
+    private int bytesPerSample;
+    private int[] byteMask = new int[0];
+    private boolean scaled, degenerate;
+    private double scale, offset;
+    private long dropped;
+
+    // consumer state
+    private float[] window = new float[0];
+    private int history;
+
+    public WaveformBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public WaveformBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        ring = new float[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Samples added and not yet emitted
+     */
+    public int available() {
+        return (int) (written - read);
+    }
+
+    /**
+     * Samples that did not fit in the ring and were discarded
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Producer; derives the masks and the linear scaling once for each new
+     * pair of specifications.
+     */
+    public void setSpecification(SampleArraySpecification sas, ScaleAndRangeSpecification sar) {
+        if (sas == this.sas && sar == this.sar) {
+            return;
+        }
+        this.sas = sas;
+        this.sar = sar;
+
+        bytesPerSample = sas.getSampleSize() / Byte.SIZE;
+        if (byteMask.length < bytesPerSample) {
+            byteMask = new int[bytesPerSample];
+        }
+        // significant bits are counted from the least significant (last) byte
+        int significantBits = sas.getSignificantBits();
+        for (int i = bytesPerSample - 1; i >= 0; i--) {
+            byteMask[i] = significantBits >= Byte.SIZE ? 0xFF : significantBits <= 0 ? 0 : (1 << significantBits) - 1;
+            significantBits -= Byte.SIZE;
+        }
+
+        double lowerAbsoluteValue = sar.getLowerAbsoluteValue().doubleValue();
+        double upperAbsoluteValue = sar.getUpperAbsoluteValue().doubleValue();
+        int lowerScaledValue = sar.getLowerScaledValue();
+        int upperScaledValue = sar.getUpperScaledValue();
+        scaled = !Double.isNaN(lowerAbsoluteValue) && !Double.isNaN(upperAbsoluteValue);
+        degenerate = false;
+        if (scaled) {
+            if (upperScaledValue == lowerScaledValue || lowerAbsoluteValue == upperAbsoluteValue) {
+                log.error("Not scaling between scaled " + lowerScaledValue + " and " + upperScaledValue + " or between " + lowerAbsoluteValue
+                        + " and " + upperAbsoluteValue);
+                degenerate = true;
+            } else {
+                scale = (upperAbsoluteValue - lowerAbsoluteValue) / (upperScaledValue - lowerScaledValue);
+                offset = lowerAbsoluteValue - lowerScaledValue * scale;
+            }
+        }
+    }
+
+    /**
+     * Producer; decodes length bytes of samples as described by the last
+     * specifications.
+     *
+     * @return the number of samples added, or -1 if there were fewer than the
+     *         SampleArraySpecification calls for and nothing was added
+     */
+    public int add(short[] bytes, int length) {
+        if (null == sas) {
+            throw new IllegalStateException("No SampleArraySpecification");
+        }
+        int count = 0 == bytesPerSample ? 0 : length / bytesPerSample;
+        if (count < sas.getArraySize()) {
+            return -1;
+        }
+
+        long w = written;
+        int free = ring.length - (int) (w - read);
+        if (count > free) {
+            dropped += count - free;
+            log.warn("Dropping " + (count - free) + " samples that do not fit in " + ring.length);
+        }
+        int n = Math.min(count, free);
+        for (int s = 0, idx = 0; s < n; s++) {
+            int value = 0;
+            for (int i = 0; i < bytesPerSample; i++, idx++) {
+                value = (value << Byte.SIZE) | (byteMask[i] & bytes[idx]);
+            }
+            ring[(int) (w + s) & mask] = degenerate ? 0f : scaled ? (float) (offset + value * scale) : value;
+        }
+        // publishes the samples to the consumer
+        written = w + n;
+        return n;
+    }
+
+    /**
+     * Consumer; moves up to n new samples into the window of the last n
+     * samples.
+     *
+     * @param n samples per emission
+     * @param s describes the wave for logging
+     * @return the window, valid until the next call, or null if there were no
+     *         new samples
+     */
+    public float[] emit(int n, String s) {
+        long r = read;
+        int available = (int) (written - r);
+        if (0 == available) {
+            log.warn(s + " no new samples to emit");
+            return null;
+        }
+        if (available < n) {
+            log.warn(s + " will repeat " + (n - available) + " old samples to make up a shortfall");
+        }
+        if (window.length != n) {
+            // keep the newest samples right-aligned
+            float[] resized = new float[n];
+            int keep = Math.min(history, Math.min(n, window.length));
+            System.arraycopy(window, window.length - keep, resized, n - keep, keep);
+            window = resized;
+            history = keep;
+        }
+
+        int k = Math.min(n, available);
+        System.arraycopy(window, k, window, 0, n - k);
+        int from = (int) r & mask;
+        int first = Math.min(k, ring.length - from);
+        System.arraycopy(ring, from, window, n - k, first);
+        System.arraycopy(ring, 0, window, n - k + first, k - first);
+        // releases the slots to the producer
+        read = r + k;
+
+        history = Math.min(n, history + k);
+        if (history < n) {
+            log.warn(s + " filling in " + (n - history) + " zeros; this should not continue happening");
+            Arrays.fill(window, 0, n - history, 0f);
+        }
+        return window;
+    }
+}
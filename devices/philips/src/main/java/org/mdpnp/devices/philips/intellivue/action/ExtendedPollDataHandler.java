@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action;
+
+import java.nio.ByteBuffer;
+
+import org.mdpnp.devices.philips.intellivue.action.impl.ExtendedPollDataDecoder;
+
+/**
+ * Receives the contents of an extended poll result, or of one segment of a
+ * linked extended poll result, as it is read from the datagram by
+ * {@link ExtendedPollDataDecoder}; no ExtendedPollDataResult is built. Within
+ * each observation every other attribute is delivered before its numeric and
+ * sample array values, so specifications arrive before the samples they
+ * describe.
+ */
+public interface ExtendedPollDataHandler {
+    /**
+     * @param relativeTime in units of 125 microseconds, as {@link org.mdpnp.devices.philips.intellivue.data.RelativeTime}
+     * @return false to have the datagram parsed into messages instead
+     */
+    boolean beginPoll(int pollNumber, int sequenceNumber, long relativeTime, int objectPartition, int objectType, int attributeGroup);
+
+    /**
+     * A NumericObservedValue, alone or from a CompoundNumericObservedValue
+     *
+     * @param state MeasurementState bits
+     */
+    void numeric(int handle, int physioId, int state, int unitCode, double value);
+
+    /**
+     * A SampleArrayObservedValue, alone or from a SampleArrayCompoundObservedValue.
+     * The sample bytes are at the position of samples; the handler may move the position.
+     */
+    void sampleArray(int handle, int physioId, int state, ByteBuffer samples, int length);
+
+    /**
+     * Any other attribute. The value is at the position of value; the handler may move the position.
+     */
+    void attribute(int handle, int attributeId, ByteBuffer value, int length);
+
+    void endPoll();
+}
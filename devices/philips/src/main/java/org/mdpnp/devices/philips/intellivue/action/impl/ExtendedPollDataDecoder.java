@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action.impl;
+
+import java.nio.ByteBuffer;
+
+import org.mdpnp.devices.io.util.HexUtil;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataHandler;
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.Float;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
+import org.mdpnp.devices.philips.intellivue.dataexport.RemoteOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes extended poll results straight from a received datagram into an
+ * {@link ExtendedPollDataHandler}. Fields are read at absolute offsets so the
+ * buffer is only consumed when the datagram is accepted; nothing is allocated.
+ * Each segment of a linked result is decoded as it arrives.
+ */
+public class ExtendedPollDataDecoder {
+    private static final Logger log = LoggerFactory.getLogger(ExtendedPollDataDecoder.class);
+
+    private static final int SESSION_DATA_EXPORT = 0xE100;
+
+    private static final int NU_VAL_OBS = AttributeId.NOM_ATTR_NU_VAL_OBS.asInt();
+    private static final int NU_CMPD_VAL_OBS = AttributeId.NOM_ATTR_NU_CMPD_VAL_OBS.asInt();
+    private static final int SA_VAL_OBS = AttributeId.NOM_ATTR_SA_VAL_OBS.asInt();
+    private static final int SA_CMPD_VAL_OBS = AttributeId.NOM_ATTR_SA_CMPD_VAL_OBS.asInt();
+
+    // SPpdu, ROapdus and the RORSapdu or ROLRSapdu of a ConfirmedAction result
+    private static final int RESULT_HEADER = 4 + 4 + 6;
+    private static final int LINKED_RESULT_HEADER = RESULT_HEADER + 2;
+    // ActionResult then the PollMdibDataReplyExt up to its poll_info_list
+    private static final int POLL_HEADER = 6 + 2 + 2 + 2 + 2 + 4 + 8 + 4 + 2;
+
+    private static int u16(ByteBuffer bb, int pos) {
+        return 0xFFFF & bb.getShort(pos);
+    }
+
+    /**
+     * @param bb a datagram from its position to its limit
+     * @return true if bb held an extended poll result that was delivered to the handler,
+     *         or dropped because it was malformed; the position is then at the limit.
+     *         Otherwise the buffer is left unchanged for another parser.
+     */
+    public boolean decode(ByteBuffer bb, ExtendedPollDataHandler handler) {
+        final int start = bb.position();
+        final int limit = bb.limit();
+        if (limit - start < RESULT_HEADER + POLL_HEADER || u16(bb, start) != SESSION_DATA_EXPORT) {
+            return false;
+        }
+
+        int pos = start + 4;
+        int remoteOperation = u16(bb, pos);
+        pos += 4;
+        if (remoteOperation == RemoteOperation.LinkedResult.asInt()) {
+            if (limit - start < LINKED_RESULT_HEADER + POLL_HEADER) {
+                return false;
+            }
+            // linked state and count
+            pos += 2;
+        } else if (remoteOperation != RemoteOperation.Result.asInt()) {
+            return false;
+        }
+        // invoke id
+        pos += 2;
+        if (u16(bb, pos) != CommandType.ConfirmedAction.asInt()) {
+            return false;
+        }
+        pos += 4;
+        // managed object
+        pos += 6;
+        if (u16(bb, pos) != ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asInt()) {
+            return false;
+        }
+        pos += 4;
+
+        int pollNumber = u16(bb, pos);
+        int sequenceNumber = u16(bb, pos + 2);
+        long relativeTime = 0xFFFFFFFFL & bb.getInt(pos + 4);
+        // absolute time at pos + 8
+        int objectPartition = u16(bb, pos + 16);
+        int objectType = u16(bb, pos + 18);
+        int attributeGroup = u16(bb, pos + 20);
+        pos += 22;
+
+        if (!handler.beginPoll(pollNumber, sequenceNumber, relativeTime, objectPartition, objectType, attributeGroup)) {
+            return false;
+        }
+        try {
+            decodePollInfoList(bb, pos, limit, handler);
+            handler.endPoll();
+        } catch (RuntimeException re) {
+            bb.limit(limit).position(start);
+            log.trace("Offending buffer:\n" + HexUtil.dump(bb, 20));
+            log.error("Error decoding extended poll result", re);
+        }
+        bb.limit(limit).position(limit);
+        return true;
+    }
+
+    private static void decodePollInfoList(ByteBuffer bb, int pos, int limit, ExtendedPollDataHandler handler) {
+        int contexts = u16(bb, pos);
+        pos += 4;
+        for (int i = 0; i < contexts; i++) {
+            // mds context
+            int observations = u16(bb, pos + 2);
+            pos += 6;
+            for (int j = 0; j < observations; j++) {
+                int handle = u16(bb, pos);
+                int attributes = u16(bb, pos + 2);
+                int length = u16(bb, pos + 4);
+                pos += 6;
+                int end = pos + length;
+                if (end > limit) {
+                    throw new IndexOutOfBoundsException("AttributeValueList of " + length + " bytes exceeds the datagram");
+                }
+                // specifications first then the values they describe
+                decodeAttributes(bb, pos, end, attributes, handle, handler, false);
+                decodeAttributes(bb, pos, end, attributes, handle, handler, true);
+                pos = end;
+            }
+        }
+    }
+
+    private static void decodeAttributes(ByteBuffer bb, int pos, int end, int attributes, int handle, ExtendedPollDataHandler handler,
+            boolean values) {
+        for (int k = 0; k < attributes; k++) {
+            int attributeId = u16(bb, pos);
+            int length = u16(bb, pos + 2);
+            int value = pos + 4;
+            pos = value + length;
+            if (pos > end) {
+                throw new IndexOutOfBoundsException("Attribute " + attributeId + " of " + length + " bytes exceeds its AttributeValueList");
+            }
+            if (attributeId == NU_VAL_OBS) {
+                if (values) {
+                    numeric(bb, value, handle, handler);
+                }
+            } else if (attributeId == NU_CMPD_VAL_OBS) {
+                if (values) {
+                    int count = u16(bb, value);
+                    if (value + 4 + 10 * count > pos) {
+                        throw new IndexOutOfBoundsException("CompoundNumericObservedValue of " + count + " exceeds its attribute");
+                    }
+                    for (int i = 0, p = value + 4; i < count; i++, p += 10) {
+                        numeric(bb, p, handle, handler);
+                    }
+                }
+            } else if (attributeId == SA_VAL_OBS) {
+                if (values) {
+                    sampleArray(bb, value, pos, handle, handler);
+                }
+            } else if (attributeId == SA_CMPD_VAL_OBS) {
+                if (values) {
+                    int count = u16(bb, value);
+                    for (int i = 0, p = value + 4; i < count; i++) {
+                        p = sampleArray(bb, p, pos, handle, handler);
+                    }
+                }
+            } else if (!values) {
+                int limit = bb.limit();
+                bb.limit(value + length).position(value);
+                handler.attribute(handle, attributeId, bb, length);
+                bb.limit(limit);
+            }
+        }
+    }
+
+    private static void numeric(ByteBuffer bb, int pos, int handle, ExtendedPollDataHandler handler) {
+        handler.numeric(handle, u16(bb, pos), u16(bb, pos + 2), u16(bb, pos + 4), Float.toDouble(bb.getInt(pos + 6)));
+    }
+
+    // end is the end of the enclosing attribute
+    private static int sampleArray(ByteBuffer bb, int pos, int end, int handle, ExtendedPollDataHandler handler) {
+        int length = u16(bb, pos + 4);
+        int samples = pos + 6;
+        if (samples + length > end) {
+            throw new IndexOutOfBoundsException("SampleArrayObservedValue of " + length + " bytes exceeds its attribute");
+        }
+        int limit = bb.limit();
+        bb.limit(samples + length).position(samples);
+        handler.sampleArray(handle, u16(bb, pos), u16(bb, pos + 2), bb, length);
+        bb.limit(limit);
+        return samples + length;
+    }
+}
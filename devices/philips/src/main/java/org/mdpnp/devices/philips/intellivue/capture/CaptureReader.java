@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file written by CaptureWriter through a read only memory map. The
+ * datagram of the current record is a view into the map, so iterating a
+ * capture neither copies nor allocates.
+ */
+public class CaptureReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final ByteBuffer datagram;
+    private final long startTime;
+
+    private int next;
+    private long time;
+    private byte direction;
+
+    public CaptureReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map (" + size + " bytes)");
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+            map.order(ByteOrder.BIG_ENDIAN);
+            if (size < CaptureWriter.HEADER_SIZE || CaptureWriter.MAGIC != map.getInt(0)) {
+                throw new IOException(file + " is not an Intellivue capture");
+            }
+            if (CaptureWriter.VERSION != map.getShort(4)) {
+                throw new IOException(file + " is capture version " + map.getShort(4) + " but only " + CaptureWriter.VERSION + " is supported");
+            }
+            startTime = map.getLong(8);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        datagram = map.duplicate();
+        rewind();
+    }
+
+    /**
+     * @return wall clock time in milliseconds when the capture began
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns to the first record.
+     */
+    public void rewind() {
+        next = CaptureWriter.HEADER_SIZE;
+        datagram.limit(0);
+    }
+
+    /**
+     * Advances to the next record.
+     * 
+     * @return false at the end of the capture (or at a torn final record)
+     */
+    public boolean next() {
+        int limit = map.limit();
+        if (limit - next < CaptureWriter.RECORD_HEADER_SIZE) {
+            return false;
+        }
+        int length = 0xFFFF & map.getShort(next + 9);
+        int start = next + CaptureWriter.RECORD_HEADER_SIZE;
+        if (limit - start < length) {
+            return false;
+        }
+        time = map.getLong(next);
+        direction = map.get(next + 8);
+        datagram.limit(start + length).position(start);
+        next = start + length;
+        return true;
+    }
+
+    /**
+     * @return nanoseconds from the start of the capture to the current record
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return CaptureWriter.RECEIVED or CaptureWriter.SENT
+     */
+    public byte getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return a view of the current datagram that is valid until the next call
+     *         to next() or rewind()
+     */
+    public ByteBuffer getDatagram() {
+        return datagram;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends datagrams, each with its direction and the time it was seen, to a
+ * capture file that CaptureReader can replay.
+ * 
+ * The file starts with a header of MAGIC, VERSION and the wall clock time the
+ * capture began. Each record that follows is the nanoseconds since the capture
+ * began (long), the direction (byte), the length (unsigned short) and the
+ * datagram itself; all big endian. Records are staged in memory and written in
+ * blocks so a capture costs a copy on the I/O path rather than a system call.
+ * A record torn by a crash is ignored when the file is read.
+ */
+public class CaptureWriter implements Closeable {
+    public static final int MAGIC = 0x49564350; // "IVCP"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 11;
+
+    public static final byte RECEIVED = 0;
+    public static final byte SENT = 1;
+
+    private static final int BLOCK_SIZE = 1 << 17;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.BIG_ENDIAN);
+    private final long startNanos;
+    private long records;
+
+    public CaptureWriter(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        startNanos = System.nanoTime();
+        block.putInt(MAGIC);
+        block.putShort(VERSION);
+        block.putShort((short) 0);
+        block.putLong(System.currentTimeMillis());
+    }
+
+    public void received(ByteBuffer datagram) throws IOException {
+        record(RECEIVED, datagram);
+    }
+
+    public void sent(ByteBuffer datagram) throws IOException {
+        record(SENT, datagram);
+    }
+
+    /**
+     * Records the remaining bytes of the datagram without changing its position.
+     */
+    public synchronized void record(byte direction, ByteBuffer datagram) throws IOException {
+        int length = datagram.remaining();
+        if (length > 0xFFFF) {
+            throw new IllegalArgumentException("datagram of " + length + " bytes is too large to capture");
+        }
+        if (block.remaining() < RECORD_HEADER_SIZE + length) {
+            drain();
+        }
+        block.putLong(System.nanoTime() - startNanos);
+        block.put(direction);
+        block.putShort((short) length);
+        int position = datagram.position();
+        block.put(datagram);
+        datagram.position(position);
+        records++;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes staged records to the file.
+     */
+    public synchronized void flush() throws IOException {
+        drain();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear();
+    }
+}
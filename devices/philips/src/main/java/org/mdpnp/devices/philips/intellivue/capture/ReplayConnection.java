@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.capture;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.net.NetworkConnection;
+import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.net.TaskQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plays the datagrams a monitor sent during a capture back to a local
+ * Intellivue driver, standing in for the monitor.
+ * 
+ * A DatagramChannel is bound to replaySideAddress and registered on the
+ * NetworkLoop. Replay begins when the first datagram (normally the association
+ * request) arrives from the driver; the channel is then connected to the
+ * driver and every RECEIVED record is sent at its captured time divided by
+ * speed. With a speed of MAX_SPEED records are sent as fast as the driver's
+ * NetworkLoop allows, in bursts so that a loop shared with the driver still
+ * gets to read them. Whatever the driver sends is counted and discarded.
+ */
+public class ReplayConnection implements NetworkConnection {
+    public static final double MAX_SPEED = 0.0;
+
+    private static final int BURST = 64;
+
+    private final CaptureReader capture;
+    private final double speed;
+    private final NetworkLoop networkLoop;
+    private final DatagramChannel channel;
+    private final SelectionKey selectionKey;
+    private final SocketAddress replaySideAddress;
+    private final ByteBuffer discard = ByteBuffer.allocate(CaptureWriter.RECORD_HEADER_SIZE + 0xFFFF);
+
+    private long firstTime = -1L;
+    private long startNanos;
+    private boolean pending;
+
+    private volatile boolean started, finished;
+    private volatile long sent, received;
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayConnection.class);
+
+    private final TaskQueue.Task<?> pump = new TaskQueue.TaskImpl<Object>() {
+        @Override
+        public Object doExecute(TaskQueue queue) {
+            try {
+                replay();
+            } catch (IOException e) {
+                log.error("replaying to " + replaySideAddress, e);
+                finish();
+            }
+            return null;
+        }
+    };
+
+    /**
+     * @param speed
+     *            multiple of the captured rate, or MAX_SPEED
+     */
+    public ReplayConnection(CaptureReader capture, double speed, SocketAddress replaySideAddress, NetworkLoop networkLoop) throws IOException {
+        if (speed < 0.0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("speed must be positive or MAX_SPEED, not " + speed);
+        }
+        this.capture = capture;
+        this.speed = speed;
+        this.networkLoop = networkLoop;
+
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setReuseAddress(true);
+        channel.bind(replaySideAddress);
+        this.replaySideAddress = channel.getLocalAddress();
+
+        selectionKey = networkLoop.register(this, channel);
+    }
+
+    public SocketAddress getReplaySideAddress() {
+        return replaySideAddress;
+    }
+
+    /**
+     * @return datagrams sent to the driver
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return datagrams received from (and discarded for) the driver
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return true once every record has been replayed
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void shutdown() {
+        networkLoop.cancel(pump);
+        networkLoop.unregister(selectionKey, this);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("closing the replay channel", e);
+        }
+    }
+
+    @Override
+    public void read(SelectionKey sk) throws IOException {
+        discard.clear();
+        SocketAddress driver = channel.receive(discard);
+        if (null == driver) {
+            return;
+        }
+        received++;
+        if (!started) {
+            started = true;
+            channel.connect(driver);
+            startNanos = System.nanoTime();
+            log.info("replaying to " + driver + " at " + (MAX_SPEED == speed ? "max" : (speed + "x")) + " speed");
+            replay();
+        }
+    }
+
+    @Override
+    public void write(SelectionKey sk) throws IOException {
+        sk.interestOps(sk.interestOps() & ~SelectionKey.OP_WRITE);
+        replay();
+    }
+
+    @Override
+    public void registered(NetworkLoop networkLoop, SelectionKey sk) {
+    }
+
+    @Override
+    public void unregistered(NetworkLoop networkLoop, SelectionKey sk) {
+    }
+
+    // always on the NetworkLoop thread
+    private void replay() throws IOException {
+        for (int burst = 0; burst < BURST; burst++) {
+            if (!pending && !nextReceived()) {
+                finish();
+                return;
+            }
+            pending = true;
+            if (MAX_SPEED != speed) {
+                long due = startNanos + (long) ((capture.getTime() - firstTime) / speed);
+                long delay = due - System.nanoTime();
+                if (delay > 0L) {
+                    networkLoop.schedule(pump, delay, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+            if (0 == channel.write(capture.getDatagram())) {
+                // socket buffer is full; resume when it drains
+                selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            pending = false;
+            sent++;
+        }
+        // let the loop service reads (the driver's included) before the next burst
+        networkLoop.schedule(pump, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    private boolean nextReceived() {
+        while (capture.next()) {
+            if (CaptureWriter.RECEIVED == capture.getDirection()) {
+                if (firstTime < 0L) {
+                    firstTime = capture.getTime();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            log.info("replay finished after " + sent + " datagrams");
+        }
+    }
+}
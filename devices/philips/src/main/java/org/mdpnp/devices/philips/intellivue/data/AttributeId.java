@@ -12,8 +12,6 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -429,7 +427,7 @@ public enum AttributeId implements OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private final static Map<Integer, AttributeId> map = OrdinalEnum.buildInt(AttributeId.class);
+    private final static OrdinalEnum.IntTable<AttributeId> map = OrdinalEnum.buildIntTable(AttributeId.class);
 
     public int asInt() {
         return x;
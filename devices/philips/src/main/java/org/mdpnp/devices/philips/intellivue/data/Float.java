@@ -76,6 +76,14 @@ public class Float extends Number implements Value {
         }
     }
 
+    /**
+     * @param bits a FLOAT-Type as read by ByteBuffer.getInt(), exponent in the high byte
+     */
+    public final static double toDouble(int bits) {
+        // sign-extend the 24 bit mantissa as parse does
+        return toDouble((bits << 8) >> 8, (byte) (bits >>> 24));
+    }
+
     private static class MantissaExponent {
         private final int mantissa;
         private final byte exponent;
@@ -76,6 +76,10 @@ public class MeasurementState implements Parseable, Formatable {
      * a flat CO2 wave).
      */
     public boolean isUnavailable() {
+        return isUnavailable(state);
+    }
+
+    public static boolean isUnavailable(int state) {
         return 0 != (UNAVAILABLE & state);
     }
 
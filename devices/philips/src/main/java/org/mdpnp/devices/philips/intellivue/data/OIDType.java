@@ -13,8 +13,9 @@
 package org.mdpnp.devices.philips.intellivue.data;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.mdpnp.devices.io.util.Bits;
 import org.mdpnp.devices.philips.intellivue.Formatable;
@@ -26,14 +27,30 @@ import org.mdpnp.devices.philips.intellivue.Formatable;
 public class OIDType implements Formatable {
     private final int type;
 
-    private static final Map<Integer, OIDType> values = new HashMap<Integer, OIDType>();
+    // OIDs on the wire are unsigned 16 bit; parsing threads share one instance per type
+    private static final int TABLE_SIZE = 0x10000;
+    private static final AtomicReferenceArray<OIDType> table = new AtomicReferenceArray<OIDType>(TABLE_SIZE);
+    private static final ConcurrentMap<Integer, OIDType> values = new ConcurrentHashMap<Integer, OIDType>();
 
     public static OIDType lookup(int type) {
-        if (values.containsKey(type)) {
-            return values.get(type);
+        if (type >= 0 && type < TABLE_SIZE) {
+            OIDType t = table.get(type);
+            if (null == t) {
+                t = new OIDType(type);
+                if (!table.compareAndSet(type, null, t)) {
+                    t = table.get(type);
+                }
+            }
+            return t;
         } else {
-            OIDType t = new OIDType(type);
-            values.put(type, t);
+            OIDType t = values.get(type);
+            if (null == t) {
+                t = new OIDType(type);
+                OIDType existing = values.putIfAbsent(type, t);
+                if (null != existing) {
+                    t = existing;
+                }
+            }
             return t;
         }
     }
@@ -63,6 +63,12 @@ public class ScaleAndRangeSpecification implements Value {
     public int getUpperScaledValue() {
         return upperScaledValue;
     }
+    public void setLowerScaledValue(int lowerScaledValue) {
+        this.lowerScaledValue = lowerScaledValue;
+    }
+    public void setUpperScaledValue(int upperScaledValue) {
+        this.upperScaledValue = upperScaledValue;
+    }
     
     @Override
     public java.lang.String toString() {
@@ -20,6 +20,8 @@ public interface DataExportProtocol extends Protocol {
 
     Header getHeader();
 
+    LinkedResultTable getLinkedResults();
+
     void format(DataExportMessage message, ByteBuffer bb);
 
     @Override
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.dataexport;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Linked results still being received, by invoke id. The table is bounded;
+ * each entry has a deadline that every further segment extends, and
+ * {@link #expire(long)} discards those whose remaining segments never
+ * arrived. Adding to a full table evicts the entry closest to its deadline.
+ * A First segment for an invoke id that is already pending (the 16 bit
+ * invoke id has wrapped, or the rest of the earlier result was lost) evicts
+ * the stale entry rather than merging into it.
+ *
+ * Not thread safe; it is used by the thread that parses and expired by the
+ * same thread. The counters may be read from any thread.
+ */
+public class LinkedResultTable {
+    private static final Logger log = LoggerFactory.getLogger(LinkedResultTable.class);
+
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toNanos(2L);
+
+    private final int[] invokeIds;
+    private final DataExportLinkedResult[] results;
+    private final long[] deadlines;
+    private int size;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    private volatile long expired, evicted, droppedFragments;
+
+    public LinkedResultTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LinkedResultTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        invokeIds = new int[capacity];
+        results = new DataExportLinkedResult[capacity];
+        deadlines = new long[capacity];
+    }
+
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toNanos(timeout);
+    }
+
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeout, TimeUnit.NANOSECONDS);
+    }
+
+    private int indexOf(int invokeId) {
+        for (int i = 0; i < size; i++) {
+            if (invokeIds[i] == invokeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int i) {
+        size--;
+        invokeIds[i] = invokeIds[size];
+        results[i] = results[size];
+        deadlines[i] = deadlines[size];
+        results[size] = null;
+    }
+
+    /**
+     * Begins a linked result from its First segment
+     */
+    public void put(int invokeId, DataExportLinkedResult result, long now) {
+        int i = indexOf(invokeId);
+        if (i >= 0) {
+            log.warn("New linked result " + invokeId + " replaces one still incomplete");
+            evicted++;
+        } else if (size == results.length) {
+            i = 0;
+            for (int j = 1; j < size; j++) {
+                if (deadlines[j] - deadlines[i] < 0L) {
+                    i = j;
+                }
+            }
+            log.warn("Evicting incomplete linked result " + invokeIds[i] + " to make room for " + invokeId);
+            evicted++;
+        } else {
+            i = size++;
+        }
+        invokeIds[i] = invokeId;
+        results[i] = result;
+        deadlines[i] = now + timeout;
+    }
+
+    /**
+     * The pending result a further segment belongs to, with its deadline
+     * extended; null, and the segment counted as dropped, if there is none.
+     */
+    public DataExportLinkedResult get(int invokeId, long now) {
+        int i = indexOf(invokeId);
+        if (i < 0) {
+            droppedFragments++;
+            return null;
+        } else {
+            deadlines[i] = now + timeout;
+            return results[i];
+        }
+    }
+
+    /**
+     * Removes the pending result that a final Result segment completes
+     */
+    public DataExportLinkedResult remove(int invokeId) {
+        int i = indexOf(invokeId);
+        if (i < 0) {
+            return null;
+        } else {
+            DataExportLinkedResult result = results[i];
+            removeAt(i);
+            return result;
+        }
+    }
+
+    /**
+     * @return the number of results discarded because their deadline passed
+     */
+    public int expire(long now) {
+        int n = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            if (now - deadlines[i] >= 0L) {
+                log.warn("Expiring incomplete linked result " + invokeIds[i]);
+                removeAt(i);
+                n++;
+            }
+        }
+        expired += n;
+        return n;
+    }
+
+    public void clear() {
+        Arrays.fill(results, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return results.length;
+    }
+
+    /**
+     * Incomplete results whose deadline passed
+     */
+    public long getExpired() {
+        return expired;
+    }
+
+    /**
+     * Incomplete results discarded for lack of room or replaced by a new First
+     * segment with the same invoke id
+     */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Segments that continued no pending result
+     */
+    public long getDroppedFragments() {
+        return droppedFragments;
+    }
+}
@@ -13,8 +13,6 @@
 package org.mdpnp.devices.philips.intellivue.dataexport.impl;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.mdpnp.devices.io.util.Bits;
 import org.mdpnp.devices.philips.intellivue.Message;
@@ -22,7 +20,9 @@ import org.mdpnp.devices.philips.intellivue.dataexport.DataExportLinkedResult;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportMessage;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportProtocol;
 import org.mdpnp.devices.philips.intellivue.dataexport.Header;
+import org.mdpnp.devices.philips.intellivue.dataexport.LinkedResultTable;
 import org.mdpnp.devices.philips.intellivue.dataexport.RemoteOperation;
+import org.mdpnp.devices.philips.intellivue.dataexport.RemoteOperationLinkedState;
 import org.mdpnp.devices.philips.intellivue.util.Util;
 
 /**
@@ -38,7 +38,12 @@ public class DataExportProtocolImpl implements DataExportProtocol {
         return header;
     }
 
-    private final Map<Integer, DataExportLinkedResult> linked = new HashMap<Integer, DataExportLinkedResult>();
+    private final LinkedResultTable linked = new LinkedResultTable();
+
+    @Override
+    public LinkedResultTable getLinkedResults() {
+        return linked;
+    }
 
     @SuppressWarnings("unused")
     @Override
@@ -63,8 +68,8 @@ public class DataExportProtocolImpl implements DataExportProtocol {
             return message;
         case Result:
             invokeId = DataExportResultImpl.peekInvokeId(bb);
-            if (linked.containsKey(invokeId)) {
-                DataExportLinkedResult r = linked.remove(invokeId);
+            DataExportLinkedResult r = linked.remove(invokeId);
+            if (null != r) {
                 r.parseMore(bb);
                 return r;
             } else {
@@ -74,17 +79,22 @@ public class DataExportProtocolImpl implements DataExportProtocol {
             }
         case LinkedResult:
             invokeId = DataExportLinkedResultImpl.peekInvokeId(bb);
+            RemoteOperationLinkedState state = RemoteOperationLinkedState.valueOf((short) (0xFF & bb.get(bb.position())));
 
-            if (linked.containsKey(invokeId)) {
-                linked.get(invokeId).parse(bb);
-                return null;
-            } else {
+            if (RemoteOperationLinkedState.First.equals(state)) {
                 message = new DataExportLinkedResultImpl();
                 message.parse(bb);
-                linked.put(message.getInvoke(), (DataExportLinkedResult) message);
-
-                return null;
+                linked.put(invokeId, (DataExportLinkedResult) message, System.nanoTime());
+            } else {
+                DataExportLinkedResult pending = linked.get(invokeId, System.nanoTime());
+                if (null == pending) {
+                    // the rest of a result we never began (or already expired)
+                    bb.position(bb.limit());
+                } else {
+                    pending.parse(bb);
+                }
             }
+            return null;
         }
 
         return null;
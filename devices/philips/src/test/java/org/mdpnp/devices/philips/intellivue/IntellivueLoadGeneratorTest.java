@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataHandler;
+import org.mdpnp.devices.philips.intellivue.association.AssociationAccept;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+
+public class IntellivueLoadGeneratorTest {
+
+    private static class Client extends Intellivue {
+        final CountDownLatch accepted = new CountDownLatch(1);
+        final Set<Integer> numericHandles = ConcurrentHashMap.<Integer> newKeySet();
+        final Set<Integer> waveHandles = ConcurrentHashMap.<Integer> newKeySet();
+        final AtomicLong sampleBytes = new AtomicLong();
+
+        private final ExtendedPollDataHandler handler = new ExtendedPollDataHandler() {
+            @Override
+            public boolean beginPoll(int pollNumber, int sequenceNumber, long relativeTime, int objectPartition, int objectType, int attributeGroup) {
+                return true;
+            }
+
+            @Override
+            public void numeric(int handle, int physioId, int state, int unitCode, double value) {
+                numericHandles.add(handle);
+            }
+
+            @Override
+            public void sampleArray(int handle, int physioId, int state, ByteBuffer samples, int length) {
+                waveHandles.add(handle);
+                sampleBytes.addAndGet(length);
+            }
+
+            @Override
+            public void attribute(int handle, int attributeId, ByteBuffer value, int length) {
+            }
+
+            @Override
+            public void endPoll() {
+            }
+        };
+
+        @Override
+        protected ExtendedPollDataHandler getExtendedPollDataHandler() {
+            return handler;
+        }
+
+        @Override
+        protected void handle(SocketAddress sockaddr, AssociationAccept message) {
+            accepted.countDown();
+        }
+    }
+
+    @Test
+    public void testMonitorsOnLoopback() throws Exception {
+        IntellivueLoadGenerator generator = new IntellivueLoadGenerator(1);
+        NetworkLoop loop = new NetworkLoop();
+        Thread thread = new Thread(loop, "Network Loop");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            // a dozen waves do not fit in one datagram
+            generator.start(2, 0, 8, 12);
+            assertEquals(2, generator.getAddresses().size());
+
+            Client client = new Client();
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            channel.connect(generator.getAddresses().get(1));
+            loop.register(client, channel);
+
+            client.requestAssociation();
+            assertTrue("association was not accepted", client.accepted.await(5L, TimeUnit.SECONDS));
+            assertEquals(1, generator.getAssociations());
+
+            client.requestExtendedPoll(ObjectClass.NOM_MOC_VMO_METRIC_SA_RT, 10000L);
+            long giveup = System.currentTimeMillis() + 5000L;
+            // two updates
+            while ((client.waveHandles.size() < 13 || generator.getResultsSent() < 4L) && System.currentTimeMillis() < giveup) {
+                Thread.sleep(10L);
+            }
+            // the pleth and the added waves
+            assertEquals(13, client.waveHandles.size());
+            // the pulse oximeter's compound numeric and the added numerics
+            assertEquals(9, client.numericHandles.size());
+            assertTrue(generator.getResultsSent() >= 4L);
+            assertTrue(generator.getSamplesSent() > 0L);
+            assertTrue(client.sampleBytes.get() > 0L);
+            channel.close();
+        } finally {
+            generator.shutdown();
+            loop.cancelThreadAndWait();
+        }
+    }
+}
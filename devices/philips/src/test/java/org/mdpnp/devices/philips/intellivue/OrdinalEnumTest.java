@@ -13,6 +13,7 @@
 package org.mdpnp.devices.philips.intellivue;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -68,6 +69,49 @@ public class OrdinalEnumTest {
         }
     }
 
+    private enum Sparse implements OrdinalEnum.IntType, OrdinalEnum.LongType {
+        Zero(0), Max(0xFFFF), Negative(-1), Large(0x10000), Huge(0x0402F953);
+
+        private final int x;
+
+        private Sparse(int x) {
+            this.x = x;
+        }
+
+        public int asInt() {
+            return x;
+        }
+
+        public long asLong() {
+            return x;
+        }
+    }
+
+    @Test
+    public void testIntTable() {
+        OrdinalEnum.IntTable<Sparse> table = OrdinalEnum.buildIntTable(Sparse.class);
+        for (Sparse s : Sparse.values()) {
+            assertEquals(s, table.get(s.asInt()));
+        }
+        assertNull(table.get(1));
+        assertNull(table.get(-2));
+        assertNull(table.get(0x10001));
+        assertNull(ObservedValue.valueOf(0x10000 | ObservedValue.NOM_PLETH.asInt()));
+    }
+
+    @Test
+    public void testLongTable() {
+        OrdinalEnum.LongTable<Sparse> table = OrdinalEnum.buildLongTable(Sparse.class);
+        for (Sparse s : Sparse.values()) {
+            assertEquals(s, table.get(s.asLong()));
+        }
+        assertNull(table.get(1L));
+        assertNull(table.get(Long.MIN_VALUE));
+        for (Label l : Label.values()) {
+            assertNull(Label.valueOf(l.asLong() | 0x100000000L));
+        }
+    }
+
     @SuppressWarnings("rawtypes")
     private static final Class[] intTypes = new Class[] { MetricCategory.class, ApplicationArea.class, AttributeId.class, ComponentId.class,
             Dimension.class, LineFrequency.class, MDSStatus.class, MetricModality.class, ObjectClass.class, PatientBSAFormula.class,
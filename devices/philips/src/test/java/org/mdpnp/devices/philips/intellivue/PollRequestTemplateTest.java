@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataRequest;
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportInvoke;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.Action;
+
+public class PollRequestTemplateTest {
+
+    private static byte[] bytes(ByteBuffer bb) {
+        bb.flip();
+        byte[] b = new byte[bb.remaining()];
+        bb.get(b);
+        return b;
+    }
+
+    private static void assertEncodesAsBuilt(boolean extended, ObjectClass objectType, Long time, AttributeId attrGroup) {
+        CompoundProtocol protocol = new CompoundProtocol();
+        PollRequestTemplate template = new PollRequestTemplate(protocol, extended, objectType, time, attrGroup);
+        int[][] ids = { { 1, 1 }, { 0x1234, 0xFEDC }, { 0xFFFF, 0 } };
+        for (int[] id : ids) {
+            ByteBuffer built = ByteBuffer.allocate(Intellivue.BUFFER_SIZE);
+            protocol.format(PollRequestTemplate.build(extended, objectType, time, attrGroup, id[0], id[1]), built);
+
+            ByteBuffer patched = ByteBuffer.allocate(Intellivue.BUFFER_SIZE);
+            patched.put((byte) 0x7F);
+            template.encode(patched, id[0], id[1]);
+            byte[] b = bytes(patched);
+            assertEquals(0x7F, b[0]);
+            assertArrayEquals(bytes(built), Arrays.copyOfRange(b, 1, b.length));
+        }
+    }
+
+    @Test
+    public void testExtendedPoll() {
+        assertEncodesAsBuilt(true, ObjectClass.NOM_MOC_VMO_METRIC_NU, 600000L, null);
+        assertEncodesAsBuilt(true, ObjectClass.NOM_MOC_VMO_AL_MON, 600000L, AttributeId.NOM_ATTR_GRP_AL_MON);
+        assertEncodesAsBuilt(true, ObjectClass.NOM_MOC_VMO_METRIC_SA_RT, null, null);
+    }
+
+    @Test
+    public void testSinglePoll() {
+        assertEncodesAsBuilt(false, ObjectClass.NOM_MOC_VMO_AL_MON, null, AttributeId.NOM_ATTR_GRP_VMO_STATIC);
+        assertEncodesAsBuilt(false, ObjectClass.NOM_MOC_PT_DEMOG, null, AttributeId.NOM_ATTR_GRP_PT_DEMOG);
+    }
+
+    @Test
+    public void testParsesBack() {
+        CompoundProtocol protocol = new CompoundProtocol();
+        PollRequestTemplate template = new PollRequestTemplate(protocol, true, ObjectClass.NOM_MOC_VMO_METRIC_SA_RT, 10000L, null);
+        ByteBuffer bb = ByteBuffer.allocate(Intellivue.BUFFER_SIZE);
+        template.encode(bb, 0xABCD, 0x4321);
+        bb.flip();
+        DataExportInvoke invoke = (DataExportInvoke) protocol.parse(bb);
+        assertEquals(0xABCD, invoke.getInvoke());
+        ExtendedPollDataRequest req = (ExtendedPollDataRequest) ((Action) invoke.getCommand()).getAction();
+        assertEquals(0x4321, req.getPollNumber());
+    }
+
+    @Test
+    public void testMatches() {
+        PollRequestTemplate template = new PollRequestTemplate(new CompoundProtocol(), true, ObjectClass.NOM_MOC_VMO_METRIC_NU, 600000L, null);
+        assertTrue(template.matches(true, ObjectClass.NOM_MOC_VMO_METRIC_NU, 600000L, null));
+        assertFalse(template.matches(false, ObjectClass.NOM_MOC_VMO_METRIC_NU, 600000L, null));
+        assertFalse(template.matches(true, ObjectClass.NOM_MOC_VMO_METRIC_SA_RT, 600000L, null));
+        assertFalse(template.matches(true, ObjectClass.NOM_MOC_VMO_METRIC_NU, null, null));
+        assertFalse(template.matches(true, ObjectClass.NOM_MOC_VMO_METRIC_NU, 600000L, AttributeId.NOM_ATTR_GRP_AL_MON));
+    }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.data.SampleArraySpecification;
+import org.mdpnp.devices.philips.intellivue.data.ScaleAndRangeSpecification;
+
+public class WaveformBufferTest {
+
+    private static SampleArraySpecification sas(int arraySize, int sampleSize, int significantBits) {
+        SampleArraySpecification sas = new SampleArraySpecification();
+        sas.setArraySize(arraySize);
+        sas.setSampleSize((short) sampleSize);
+        sas.setSignificantBits((short) significantBits);
+        return sas;
+    }
+
+    private static ScaleAndRangeSpecification sar(double lowerAbsolute, double upperAbsolute, int lowerScaled, int upperScaled) {
+        ScaleAndRangeSpecification sar = new ScaleAndRangeSpecification();
+        sar.getLowerAbsoluteValue().setFloat(lowerAbsolute);
+        sar.getUpperAbsoluteValue().setFloat(upperAbsolute);
+        ByteBuffer bb = ByteBuffer.allocate(12);
+        sar.format(bb);
+        bb.putShort(8, (short) lowerScaled);
+        bb.putShort(10, (short) upperScaled);
+        bb.rewind();
+        sar.parse(bb);
+        return sar;
+    }
+
+    private static short[] bytes(int... b) {
+        short[] s = new short[b.length];
+        for (int i = 0; i < b.length; i++) {
+            s[i] = (short) b[i];
+        }
+        return s;
+    }
+
+    @Test
+    public void testScaling() {
+        WaveformBuffer buffer = new WaveformBuffer(16);
+        // 12 significant bits of 16, -1.0 to 1.0 over 0 to 4000
+        buffer.setSpecification(sas(3, 16, 12), sar(-1.0, 1.0, 0, 4000));
+        assertEquals(3, buffer.add(bytes(0x00, 0x00, 0xF7, 0xD0, 0x0F, 0xA0), 6));
+        assertArrayEquals(new float[] { -1.0f, 0.0f, 1.0f }, buffer.emit(3, "scaled"), 1e-4f);
+    }
+
+    @Test
+    public void testUnscaled() {
+        WaveformBuffer buffer = new WaveformBuffer(16);
+        buffer.setSpecification(sas(2, 8, 8), sar(Double.NaN, Double.NaN, 0, 255));
+        assertEquals(2, buffer.add(bytes(7, 250, 99), 2));
+        assertArrayEquals(new float[] { 7f, 250f }, buffer.emit(2, "unscaled"), 0f);
+    }
+
+    @Test
+    public void testInsufficientAndExtraSamples() {
+        WaveformBuffer buffer = new WaveformBuffer(16);
+        buffer.setSpecification(sas(4, 8, 8), sar(Double.NaN, Double.NaN, 0, 255));
+        assertEquals(-1, buffer.add(bytes(1, 2, 3), 3));
+        assertEquals(0, buffer.available());
+        assertEquals(5, buffer.add(bytes(1, 2, 3, 4, 5), 5));
+        assertEquals(5, buffer.available());
+    }
+
+    @Test
+    public void testShortfallRepeatsOldSamples() {
+        WaveformBuffer buffer = new WaveformBuffer(16);
+        buffer.setSpecification(sas(2, 8, 8), sar(Double.NaN, Double.NaN, 0, 255));
+
+        assertNull(buffer.emit(4, "empty"));
+
+        buffer.add(bytes(1, 2), 2);
+        // zeros ahead of the first samples
+        assertArrayEquals(new float[] { 0f, 0f, 1f, 2f }, buffer.emit(4, "startup"), 0f);
+
+        buffer.add(bytes(3, 4), 2);
+        buffer.add(bytes(5, 6), 2);
+        buffer.add(bytes(7, 8), 2);
+        assertArrayEquals(new float[] { 3f, 4f, 5f, 6f }, buffer.emit(4, "full"), 0f);
+        assertEquals(2, buffer.available());
+        assertArrayEquals(new float[] { 5f, 6f, 7f, 8f }, buffer.emit(4, "shortfall"), 0f);
+
+        // a longer period keeps the newest samples
+        buffer.add(bytes(9, 10), 2);
+        assertArrayEquals(new float[] { 0f, 5f, 6f, 7f, 8f, 9f, 10f }, buffer.emit(7, "longer"), 0f);
+        buffer.add(bytes(11, 12), 2);
+        assertArrayEquals(new float[] { 10f, 11f, 12f }, buffer.emit(3, "shorter"), 0f);
+    }
+
+    @Test
+    public void testOverflowDrops() {
+        WaveformBuffer buffer = new WaveformBuffer(4);
+        buffer.setSpecification(sas(3, 8, 8), sar(Double.NaN, Double.NaN, 0, 255));
+        assertEquals(3, buffer.add(bytes(1, 2, 3), 3));
+        assertEquals(1, buffer.add(bytes(4, 5, 6), 3));
+        assertEquals(2, buffer.getDropped());
+        assertArrayEquals(new float[] { 1f, 2f, 3f, 4f }, buffer.emit(4, "overflow"), 0f);
+    }
+
+    @Test
+    public void testConcurrentProducer() throws InterruptedException {
+        final int total = 200000;
+        final int chunk = 50;
+        final WaveformBuffer buffer = new WaveformBuffer(1024);
+        buffer.setSpecification(sas(chunk, 16, 16), sar(Double.NaN, Double.NaN, 0, 0xFFFF));
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                short[] b = new short[2 * chunk];
+                int next = 0;
+                while (next < total) {
+                    if (buffer.capacity() - buffer.available() < chunk) {
+                        Thread.yield();
+                        continue;
+                    }
+                    for (int i = 0; i < chunk; i++, next++) {
+                        b[2 * i] = (short) (0xFF & (next >> 8));
+                        b[2 * i + 1] = (short) (0xFF & next);
+                    }
+                    buffer.add(b, b.length);
+                }
+            }
+        });
+        producer.start();
+
+        // every sample arrives once and in order
+        int expected = 0;
+        int n = 100;
+        while (expected < total) {
+            if (buffer.available() < n) {
+                Thread.yield();
+                continue;
+            }
+            float[] window = buffer.emit(n, "concurrent");
+            for (int i = 0; i < n; i++, expected++) {
+                assertEquals(expected & 0xFFFF, (int) window[i]);
+            }
+        }
+        producer.join();
+        assertEquals(0, buffer.getDropped());
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.CompoundProtocol;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataHandler;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataResult;
+import org.mdpnp.devices.philips.intellivue.action.ObservationPoll;
+import org.mdpnp.devices.philips.intellivue.action.SingleContextPoll;
+import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.AttributeValueAssertion;
+import org.mdpnp.devices.philips.intellivue.data.NumericObservedValue;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.data.SampleArrayObservedValue;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportMessage;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportResult;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.ActionResult;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.impl.ActionResultImpl;
+import org.mdpnp.devices.philips.intellivue.dataexport.impl.DataExportResultImpl;
+
+public class ExtendedPollDataDecoderTest {
+
+    private static class Recorder implements ExtendedPollDataHandler {
+        final StringBuilder sb = new StringBuilder();
+        boolean accept = true;
+
+        @Override
+        public boolean beginPoll(int pollNumber, int sequenceNumber, long relativeTime, int objectPartition, int objectType, int attributeGroup) {
+            sb.append("poll ").append(pollNumber).append(' ').append(sequenceNumber).append(' ').append(relativeTime).append(' ')
+                    .append(objectPartition).append(' ').append(objectType).append(' ').append(attributeGroup).append('\n');
+            return accept;
+        }
+
+        @Override
+        public void numeric(int handle, int physioId, int state, int unitCode, double value) {
+            sb.append("numeric ").append(handle).append(' ').append(physioId).append(' ').append(state).append(' ').append(unitCode).append(' ')
+                    .append(value).append('\n');
+        }
+
+        @Override
+        public void sampleArray(int handle, int physioId, int state, ByteBuffer samples, int length) {
+            sb.append("sampleArray ").append(handle).append(' ').append(physioId).append(' ').append(state).append(' ');
+            bytes(samples, length);
+        }
+
+        @Override
+        public void attribute(int handle, int attributeId, ByteBuffer value, int length) {
+            sb.append("attribute ").append(handle).append(' ').append(attributeId).append(' ');
+            bytes(value, length);
+        }
+
+        @Override
+        public void endPoll() {
+            sb.append("end\n");
+        }
+
+        private void bytes(ByteBuffer bb, int length) {
+            assertEquals(length, bb.remaining());
+            while (bb.hasRemaining()) {
+                sb.append(Integer.toHexString(0xFF & bb.get()));
+            }
+            sb.append('\n');
+        }
+    }
+
+    // a parsed AttributeValueAssertion holds the attribute id and length too
+    private static ByteBuffer value(Attribute<?> a) {
+        byte[] b = ((AttributeValueAssertion) a).getValue().getArray();
+        return ByteBuffer.wrap(b, 4, b.length - 4).slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    // what the handler should see, walking the parsed messages
+    private static String expected(ByteBuffer bb) {
+        Recorder expected = new Recorder();
+        ExtendedPollDataResult result = (ExtendedPollDataResult) ((ActionResult) ((DataExportResult) new CompoundProtocol().parse(bb))
+                .getCommand()).getAction();
+        expected.beginPoll(result.getPollNumber(), result.getSequenceNumber(), result.getRelativeTime().getRelativeTime(), result
+                .getPolledObjType().getNomPartition().asShort(), result.getPolledObjType().getOidType().getType(), result
+                .getPolledAttributeGroup().getType());
+        for (SingleContextPoll context : result.getPollInfoList()) {
+            for (ObservationPoll observation : context.getPollInfo()) {
+                int handle = observation.getHandle().getHandle();
+                for (Attribute<?> a : observation.getAttributes().getList()) {
+                    int id = a.getOid().getType();
+                    if (id != AttributeId.NOM_ATTR_NU_VAL_OBS.asInt() && id != AttributeId.NOM_ATTR_SA_VAL_OBS.asInt()) {
+                        expected.attribute(handle, id, value(a), value(a).remaining());
+                    }
+                }
+                for (Attribute<?> a : observation.getAttributes().getList()) {
+                    ByteBuffer value = value(a);
+                    if (a.getOid().getType() == AttributeId.NOM_ATTR_NU_VAL_OBS.asInt()) {
+                        NumericObservedValue nu = new NumericObservedValue();
+                        nu.parse(value);
+                        expected.numeric(handle, nu.getPhysioId().getType(), nu.getMsmtState().isUnavailable() ? 0x2000 : 0, nu.getUnitCode()
+                                .getType(), nu.getValue().getDouble());
+                    } else if (a.getOid().getType() == AttributeId.NOM_ATTR_SA_VAL_OBS.asInt()) {
+                        SampleArrayObservedValue sa = new SampleArrayObservedValue();
+                        sa.parse(value);
+                        ByteBuffer samples = ByteBuffer.allocate(sa.getLength());
+                        for (int i = 0; i < sa.getLength(); i++) {
+                            samples.put((byte) sa.getValue()[i]);
+                        }
+                        samples.flip();
+                        expected.sampleArray(handle, sa.getPhysioId().getType(), sa.getState().isUnavailable() ? 0x2000 : 0, samples, sa.getLength());
+                    }
+                }
+            }
+        }
+        expected.endPoll();
+        return expected.sb.toString();
+    }
+
+    private static void assertDecodesAsParsed(DataExportMessage message) {
+        ByteBuffer bb = PollDataFixtures.format(message);
+        Recorder recorder = new Recorder();
+        assertTrue(new ExtendedPollDataDecoder().decode(bb, recorder));
+        assertEquals(bb.limit(), bb.position());
+
+        bb.position(0);
+        assertEquals(expected(bb), recorder.sb.toString());
+    }
+
+    @Test
+    public void testNumerics() {
+        assertDecodesAsParsed(PollDataFixtures.numericPoll(3, 12));
+    }
+
+    @Test
+    public void testWaves() {
+        assertDecodesAsParsed(PollDataFixtures.wavePoll(5, 4, 64));
+    }
+
+    @Test
+    public void testEmptyPoll() {
+        assertDecodesAsParsed(PollDataFixtures.numericPoll(1, 0));
+    }
+
+    @Test
+    public void testOtherActionLeftForParser() {
+        DataExportResult message = PollDataFixtures.numericPoll(7, 2);
+        ((ActionResultImpl) message.getCommand()).setActionType(ObjectClass.NOM_ACT_POLL_MDIB_DATA.asOID());
+        ByteBuffer bb = PollDataFixtures.format(message);
+        int limit = bb.limit();
+        Recorder recorder = new Recorder();
+        assertFalse(new ExtendedPollDataDecoder().decode(bb, recorder));
+        assertEquals(0, bb.position());
+        assertEquals(limit, bb.limit());
+        assertEquals("", recorder.sb.toString());
+    }
+
+    @Test
+    public void testDeclinedPollLeftForParser() {
+        ByteBuffer bb = PollDataFixtures.format(PollDataFixtures.numericPoll(7, 2));
+        int limit = bb.limit();
+        Recorder recorder = new Recorder();
+        recorder.accept = false;
+        assertFalse(new ExtendedPollDataDecoder().decode(bb, recorder));
+        assertEquals(0, bb.position());
+        assertEquals(limit, bb.limit());
+
+        assertTrue(new CompoundProtocol().parse(bb) instanceof DataExportResultImpl);
+    }
+
+    @Test
+    public void testTruncatedPollDropped() {
+        ByteBuffer bb = PollDataFixtures.format(PollDataFixtures.wavePoll(2, 2, 32));
+        bb.limit(bb.limit() - 10);
+        Recorder recorder = new Recorder();
+        assertTrue(new ExtendedPollDataDecoder().decode(bb, recorder));
+        assertEquals(bb.limit(), bb.position());
+        assertFalse(recorder.sb.toString().contains("end"));
+    }
+}
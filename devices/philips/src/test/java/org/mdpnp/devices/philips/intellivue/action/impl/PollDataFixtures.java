@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action.impl;
+
+import java.nio.ByteBuffer;
+
+import org.mdpnp.devices.philips.intellivue.CompoundProtocol;
+import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
+import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.NomPartition;
+import org.mdpnp.devices.philips.intellivue.data.NumericObservedValue;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.data.ObservedValue;
+import org.mdpnp.devices.philips.intellivue.data.RelativeTime;
+import org.mdpnp.devices.philips.intellivue.data.SampleArrayObservedValue;
+import org.mdpnp.devices.philips.intellivue.data.SampleArraySpecification;
+import org.mdpnp.devices.philips.intellivue.data.UnitCode;
+import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportMessage;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportResult;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.impl.ActionResultImpl;
+import org.mdpnp.devices.philips.intellivue.dataexport.impl.DataExportResultImpl;
+
+/**
+ * Extended poll results like those a monitor sends, built with the message
+ * classes and formatted into datagrams.
+ */
+public final class PollDataFixtures {
+    private PollDataFixtures() {
+    }
+
+    private static final ObservedValue[] NUMERICS = new ObservedValue[] { ObservedValue.NOM_PULS_OXIM_SAT_O2, ObservedValue.NOM_ECG_CARD_BEAT_RATE,
+            ObservedValue.NOM_PLETH_PULS_RATE };
+    private static final UnitCode[] UNITS = new UnitCode[] { UnitCode.NOM_DIM_PERCENT, UnitCode.NOM_DIM_BEAT_PER_MIN, UnitCode.NOM_DIM_BEAT_PER_MIN };
+
+    private static final ObservedValue[] WAVES = new ObservedValue[] { ObservedValue.NOM_ECG_ELEC_POTL_II, ObservedValue.NOM_PLETH };
+
+    private static ExtendedPollDataResultImpl poll(int pollNumber, ObjectClass polled, DataExportResultImpl message) {
+        ActionResultImpl action = new ActionResultImpl();
+        action.getManagedObject().setOidType(ObjectClass.NOM_MOC_VMS_MDS);
+        action.setActionType(ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asOID());
+        action.setMessage(message);
+
+        ExtendedPollDataResultImpl result = new ExtendedPollDataResultImpl();
+        result.setAction(action);
+        result.setPollNumber(pollNumber);
+        result.getRelativeTime().setRelativeTime(8000L * pollNumber);
+        result.getPolledObjType().setNomPartition(NomPartition.Object);
+        result.getPolledObjType().setOidType(polled.asOID());
+        result.setPolledAttributeGroup(AttributeId.NOM_ATTR_GRP_METRIC_VAL_OBS.asOid());
+        action.setAction(result);
+
+        message.setInvoke(pollNumber);
+        message.setCommandType(CommandType.ConfirmedAction);
+        message.setCommand(action);
+        return result;
+    }
+
+    /**
+     * A poll of numerics, each with a relative timestamp and its value
+     */
+    public static DataExportResult numericPoll(int pollNumber, int observations) {
+        DataExportResultImpl message = new DataExportResultImpl();
+        SingleContextPollImpl context = new SingleContextPollImpl();
+        poll(pollNumber, ObjectClass.NOM_MOC_VMO_METRIC_NU, message).getPollInfoList().add(context);
+
+        for (int i = 0; i < observations; i++) {
+            ObservationPollImpl observation = new ObservationPollImpl();
+            observation.getHandle().setHandle(0x100 + i);
+
+            Attribute<RelativeTime> timestamp = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_STAMP_REL, RelativeTime.class);
+            timestamp.getValue().setRelativeTime(8000L * pollNumber);
+            observation.getAttributes().add(timestamp);
+
+            Attribute<NumericObservedValue> numeric = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_NU_VAL_OBS, NumericObservedValue.class);
+            numeric.getValue().setPhysioId(NUMERICS[i % NUMERICS.length].asOID());
+            numeric.getValue().setUnitCode(UNITS[i % UNITS.length].asOID());
+            numeric.getValue().getValue().setFloat(60.0 + i + 0.5 * (pollNumber % 4));
+            observation.getAttributes().add(numeric);
+
+            context.getPollInfo().add(observation);
+        }
+        return message;
+    }
+
+    /**
+     * A poll of waves, each with its specification, sample period and one
+     * byte samples
+     */
+    public static DataExportResult wavePoll(int pollNumber, int observations, int samples) {
+        DataExportResultImpl message = new DataExportResultImpl();
+        SingleContextPollImpl context = new SingleContextPollImpl();
+        poll(pollNumber, ObjectClass.NOM_MOC_VMO_METRIC_SA_RT, message).getPollInfoList().add(context);
+
+        for (int i = 0; i < observations; i++) {
+            ObservationPollImpl observation = new ObservationPollImpl();
+            observation.getHandle().setHandle(0x200 + i);
+
+            Attribute<SampleArraySpecification> spec = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_SPECN, SampleArraySpecification.class);
+            spec.getValue().setArraySize(samples);
+            spec.getValue().setSampleSize((short) 8);
+            spec.getValue().setSignificantBits((short) 8);
+            observation.getAttributes().add(spec);
+
+            Attribute<RelativeTime> period = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_SAMP, RelativeTime.class);
+            period.getValue().setRelativeTime(32L);
+            observation.getAttributes().add(period);
+
+            Attribute<SampleArrayObservedValue> wave = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS, SampleArrayObservedValue.class);
+            short[] value = new short[samples];
+            for (int j = 0; j < samples; j++) {
+                value[j] = (short) (0xFF & (pollNumber * samples + j * (i + 1)));
+            }
+            wave.getValue().setPhysioId(WAVES[i % WAVES.length].asOID());
+            wave.getValue().setValue(value);
+            wave.getValue().setLength(samples);
+            observation.getAttributes().add(wave);
+
+            context.getPollInfo().add(observation);
+        }
+        return message;
+    }
+
+    public static ByteBuffer format(DataExportMessage message) {
+        ByteBuffer bb = ByteBuffer.allocate(65536);
+        new CompoundProtocol().format(message, bb);
+        bb.flip();
+        return bb;
+    }
+}
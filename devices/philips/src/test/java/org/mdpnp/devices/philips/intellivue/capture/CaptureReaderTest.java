@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.Intellivue;
+
+public class CaptureReaderTest {
+    static File newCaptureFile() throws IOException {
+        File f = File.createTempFile("CaptureReaderTest-", ".ivc");
+        f.delete();
+        f.deleteOnExit();
+        return f;
+    }
+
+    static ByteBuffer datagram(int length, int seed) {
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++) {
+            bb.put((byte) (seed + i));
+        }
+        bb.flip();
+        return bb;
+    }
+
+    private static void assertDatagram(ByteBuffer expected, ByteBuffer actual) {
+        assertEquals(expected.remaining(), actual.remaining());
+        for (int i = 0; i < expected.remaining(); i++) {
+            assertEquals(expected.get(expected.position() + i), actual.get(actual.position() + i));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File f = newCaptureFile();
+        long before = System.currentTimeMillis();
+        ByteBuffer first = datagram(100, 1), second = datagram(Intellivue.BUFFER_SIZE, 2), third = datagram(1, 3);
+        // larger than the writer stages at once
+        ByteBuffer large = datagram(0xFFFF, 4);
+
+        CaptureWriter writer = new CaptureWriter(f);
+        writer.received(first);
+        writer.sent(second);
+        for (int i = 0; i < 3; i++) {
+            writer.received(large);
+        }
+        writer.received(third);
+        assertEquals(100, first.remaining());
+        assertEquals(6, writer.getRecords());
+        writer.close();
+
+        CaptureReader reader = new CaptureReader(f);
+        try {
+            assertTrue(reader.getStartTime() >= before);
+            for (int pass = 0; pass < 2; pass++) {
+                assertTrue(reader.next());
+                assertEquals(CaptureWriter.RECEIVED, reader.getDirection());
+                assertDatagram(first, reader.getDatagram());
+                long time = reader.getTime();
+
+                assertTrue(reader.next());
+                assertEquals(CaptureWriter.SENT, reader.getDirection());
+                assertDatagram(second, reader.getDatagram());
+                assertTrue(reader.getTime() >= time);
+
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(reader.next());
+                    assertDatagram(large, reader.getDatagram());
+                }
+                assertTrue(reader.next());
+                assertDatagram(third, reader.getDatagram());
+                assertFalse(reader.next());
+                reader.rewind();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testTornRecordIgnored() throws IOException {
+        File f = newCaptureFile();
+        CaptureWriter writer = new CaptureWriter(f);
+        writer.received(datagram(10, 1));
+        writer.received(datagram(10, 2));
+        writer.close();
+
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(raf.length() - 1L);
+        raf.close();
+
+        CaptureReader reader = new CaptureReader(f);
+        try {
+            assertTrue(reader.next());
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testNotACapture() throws IOException {
+        File f = newCaptureFile();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.write(new byte[CaptureWriter.HEADER_SIZE]);
+        raf.close();
+        try {
+            new CaptureReader(f).close();
+            fail("read a file without the capture header");
+        } catch (IOException e) {
+        }
+    }
+}
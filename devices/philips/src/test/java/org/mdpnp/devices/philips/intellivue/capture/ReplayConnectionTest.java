@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+import org.mdpnp.devices.net.NetworkLoop;
+
+public class ReplayConnectionTest {
+
+    private static File capture(long gapMs) throws Exception {
+        File f = CaptureReaderTest.newCaptureFile();
+        CaptureWriter writer = new CaptureWriter(f);
+        writer.sent(CaptureReaderTest.datagram(20, 0));
+        writer.received(CaptureReaderTest.datagram(10, 1));
+        writer.sent(CaptureReaderTest.datagram(20, 0));
+        Thread.sleep(gapMs);
+        writer.received(CaptureReaderTest.datagram(10, 2));
+        writer.received(CaptureReaderTest.datagram(10, 3));
+        writer.close();
+        return f;
+    }
+
+    private interface Driver {
+        void run(DatagramSocket socket, ReplayConnection replay) throws Exception;
+    }
+
+    private static void replay(File f, double speed, Driver driver) throws Exception {
+        NetworkLoop loop = new NetworkLoop();
+        Thread thread = new Thread(loop, "Network Loop");
+        thread.setDaemon(true);
+        thread.start();
+        CaptureReader reader = new CaptureReader(f);
+        ReplayConnection replay = new ReplayConnection(reader, speed, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), loop);
+        DatagramSocket socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        try {
+            socket.setSoTimeout(5000);
+            socket.connect(replay.getReplaySideAddress());
+            // stands in for the association request that begins the replay
+            socket.send(new DatagramPacket(new byte[4], 4));
+            driver.run(socket, replay);
+        } finally {
+            socket.close();
+            replay.shutdown();
+            loop.cancelThreadAndWait();
+            reader.close();
+        }
+    }
+
+    private static byte receive(DatagramSocket socket) throws IOException {
+        DatagramPacket p = new DatagramPacket(new byte[100], 100);
+        socket.receive(p);
+        assertEquals(10, p.getLength());
+        return p.getData()[0];
+    }
+
+    private static void awaitFinished(ReplayConnection replay) throws InterruptedException {
+        for (int i = 0; i < 500 && !replay.isFinished(); i++) {
+            Thread.sleep(10L);
+        }
+        assertTrue(replay.isFinished());
+    }
+
+    @Test
+    public void testMaxSpeed() throws Exception {
+        replay(capture(200L), ReplayConnection.MAX_SPEED, new Driver() {
+            @Override
+            public void run(DatagramSocket socket, ReplayConnection replay) throws Exception {
+                long start = System.nanoTime();
+                assertEquals(1, receive(socket));
+                assertEquals(2, receive(socket));
+                assertEquals(3, receive(socket));
+                assertTrue(System.nanoTime() - start < 200000000L);
+                awaitFinished(replay);
+                assertTrue(replay.isStarted());
+                assertEquals(3, replay.getSent());
+                assertEquals(1, replay.getReceived());
+            }
+        });
+    }
+
+    @Test
+    public void testScaledSpeed() throws Exception {
+        replay(capture(200L), 4.0, new Driver() {
+            @Override
+            public void run(DatagramSocket socket, ReplayConnection replay) throws Exception {
+                assertEquals(1, receive(socket));
+                long first = System.nanoTime();
+                assertEquals(2, receive(socket));
+                // 200ms captured at 4x
+                assertTrue(System.nanoTime() - first >= 45000000L);
+                assertEquals(3, receive(socket));
+                awaitFinished(replay);
+                assertEquals(3, replay.getSent());
+            }
+        });
+    }
+}
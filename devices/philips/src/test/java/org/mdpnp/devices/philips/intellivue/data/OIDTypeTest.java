@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class OIDTypeTest {
+    private static final int THREADS = 8;
+    // beyond the 16 bit table into the fallback map
+    private static final int TYPES = 0x10000 + 256;
+
+    @Test
+    public void testLookup() {
+        assertEquals(0xF23A, OIDType.lookup(0xF23A).getType());
+        assertSame(OIDType.lookup(0xF23A), OIDType.lookup(0xF23A));
+        assertSame(OIDType.lookup(-5), OIDType.lookup(-5));
+        assertSame(OIDType.lookup(0x12345), OIDType.lookup(0x12345));
+        assertSame(ObservedValue.NOM_PLETH.asOID(), OIDType.lookup(ObservedValue.NOM_PLETH.asInt()));
+    }
+
+    @Test
+    public void testConcurrentLookup() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<OIDType[]>> futures = new ArrayList<Future<OIDType[]>>();
+            for (int i = 0; i < THREADS; i++) {
+                final int offset = i * 7919;
+                futures.add(executor.submit(new Callable<OIDType[]>() {
+                    @Override
+                    public OIDType[] call() throws Exception {
+                        OIDType[] seen = new OIDType[TYPES];
+                        start.await();
+                        // each thread walks the types from a different place so they race on first use
+                        for (int j = 0; j < TYPES; j++) {
+                            int type = (offset + j) % TYPES;
+                            seen[type] = OIDType.lookup(type);
+                            ObservedValue.valueOf(type);
+                            UnitCode.valueOf(type);
+                        }
+                        return seen;
+                    }
+                }));
+            }
+            start.countDown();
+
+            OIDType[] first = futures.get(0).get();
+            for (int type = 0; type < TYPES; type++) {
+                assertEquals(type, first[type].getType());
+            }
+            for (Future<OIDType[]> f : futures) {
+                OIDType[] seen = f.get();
+                for (int type = 0; type < TYPES; type++) {
+                    assertSame(first[type], seen[type]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
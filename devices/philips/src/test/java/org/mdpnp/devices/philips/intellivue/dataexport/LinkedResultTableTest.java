@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.dataexport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.dataexport.impl.DataExportLinkedResultImpl;
+
+public class LinkedResultTableTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Test
+    public void testCompletes() {
+        LinkedResultTable table = new LinkedResultTable(4);
+        DataExportLinkedResult r = new DataExportLinkedResultImpl();
+        table.put(7, r, 0L);
+        assertSame(r, table.get(7, 10 * MS));
+        assertSame(r, table.remove(7));
+        assertEquals(0, table.size());
+        assertNull(table.remove(7));
+    }
+
+    @Test
+    public void testSegmentsExtendDeadline() {
+        LinkedResultTable table = new LinkedResultTable(4);
+        table.setTimeout(100L, TimeUnit.MILLISECONDS);
+        table.put(1, new DataExportLinkedResultImpl(), 0L);
+        table.put(2, new DataExportLinkedResultImpl(), 0L);
+        table.get(2, 80 * MS);
+
+        assertEquals(0, table.expire(99 * MS));
+        assertEquals(1, table.expire(100 * MS));
+        assertNull(table.get(1, 100 * MS));
+        assertEquals(1, table.size());
+        assertEquals(1, table.expire(200 * MS));
+        assertEquals(2, table.getExpired());
+        assertEquals(1, table.getDroppedFragments());
+    }
+
+    @Test
+    public void testEvictsNearestDeadline() {
+        LinkedResultTable table = new LinkedResultTable(2);
+        DataExportLinkedResult second = new DataExportLinkedResultImpl();
+        DataExportLinkedResult third = new DataExportLinkedResultImpl();
+        table.put(1, new DataExportLinkedResultImpl(), 0L);
+        table.put(2, second, 5 * MS);
+        table.put(3, third, 10 * MS);
+
+        assertEquals(2, table.size());
+        assertEquals(1, table.getEvicted());
+        assertNull(table.remove(1));
+        assertSame(second, table.remove(2));
+        assertSame(third, table.remove(3));
+    }
+
+    @Test
+    public void testFirstReplacesStale() {
+        LinkedResultTable table = new LinkedResultTable(2);
+        DataExportLinkedResult fresh = new DataExportLinkedResultImpl();
+        table.put(9, new DataExportLinkedResultImpl(), 0L);
+        table.put(9, fresh, 1 * MS);
+
+        assertEquals(1, table.size());
+        assertEquals(1, table.getEvicted());
+        assertSame(fresh, table.get(9, 2 * MS));
+    }
+
+    @Test
+    public void testStaysBounded() {
+        LinkedResultTable table = new LinkedResultTable();
+        // a lossy link that never delivers the last segment, across invoke id wrap
+        for (int i = 0; i < 0x20000; i++) {
+            table.put(0xFFFF & i, new DataExportLinkedResultImpl(), i * MS);
+            table.expire(i * MS);
+            assertEquals(true, table.size() <= table.capacity());
+        }
+        assertEquals(0x20000, table.getExpired() + table.getEvicted() + table.size());
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.dataexport.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.action.impl.PollDataFixtures;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportMessage;
+import org.mdpnp.devices.philips.intellivue.dataexport.LinkedResultTable;
+import org.mdpnp.devices.philips.intellivue.dataexport.RemoteOperation;
+import org.mdpnp.devices.philips.intellivue.dataexport.RemoteOperationLinkedState;
+
+public class DataExportProtocolImplTest {
+
+    // the formatted Result as one segment of a linked result
+    private static ByteBuffer linked(ByteBuffer result, RemoteOperationLinkedState state) {
+        ByteBuffer bb = ByteBuffer.allocate(result.remaining() + 2);
+        bb.put(result.array(), 0, 4);
+        bb.putShort((short) RemoteOperation.LinkedResult.asInt());
+        bb.putShort((short) (result.getShort(6) + 2));
+        bb.put((byte) state.asShort());
+        bb.put((byte) 1);
+        bb.put(result.array(), 8, result.remaining() - 8);
+        bb.flip();
+        return bb;
+    }
+
+    @Test
+    public void testLinkedResult() {
+        DataExportProtocolImpl protocol = new DataExportProtocolImpl();
+        LinkedResultTable table = protocol.getLinkedResults();
+        ByteBuffer result = PollDataFixtures.format(PollDataFixtures.numericPoll(4, 3));
+
+        assertNull(protocol.parse(linked(result, RemoteOperationLinkedState.First)));
+        assertEquals(1, table.size());
+
+        // the invoke id came around again before the earlier result completed
+        assertNull(protocol.parse(linked(result, RemoteOperationLinkedState.First)));
+        assertEquals(1, table.size());
+        assertEquals(1, table.getEvicted());
+
+        DataExportMessage message = protocol.parse(result.duplicate());
+        assertTrue(message instanceof DataExportLinkedResultImpl);
+        assertEquals(0, table.size());
+
+        // an ordinary Result with nothing pending
+        assertTrue(protocol.parse(result.duplicate()) instanceof DataExportResultImpl);
+    }
+
+    @Test
+    public void testOrphanSegmentDropped() {
+        DataExportProtocolImpl protocol = new DataExportProtocolImpl();
+        ByteBuffer bb = linked(PollDataFixtures.format(PollDataFixtures.numericPoll(4, 3)), RemoteOperationLinkedState.NotFirstNotLast);
+
+        assertNull(protocol.parse(bb));
+        assertEquals(bb.limit(), bb.position());
+        assertEquals(0, protocol.getLinkedResults().size());
+        assertEquals(1, protocol.getLinkedResults().getDroppedFragments());
+    }
+
+    @Test
+    public void testExpiredResultNotMerged() {
+        DataExportProtocolImpl protocol = new DataExportProtocolImpl();
+        LinkedResultTable table = protocol.getLinkedResults();
+        ByteBuffer result = PollDataFixtures.format(PollDataFixtures.numericPoll(4, 3));
+
+        assertNull(protocol.parse(linked(result, RemoteOperationLinkedState.First)));
+        assertEquals(1, table.expire(System.nanoTime() + table.getTimeout(java.util.concurrent.TimeUnit.NANOSECONDS)));
+
+        DataExportMessage message = protocol.parse(result.duplicate());
+        assertSame(DataExportResultImpl.class, message.getClass());
+        assertEquals(1, table.getExpired());
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.puritanbennett._840;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenizing a MISCF or MISCA response and delivering its fields, either
+ * the same response over and over so only the alerts are restated or
+ * alternating responses in which every numeric changes. receive also
+ * assembles the lines from a stream, two responses to an operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PB840ParametersBenchmark {
+    @Param({ "MISCF", "MISCA" })
+    public String type;
+
+    @Param({ "false", "true" })
+    public boolean changing;
+
+    private byte[][] responses;
+    private ByteArrayInputStream pair;
+    private int next;
+    private Consumer line, stream;
+
+    private static final class Consumer extends PB840Parameters {
+        float sum;
+        int length;
+
+        Consumer(ByteArrayInputStream in) {
+            super(in, new ByteArrayOutputStream());
+        }
+
+        @Override
+        public void receiveNumeric(String name, PB840.Units units, float value) {
+            sum += value;
+        }
+
+        @Override
+        public void receiveAlarmLimit(String metricName, PB840.Units unitID, float value, String limitType) {
+            sum += value;
+        }
+
+        @Override
+        public void receivePatientAlert(String name, String value) {
+            length += value.length();
+        }
+
+        @Override
+        public void receiveTechnicalAlert(String name, String value) {
+            length += value.length();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        responses = new byte[][] { PB840Fixtures.response(type, 0), PB840Fixtures.response(type, 1) };
+        ByteArrayOutputStream both = new ByteArrayOutputStream();
+        both.write(responses[0], 0, responses[0].length);
+        both.write(responses[changing ? 1 : 0], 0, responses[0].length);
+        pair = new ByteArrayInputStream(both.toByteArray());
+        line = new Consumer(new ByteArrayInputStream(new byte[0]));
+        stream = new Consumer(pair);
+    }
+
+    private int next() {
+        return changing ? (next ^= 1) : 0;
+    }
+
+    @Benchmark
+    public float receiveLine() {
+        byte[] response = responses[next()];
+        // without the CR
+        line.receiveLine(response, response.length - 1);
+        return line.sum + line.length;
+    }
+
+    @Benchmark
+    public float receive() throws IOException {
+        pair.reset();
+        stream.receive();
+        return stream.sum + stream.length;
+    }
+}
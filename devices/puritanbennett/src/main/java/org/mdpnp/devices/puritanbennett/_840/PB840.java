@@ -40,10 +40,13 @@ public abstract class PB840 {
     }
     
     protected final BufferedReader in;
+    // the undecoded stream for subclasses that tokenize bytes themselves
+    protected final InputStream inputStream;
     protected final OutputStream out;
     
     public PB840(InputStream in, OutputStream out) {
         this.in = new BufferedReader(new InputStreamReader(in, Charset.forName("ASCII")));
+        this.inputStream = in;
         this.out = out;
     }
     public abstract boolean receive() throws IOException;
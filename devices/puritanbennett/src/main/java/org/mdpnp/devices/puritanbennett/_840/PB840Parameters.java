@@ -5,13 +5,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +20,13 @@ public class PB840Parameters extends PB840 {
     public PB840Parameters(final InputStream in, final OutputStream out) {
         super(in, out);
         loadFields(fields);
+        responseTypes = fields.keySet().toArray(new String[0]);
+        responseTypeBytes = new byte[responseTypes.length][];
+        responseFields = new Field[responseTypes.length][];
+        for (int i = 0; i < responseTypes.length; i++) {
+            responseTypeBytes[i] = responseTypes[i].getBytes(ASCII);
+            responseFields[i] = fields.get(responseTypes[i]);
+        }
     }
     
 
@@ -40,118 +47,379 @@ public class PB840Parameters extends PB840 {
         out.flush();
     }
     
-    private static final Pattern dataField = Pattern.compile("([^,\\03]*)[,\\03]{1,2}");
-    
     private static final Logger log = LoggerFactory.getLogger(PB840Parameters.class);
     
-    protected final List<String> fieldValues = new ArrayList<String>(173);
+    private static final Charset ASCII = Charset.forName("ASCII");
+    private static final byte ETX = 0x03;
+    // a MISCF response is about 1200 bytes; anything past this is not a response
+    private static final int MAX_LINE = 65536;
+    
+    // response types named in pb840.fields, their bytes and their fields
+    private final String[] responseTypes;
+    private final byte[][] responseTypeBytes;
+    private final Field[][] responseFields;
     
+    // reused across responses; bytes are read in blocks and lines are
+    // assembled in place without decoding them to characters
+    private final byte[] input = new byte[1024];
+    private int inputPosition, inputLimit;
+    private boolean skipLineFeed;
+    private byte[] line = new byte[2048];
+    
+    // Trimmed bounds of the fields of the line being handled, numbered as in
+    // pb840.fields: 1 is the response type, 2 the byte count, 3 the field
+    // count, 4 stands in for <STX> and the data fields follow from 5
+    private byte[] tokens;
+    private int[] fieldStart = new int[256], fieldEnd = new int[256];
+    private int lastField;
     
     /**
-     * Receives and parses a MISCA or MISCF response from the PB840
+     * Receives and parses MISCA or MISCF responses from the PB840 until the
+     * stream ends
      * @return
      * @throws IOException
      */
     public boolean receive() throws IOException {
         for(;;) {
-            String line = in.readLine();
-            if(null == line) {
+            int length = readLine();
+            if(length < 0) {
                 return true;
             }
-            
-            log.trace("READ A PARAMETER LINE:"+line);
-            
-            Matcher dataFieldMatch = dataField.matcher(line);
-            
-            fieldValues.clear();
-            fieldValues.add("ZERO");
-            if(dataFieldMatch.find()) {
-                final String responseType = dataFieldMatch.group(1).trim();
-                try {
-                    // I want to generate the receiveStartResponse/receiveEndResponse sequence on EVERY LINE
-                    // In this way consumers of this class can safely chain new requests to prior responses
-                    // even where the response is not understood
-                    receiveStartResponse(responseType);
-                    fieldValues.add(responseType);
-                    if(dataFieldMatch.find()) {
-                        fieldValues.add(dataFieldMatch.group(1).trim());
-                        @SuppressWarnings("unused")
-                        int bytes = 0;
-                        try {
-                            bytes = Integer.parseInt(dataFieldMatch.group(1).trim());
-                        } catch(NumberFormatException nfe) {
-                            log.warn(line);
-                            log.warn("Received an invalid byte count ", nfe);
-                            continue;
-                        }
-                        //#bytes between <STX> and <CR>
-                        if(dataFieldMatch.find()) {
-                            String s = dataFieldMatch.group(1).trim();
-                            fieldValues.add(s);
-                            int fieldCount = 0; 
-                            try {
-                                fieldCount = Integer.parseInt(s);//#fields between <STX> and <CR>
-                            } catch(NumberFormatException nfe) {
-                                log.warn(line);
-                                log.warn("Received an invalid field count ", nfe);
-                                continue;
-                            }
-                            fieldValues.add("<STX"); // This will keep field numbers consistent
-                            Field field = null;
-                            try {
-                                for(int i = 0; i < fieldCount; i++) {
-                                    if(dataFieldMatch.find()) {
-                                        fieldValues.add(dataFieldMatch.group(1).trim());
-                                    } else {
-                                        log.warn(line);
-                                        log.warn("Missing expected field " + (i+1) +", aborting this line...");
-                                        continue;
-                                    }
-                                }
-                                if(fieldValues.size() < (fieldCount + 5)) {
-                                    log.warn(line);
-                                    log.warn("Received " + fieldValues.size() + " fields where " + (fieldCount+5) + " expected");
-                                    continue;
-                                }
-                                fieldValues.add("<ETX>"); // for consistency
-                                fieldValues.add("<CR>");
-                                final Field[] fields = this.fields.get(responseType);
-                                if(fields != null) {
-                                    for (int i = 0; i < fields.length; i++) {
-                                        field = fields[i];
-                                        field.handle(fieldValues);
-                                    }
-                                } else {
-                                    log.warn(line);
-                                    log.warn("Unknown response type " + responseType);
-                                }
-                            } catch(NumberFormatException nfe) {
-                                log.error("Error in field " + field);
-                            }
-                        } else {
-                            log.warn(line);
-                            log.warn("Not a valid response, no field count:"+line);
-                        }
-                    } else {
-                        log.warn(line);
-                        log.warn("Not a valid response, no bytes:"+line);
+            receiveLine(line, length);
+        }
+    }
+    
+    /**
+     * Assembles the next CR, LF or CRLF terminated line in the line buffer
+     * @return the length of the line or -1 at the end of the stream
+     * @throws IOException
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        boolean overflow = false;
+        for(;;) {
+            if(inputPosition == inputLimit) {
+                int n = inputStream.read(input, 0, input.length);
+                if(n < 0) {
+                    return length > 0 || overflow ? length : -1;
+                }
+                inputPosition = 0;
+                inputLimit = n;
+                continue;
+            }
+            final byte[] input = this.input;
+            int position = inputPosition;
+            final int limit = inputLimit;
+            if(skipLineFeed) {
+                skipLineFeed = false;
+                if('\n' == input[position]) {
+                    inputPosition = position + 1;
+                    continue;
+                }
+            }
+            int end = position;
+            while(end < limit && '\r' != input[end] && '\n' != input[end]) {
+                end++;
+            }
+            final int n = end - position;
+            if(!overflow) {
+                if(length + n > line.length && length + n <= MAX_LINE) {
+                    line = Arrays.copyOf(line, Math.min(MAX_LINE, Math.max(2 * line.length, length + n)));
+                }
+                if(length + n <= line.length) {
+                    System.arraycopy(input, position, line, length, n);
+                    length += n;
+                } else {
+                    overflow = true;
+                }
+            }
+            if(end == limit) {
+                inputPosition = limit;
+                continue;
+            }
+            skipLineFeed = '\r' == input[end];
+            inputPosition = end + 1;
+            if(overflow) {
+                log.warn("Discarded a line longer than " + MAX_LINE + " bytes");
+                return 0;
+            }
+            return length;
+        }
+    }
+    
+    /**
+     * Parses one MISCA or MISCF response without its terminating CR
+     */
+    protected void receiveLine(final byte[] line, final int length) {
+        if(log.isTraceEnabled()) {
+            log.trace("READ A PARAMETER LINE:"+new String(line, 0, length, ASCII));
+        }
+        tokens = line;
+        lastField = 0;
+        int position = nextField(1, 0, length);
+        if(position < 0) {
+            try {
+                // Generate this sequence for every CR terminated line!
+                receiveStartResponse("");
+            } finally {
+                receiveEndResponse();
+            }
+            warn(length, "Not a valid response");
+            return;
+        }
+        final int type = responseType();
+        try {
+            // I want to generate the receiveStartResponse/receiveEndResponse sequence on EVERY LINE
+            // In this way consumers of this class can safely chain new requests to prior responses
+            // even where the response is not understood
+            receiveStartResponse(type < 0 ? new String(line, fieldStart[1], fieldEnd[1] - fieldStart[1], ASCII) : responseTypes[type]);
+            position = nextField(2, position, length);
+            if(position < 0) {
+                warn(length, "Not a valid response, no bytes");
+                return;
+            }
+            //#bytes between <STX> and <CR>
+            if(parseInt(line, fieldStart[2], fieldEnd[2]) < 0) {
+                warn(length, "Received an invalid byte count");
+                return;
+            }
+            position = nextField(3, position, length);
+            if(position < 0) {
+                warn(length, "Not a valid response, no field count");
+                return;
+            }
+            //#fields between <STX> and <CR>
+            final int fieldCount = parseInt(line, fieldStart[3], fieldEnd[3]);
+            if(fieldCount < 0) {
+                warn(length, "Received an invalid field count");
+                return;
+            }
+            if(fieldCount + 5 > fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount + 5);
+                fieldEnd = Arrays.copyOf(fieldEnd, fieldCount + 5);
+            }
+            // This will keep field numbers consistent
+            fieldStart[4] = fieldEnd[4] = 0;
+            for(int i = 0; i < fieldCount; i++) {
+                position = nextField(5 + i, position, length);
+                if(position < 0) {
+                    warn(length, "Received " + (i + 5) + " fields where " + (fieldCount + 5) + " expected");
+                    return;
+                }
+            }
+            lastField = fieldCount + 4;
+            if(type < 0) {
+                warn(length, "Unknown response type");
+                return;
+            }
+            final Field[] fields = responseFields[type];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].handle();
+            }
+        } finally {
+            receiveEndResponse();
+        }
+    }
+    
+    private void warn(int length, String message) {
+        log.warn(new String(tokens, 0, length, ASCII));
+        log.warn(message);
+    }
+    
+    private static boolean isDelimiter(byte b) {
+        return ',' == b || ETX == b;
+    }
+    
+    /**
+     * Finds the field starting at position as the expression
+     * ([^,\03]*)[,\03]{1,2} once did; a field is only complete once it is
+     * delimited. Leading and trailing control characters and spaces, the
+     * <STX> among them, are trimmed away.
+     * @return where the next field begins or -1 if there is no field here
+     */
+    private int nextField(int index, int position, int length) {
+        final byte[] tokens = this.tokens;
+        int end = position;
+        while(end < length && !isDelimiter(tokens[end])) {
+            end++;
+        }
+        if(end >= length) {
+            return -1;
+        }
+        int start = position, stop = end;
+        while(start < stop && (0xFF & tokens[start]) <= ' ') {
+            start++;
+        }
+        while(stop > start && (0xFF & tokens[stop - 1]) <= ' ') {
+            stop--;
+        }
+        fieldStart[index] = start;
+        fieldEnd[index] = stop;
+        end++;
+        if(end < length && isDelimiter(tokens[end])) {
+            end++;
+        }
+        return end;
+    }
+    
+    private int responseType() {
+        final int length = fieldEnd[1] - fieldStart[1];
+        for(int i = 0; i < responseTypeBytes.length; i++) {
+            final byte[] type = responseTypeBytes[i];
+            if(type.length == length && regionMatches(type, tokens, fieldStart[1], length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean regionMatches(byte[] a, byte[] b, int offset, int length) {
+        for(int i = 0; i < length; i++) {
+            if(a[i] != b[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static final byte[] OFF = new byte[] {'O', 'F', 'F'};
+    
+    // a blank or OFF field carries no value
+    private boolean isAbsent(int fieldNumber) {
+        final int length = fieldEnd[fieldNumber] - fieldStart[fieldNumber];
+        return 0 == length || (OFF.length == length && regionMatches(OFF, tokens, fieldStart[fieldNumber], length));
+    }
+    
+    /**
+     * Parses an unsigned decimal integer
+     * @return the value or -1 if there are no digits or anything but digits
+     */
+    protected static final int parseInt(byte[] buf, int start, int end) {
+        if(start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for(int i = start; i < end; i++) {
+            int digit = buf[i] - '0';
+            if(digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18 };
+    
+    /**
+     * Parses a trimmed decimal number as Float.parseFloat would, but in place
+     * and returning Float.NaN rather than throwing when the field is blank,
+     * OFF or otherwise not a number
+     */
+    protected static final float parseFloat(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if(i < end && ('-' == buf[i] || '+' == buf[i])) {
+            negative = '-' == buf[i++];
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean point = false;
+        for(; i < end; i++) {
+            int b = buf[i];
+            if(b >= '0' && b <= '9') {
+                if(++digits > 18) {
+                    // beyond what a long holds exactly; not worth doing here
+                    try {
+                        return Float.parseFloat(new String(buf, start, end - start, ASCII));
+                    } catch(NumberFormatException nfe) {
+                        return Float.NaN;
                     }
-                } finally {
-                    receiveEndResponse();
                 }
-            } else {
-                try {
-                    // Generate this sequence for every CR terminated line!
-                    receiveStartResponse("");
-                } finally {
-                    receiveEndResponse();
+                mantissa = mantissa * 10 + b - '0';
+                if(point) {
+                    scale++;
                 }
-                log.warn(line);
-                log.warn("Not a valid response:"+line);
+            } else if('.' == b && !point) {
+                point = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if(0 == digits) {
+            return Float.NaN;
+        }
+        double v = mantissa / POWERS_OF_TEN[scale];
+        return (float) (negative ? -v : v);
+    }
+    
+    private float parseFloat(int fieldNumber) {
+        return parseFloat(tokens, fieldStart[fieldNumber], fieldEnd[fieldNumber]);
+    }
+    
+    // Float.NaN is delivered only for a blank or OFF field; anything else that
+    // does not parse is logged and skipped so the last good value stands
+    private boolean malformed(Field field, int fieldNumber, float value) {
+        if(Float.isNaN(value) && !isAbsent(fieldNumber)) {
+            log.warn("Poorly formatted " + field + " value " + new String(tokens, fieldStart[fieldNumber], fieldEnd[fieldNumber] - fieldStart[fieldNumber], ASCII));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * The text of a field, decoded only when it differs from the text last
+     * decoded into the same cache
+     */
+    private String text(int fieldNumber, Text cache) {
+        final int start = fieldStart[fieldNumber], length = fieldEnd[fieldNumber] - start;
+        if(null == cache.value || cache.length != length || !regionMatches(cache.bytes, tokens, start, length)) {
+            if(cache.bytes.length < length) {
+                cache.bytes = new byte[length];
+            }
+            System.arraycopy(tokens, start, cache.bytes, 0, length);
+            cache.length = length;
+            cache.value = new String(tokens, start, length, ASCII);
+        }
+        return cache.value;
+    }
+    
+    private static final class Text {
+        byte[] bytes = new byte[16];
+        int length;
+        String value;
+    }
+    
+    /**
+     * The last value delivered for a name; fields that share a name share
+     * one of these so a value is delivered only when it changes
+     */
+    private static final class Value {
+        boolean delivered;
+        float value;
+        
+        boolean changed(float newValue) {
+            if(delivered && Float.floatToIntBits(value) == Float.floatToIntBits(newValue)) {
+                return false;
             }
+            delivered = true;
+            value = newValue;
+            return true;
         }
     }
     
+    private final Map<String, Value> values = new HashMap<String, Value>();
+    
+    private Value value(String key) {
+        Value value = values.get(key);
+        if(null == value) {
+            value = new Value();
+            values.put(key, value);
+        }
+        return value;
+    }
+    
 
     /**
      * Receives the response for a command type
@@ -159,7 +427,7 @@ public class PB840Parameters extends PB840 {
      *              monitored data and alarm information
      *      MISCA - request for ventilator settings 
      *              and monitored data
-     * @param fieldValues
+     * @param type
      */
     public void receiveStartResponse(String type) {
         
@@ -169,11 +437,19 @@ public class PB840Parameters extends PB840 {
         
     }
     
-    public void receiveSetting(String name, Units units, String value) {
+    /**
+     * Receives a setting when it differs from the last one received
+     * @param value Float.NaN where the field is blank or OFF
+     */
+    public void receiveSetting(String name, Units units, float value) {
         
     }
     
-    public void receiveNumeric(String name, Units units, String value) {
+    /**
+     * Receives a numeric when it differs from the last one received
+     * @param value Float.NaN where the field is blank or OFF
+     */
+    public void receiveNumeric(String name, Units units, float value) {
         
     }
     
@@ -181,7 +457,11 @@ public class PB840Parameters extends PB840 {
 //        
 //    }
     
-    public void receiveAlarmLimit(String metricName, PB840.Units unitID, String value, String limitType){
+    /**
+     * Receives an alarm limit when it differs from the last one received
+     * @param value Float.NaN where the limit is OFF
+     */
+    public void receiveAlarmLimit(String metricName, PB840.Units unitID, float value, String limitType){
     	
     }
     
@@ -213,24 +493,31 @@ public class PB840Parameters extends PB840 {
             this.description = description;
         }
 
-        abstract void handle(List<String> fieldValues);
+        abstract void handle();
         
     }
 
     class Numeric extends Field {
         final int fieldNumber;
         final Units units;
+        final Value last;
 
         
         public Numeric(final String name, final String description, final Units units, final int fieldNumber) {
             super(name, description);
             this.units = units;
             this.fieldNumber = fieldNumber;
+            this.last = value(name);
         }
 
         @Override
-        void handle(List<String> fieldValues) {
-            receiveNumeric(name, units, fieldValues.get(fieldNumber));
+        void handle() {
+            if(fieldNumber <= lastField) {
+                float value = parseFloat(fieldNumber);
+                if(!malformed(this, fieldNumber, value) && last.changed(value)) {
+                    receiveNumeric(name, units, value);
+                }
+            }
         }
         
         @Override
@@ -241,17 +528,24 @@ public class PB840Parameters extends PB840 {
     class Setting extends Field {
         final int fieldNumber;
         final Units units;
+        final Value last;
 
         
         public Setting(final String name, final String description, final Units units, final int fieldNumber) {
             super(name, description);
             this.units = units;
             this.fieldNumber = fieldNumber;
+            this.last = value(name);
         }
 
         @Override
-        void handle(List<String> fieldValues) {
-            receiveSetting(name, units, fieldValues.get(fieldNumber));
+        void handle() {
+            if(fieldNumber <= lastField) {
+                float value = parseFloat(fieldNumber);
+                if(!malformed(this, fieldNumber, value) && last.changed(value)) {
+                    receiveSetting(name, units, value);
+                }
+            }
         }
         
         @Override
@@ -263,6 +557,7 @@ public class PB840Parameters extends PB840 {
     	final int value;
     	final Units units;
     	final String limitType;
+    	final Value last;
     	//String AlarmType, String unitID, String AlrmThreshold, String value
     	
 
@@ -271,16 +566,18 @@ public class PB840Parameters extends PB840 {
 	            this.units = units;
 	            this.value = value;
 	            this.limitType = limitType;
+	            this.last = value(name + "_" + limitType);
 			}
 
 		
 	     @Override
-	        void handle(List<String> fieldValues) {
-	    	 if (value > -1)//inexistent limits are fields -1 in the PB840.fields
-	    		 receiveAlarmLimit(name, units, fieldValues.get(value), limitType);
-//	    		 receiveAlarmLimit(name, units, value < 0 ? null:fieldValues.get(value), limitType);
-//	                    lowFieldNumber < 0 ? null : fieldValues.get(lowFieldNumber), 
-//	                    highFieldNumber < 0 ? null : fieldValues.get(highFieldNumber));
+	        void handle() {
+	    	 if (value > -1 && value <= lastField) {//inexistent limits are fields -1 in the PB840.fields
+	    		 float f = parseFloat(value);
+	    		 if(!malformed(this, value, f) && last.changed(f)) {
+	    			 receiveAlarmLimit(name, units, f, limitType);
+	    		 }
+	    	 }
 	        }
 		
 		
@@ -293,6 +590,7 @@ public class PB840Parameters extends PB840 {
     
     class PatientAlert extends Field {
         final int fieldNumber;
+        final Text text = new Text();
 
         public PatientAlert(final String name, final String description, final int fieldNumber) {
             super(name, description);
@@ -300,8 +598,11 @@ public class PB840Parameters extends PB840 {
         }
 
         @Override
-        void handle(List<String> fieldValues) {
-            receivePatientAlert(name, fieldValues.get(fieldNumber));
+        void handle() {
+            // every response must restate the alerts still present
+            if(fieldNumber <= lastField) {
+                receivePatientAlert(name, text(fieldNumber, text));
+            }
         }
         @Override
         public String toString() {
@@ -311,6 +612,7 @@ public class PB840Parameters extends PB840 {
     
     class TechnicalAlert extends Field {
         final int fieldNumber;
+        final Text text = new Text();
 
         public TechnicalAlert(final String name, final String description, final int fieldNumber) {
             super(name, description);
@@ -318,8 +620,10 @@ public class PB840Parameters extends PB840 {
         }
 
         @Override
-        void handle(List<String> fieldValues) {
-            receiveTechnicalAlert(name, fieldValues.get(fieldNumber));
+        void handle() {
+            if(fieldNumber <= lastField) {
+                receiveTechnicalAlert(name, text(fieldNumber, text));
+            }
         }
         
         @Override
@@ -328,8 +632,12 @@ public class PB840Parameters extends PB840 {
         }
     }
     
+    // as last delivered by either response type
+    private String ventilatorId;
+    
     class VentilatorId extends Field {
         final int fieldNumber;
+        final Text text = new Text();
 
         public VentilatorId(final int fieldNumber) {
             super(null, null);
@@ -337,9 +645,15 @@ public class PB840Parameters extends PB840 {
         }
 
         @Override
-        void handle(List<String> fieldValues) {
-            String[] modelSerial = fieldValues.get(fieldNumber).split(" ");
-            receiveVentilatorId(modelSerial.length > 1 ? modelSerial[0] : "840", modelSerial.length > 1 ? modelSerial[1] : modelSerial[0]);
+        void handle() {
+            if(fieldNumber <= lastField) {
+                String s = text(fieldNumber, text);
+                if(!s.equals(ventilatorId)) {
+                    ventilatorId = s;
+                    String[] modelSerial = s.split(" ");
+                    receiveVentilatorId(modelSerial.length > 1 ? modelSerial[0] : "840", modelSerial.length > 1 ? modelSerial[1] : modelSerial[0]);
+                }
+            }
         }
         
         @Override
@@ -357,9 +671,21 @@ public class PB840Parameters extends PB840 {
         }
         
         @Override
-        void handle(List<String> fieldValues) {
-            String[] hour_minute = fieldValues.get(fieldNumber).split(":");
-            receiveTime(Integer.parseInt(hour_minute[0]), Integer.parseInt(hour_minute[1]));
+        void handle() {
+            if(fieldNumber <= lastField) {
+                // HH:MM
+                final int start = fieldStart[fieldNumber], end = fieldEnd[fieldNumber];
+                int colon = start;
+                while(colon < end && ':' != tokens[colon]) {
+                    colon++;
+                }
+                int hour = parseInt(tokens, start, colon), minute = parseInt(tokens, colon + 1, end);
+                if(hour < 0 || minute < 0) {
+                    log.warn("Error in field " + this);
+                } else {
+                    receiveTime(hour, minute);
+                }
+            }
         }
         
         @Override
@@ -382,6 +708,13 @@ public class PB840Parameters extends PB840 {
         months.put("NOV", Calendar.NOVEMBER);
         months.put("DEC", Calendar.DECEMBER);
     }
+    // the same names in Calendar order for matching bytes
+    private static final byte[][] MONTHS = new byte[12][];
+    static {
+        for(Map.Entry<String, Integer> month : months.entrySet()) {
+            MONTHS[month.getValue()] = month.getKey().getBytes(ASCII);
+        }
+    }
     class Date extends Field {
         final int fieldNumber;
         
@@ -390,9 +723,38 @@ public class PB840Parameters extends PB840 {
             this.fieldNumber = fieldNumber;
         }
         @Override
-        void handle(List<String> fieldValues) {
-            String[] month_day_year = fieldValues.get(fieldNumber).split(" ");
-            receiveDate(months.get(month_day_year[0]), Integer.parseInt(month_day_year[1]), Integer.parseInt(month_day_year[2]));
+        void handle() {
+            if(fieldNumber <= lastField) {
+                // MMM DD YYYY
+                final int start = fieldStart[fieldNumber], end = fieldEnd[fieldNumber];
+                int month = -1;
+                if(end - start > 3 && ' ' == tokens[start + 3]) {
+                    for(int i = 0; i < MONTHS.length; i++) {
+                        if(regionMatches(MONTHS[i], tokens, start, 3)) {
+                            month = i;
+                            break;
+                        }
+                    }
+                }
+                int dayStart = start + 4;
+                while(dayStart < end && ' ' == tokens[dayStart]) {
+                    dayStart++;
+                }
+                int dayEnd = dayStart;
+                while(dayEnd < end && ' ' != tokens[dayEnd]) {
+                    dayEnd++;
+                }
+                int yearStart = dayEnd;
+                while(yearStart < end && ' ' == tokens[yearStart]) {
+                    yearStart++;
+                }
+                int day = parseInt(tokens, dayStart, dayEnd), year = parseInt(tokens, yearStart, end);
+                if(month < 0 || day < 0 || year < 0) {
+                    log.warn("Error in field " + this);
+                } else {
+                    receiveDate(month, day, year);
+                }
+            }
         }
         
         @Override
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.puritanbennett._840;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * MISCF and MISCA responses laid out as a ventilator sends them, with every
+ * field named in pb840.fields filled in and the rest left blank.
+ */
+public final class PB840Fixtures {
+    private PB840Fixtures() {
+    }
+
+    public static final int MISCF_FIELDS = 169;
+    public static final int MISCA_FIELDS = 97;
+
+    private static final Charset ASCII = Charset.forName("ASCII");
+
+    private static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The value a numeric carries in a variant; every numeric changes from
+     * one variant to the next and fields by the same name agree, in MISCF and
+     * MISCA alike
+     */
+    public static float numeric(String name, int variant) {
+        return (name.hashCode() & 0x3FF) / 2f + 0.5f * (variant % 4);
+    }
+
+    /**
+     * A response including its terminating CR. Alarm limits at odd field
+     * numbers are OFF and in odd variants the first patient alert is active.
+     */
+    public static byte[] response(String type, int variant) {
+        int count = "MISCF".equals(type) ? MISCF_FIELDS : MISCA_FIELDS;
+        String[] values = new String[count + 5];
+        Arrays.fill(values, pad("", 6));
+
+        PB840Parameters parameters = new PB840Parameters(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+        boolean firstAlert = true;
+        for (PB840Parameters.Field f : parameters.fields.get(type)) {
+            if (f instanceof PB840Parameters.Numeric) {
+                values[((PB840Parameters.Numeric) f).fieldNumber] = pad(String.format(Locale.US, "%.1f", numeric(f.name, variant)), 6);
+            } else if (f instanceof PB840Parameters.AlarmLimit) {
+                int n = ((PB840Parameters.AlarmLimit) f).value;
+                if (n >= 0) {
+                    values[n] = pad(1 == n % 2 ? "OFF" : Integer.toString(n), 6);
+                }
+            } else if (f instanceof PB840Parameters.PatientAlert) {
+                values[((PB840Parameters.PatientAlert) f).fieldNumber] = firstAlert && 1 == variant % 2 ? "ALARM " : "NORMAL";
+                firstAlert = false;
+            } else if (f instanceof PB840Parameters.TechnicalAlert) {
+                values[((PB840Parameters.TechnicalAlert) f).fieldNumber] = "NORMAL";
+            } else if (f instanceof PB840Parameters.Time) {
+                values[((PB840Parameters.Time) f).fieldNumber] = "14:05 ";
+            } else if (f instanceof PB840Parameters.Date) {
+                values[((PB840Parameters.Date) f).fieldNumber] = "JAN 05 2015 ";
+            } else if (f instanceof PB840Parameters.VentilatorId) {
+                values[((PB840Parameters.VentilatorId) f).fieldNumber] = pad("840 3510083674", 18);
+            }
+        }
+
+        StringBuilder data = new StringBuilder("\u0002");
+        for (int i = 5; i < values.length; i++) {
+            data.append(values[i]).append(',');
+        }
+        data.append("\u0003\r");
+        return (type + "," + data.length() + "," + count + "," + data).getBytes(ASCII);
+    }
+}
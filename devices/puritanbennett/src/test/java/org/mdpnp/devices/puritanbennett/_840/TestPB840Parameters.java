@@ -12,13 +12,24 @@
  ******************************************************************************/
 package org.mdpnp.devices.puritanbennett._840;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -41,4 +52,200 @@ public class TestPB840Parameters {
             }
         }
     }
+
+    private static class Recorder extends PB840Parameters {
+        final List<String> responses = new ArrayList<String>();
+        final Map<String, Float> numerics = new HashMap<String, Float>();
+        final Map<String, String> alerts = new HashMap<String, String>();
+        int ends, values, model;
+        String id;
+        int hour = -1, minute = -1, month = -1, day = -1, year = -1;
+
+        Recorder(byte[] input) {
+            super(new ByteArrayInputStream(input), new ByteArrayOutputStream());
+        }
+
+        @Override
+        public void receiveStartResponse(String type) {
+            responses.add(type);
+            values = 0;
+        }
+
+        @Override
+        public void receiveEndResponse() {
+            ends++;
+        }
+
+        @Override
+        public void receiveNumeric(String name, PB840.Units units, float value) {
+            numerics.put(name, value);
+            values++;
+        }
+
+        @Override
+        public void receiveAlarmLimit(String metricName, PB840.Units unitID, float value, String limitType) {
+            numerics.put(metricName + "_" + limitType, value);
+            values++;
+        }
+
+        @Override
+        public void receivePatientAlert(String name, String value) {
+            alerts.put(name, value);
+        }
+
+        @Override
+        public void receiveTechnicalAlert(String name, String value) {
+            alerts.put(name, value);
+        }
+
+        @Override
+        public void receiveVentilatorId(String model, String id) {
+            this.model++;
+            this.id = model + "/" + id;
+        }
+
+        @Override
+        public void receiveTime(int hour, int minute) {
+            this.hour = hour;
+            this.minute = minute;
+        }
+
+        @Override
+        public void receiveDate(int month, int day, int year) {
+            this.month = month;
+            this.day = day;
+            this.year = year;
+        }
+    }
+
+    private static final Charset ASCII = Charset.forName("ASCII");
+
+    private static int distinctValues(PB840Parameters pb840, String type) {
+        Set<String> names = new HashSet<String>();
+        for (PB840Parameters.Field f : pb840.fields.get(type)) {
+            if (f instanceof PB840Parameters.Numeric) {
+                names.add(f.name);
+            } else if (f instanceof PB840Parameters.AlarmLimit && ((PB840Parameters.AlarmLimit) f).value >= 0) {
+                names.add(f.name + "_" + ((PB840Parameters.AlarmLimit) f).limitType);
+            }
+        }
+        return names.size();
+    }
+
+    @Test
+    public void testMISCF() throws Exception {
+        Recorder pb840 = new Recorder(PB840Fixtures.response("MISCF", 0));
+        pb840.receive();
+        Assert.assertEquals(1, pb840.responses.size());
+        Assert.assertEquals("MISCF", pb840.responses.get(0));
+        Assert.assertEquals(1, pb840.ends);
+        Assert.assertEquals(distinctValues(pb840, "MISCF"), pb840.values);
+        Assert.assertEquals(PB840Fixtures.numeric("PB_SETTING_RESPIRATORY_RATE", 0), pb840.numerics.get("PB_SETTING_RESPIRATORY_RATE"), 0.0f);
+        Assert.assertEquals(PB840Fixtures.numeric("PB_EXHALED_SPONTANEOUS_TIDAL_VOLUME", 0), pb840.numerics.get("PB_EXHALED_SPONTANEOUS_TIDAL_VOLUME"), 0.0f);
+        // field 35 is odd so OFF
+        Assert.assertTrue(Float.isNaN(pb840.numerics.get("PB_LIMIT_PEAK_CIRCUIT_PRESSURE_low_limit")));
+        Assert.assertEquals(34f, pb840.numerics.get("PB_LIMIT_PEAK_CIRCUIT_PRESSURE_high_limit"), 0.0f);
+        Assert.assertEquals("NORMAL", pb840.alerts.get("PB_APNEA_VENTILATION"));
+        Assert.assertEquals("840/3510083674", pb840.id);
+        Assert.assertEquals(14, pb840.hour);
+        Assert.assertEquals(5, pb840.minute);
+        Assert.assertEquals(Calendar.JANUARY, pb840.month);
+        Assert.assertEquals(5, pb840.day);
+        Assert.assertEquals(2015, pb840.year);
+    }
+
+    @Test
+    public void testOnlyChangesDelivered() throws Exception {
+        Recorder pb840 = new Recorder(new byte[0]);
+        for (String type : new String[] { "MISCF", "MISCA" }) {
+            byte[] response = PB840Fixtures.response(type, 0);
+            pb840.receiveLine(response, response.length - 1);
+        }
+        String alert = pb840.alerts.get("PB_APNEA_VENTILATION");
+
+        // the same again changes nothing, but alerts are restated
+        pb840.alerts.clear();
+        byte[] response = PB840Fixtures.response("MISCF", 0);
+        pb840.receiveLine(response, response.length - 1);
+        Assert.assertEquals(0, pb840.values);
+        Assert.assertSame(alert, pb840.alerts.get("PB_APNEA_VENTILATION"));
+        Assert.assertEquals(1, pb840.model);
+
+        response = PB840Fixtures.response("MISCF", 1);
+        pb840.receiveLine(response, response.length - 1);
+        int limits = 0;
+        for (PB840Parameters.Field f : pb840.fields.get("MISCF")) {
+            if (f instanceof PB840Parameters.AlarmLimit && ((PB840Parameters.AlarmLimit) f).value >= 0) {
+                limits++;
+            }
+        }
+        // limits do not vary
+        Assert.assertEquals(distinctValues(pb840, "MISCF") - limits, pb840.values);
+        Assert.assertEquals(PB840Fixtures.numeric("PB_SETTING_RESPIRATORY_RATE", 1), pb840.numerics.get("PB_SETTING_RESPIRATORY_RATE"), 0.0f);
+        Assert.assertEquals("ALARM", pb840.alerts.get("PB_HIGH_SPONTANEOUS_INSPIRATION_TIME"));
+    }
+
+    @Test
+    public void testMalformedFieldKeepsLastValue() throws Exception {
+        Recorder pb840 = new Recorder(new byte[0]);
+        byte[] response = PB840Fixtures.response("MISCF", 0);
+        pb840.receiveLine(response, response.length - 1);
+        float good = pb840.numerics.get("PB_SETTING_RESPIRATORY_RATE");
+
+        // field 13 follows the header, the STX and fields 5 through 12
+        String[] parts = new String(PB840Fixtures.response("MISCF", 1), ASCII).split(",", -1);
+        parts[11] = "1x.5  ";
+        response = String.join(",", parts).getBytes(ASCII);
+        pb840.receiveLine(response, response.length - 1);
+        Assert.assertEquals(good, pb840.numerics.get("PB_SETTING_RESPIRATORY_RATE"), 0.0f);
+        Assert.assertEquals(PB840Fixtures.numeric("PB_SETTING_TIDAL_VOLUME", 1), pb840.numerics.get("PB_SETTING_TIDAL_VOLUME"), 0.0f);
+
+        // and the next good value is still seen as a change
+        response = PB840Fixtures.response("MISCF", 1);
+        pb840.receiveLine(response, response.length - 1);
+        Assert.assertEquals(1, pb840.values);
+        Assert.assertEquals(PB840Fixtures.numeric("PB_SETTING_RESPIRATORY_RATE", 1), pb840.numerics.get("PB_SETTING_RESPIRATORY_RATE"), 0.0f);
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write(PB840Fixtures.response("MISCA", 0));
+        input.write('\n');
+        input.write("garbage\r\n".getBytes(ASCII));
+        byte[] response = PB840Fixtures.response("MISCF", 0);
+        // truncated
+        input.write(response, 0, response.length / 2);
+        input.write('\n');
+        input.write("MISCX,10,2,\u0002A,B,\u0003\r".getBytes(ASCII));
+        input.write(response);
+
+        Recorder pb840 = new Recorder(input.toByteArray());
+        Assert.assertTrue(pb840.receive());
+        Assert.assertEquals(5, pb840.responses.size());
+        Assert.assertEquals(5, pb840.ends);
+        Assert.assertEquals("MISCA", pb840.responses.get(0));
+        Assert.assertEquals("", pb840.responses.get(1));
+        Assert.assertEquals("MISCF", pb840.responses.get(2));
+        Assert.assertEquals("MISCX", pb840.responses.get(3));
+        Assert.assertEquals("MISCF", pb840.responses.get(4));
+        Assert.assertEquals(PB840Fixtures.numeric("PB_SETTING_RESPIRATORY_RATE", 0), pb840.numerics.get("PB_SETTING_RESPIRATORY_RATE"), 0.0f);
+    }
+
+    @Test
+    public void testParseFloat() throws Exception {
+        Random random = new Random(840);
+        for (int i = 0; i < 100000; i++) {
+            String s = String.format(Locale.US, "%." + random.nextInt(4) + "f", (random.nextDouble() - 0.2) * Math.pow(10, random.nextInt(6)));
+            byte[] b = s.getBytes(ASCII);
+            Assert.assertEquals(s, Float.parseFloat(s), PB840Parameters.parseFloat(b, 0, b.length), 0.0f);
+        }
+        for (String s : new String[] { "", "OFF", "-", ".", "1.2.3", "1e3", "12:05" }) {
+            byte[] b = s.getBytes(ASCII);
+            Assert.assertTrue(s, Float.isNaN(PB840Parameters.parseFloat(b, 0, b.length)));
+        }
+        byte[] b = "169".getBytes(ASCII);
+        Assert.assertEquals(169, PB840Parameters.parseInt(b, 0, b.length));
+        Assert.assertEquals(-1, PB840Parameters.parseInt(b, 0, 0));
+    }
 }
@@ -40,7 +40,9 @@ public class SimulatedCapnometer {
     }
 
     private final class DataPublisher implements Runnable {
-        private final Number[] values = new Number[SAMPLES_PER_UPDATE];
+        // reused for every update; receivers publish it before returning
+        private final DeviceClock.MutableReading reading = new DeviceClock.MutableReading();
+        private final float[] values = new float[SAMPLES_PER_UPDATE];
 
         public DataPublisher() {
         }
@@ -49,10 +51,10 @@ public class SimulatedCapnometer {
         public void run() {
 
             for (int i = 0; i < values.length; i++) {
-                values[i] = SimulatedCapnometer.this.co2[postIncrCount()];
+                values[i] = (float) SimulatedCapnometer.this.co2[postIncrCount()];
             }
 
-            DeviceClock.Reading  t = deviceClock.instant();
+            DeviceClock.Reading t = deviceClock.instant(reading);
 
             int rRate = respiratoryRate.intValue();
             int co2   = etCO2.intValue();
@@ -62,7 +64,7 @@ public class SimulatedCapnometer {
 
     };
 
-    protected void receiveCO2(DeviceClock.Reading time, Number[] co2, int respiratoryRate, int etCO2, int frequency) {
+    protected void receiveCO2(DeviceClock.Reading time, float[] co2, int respiratoryRate, int etCO2, int frequency) {
 
     }
 
@@ -117,14 +119,7 @@ public class SimulatedCapnometer {
     }
 
     public SimulatedCapnometer(final DeviceClock referenceClock) {
-        deviceClock = new DeviceClock() {
-            final DeviceClock dev=new DeviceClock.Metronome(UPDATE_PERIOD);
-            @Override
-            public Reading instant() {
-                return new CombinedReading(referenceClock.instant(), dev.instant());
-            }
-
-        };
+        deviceClock = new DeviceClock.CombinedClock(referenceClock, new DeviceClock.Metronome(UPDATE_PERIOD));
         initWaves();
     }
 
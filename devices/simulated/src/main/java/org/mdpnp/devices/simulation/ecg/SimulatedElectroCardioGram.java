@@ -52,9 +52,11 @@ public class SimulatedElectroCardioGram {
     }
 
     private final class DataPublisher implements Runnable {
-        private final Number[] iValues = new Number[samplesPerUpdate];
-        private final Number[] iiValues = new Number[samplesPerUpdate];
-        private final Number[] iiiValues = new Number[samplesPerUpdate];
+        // reused for every update; receivers publish it before returning
+        private final DeviceClock.MutableReading reading = new DeviceClock.MutableReading();
+        private final float[] iValues = new float[samplesPerUpdate];
+        private final float[] iiValues = new float[samplesPerUpdate];
+        private final float[] iiiValues = new float[samplesPerUpdate];
 
         public DataPublisher() {
         }
@@ -63,16 +65,16 @@ public class SimulatedElectroCardioGram {
         public void run() {
 
             for (int i = 0; i < iValues.length; i++) {
-                iValues[i] = SimulatedElectroCardioGram.this.i[postIncrCounti()];
+                iValues[i] = (float) SimulatedElectroCardioGram.this.i[postIncrCounti()];
             }
             for (int i = 0; i < iiValues.length; i++) {
-                iiValues[i] = ii[postIncrCountii()];
+                iiValues[i] = (float) ii[postIncrCountii()];
             }
             for (int i = 0; i < iiiValues.length; i++) {
-                iiiValues[i] = iii[postIncrCountiii()];
+                iiiValues[i] = (float) iii[postIncrCountiii()];
             }
 
-            DeviceClock.Reading  t = deviceClock.instant();
+            DeviceClock.Reading t = deviceClock.instant(reading);
 
             int hr = heartRate.intValue();
             int rr = respiratoryRate.intValue();
@@ -82,7 +84,7 @@ public class SimulatedElectroCardioGram {
 
     }
 
-    protected void receiveECG(DeviceClock.Reading sampleTime, Number[] i, Number[] ii, Number[] iii, int heartRate, int respiratoryRate, int frequency) {
+    protected void receiveECG(DeviceClock.Reading sampleTime, float[] i, float[] ii, float[] iii, int heartRate, int respiratoryRate, int frequency) {
 
     }
 
@@ -242,13 +244,7 @@ public class SimulatedElectroCardioGram {
                                       final TimestampType tsPolicy, final long clockDriftMs) {
         this.updatePeriod = updatePeriod;
         this.msPerSample = msPerSample;
-        this.deviceClock = new DeviceClock() {
-            final DeviceClock dev=new FuzzyClock(clockDriftMs, tsPolicy);
-            @Override
-            public Reading instant() {
-                return new CombinedReading(referenceClock.instant(), dev.instant());
-            }
-        };
+        this.deviceClock = new DeviceClock.CombinedClock(referenceClock, new FuzzyClock(clockDriftMs, tsPolicy));
 
         this.samplesPerUpdate = (int) Math.floor(updatePeriod / msPerSample);
         this.frequency = (int)(1000.0 / msPerSample);
@@ -37,7 +37,9 @@ public class SimulatedInvasiveBloodPressure {
     }
 
     private final class DataPublisher implements Runnable {
-        private final Number[] waveValues = new Number[SAMPLES_PER_UPDATE];
+        // reused for every update; receivers publish it before returning
+        private final DeviceClock.MutableReading reading = new DeviceClock.MutableReading();
+        private final float[] waveValues = new float[SAMPLES_PER_UPDATE];
 
         public DataPublisher() {
         }
@@ -46,12 +48,12 @@ public class SimulatedInvasiveBloodPressure {
         public void run() {
             try {
                 for (int i = 0; i < waveValues.length; i++) {
-                    waveValues[i] = wave[postIncrCount()];
+                    waveValues[i] = (float) wave[postIncrCount()];
                 }
 
                 int val[] = nextDraw();
 
-                DeviceClock.Reading t = deviceClock.instant();
+                DeviceClock.Reading t = deviceClock.instant(reading);
 
                 receivePressure(t, val[0], val[1], waveValues, FREQUENCY);
 
@@ -62,7 +64,7 @@ public class SimulatedInvasiveBloodPressure {
 
     };
 
-    protected void receivePressure(DeviceClock.Reading timestamp, int systolic, int diastolic, Number[] waveValues, int frequency) {
+    protected void receivePressure(DeviceClock.Reading timestamp, int systolic, int diastolic, float[] waveValues, int frequency) {
 
     }
 
@@ -97,14 +99,7 @@ public class SimulatedInvasiveBloodPressure {
     }
 
     public SimulatedInvasiveBloodPressure(final DeviceClock referenceClock) {
-        deviceClock = new DeviceClock() {
-            final DeviceClock dev = new DeviceClock.Metronome(UPDATE_PERIOD);
-
-            @Override
-            public Reading instant() {
-                return new CombinedReading(referenceClock.instant(), dev.instant());
-            }
-        };
+        deviceClock = new DeviceClock.CombinedClock(referenceClock, new DeviceClock.Metronome(UPDATE_PERIOD));
     }
 
     private Number systolic = new NumberWithJitter<Integer>(120, 2, 60, 180);
@@ -38,7 +38,9 @@ public class SimulatedPulseOximeter {
     }
 
     private final class DataPublisher implements Runnable {
-        private final Number[] plethValues = new Number[SAMPLES_PER_UPDATE];
+        // reused for every update; receivers publish it before returning
+        private final DeviceClock.MutableReading reading = new DeviceClock.MutableReading();
+        private final float[] plethValues = new float[SAMPLES_PER_UPDATE];
 
         public DataPublisher(){}
         
@@ -47,12 +49,12 @@ public class SimulatedPulseOximeter {
         public void run() {
             try {
                 for (int i = 0; i < plethValues.length; i++) {
-                    plethValues[i] = pleth[postIncrCount()];
+                    plethValues[i] = (float) pleth[postIncrCount()];
                 }
 
                 int val[] = nextDraw();
 
-                DeviceClock.Reading  t = deviceClock.instant();
+                DeviceClock.Reading t = deviceClock.instant(reading);
 
                 receivePulseOx(t, val[0], val[1], plethValues, FREQUENCY);
 
@@ -63,7 +65,7 @@ public class SimulatedPulseOximeter {
 
     };
 
-    protected void receivePulseOx(DeviceClock.Reading timestamp, int heartRate, int SpO2, Number[] plethValues, int frequency) {
+    protected void receivePulseOx(DeviceClock.Reading timestamp, int heartRate, int SpO2, float[] plethValues, int frequency) {
 
     }
 
@@ -110,13 +112,7 @@ public class SimulatedPulseOximeter {
     }
 
     public SimulatedPulseOximeter(final DeviceClock referenceClock) {
-        deviceClock = new DeviceClock() {
-            final DeviceClock dev=new DeviceClock.Metronome(UPDATE_PERIOD);
-            @Override
-            public Reading instant() {
-                return new CombinedReading(referenceClock.instant(), dev.instant());
-            }
-        };
+        deviceClock = new DeviceClock.CombinedClock(referenceClock, new DeviceClock.Metronome(UPDATE_PERIOD));
         initPleth();
     }
 
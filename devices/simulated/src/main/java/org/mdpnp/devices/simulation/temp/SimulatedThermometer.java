@@ -27,9 +27,12 @@ public class SimulatedThermometer {
     
     
     private final class MyTask implements Runnable {
+        // reused for every update; receivers publish it before returning
+        private final DeviceClock.MutableReading reading = new DeviceClock.MutableReading();
+
         @Override
         public void run() {
-            DeviceClock.Reading  t = deviceClock.instant();
+            DeviceClock.Reading t = deviceClock.instant(reading);
             receiveTemp1(temperature1, t);
             receiveTemp2(temperature2, t);
         }
@@ -66,13 +69,7 @@ public class SimulatedThermometer {
     }
     private final DeviceClock deviceClock;
     public SimulatedThermometer(final DeviceClock referenceClock) {
-        deviceClock = new DeviceClock() {
-            final DeviceClock dev=new DeviceClock.Metronome(UPDATE_PERIOD);
-            @Override
-            public Reading instant() {
-                return new CombinedReading(referenceClock.instant(), dev.instant());
-            }
-        };
+        deviceClock = new DeviceClock.CombinedClock(referenceClock, new DeviceClock.Metronome(UPDATE_PERIOD));
     }
 
 }
@@ -0,0 +1,94 @@
+package org.mdpnp.apps.fxbeans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rti.dds.subscription.SampleInfo;
+
+/**
+ * Cost of taking a waveform sample into a SampleArrayFx and reading it back
+ * out the way DataCollector does. The boxed variants reproduce the former
+ * Number[] storage for comparison.
+ *
+ * Run with -Pjmh.args="-prof gc" and compare gc.alloc.rate.norm (B/op).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SampleArrayFxBenchmark {
+    @Param({ "50", "500", "1024" })
+    public int samples;
+
+    private ice.SampleArray sample;
+    private final SampleInfo sampleInfo = new SampleInfo();
+    private final SampleArrayFx fx = new SampleArrayFx();
+    private Number[] boxed;
+
+    @Setup
+    public void setUp() {
+        sample = new ice.SampleArray();
+        sample.unique_device_identifier = "benchmark";
+        sample.metric_id = "MDC_ECG_LEAD_II";
+        sample.frequency = 500;
+        for (int i = 0; i < samples; i++) {
+            sample.values.userData.addFloat((float) Math.sin(i / 10.0));
+        }
+        fx.update(sample, sampleInfo);
+        boxed = box();
+    }
+
+    private Number[] box() {
+        Number[] values = new Number[sample.values.userData.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = sample.values.userData.getFloat(i);
+        }
+        return values;
+    }
+
+    // The former update boxed each sample in place of filling the float[];
+    // both variants include the rest of SampleArrayFx.update
+    @Benchmark
+    public Number[] updateBoxed() {
+        fx.update(sample, sampleInfo);
+        return box();
+    }
+
+    @Benchmark
+    public float[] updatePrimitive() {
+        fx.update(sample, sampleInfo);
+        return fx.getFloatValues();
+    }
+
+    @Benchmark
+    public float consumeBoxed() {
+        float sum = 0f;
+        for (int i = 0; i < boxed.length; i++) {
+            sum += boxed[i].floatValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float consumePrimitive() {
+        float[] values = fx.getFloatValues();
+        float sum = 0f;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+}
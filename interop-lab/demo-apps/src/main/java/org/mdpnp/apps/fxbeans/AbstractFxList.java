@@ -1,10 +1,12 @@
 package org.mdpnp.apps.fxbeans;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javafx.application.Platform;
 import javafx.collections.ModifiableObservableListBase;
@@ -12,6 +14,7 @@ import javafx.collections.ObservableList;
 
 import org.mdpnp.rtiapi.data.EventLoop;
 import org.mdpnp.rtiapi.data.LogEntityStatus;
+import org.mdpnp.rtiapi.data.TopicAccess;
 import org.mdpnp.rtiapi.data.TopicUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +26,7 @@ import com.rti.dds.infrastructure.RETCODE_NO_DATA;
 import com.rti.dds.infrastructure.ResourceLimitsQosPolicy;
 import com.rti.dds.infrastructure.StatusKind;
 import com.rti.dds.infrastructure.StringSeq;
+import com.rti.dds.publication.DataWriter;
 import com.rti.dds.subscription.DataReader;
 import com.rti.dds.subscription.InstanceStateKind;
 import com.rti.dds.subscription.ReadCondition;
@@ -58,7 +62,7 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
     protected final Sequence dataSequence;
     protected final SampleInfoSeq sampleInfoSequence = new SampleInfoSeq();
 
-    protected final Method getKeyValue, returnLoan, readWCondition, readInstance;
+    protected final TopicAccess<D, R, ?> access;
 
     private final LogEntityStatus logEntityStatus;
 
@@ -72,16 +76,9 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
         this.fxClass = fxClass;
         
         this.logEntityStatus = new LogEntityStatus(log, topicName);
-        try {
-            this.dataSequence = sequenceClass.newInstance();
-            getKeyValue = readerClass.getMethod("get_key_value", dataClass, InstanceHandle_t.class);
-            returnLoan = readerClass.getMethod("return_loan", sequenceClass, SampleInfoSeq.class);
-            readWCondition = readerClass.getMethod("read_w_condition", sequenceClass, SampleInfoSeq.class, int.class, ReadCondition.class);
-            readInstance = readerClass.getMethod("read_instance", sequenceClass, SampleInfoSeq.class, int.class, InstanceHandle_t.class, int.class,
-                    int.class, int.class);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        // Readers only; no writer operations are bound
+        this.access = new TopicAccess<D, R, DataWriter>(dataClass, readerClass, null, sequenceClass);
+        this.dataSequence = access.newSequence();
     }
 
     private Subscriber subscriber;
@@ -98,7 +95,7 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
         @Override
         public void conditionChanged(Condition condition) {
             try {
-                readWCondition.invoke(reader, dataSequence, sampleInfoSequence, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, (ReadCondition) condition);
+                access.readWCondition(reader, dataSequence, sampleInfoSequence, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, (ReadCondition) condition);
 
                 final int sz = sampleInfoSequence.size();
 
@@ -108,61 +105,176 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
                     if (0 != (sampleInfo.instance_state & InstanceStateKind.NOT_ALIVE_INSTANCE_STATE)) {
                         // Keeping a history of samples makes the death of an instance immaterial
                         if(!keepHistory) {
-                            InstanceHandle_t removeHandle = new InstanceHandle_t(sampleInfo.instance_handle);
-                            Platform.runLater(() -> {
-                                Iterator<F> itr = iterator();
-                                while (itr.hasNext()) {
-                                    if (itr.next().getHandle().equals(removeHandle)) {
-                                        itr.remove();
-                                    }
-                                }
-                            });
+                            enqueueRemoval(sampleInfo.instance_handle);
                         }
                     } else {
-                        final InstanceHandle_t addUpdateHandle = new InstanceHandle_t(sampleInfo.instance_handle);
-                        final SampleInfo si = new SampleInfo();
-                        si.copy_from(sampleInfo);
-                        final D sample = dataClass.newInstance();
-                        sample.copy_from(d);
-
-                        Platform.runLater(() -> {
-                            // Keeping a history means never updating any existing row; only add new rows
-                            if(!keepHistory) {
-                                Iterator<F> itr = iterator();
-                                while (itr.hasNext()) {
-                                    Updatable<D> x = itr.next();
-                                    if (x.getHandle().equals(addUpdateHandle)) {
-                                        x.update(d, si);
-                                        return;
-                                    }
-                                }
-                            }
+                        enqueueUpdate(d, sampleInfo);
+                    }
+                }
+            } catch (RETCODE_NO_DATA noData) {
+
+            } catch (Exception e) {
+                log.error("reading for " + topicName, e);
+            } finally {
+                try {
+                    access.returnLoan(reader, dataSequence, sampleInfoSequence);
+                } catch (Exception e) {
+                    log.error("return_loan for " + topicName, e);
+                }
+            }
+        }
+    };
+
+    /**
+     * A change waiting to be applied on the FX thread; a null sample marks the
+     * instance as no longer alive.
+     */
+    private static final class Pending<D> {
+        private final InstanceHandle_t handle;
+        private final D sample;
+        private final SampleInfo sampleInfo;
+
+        public Pending(InstanceHandle_t handle, D sample, SampleInfo sampleInfo) {
+            this.handle = handle;
+            this.sample = sample;
+            this.sampleInfo = sampleInfo;
+        }
+    }
+
+    // Changes are accumulated here by the EventLoop and applied as one batch
+    // by a single Platform.runLater
+    private final Object pendingLock = new Object();
+    private List<Pending<D>> pending = new ArrayList<>();
+    private List<Pending<D>> applying = new ArrayList<>();
+    // Latest pending update for each instance, only used when conflating
+    private final Map<InstanceHandle_t, Pending<D>> latestPending = new HashMap<>();
+    private boolean applyScheduled = false;
+    private long conflatedSamples;
+
+    // Row for each instance; maintained on the FX thread, unused when keeping history
+    private final Map<InstanceHandle_t, F> rows = new HashMap<>();
+    // Rows of instances removed in the current batch, taken out together in one pass
+    private final Set<F> removedRows = Collections.newSetFromMap(new IdentityHashMap<F, Boolean>());
+
+    private void enqueueUpdate(D d, SampleInfo sampleInfo) {
+        synchronized (pendingLock) {
+            if (conflate && !keepHistory) {
+                Pending<D> p = latestPending.get(sampleInfo.instance_handle);
+                if (null != p) {
+                    // Not yet seen by the FX thread; overwrite with the newest
+                    p.sample.copy_from(d);
+                    p.sampleInfo.copy_from(sampleInfo);
+                    conflatedSamples++;
+                    return;
+                }
+            }
+            Pending<D> p = new Pending<D>(new InstanceHandle_t(sampleInfo.instance_handle), access.newData(), new SampleInfo());
+            p.sample.copy_from(d);
+            p.sampleInfo.copy_from(sampleInfo);
+            pending.add(p);
+            if (conflate && !keepHistory) {
+                latestPending.put(p.handle, p);
+            }
+            scheduleApply();
+        }
+    }
+
+    private void enqueueRemoval(InstanceHandle_t handle) {
+        synchronized (pendingLock) {
+            Pending<D> p = new Pending<D>(new InstanceHandle_t(handle), null, null);
+            pending.add(p);
+            // Updates arriving after the removal must not be folded into earlier ones
+            latestPending.remove(p.handle);
+            scheduleApply();
+        }
+    }
+
+    private void scheduleApply() {
+        if (!applyScheduled) {
+            applyScheduled = true;
+            Platform.runLater(applyPending);
+        }
+    }
+
+    private final Runnable applyPending = new Runnable() {
+        @Override
+        public void run() {
+            List<Pending<D>> batch;
+            synchronized (pendingLock) {
+                batch = pending;
+                pending = applying;
+                applying = batch;
+                latestPending.clear();
+                applyScheduled = false;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Listeners see a single change for the whole batch
+            beginChange();
+            try {
+                for (Pending<D> p : batch) {
+                    if (null == p.sample) {
+                        // A later update in this batch must find no row and add a new one
+                        F f = rows.remove(p.handle);
+                        if (null != f) {
+                            removedRows.add(f);
+                        }
+                    } else {
+                        // Keeping a history means never updating any existing row; only add new rows
+                        F f = keepHistory ? null : rows.get(p.handle);
+                        if (null != f) {
+                            f.update(p.sample, p.sampleInfo);
+                        } else {
                             try {
                                 F x = fxClass.newInstance();
-                                x.update(d, si);
+                                x.update(p.sample, p.sampleInfo);
                                 add(0, x);
                             } catch (Exception e) {
                                 log.error("Unable to create a new instance of fx object", e);
                             }
-                        });
+                        }
                     }
                 }
-            } catch (InvocationTargetException ite) {
-                if (!(ite.getCause() instanceof RETCODE_NO_DATA)) {
-                    log.error("reading", ite);
+                if (!removedRows.isEmpty()) {
+                    for (int i = data.size() - 1; i >= 0 && !removedRows.isEmpty(); i--) {
+                        if (removedRows.remove(data.get(i))) {
+                            remove(i);
+                        }
+                    }
                 }
-            } catch (Exception e) {
-                log.error("reading for " + topicName, e);
             } finally {
-                try {
-                    returnLoan.invoke(reader, dataSequence, sampleInfoSequence);
-                } catch (Exception e) {
-                    log.error("return_loan for " + topicName, e);
-                }
+                removedRows.clear();
+                batch.clear();
+                endChange();
             }
         }
     };
 
+    protected boolean conflate = false;
+
+    /**
+     * When conflating, only the newest sample of each instance received since
+     * the last FX pulse is applied; intermediate samples are dropped. Use only
+     * where views care about the current value rather than every sample.
+     */
+    public void setConflate(boolean conflate) {
+        this.conflate = conflate;
+    }
+
+    public boolean isConflate() {
+        return conflate;
+    }
+
+    /**
+     * @return number of samples superseded by a newer one before reaching the FX thread
+     */
+    public long getConflatedSamples() {
+        synchronized (pendingLock) {
+            return conflatedSamples;
+        }
+    }
+
     protected boolean keepHistory = false;
     
     public void setKeepHistory(boolean keepHistory) {
@@ -240,6 +352,10 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
             }
             subscriber = null;
         }
+        synchronized (pendingLock) {
+            pending.clear();
+            latestPending.clear();
+        }
         Platform.runLater(() -> clear());
     }
 
@@ -256,18 +372,35 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
     @Override
     protected void doAdd(int index, F element) {
         data.add(index, element);
+        indexRow(element);
     }
 
     @Override
     protected F doSet(int index, F element) {
         F f = data.set(index, element);
+        unindexRow(f);
+        indexRow(element);
         return f;
     }
 
     @Override
     protected F doRemove(int index) {
         F f = data.remove(index);
+        unindexRow(f);
         return f;
     }
 
+    private void indexRow(F element) {
+        if (null != element && !element.getHandle().is_nil()) {
+            rows.put(new InstanceHandle_t(element.getHandle()), element);
+        }
+    }
+
+    private void unindexRow(F element) {
+        // With history several rows share a handle; only drop the mapping we own
+        if (null != element && rows.get(element.getHandle()) == element) {
+            rows.remove(element.getHandle());
+        }
+    }
+
 }
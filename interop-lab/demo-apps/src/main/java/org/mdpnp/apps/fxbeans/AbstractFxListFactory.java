@@ -12,6 +12,7 @@ public class AbstractFxListFactory {
     protected String expression;
     protected StringSeq params;
     protected String qosLibrary, qosProfile;
+    protected boolean conflate;
     
     public AbstractFxListFactory() {
     }
@@ -58,5 +59,11 @@ public class AbstractFxListFactory {
     public String getQosProfile() {
         return qosProfile;
     }
+    public void setConflate(boolean conflate) {
+        this.conflate = conflate;
+    }
+    public boolean isConflate() {
+        return conflate;
+    }
     
 }
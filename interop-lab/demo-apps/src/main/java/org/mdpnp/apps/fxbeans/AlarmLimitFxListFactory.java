@@ -17,6 +17,7 @@ public class AlarmLimitFxListFactory extends AbstractFxListFactory implements Fa
     public AlarmLimitFxList getObject() throws Exception {
         if(null == instance) {
             instance = new AlarmLimitFxList(topicName);
+            instance.setConflate(conflate);
             instance.start(subscriber, eventLoop, expression, params, qosLibrary, qosProfile);
         }
         return instance;
@@ -17,6 +17,7 @@ public class GlobalAlarmLimitObjectiveFxListFactory extends AbstractFxListFactor
     public GlobalAlarmLimitObjectiveFxList getObject() throws Exception {
         if(null == instance) {
             instance = new GlobalAlarmLimitObjectiveFxList(topicName);
+            instance.setConflate(conflate);
             instance.start(subscriber, eventLoop, expression, params, qosLibrary, qosProfile);
         }
         return instance;
@@ -21,6 +21,7 @@ public class PatientAssessmentFxListFactory extends AbstractFxListFactory implem
     public PatientAssessmentFxList getObject() throws Exception {
         if(null == instance) {
             instance = new PatientAssessmentFxList(topicName);
+            instance.setConflate(conflate);
             instance.start(subscriber, eventLoop, expression, params, qosLibrary, qosProfile);
         }
         return instance;
@@ -5,6 +5,8 @@ import java.util.Date;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.LongProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectPropertyBase;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -100,15 +102,54 @@ public class SampleArrayFx extends AbstractFx<ice.SampleArray> {
     }
     
     
-    private ObjectProperty<Number[]> values;
-    public ObjectProperty<Number[]> valuesProperty() {
-        if(null == values) {
-            values = new SimpleObjectProperty<Number[]>(this, "values", new Number[0]);
-        }
+    private static final float[] NO_VALUES = new float[0];
+    private float[] values = NO_VALUES;
+    /**
+     * Samples of the most recent update. The array belongs to this instance and
+     * is overwritten in place by the next update of the same length so callers
+     * on the FX thread should copy anything they need to retain.
+     */
+    public float[] getFloatValues() {
         return values;
     }
+    private FloatValuesProperty floatValues;
+    /**
+     * Invalidated by every update. The value is usually the same array as
+     * before, so observers must listen for invalidation rather than change.
+     */
+    public ReadOnlyObjectProperty<float[]> floatValuesProperty() {
+        if(null == floatValues) {
+            floatValues = new FloatValuesProperty();
+        }
+        return floatValues;
+    }
+    private final class FloatValuesProperty extends ReadOnlyObjectPropertyBase<float[]> {
+        @Override
+        public float[] get() {
+            return values;
+        }
+        @Override
+        public Object getBean() {
+            return SampleArrayFx.this;
+        }
+        @Override
+        public String getName() {
+            return "floatValues";
+        }
+        void invalidate() {
+            fireValueChangedEvent();
+        }
+    }
+    /**
+     * @deprecated boxes every sample; use {@link #getFloatValues()}
+     */
+    @Deprecated
     public Number[] getValues() {
-        return valuesProperty().get();
+        Number[] boxed = new Number[values.length];
+        for(int i = 0; i < boxed.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
     }
     
     private ObjectProperty<Date> device_time;
@@ -150,11 +191,16 @@ public class SampleArrayFx extends AbstractFx<ice.SampleArray> {
         setInstance_id(v.instance_id);
         setUnit_id(v.unit_id);
         setFrequency(v.frequency);
-        Number[] values = new Number[v.values.userData.size()];
-        for(int i = 0; i < values.length; i++) {
+        final int sz = v.values.userData.size();
+        if(values.length != sz) {
+            values = new float[sz];
+        }
+        for(int i = 0; i < sz; i++) {
             values[i] = v.values.userData.getFloat(i);
         }
-        valuesProperty().set(values);
+        if(null != floatValues) {
+            floatValues.invalidate();
+        }
         setDevice_time(new Date(v.device_time.sec * 1000L + v.device_time.nanosec / 1000000L));
         setPresentation_time(new Date(v.presentation_time.sec * 1000L + v.presentation_time.nanosec / 1000000L));
         super.update(v, s);
@@ -21,6 +21,7 @@ public class SampleArrayFxListFactory extends AbstractFxListFactory implements F
     public SampleArrayFxList getObject() throws Exception {
         if(null == instance) {
             instance = new SampleArrayFxList(topicName);
+            instance.setConflate(conflate);
             instance.start(subscriber, eventLoop, expression, params, qosLibrary, qosProfile);
         }
         return instance;
@@ -65,7 +65,8 @@ public class Configuration {
 
     enum Application {
         ICE_Supervisor(IceAppsContainer.class),
-        ICE_Device_Interface(DeviceAdapterCommand.class);
+        ICE_Device_Interface(DeviceAdapterCommand.class),
+        ICE_Device_Host(DeviceHostCommand.class);
 
         Application(Class<?> c) {
             clazz = c;
@@ -75,6 +76,13 @@ public class Configuration {
         public Class<?> getAppClass() {
             return clazz;
         }
+
+        /**
+         * @return false for applications that may only be run from the command line
+         */
+        public boolean isInteractive() {
+            return GUICommand.class.isAssignableFrom(clazz) || IceApplication.class.isAssignableFrom(clazz);
+        }
     }
     
     interface HeadlessCommand {
@@ -272,6 +280,8 @@ public class Configuration {
             DeviceType d=ddp.getDeviceType();
             ds.append("\t").append(ice.ConnectionType.Serial.equals(d.getConnectionType()) ? "*" : "").append(d.getAlias());
         }
+        ds.append(". If Application is ").append(Application.ICE_Device_Host.name())
+          .append(" then a comma separated list of DeviceType[@address][*count]");
         Option deviceArg = OptionBuilder.withArgName("device")
                 .hasArg()
                 .isRequired(false)
@@ -341,7 +351,13 @@ public class Configuration {
         // command line having arguments or not. If not set, default to headless==true.
         //
         boolean headless=!Boolean.getBoolean("mdpnp.ui");
-        return new Configuration(headless, app, domainId, deviceType, address, fhirServerName);
+        Configuration conf = new Configuration(headless, app, domainId, deviceType, address, fhirServerName);
+
+        // the host takes a list of devices; see DeviceHostCommand for the format
+        if (Application.ICE_Device_Host.equals(app) && line.hasOption("device")) {
+            conf.getCmdLineEnv().put("mdpnp.host.devices", line.getOptionValue("device"));
+        }
+        return conf;
     }
 
     public static Configuration searchAndLoadSettings(File[] fPath) throws IOException {
@@ -22,10 +22,13 @@ import org.mdpnp.devices.ge.serial.DemoGESerial;
 import org.mdpnp.devices.hospira.symbiq.DemoSymbiq;
 import org.mdpnp.devices.ivy._450c.DemoIvy450C;
 import org.mdpnp.devices.masimo.radical.DemoRadical7;
+import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.net.NetworkLoopGroup;
 import org.mdpnp.devices.nellcor.pulseox.DemoN595;
 import org.mdpnp.devices.nonin.pulseox.DemoNoninPulseOx;
 import org.mdpnp.devices.oridion.capnostream.DemoCapnostream20;
 import org.mdpnp.devices.philips.intellivue.DemoEthernetIntellivue;
+import org.mdpnp.devices.philips.intellivue.DemoReplayIntellivue;
 import org.mdpnp.devices.philips.intellivue.DemoSerialIntellivue;
 import org.mdpnp.devices.simulation.co2.SimCapnometer;
 import org.mdpnp.devices.simulation.ecg.SimElectroCardioGram;
@@ -266,7 +269,8 @@ public class DeviceFactory {
             EventLoop eventLoop = context.getBean("eventLoop", EventLoop.class);
             Subscriber subscriber = context.getBean("subscriber", Subscriber.class);
             Publisher publisher = context.getBean("publisher", Publisher.class);
-            return new DemoEthernetIntellivue(subscriber, publisher, eventLoop);
+            NetworkLoop networkLoop = context.containsBean(HOST_NETWORK_LOOPS) ? context.getBean(HOST_NETWORK_LOOPS, NetworkLoopGroup.class).next() : null;
+            return new DemoEthernetIntellivue(subscriber, publisher, eventLoop, networkLoop);
         }
     }
 
@@ -286,6 +290,23 @@ public class DeviceFactory {
         }
     }
 
+    public static class IntellivueReplayProvider extends SpringLoadedDriver {
+
+        @Override
+        public DeviceType getDeviceType(){
+            return new DeviceType(ice.ConnectionType.Simulated, "Philips", "Intellivue (Replay)", "IntellivueReplay", 1);
+        }
+
+        @Override
+        public AbstractDevice newInstance(AbstractApplicationContext context) throws Exception {
+            EventLoop eventLoop = context.getBean("eventLoop", EventLoop.class);
+            Subscriber subscriber = context.getBean("subscriber", Subscriber.class);
+            Publisher publisher = context.getBean("publisher", Publisher.class);
+            NetworkLoop networkLoop = context.containsBean(HOST_NETWORK_LOOPS) ? context.getBean(HOST_NETWORK_LOOPS, NetworkLoopGroup.class).next() : null;
+            return new DemoReplayIntellivue(subscriber, publisher, eventLoop, networkLoop);
+        }
+    }
+
     public static class Capnostream20Provider extends SpringLoadedDriver {
 
         @Override
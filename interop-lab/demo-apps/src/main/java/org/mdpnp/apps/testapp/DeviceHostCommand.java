@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.apps.testapp;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.mdpnp.devices.DeviceAdapterHost;
+import org.mdpnp.devices.DeviceDriverProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.AbstractApplicationContext;
+
+/**
+ * Headless host for many device adapters in one JVM. The devices are listed in
+ * mdpnp.host.devices (or -device on the command line) as comma separated entries of
+ * the form DeviceType[@address][*count], for instance
+ *
+ *    PO_Simulator*50,ECG_Simulator*20,DraegerEvitaXL@/dev/ttyUSB0
+ *
+ * mdpnp.host.threads bounds the scheduler shared by all of them.
+ */
+public class DeviceHostCommand implements Configuration.HeadlessCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceHostCommand.class);
+
+    @Override
+    public int execute(final Configuration config) throws Exception {
+
+        final AbstractApplicationContext context = config.createContext("DeviceHostContext.xml");
+
+        DeviceAdapterHost host = context.getBean(DeviceAdapterHost.class);
+        String spec = context.getBean("hostDevices", String.class);
+
+        int n = addDevices(host, spec);
+        if(0 == n) {
+            log.error("No devices were specified; set mdpnp.host.devices");
+            context.destroy();
+            return 1;
+        }
+        host.connect();
+        log.info("Hosting " + n + " devices, " + host.getConnectedDeviceCount() + " connected, " + host.getFailedDeviceCount() + " failed");
+
+        final CountDownLatch stopOk = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                log.info("Stopping hosted devices from shutdown hook");
+                context.destroy();
+                stopOk.countDown();
+            }
+        }));
+        stopOk.await();
+        return 0;
+    }
+
+    static int addDevices(DeviceAdapterHost host, String spec) {
+        int n = 0;
+        for(String entry : spec.split(",")) {
+            entry = entry.trim();
+            if(entry.isEmpty()) {
+                continue;
+            }
+            int count = 1;
+            int star = entry.lastIndexOf('*');
+            if(star > 0) {
+                count = Integer.parseInt(entry.substring(star + 1).trim());
+                entry = entry.substring(0, star).trim();
+            }
+            String address = null;
+            int at = entry.indexOf('@');
+            if(at > 0) {
+                address = entry.substring(at + 1).trim();
+                entry = entry.substring(0, at).trim();
+            }
+            DeviceDriverProvider ddp = DeviceFactory.getDeviceDriverProvider(entry);
+            for(int i = 0; i < count; i++) {
+                host.add(ddp, address);
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -190,7 +190,7 @@ public class IceAppsContainer extends IceApplication {
 
         public void start(ApplicationContext context, final Device device) throws IOException {
 
-            final NumericFxList numericList = context.getBean("numericList", NumericFxList.class);
+            final NumericFxList numericList = context.getBean("numericViewList", NumericFxList.class);
             final SampleArrayFxList sampleArrayList = context.getBean("sampleArrayList", SampleArrayFxList.class);
             final InfusionStatusFxList infusionStatusList = context.getBean("infusionStatusList", InfusionStatusFxList.class);
             final DeviceListModel deviceListModel = context.getBean("deviceListModel", DeviceListModel.class);
@@ -213,7 +213,7 @@ public class SettingsController {
         });
         
         deviceCategory.setValue(ice.ConnectionType.Simulated);
-        applications.setItems(FXCollections.observableArrayList(Application.values()));
+        applications.setItems(FXCollections.observableArrayList(Application.values()).filtered(Application::isInteractive));
 
         if (null != conf) {
             if (null != conf.getApplication()) {
@@ -1,6 +1,8 @@
 package org.mdpnp.apps.testapp.diag;
 
 import javafx.fxml.FXML;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 
 import org.mdpnp.apps.fxbeans.AlarmLimitFx;
@@ -20,6 +22,7 @@ public class DiagnosticApplication {
         
     @FXML protected TableView<NumericFx> numericTable;
     @FXML protected TableView<SampleArrayFx> sampleArrayTable;
+    @FXML protected TableColumn<SampleArrayFx, float[]> sampleArrayValuesColumn;
     @FXML protected TableView <AlertFx> patientAlertTable, technicalAlertTable;
     @FXML protected TableView<Validation> validationTable;
     @FXML protected TableView<InfusionStatusFx> infusionStatusTable;
@@ -35,9 +38,40 @@ public class DiagnosticApplication {
         
     }
 
+    /**
+     * SampleArrayFx refills the same float[] on each update so the item never
+     * compares as changed; treat every invalidation as a new item.
+     */
+    private static final class FloatValuesCell extends TableCell<SampleArrayFx, float[]> {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        protected boolean isItemChanged(float[] oldItem, float[] newItem) {
+            return true;
+        }
+
+        @Override
+        protected void updateItem(float[] item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || null == item) {
+                setText(null);
+                return;
+            }
+            text.setLength(0);
+            for (int i = 0; i < item.length; i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(item[i]);
+            }
+            setText(text.toString());
+        }
+    }
+
     public void setModel(Diagnostic diagnostic) {
         numericTable.setItems(diagnostic.getNumericModel());
         sampleArrayTable.setItems(diagnostic.getSampleArrayModel());
+        sampleArrayValuesColumn.setCellFactory(column -> new FloatValuesCell());
         patientAlertTable.setItems(diagnostic.getPatientAlertModel());
         technicalAlertTable.setItems(diagnostic.getTechnicalAlertModel());
         validationTable.setItems(diagnostic.getValidationOracle());
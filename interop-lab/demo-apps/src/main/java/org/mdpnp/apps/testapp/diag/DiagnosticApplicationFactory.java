@@ -30,7 +30,7 @@ public class DiagnosticApplicationFactory implements IceApplicationProvider {
     @Override
     public IceApplicationProvider.IceApp create(ApplicationContext parentContext) throws IOException {
         
-        final NumericFxList numericList = parentContext.getBean("numericList", NumericFxList.class);
+        final NumericFxList numericList = parentContext.getBean("numericViewList", NumericFxList.class);
         
         final SampleArrayFxList sampleArrayList = parentContext.getBean("sampleArrayList", SampleArrayFxList.class);
         
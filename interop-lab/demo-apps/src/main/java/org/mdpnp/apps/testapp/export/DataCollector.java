@@ -76,7 +76,7 @@ public class DataCollector {
     private ElementObserver<SampleArrayFx> sampleArrayObserver;
     private ElementObserver<NumericFx> numericObserver;
     public void add(SampleArrayFx fx) {
-        Number[] values = fx.getValues();
+        float[] values = fx.getFloatValues();
         Date presentationTime = fx.getPresentation_time();
         long baseTime = presentationTime.getTime();
 
@@ -85,7 +85,7 @@ public class DataCollector {
             int msPerSample = (int) (1000 / fx.getFrequency());
             for (int j = 0; j < sz; j++) {
                 long tm = baseTime - (sz - j) * msPerSample;
-                float value = values[j].floatValue();
+                float value = values[j];
 
                 if (log.isTraceEnabled())
                     log.trace(dateFormats.get().format(new Date(tm)) + " " + fx.getMetric_id() + "=" + value);
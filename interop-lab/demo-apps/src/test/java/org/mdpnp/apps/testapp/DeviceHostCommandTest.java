@@ -0,0 +1,63 @@
+package org.mdpnp.apps.testapp;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mdpnp.devices.DeviceAdapterHost;
+import org.mdpnp.devices.DeviceTaskExecutor;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+public class DeviceHostCommandTest {
+
+    static {
+        System.setProperty("mdpnp.domain", "0");
+    }
+
+    @Test
+    public void testHostedDevicesShareExecutor() throws Exception {
+
+        final AbstractApplicationContext context = new ClassPathXmlApplicationContext(new String[]{"DeviceHostContext.xml"});
+
+        try {
+            DeviceAdapterHost host = context.getBean(DeviceAdapterHost.class);
+            Assert.assertEquals(4, DeviceHostCommand.addDevices(host, "PO_Simulator*3, ECG_Simulator"));
+            host.connect();
+            Assert.assertEquals(4, host.getConnectedDeviceCount());
+
+            Set<String> udis = new HashSet<>();
+            for (DeviceAdapterHost.HostedDevice hd : host.getDevices()) {
+                udis.add(hd.getAdapter().getDevice().getUniqueDeviceIdentifier());
+                ScheduledExecutorService executor = hd.getAdapter().getComponent("taskExecutor", ScheduledExecutorService.class);
+                Assert.assertTrue(executor instanceof DeviceTaskExecutor);
+                Assert.assertSame(executor, hd.getAdapter().getDevice().getExecutor());
+            }
+            Assert.assertEquals(4, udis.size());
+
+            DeviceAdapterHost.HostedDevice first = host.getDevices().get(0);
+            ScheduledExecutorService executor = first.getAdapter().getComponent("taskExecutor", ScheduledExecutorService.class);
+            host.stop(first);
+            Assert.assertEquals(DeviceAdapterHost.State.Stopped, first.getState());
+            Assert.assertTrue(executor.isShutdown());
+            Assert.assertFalse(host.getExecutor().isShutdown());
+            Assert.assertEquals(3, host.getConnectedDeviceCount());
+        }
+        finally {
+            context.destroy();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDeviceType() throws Exception {
+        final AbstractApplicationContext context = new ClassPathXmlApplicationContext(new String[]{"DeviceHostContext.xml"});
+        try {
+            DeviceHostCommand.addDevices(context.getBean(DeviceAdapterHost.class), "NoSuchDevice*2");
+        }
+        finally {
+            context.destroy();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.mdpnp.devices;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of moving one update of waveform samples from a driver into the
+ * SampleArray that AbstractDevice publishes, excluding the DDS write itself.
+ * The boxed variant includes the Float allocation drivers used to perform to
+ * satisfy the Number[] API; at the default of 1000 samples the score is the
+ * cost per 1000 samples.
+ *
+ * Run with -Pjmh.args="-prof gc" and compare gc.alloc.rate.norm (B/op).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SampleArrayPublishBenchmark {
+    @Param({ "1000" })
+    public int samples;
+
+    private final ice.SampleArray sample = new ice.SampleArray();
+    private double[] source;
+    private Number[] boxed;
+    private float[] primitive;
+
+    @Setup
+    public void setUp() {
+        source = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            source[i] = Math.sin(i / 10.0);
+        }
+        boxed = new Number[samples];
+        primitive = new float[samples];
+    }
+
+    @Benchmark
+    public ice.SampleArray boxed() {
+        for (int i = 0; i < samples; i++) {
+            boxed[i] = (float) source[i];
+        }
+        AbstractDevice.fill(sample, new AbstractDevice.ArrayContainer<Number>(boxed));
+        return sample;
+    }
+
+    @Benchmark
+    public ice.SampleArray primitive() {
+        for (int i = 0; i < samples; i++) {
+            primitive[i] = (float) source[i];
+        }
+        AbstractDevice.fill(sample, primitive, 0, samples);
+        return sample;
+    }
+}
@@ -34,6 +34,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.mdpnp.rtiapi.data.EventLoop;
@@ -51,7 +52,6 @@ import com.rti.dds.infrastructure.InstanceHandle_t;
 import com.rti.dds.infrastructure.RETCODE_NO_DATA;
 import com.rti.dds.infrastructure.ResourceLimitsQosPolicy;
 import com.rti.dds.infrastructure.StatusKind;
-import com.rti.dds.infrastructure.Time_t;
 import com.rti.dds.publication.Publisher;
 import com.rti.dds.subscription.InstanceStateKind;
 import com.rti.dds.subscription.ReadCondition;
@@ -94,6 +94,9 @@ public abstract class AbstractDevice {
     protected final Topic numericTopic;
     protected final NumericDataWriter numericDataWriter;
 
+    private volatile NumericPublishPolicy numericPublishPolicy;
+    private final AtomicLong suppressedNumericSamples = new AtomicLong();
+
     protected final Topic sampleArrayTopic;
     protected final SampleArrayDataWriter sampleArrayDataWriter;
 
@@ -318,19 +321,26 @@ public abstract class AbstractDevice {
     }
 
     protected void numericSample(InstanceHolder<Numeric> holder, float newValue, DeviceClock.Reading time) {
+        NumericPublishPolicy policy = numericPublishPolicy;
+        if (null != policy) {
+            NumericPublishPolicy.Rule rule = policy.ruleFor(holder.data.metric_id);
+            // holder.data still holds the last value and time actually written
+            ice.Time_t last = holder.data.presentation_time;
+            if (null != rule && (0 != last.sec || 0 != last.nanosec)
+                    && !rule.shouldPublish(holder.data.value, last.sec * DeviceClock.NANOS_PER_SECOND + last.nanosec, newValue, time.getTimeNanos())) {
+                suppressedNumericSamples.incrementAndGet();
+                return;
+            }
+        }
         holder.data.value = newValue;
         if(time.hasDeviceTime()) {
-            Time_t t = DomainClock.toDDSTime(time.getDeviceTime());
-            holder.data.device_time.sec = t.sec;
-            holder.data.device_time.nanosec = t.nanosec;
+            DomainClock.nanosToDDSTime(time.getDeviceTimeNanos(), holder.data.device_time);
         } else {
             holder.data.device_time.sec = 0;
             holder.data.device_time.nanosec = 0;
         }
         
-        Time_t t = DomainClock.toDDSTime(time.getTime());
-        holder.data.presentation_time.sec = t.sec;
-        holder.data.presentation_time.nanosec = t.nanosec;
+        DomainClock.nanosToDDSTime(time.getTimeNanos(), holder.data.presentation_time);
         
         numericDataWriter.write(holder.data, holder.handle);
     }
@@ -541,6 +551,49 @@ public abstract class AbstractDevice {
         return sampleArraySample(holder, new CollectionContainer<>(newValues), metric_id, vendor_metric_id, instance_id, unit_id, frequency, timestamp);
     }
 
+    protected InstanceHolder<SampleArray> sampleArraySample(InstanceHolder<SampleArray> holder,
+                                                            float[] newValues,
+                                                            String metric_id, String vendor_metric_id, String unit_id, int frequency,
+                                                            DeviceClock.Reading timestamp) {
+        return sampleArraySample(holder, newValues, metric_id, vendor_metric_id, 0, unit_id, frequency, timestamp);
+    }
+
+    protected InstanceHolder<SampleArray> sampleArraySample(InstanceHolder<SampleArray> holder,
+                                                            float[] newValues,
+                                                            String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
+                                                            DeviceClock.Reading timestamp) {
+        return sampleArraySample(holder, newValues, 0, null == newValues ? 0 : newValues.length,
+                                 metric_id, vendor_metric_id, instance_id, unit_id, frequency, timestamp);
+    }
+
+    /**
+     * Publishes newValues[offset] through newValues[offset+length-1] without
+     * boxing; the values are copied directly into the sample so the caller
+     * may reuse its array as soon as this returns.  A null array unregisters
+     * the instance.
+     */
+    protected InstanceHolder<SampleArray> sampleArraySample(InstanceHolder<SampleArray> holder,
+                                                            float[] newValues, int offset, int length,
+                                                            String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
+                                                            DeviceClock.Reading timestamp) {
+
+        holder = ensureHolderConsistency(holder, metric_id, vendor_metric_id, instance_id, unit_id, frequency);
+
+        if (null != newValues) {
+            timestamp = timestamp.refineResolutionForFrequency(frequency, length);
+            if (null == holder) {
+                holder = createSampleArrayInstance(metric_id, vendor_metric_id, instance_id, unit_id, frequency);
+            }
+            sampleArraySample(holder, newValues, offset, length, timestamp);
+        } else {
+            if (holder != null) {
+                unregisterSampleArrayInstance(holder);
+                holder = null;
+            }
+        }
+        return holder;
+    }
+
     private InstanceHolder<SampleArray> sampleArraySample(InstanceHolder<SampleArray> holder,
                                                           NullSaveContainer<Number> newValues,
                                                           String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
@@ -573,28 +626,40 @@ public abstract class AbstractDevice {
         sampleArraySample(holder, new CollectionContainer<>(newValues), timestamp);
     }
 
+    protected void sampleArraySample(InstanceHolder<SampleArray> holder, float[] newValues, DeviceClock.Reading timestamp) {
+        sampleArraySample(holder, newValues, 0, newValues.length, timestamp);
+    }
+
+    protected void sampleArraySample(InstanceHolder<SampleArray> holder, float[] newValues, int offset, int length, DeviceClock.Reading timestamp) {
+        fill(holder.data, newValues, offset, length);
+        publish(holder, timestamp);
+    }
+
     private void sampleArraySample(InstanceHolder<ice.SampleArray> holder, NullSaveContainer<Number> newValues, DeviceClock.Reading deviceTimestamp) {
-        fill(holder, newValues);
+        fill(holder.data, newValues);
         publish(holder, deviceTimestamp);
     }
 
-    private void fill(InstanceHolder<SampleArray> holder, NullSaveContainer<Number> newValues) {
-        holder.data.values.userData.clear();
+    static void fill(SampleArray data, NullSaveContainer<Number> newValues) {
+        data.values.userData.clear();
         if(!newValues.isNull()) {
             Iterator<Number> iter = newValues.iterator();
             while (iter.hasNext()) {
                 Number n = iter.next();
-                holder.data.values.userData.addFloat(n.floatValue());
+                data.values.userData.addFloat(n.floatValue());
             }
         }
     }
 
+    static void fill(SampleArray data, float[] newValues, int offset, int length) {
+        data.values.userData.clear();
+        data.values.userData.addAllFloat(newValues, offset, length);
+    }
+
     private void publish(InstanceHolder<ice.SampleArray> holder, DeviceClock.Reading deviceTimestamp) {
 
         if (deviceTimestamp.hasDeviceTime()) {
-            Time_t t = DomainClock.toDDSTime(deviceTimestamp.getDeviceTime());
-            holder.data.device_time.sec = t.sec;
-            holder.data.device_time.nanosec = t.nanosec;
+            DomainClock.nanosToDDSTime(deviceTimestamp.getDeviceTimeNanos(), holder.data.device_time);
         } else {
 
             holder.data.device_time.sec = 0;
@@ -604,7 +669,7 @@ public abstract class AbstractDevice {
         DeviceClock.Reading adjusted = deviceTimestamp.refineResolutionForFrequency(holder.data.frequency,
                                                                                     holder.data.values.userData.size());
         
-        DomainClock.toDDSTime(adjusted.getTime(), holder.data.presentation_time);
+        DomainClock.nanosToDDSTime(adjusted.getTimeNanos(), holder.data.presentation_time);
 
         sampleArrayDataWriter.write(holder.data,
                                                 holder.handle==null?InstanceHandle_t.HANDLE_NIL:holder.handle);
@@ -891,6 +956,22 @@ public abstract class AbstractDevice {
         this.executor = executor;
     }
 
+    public NumericPublishPolicy getNumericPublishPolicy() {
+        return numericPublishPolicy;
+    }
+
+    /**
+     * @param numericPublishPolicy rules for suppressing unchanged Numerics; null or empty to publish every sample
+     */
+    public void setNumericPublishPolicy(NumericPublishPolicy numericPublishPolicy) {
+        this.numericPublishPolicy = null == numericPublishPolicy || numericPublishPolicy.isEmpty() ? null : numericPublishPolicy;
+    }
+
+    @ManagedAttribute(description="Numeric samples not written under the numeric publish policy.")
+    public long getSuppressedNumericSamples() {
+        return suppressedNumericSamples.get();
+    }
+
     protected void iconOrBlank(String model, String icon) {
         (new DeviceIdentityBuilder(deviceIdentity)).withIcon(this, icon).model(model).build();
         writeDeviceIdentity();
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.DeviceDriverProvider.DeviceAdapter;
+import org.mdpnp.devices.DeviceDriverProvider.DeviceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Runs many device adapters in one JVM. Every adapter is created as a child of the same
+ * context so they share its DomainParticipant, Publisher, Subscriber and EventLoop threads.
+ * That context must also define {@link DeviceDriverProvider#HOST_TASK_EXECUTOR}; each
+ * driver then schedules its work on that bounded executor through a {@link DeviceTaskExecutor}
+ * of its own instead of starting private executor threads.
+ *
+ * A device that fails to start or connect is marked failed and does not stop the others.
+ * Per device metrics are exported over JMX by each driver context as before; the
+ * DeviceTaskExecutor adds task counts, failures and busy time.
+ *
+ * Since the Publisher is shared so is the partition; a partition assigned to any one
+ * device applies to all devices on the host.
+ */
+@ManagedResource(description="Device adapter host")
+public class DeviceAdapterHost implements ApplicationContextAware {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceAdapterHost.class);
+
+    private static final long PARTITION_FILE_PERIOD = 60000L;
+
+    public enum State { Created, Connected, Failed, Stopped };
+
+    /**
+     * One device on the host and what became of it.
+     */
+    public static class HostedDevice {
+        private final DeviceType deviceType;
+        private final String address;
+        private volatile DeviceAdapter adapter;
+        private volatile State state = State.Created;
+        private volatile Throwable failure;
+
+        HostedDevice(DeviceType deviceType, String address) {
+            this.deviceType = deviceType;
+            this.address = address;
+        }
+
+        public DeviceType getDeviceType() {
+            return deviceType;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public DeviceAdapter getAdapter() {
+            return adapter;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        void fail(String what, Throwable t) {
+            log.error("Hosted " + this + " failed to " + what, t);
+            failure = t;
+            state = State.Failed;
+        }
+
+        @Override
+        public String toString() {
+            return deviceType.getAlias() + (null == address ? "" : ("@" + address));
+        }
+    }
+
+    private final ScheduledExecutorService executor;
+    private final List<HostedDevice> devices = new CopyOnWriteArrayList<HostedDevice>();
+    private AbstractApplicationContext context;
+    private String[] partition;
+
+    public DeviceAdapterHost(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext ac) throws BeansException {
+        if (!ac.containsBean(DeviceDriverProvider.HOST_TASK_EXECUTOR)) {
+            throw new IllegalArgumentException("Context does not define " + DeviceDriverProvider.HOST_TASK_EXECUTOR);
+        }
+        context = (AbstractApplicationContext) ac;
+    }
+
+    public void setPartition(String[] partition) {
+        this.partition = partition;
+    }
+
+    /**
+     * create the adapter for one device. Failures are recorded on the returned
+     * HostedDevice rather than thrown.
+     */
+    public HostedDevice add(DeviceDriverProvider ddp, String address) {
+        HostedDevice hd = new HostedDevice(ddp.getDeviceType(), address);
+        devices.add(hd);
+        try {
+            DeviceAdapter adapter = ddp.create(context);
+            hd.adapter = adapter;
+            if (null != partition) {
+                adapter.setPartition(partition);
+            }
+            if (null != address) {
+                adapter.setAddress(address);
+            }
+            final PartitionAssignmentController pac = adapter.getComponent(PartitionAssignmentController.class);
+            adapter.getComponent("taskExecutor", ScheduledExecutorService.class)
+                   .scheduleWithFixedDelay(pac::checkForPartitionFile, PARTITION_FILE_PERIOD, PARTITION_FILE_PERIOD, TimeUnit.MILLISECONDS);
+        } catch (Throwable t) {
+            hd.fail("start", t);
+            stop(hd);
+        }
+        return hd;
+    }
+
+    /**
+     * connect every device that started; devices are connected in turn and one that
+     * fails is stopped and left behind.
+     */
+    public void connect() {
+        for (HostedDevice hd : devices) {
+            if (State.Created.equals(hd.state)) {
+                try {
+                    if (hd.adapter.connect()) {
+                        hd.state = State.Connected;
+                        continue;
+                    }
+                    hd.fail("connect", null);
+                } catch (Throwable t) {
+                    hd.fail("connect", t);
+                }
+                stop(hd);
+            }
+        }
+    }
+
+    public void stop(HostedDevice hd) {
+        DeviceAdapter adapter = hd.adapter;
+        if (null == adapter || State.Stopped.equals(hd.state)) {
+            return;
+        }
+        try {
+            adapter.disconnect();
+        } catch (Throwable t) {
+            log.error("Hosted " + hd + " failed to disconnect", t);
+        }
+        try {
+            adapter.stop();
+        } catch (Throwable t) {
+            log.error("Hosted " + hd + " failed to stop", t);
+        }
+        if (!State.Failed.equals(hd.state)) {
+            hd.state = State.Stopped;
+        }
+        hd.adapter = null;
+    }
+
+    public void stop() {
+        for (HostedDevice hd : devices) {
+            stop(hd);
+        }
+        log.info("Stopped " + devices.size() + " hosted devices");
+    }
+
+    public List<HostedDevice> getDevices() {
+        return Collections.unmodifiableList(new ArrayList<HostedDevice>(devices));
+    }
+
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    @ManagedAttribute(description="Devices added to this host.")
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    @ManagedAttribute(description="Hosted devices currently connected.")
+    public int getConnectedDeviceCount() {
+        return count(State.Connected);
+    }
+
+    @ManagedAttribute(description="Hosted devices that failed to start or connect.")
+    public int getFailedDeviceCount() {
+        return count(State.Failed);
+    }
+
+    private int count(State state) {
+        int n = 0;
+        for (HostedDevice hd : devices) {
+            if (state.equals(hd.state)) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -11,6 +11,8 @@ import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationListener;
@@ -25,6 +27,7 @@ import java.util.Hashtable;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -33,6 +36,19 @@ public interface DeviceDriverProvider {
 
     static final Logger log = LoggerFactory.getLogger(SpringLoadedDriver.class);
 
+    /**
+     * When a parent context defines an executor by this name every driver context created under it
+     * schedules its work there, through a {@link DeviceTaskExecutor} of its own, instead of creating
+     * private 'taskExecutor' and 'timerFactory' threads. See {@link DeviceAdapterHost}.
+     */
+    static final String HOST_TASK_EXECUTOR = "host.taskExecutor";
+
+    /**
+     * When a parent context defines a NetworkLoopGroup by this name, drivers that talk to their
+     * devices over the network share its selector threads instead of starting one of their own.
+     */
+    static final String HOST_NETWORK_LOOPS = "host.networkLoops";
+
     DeviceType     getDeviceType();
     AbstractDevice newInstance(AbstractApplicationContext context) throws Exception;
     DeviceAdapter  create(AbstractApplicationContext context) throws Exception;
@@ -147,6 +163,8 @@ public interface DeviceDriverProvider {
      */
     public abstract static class SpringLoadedDriver implements DeviceDriverProvider {
 
+        private static final AtomicInteger contextCount = new AtomicInteger();
+
         protected String getContextPath() {
             return "classpath*:/DriverContext.xml";
         }
@@ -163,7 +181,9 @@ public interface DeviceDriverProvider {
             // to create jmx names for the beans that are to be exposed for management.
             //
             context.setDisplayName(getDeviceType().toString());
-            context.setId(getDeviceType().getAlias() + hashCode());
+            // several contexts may come from the same provider when devices are hosted together.
+            //
+            context.setId(getDeviceType().getAlias() + hashCode() + "-" + contextCount.incrementAndGet());
 
             // create a post processor to inject a device factory with the appropriate device
             // implementation.
@@ -188,6 +208,10 @@ public interface DeviceDriverProvider {
                 @Override
                 public void postProcessBeanFactory(ConfigurableListableBeanFactory configurableListableBeanFactory) throws BeansException {
                     configurableListableBeanFactory.registerSingleton("driverFactoryProcessor", bpp);
+
+                    if(parentContext.containsBean(HOST_TASK_EXECUTOR)) {
+                        shareHostExecutor((BeanDefinitionRegistry) configurableListableBeanFactory, context.getId());
+                    }
                 }
             });
 
@@ -208,6 +232,24 @@ public interface DeviceDriverProvider {
 
             return new SpringDecorator(context);
         }
+
+        /**
+         * swap the per-device executors of the driver context for a view on the host's shared one. The view
+         * is destroyed with the driver context, cancelling only this device's tasks.
+         */
+        static void shareHostExecutor(BeanDefinitionRegistry registry, String name) {
+            for(String s : new String[] { "taskExecutor", "timerFactory" }) {
+                if(registry.containsBeanDefinition(s)) {
+                    registry.removeBeanDefinition(s);
+                }
+            }
+            registry.registerBeanDefinition("taskExecutor",
+                    BeanDefinitionBuilder.genericBeanDefinition(DeviceTaskExecutor.class)
+                                         .addConstructorArgReference(HOST_TASK_EXECUTOR)
+                                         .addConstructorArgValue(name)
+                                         .setDestroyMethodName("shutdown")
+                                         .getBeanDefinition());
+        }
     }
 
     /**
@@ -231,6 +273,9 @@ public interface DeviceDriverProvider {
 
                 instance = driverProvider.newInstance((AbstractApplicationContext)context);
                 instance.setExecutor(executor);
+                if (null != numericPublishPolicy) {
+                    instance.setNumericPublishPolicy(numericPublishPolicy.forDeviceType(type.getAlias()));
+                }
                 instance.init();
             }
             return instance;
@@ -264,10 +309,15 @@ public interface DeviceDriverProvider {
             this.executor = executor;
         }
 
+        public void setNumericPublishPolicy(NumericPublishPolicy numericPublishPolicy) {
+            this.numericPublishPolicy = numericPublishPolicy;
+        }
+
         private AbstractDevice instance;
         private ApplicationContext context;
         private DeviceDriverProvider driverProvider;
         private ScheduledExecutorService executor;
+        private NumericPublishPolicy numericPublishPolicy;
     }
 
     /**
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * One device's view of a scheduler shared by many devices in the same JVM.
+ * Tasks run on the shared threads but are tracked here so that shutting the
+ * view down cancels only this device's tasks and leaves the shared executor
+ * running. Task counts, failures and busy time are kept per device.
+ * <p>
+ * A device's tasks run one at a time, as they would on a private single
+ * threaded executor: the shared executor only times them, and tasks that are
+ * due go into a queue of this device's that is drained one task per turn on
+ * the shared threads.
+ */
+@ManagedResource(description="Device task executor")
+public class DeviceTaskExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceTaskExecutor.class);
+
+    private final ScheduledExecutorService delegate;
+    private final String name;
+    private final Set<Future<?>> futures = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    // due tasks; whoever takes the count from zero submits the drain
+    private final Queue<DeviceFuture<?>> due = new ConcurrentLinkedQueue<DeviceFuture<?>>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // due or running, so termination is not reported while a task that has started is still running
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong tasksRun = new AtomicLong();
+    private final AtomicLong taskFailures = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public DeviceTaskExecutor(ScheduledExecutorService delegate, String name) {
+        this.delegate = delegate;
+        this.name = name;
+    }
+
+    @ManagedAttribute(description="Task executions completed on the shared executor.")
+    public long getTasksRun() {
+        return tasksRun.get();
+    }
+
+    @ManagedAttribute(description="Task executions that ended in an exception.")
+    public long getTaskFailures() {
+        return taskFailures.get();
+    }
+
+    @ManagedAttribute(description="Milliseconds spent running this device's tasks.")
+    public long getBusyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(busyNanos.get());
+    }
+
+    @ManagedAttribute(description="Scheduled or periodic tasks not yet complete.")
+    public int getPendingTasks() {
+        futures.removeIf(Future::isDone);
+        return futures.size();
+    }
+
+    private void checkShutdown() {
+        if (shutdown) {
+            throw new RejectedExecutionException(name + " is shut down");
+        }
+        futures.removeIf(Future::isDone);
+    }
+
+    private void failed(Throwable t) {
+        taskFailures.incrementAndGet();
+        log.warn(name + " task failed", t);
+    }
+
+    private void enqueue(DeviceFuture<?> task) {
+        inFlight.incrementAndGet();
+        due.add(task);
+        if (0 == queued.getAndIncrement()) {
+            delegate.execute(drain);
+        }
+    }
+
+    private final Runnable drain = this::drainOne;
+
+    // One task per turn so that other devices sharing the threads are not starved
+    private void drainOne() {
+        measure(due.poll());
+        if (0 != queued.decrementAndGet()) {
+            delegate.execute(drain);
+        }
+    }
+
+    private void measure(DeviceFuture<?> task) {
+        try {
+            if (!task.isCancelled()) {
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                    tasksRun.incrementAndGet();
+                }
+            }
+        } finally {
+            if (0 == inFlight.decrementAndGet() && shutdown) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * The shared executor holds only a timer that queues the task when it is due,
+     * so the future completes once the task itself has run here. Periodic tasks are
+     * timed again after each run; failures are counted and passed on so that
+     * periodic tasks stop just as they would on a private executor.
+     */
+    private final class DeviceFuture<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        // zero for a one-shot task, positive for a fixed rate and negative for a fixed delay
+        private final long period;
+        private volatile long time;
+        private volatile ScheduledFuture<?> timer;
+
+        DeviceFuture(Callable<V> callable, long delay, long period) {
+            super(callable);
+            this.time = System.nanoTime() + delay;
+            this.period = period;
+        }
+
+        DeviceFuture(Runnable runnable, long delay, long period) {
+            super(runnable, null);
+            this.time = System.nanoTime() + delay;
+            this.period = period;
+        }
+
+        private DeviceFuture<V> arm() {
+            timer = delegate.schedule(() -> enqueue(this), time - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (isCancelled()) {
+                // raced with cancel or shutdown
+                timer.cancel(false);
+            }
+            return this;
+        }
+
+        @Override
+        public void run() {
+            if (0L == period) {
+                super.run();
+            } else if (runAndReset()) {
+                time = period > 0L ? time + period : System.nanoTime() - period;
+                if (shutdown) {
+                    cancel(false);
+                } else {
+                    arm();
+                }
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failed(t);
+            super.setException(t);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            ScheduledFuture<?> timer = this.timer;
+            if (null != timer) {
+                timer.cancel(false);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private <V> ScheduledFuture<V> schedule(DeviceFuture<V> future) {
+        checkShutdown();
+        futures.add(future);
+        future.arm();
+        if (shutdown) {
+            // raced with shutdown; nothing else will cancel it
+            future.cancel(false);
+        }
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(new DeviceFuture<Void>(command, unit.toNanos(delay), 0L));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return schedule(new DeviceFuture<V>(callable, unit.toNanos(delay), 0L));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0L) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        return schedule(new DeviceFuture<Void>(command, unit.toNanos(initialDelay), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0L) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        return schedule(new DeviceFuture<Void>(command, unit.toNanos(initialDelay), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return schedule(task, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return schedule(Executors.callable(task, result), 0L, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return schedule(task, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels this device's outstanding tasks; the shared executor is left running.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (Future<?> f : futures) {
+            f.cancel(false);
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        for (Future<?> f : futures) {
+            f.cancel(true);
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    // Every future is cancelled by shutdown, so what remains is a task that had already started
+    @Override
+    public boolean isTerminated() {
+        return shutdown && 0 == inFlight.get();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        final long giveup = System.nanoTime() + remaining;
+        while (!isTerminated()) {
+            if (remaining <= 0L) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = giveup - System.nanoTime();
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
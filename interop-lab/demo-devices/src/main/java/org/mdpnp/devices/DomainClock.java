@@ -42,6 +42,16 @@ public class DomainClock implements DeviceClock  {
         return t;
     }
 
+    public static void nanosToDDSTime(long timestampNanos, Time_t t) {
+        t.sec = (int) Math.floorDiv(timestampNanos, DeviceClock.NANOS_PER_SECOND);
+        t.nanosec = (int) Math.floorMod(timestampNanos, DeviceClock.NANOS_PER_SECOND);
+    }
+
+    public static void nanosToDDSTime(long timestampNanos, ice.Time_t t) {
+        t.sec = (int) Math.floorDiv(timestampNanos, DeviceClock.NANOS_PER_SECOND);
+        t.nanosec = (int) Math.floorMod(timestampNanos, DeviceClock.NANOS_PER_SECOND);
+    }
+
     public static long toMilliseconds(Time_t timestamp) {
         long t = 1000L*timestamp.sec+timestamp.nanosec/1000000L;
         return t;
@@ -78,27 +88,17 @@ public class DomainClock implements DeviceClock  {
     }
 
     static Time_t timeSampleArrayResolution(int resolutionNsPerSample, Time_t t) {
-        if(resolutionNsPerSample >=1000000000) {
-            int secondsMod = resolutionNsPerSample / 1000000000;
-            int nanosecondsMod = resolutionNsPerSample % 1000000000;
-
-            t.sec -= 0 == secondsMod ? 0 : (t.sec % secondsMod);
-            if(nanosecondsMod == 0) {
-                // max res (min sample period) is an even number of seconds
-                t.nanosec = 0;
-            } else {
-                t.nanosec -= 0 == nanosecondsMod ? 0 : (t.nanosec % nanosecondsMod);
-            }
-        } else {
-            t.nanosec -= 0 == resolutionNsPerSample ? 0 : (t.nanosec % resolutionNsPerSample);
-        }
+        nanosToDDSTime(timeSampleArrayResolution(resolutionNsPerSample, t.sec * NANOS_PER_SECOND + t.nanosec), t);
         return t;
     }
 
     static Instant timeSampleArrayResolution(int resolutionNsPerSample, Instant t) {
+        return DeviceClock.toInstant(timeSampleArrayResolution(resolutionNsPerSample, DeviceClock.toNanos(t)));
+    }
 
-        long sec     = t.getEpochSecond();
-        long nanosec = t.getNano();
+    static long timeSampleArrayResolution(int resolutionNsPerSample, long timeNanos) {
+        long sec     = Math.floorDiv(timeNanos, NANOS_PER_SECOND);
+        long nanosec = Math.floorMod(timeNanos, NANOS_PER_SECOND);
 
         if(resolutionNsPerSample >=1000000000) {
             int secondsMod = resolutionNsPerSample / 1000000000;
@@ -114,22 +114,49 @@ public class DomainClock implements DeviceClock  {
         } else {
             nanosec -= 0 == resolutionNsPerSample ? 0 : (nanosec % resolutionNsPerSample);
         }
-        return Instant.ofEpochSecond(sec, nanosec);
+        return sec * NANOS_PER_SECOND + nanosec;
     }
 
+    // get_current_time needs somewhere to write; one per publishing thread
+    private final ThreadLocal<Time_t> currentTime = new ThreadLocal<Time_t>() {
+        @Override
+        protected Time_t initialValue() {
+            return new Time_t(0, 0);
+        }
+    };
 
-    Instant currentTime() {
-        Time_t dds = new Time_t(0, 0);
+    long currentTimeNanos() {
+        Time_t dds = currentTime.get();
         domainParticipant.get_current_time(dds);
-        Instant t = Instant.ofEpochSecond(dds.sec, dds.nanosec);
-        return t;
+        return dds.sec * NANOS_PER_SECOND + dds.nanosec;
+    }
+
+    Instant currentTime() {
+        return DeviceClock.toInstant(currentTimeNanos());
+    }
+
+    private final DeviceClock.Resolution resolution = new DeviceClock.Resolution() {
+        @Override
+        public long truncate(long timeNanos) {
+            return timeSampleArrayResolution(currentArrayResolutionNsPerSample, timeNanos);
+        }
+
+        @Override
+        public void refineForFrequency(int hertz, int size) {
+            currentArrayResolutionNsPerSample = ensureResolutionForFrequency(currentArrayResolutionNsPerSample, hertz, size);
+        }
+    };
+
+    @Override
+    public DeviceClock.Reading instant(DeviceClock.MutableReading reading) {
+        return reading.setTime(currentTimeNanos(), resolution);
     }
 
     @Override
     public DeviceClock.Reading instant() {
         return new DeviceClock.Reading() {
 
-            private final Instant ms = currentTime();
+            private final long nanos = currentTimeNanos();
 
             @Override
             public Instant getDeviceTime() {
@@ -143,8 +170,12 @@ public class DomainClock implements DeviceClock  {
 
             @Override
             public Instant getTime() {
-                Instant adjusted = timeSampleArrayResolution(currentArrayResolutionNsPerSample, ms);
-                return adjusted;
+                return DeviceClock.toInstant(getTimeNanos());
+            }
+
+            @Override
+            public long getTimeNanos() {
+                return timeSampleArrayResolution(currentArrayResolutionNsPerSample, nanos);
             }
 
             @Override
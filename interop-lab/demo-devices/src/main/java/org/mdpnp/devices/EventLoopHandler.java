@@ -23,15 +23,17 @@ import com.rti.dds.infrastructure.Duration_t;
 import com.rti.dds.infrastructure.GuardCondition;
 
 /**
+ * Services an {@link EventLoop} with one daemon thread per shard.
+ *
  * @author Jeff Plourde
  *
  */
-public class EventLoopHandler implements Runnable, ConditionHandler {
+public class EventLoopHandler implements ConditionHandler {
 
     private final EventLoop eventLoop;
-    private final GuardCondition exitCondition = new GuardCondition();
-    private boolean keepGoing = true;
-    private final Thread thread;
+    private final GuardCondition[] exitConditions;
+    private volatile boolean keepGoing = true;
+    private final Thread[] threads;
 
     private static final Logger log = LoggerFactory.getLogger(EventLoopHandler.class);
 
@@ -42,32 +44,38 @@ public class EventLoopHandler implements Runnable, ConditionHandler {
     public EventLoopHandler(EventLoop eventLoop, ThreadGroup group) {
         this.eventLoop = eventLoop;
 
-        thread = new Thread(this, "EventLoopHandler");
-        thread.setDaemon(true);
-        thread.start();
-        // Add this only after service thread is in place
-        eventLoop.addHandler(exitCondition, this);
+        int shards = eventLoop.getShardCount();
+        threads = new Thread[shards];
+        exitConditions = new GuardCondition[shards];
+        for (int i = 0; i < shards; i++) {
+            final int shard = i;
+            threads[i] = new Thread(group, () -> run(shard), 1 == shards ? "EventLoopHandler" : ("EventLoopHandler-" + i));
+            threads[i].setDaemon(true);
+            threads[i].start();
+            // Add this only after service thread is in place
+            exitConditions[i] = new GuardCondition();
+            eventLoop.addHandler(shard, exitConditions[i], this);
+        }
     }
 
-    @Override
-    public void run() {
+    private void run(int shard) {
         ConditionSeq condSeq = new ConditionSeq();
         Duration_t dur = new Duration_t(Duration_t.DURATION_INFINITY_SEC, Duration_t.DURATION_INFINITY_NSEC);
 
         try {
-            log.debug("EventLoopHandler begins");
+            log.debug("EventLoopHandler begins for shard " + shard);
             while (keepGoing) {
                 try {
-                    eventLoop.waitAndHandle(condSeq, dur);
+                    eventLoop.waitAndHandle(shard, condSeq, dur);
                 } catch (Throwable t) {
                     log.error("Unexpected in ConditionHandler", t);
                 }
             }
         } finally {
             if (keepGoing) {
-                log.error("EventLoopHandler ends prematurely");
+                log.error("EventLoopHandler ends prematurely for shard " + shard);
             } else {
-                log.debug("EventLoopHandler ends");
+                log.debug("EventLoopHandler ends for shard " + shard);
             }
         }
     }
@@ -75,8 +83,12 @@ public class EventLoopHandler implements Runnable, ConditionHandler {
     public void shutdown() throws InterruptedException {
         log.debug("shutdown invoked");
         keepGoing = false;
-        exitCondition.set_trigger_value(true);
-        thread.join();
+        for (GuardCondition exitCondition : exitConditions) {
+            exitCondition.set_trigger_value(true);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
         log.debug("shutdown complete");
     }
 
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opt-in, per-metric suppression of Numeric samples that carry no new information.
+ * Rules are given as a single string (normally the mdpnp.numeric.policy property) of
+ * semicolon separated entries
+ *
+ * <pre>
+ *   [deviceAlias/]metric_id=option[,option...]
+ * </pre>
+ *
+ * where deviceAlias and metric_id may be * and the options are
+ * <ul>
+ * <li>abs:x - publish only when the value moves more than x from the last published value</li>
+ * <li>pct:x - as abs but x percent of the last published value</li>
+ * <li>min:ms - never publish an instance more often than this</li>
+ * <li>max:ms - republish an unchanged value after this much silence (default 10000, 0 for never)</li>
+ * </ul>
+ *
+ * For example <code>*=max:5000;PO_Simulator/MDC_PULS_OXIM_SAT_O2=abs:1</code>. The most
+ * specific entry wins: device and metric, then metric, then device, then *.  Metrics
+ * with no matching entry are published on every sample as before.
+ */
+public class NumericPublishPolicy {
+
+    public static final long DEFAULT_MAX_SILENCE_MS = 10000L;
+
+    public static final class Rule {
+        private final float absoluteDeadband, percentDeadband;
+        private final long minIntervalNanos, maxSilenceNanos;
+
+        public Rule(float absoluteDeadband, float percentDeadband, long minIntervalMs, long maxSilenceMs) {
+            this.absoluteDeadband = absoluteDeadband;
+            this.percentDeadband = percentDeadband;
+            this.minIntervalNanos = minIntervalMs * DeviceClock.NANOS_PER_MILLI;
+            this.maxSilenceNanos = maxSilenceMs * DeviceClock.NANOS_PER_MILLI;
+        }
+
+        /**
+         * @return whether value at nowNanos should be written given the last value written
+         */
+        public boolean shouldPublish(float lastValue, long lastNanos, float value, long nowNanos) {
+            long elapsed = nowNanos - lastNanos;
+            if (elapsed < 0L) {
+                // the clock stepped backwards; don't hold samples hostage to it
+                return true;
+            }
+            if (maxSilenceNanos > 0L && elapsed >= maxSilenceNanos) {
+                return true;
+            }
+            if (elapsed < minIntervalNanos) {
+                return false;
+            }
+            if (Float.isNaN(value) || Float.isNaN(lastValue)) {
+                return 0 != Float.compare(value, lastValue);
+            }
+            float deadband = Math.max(absoluteDeadband, percentDeadband / 100f * Math.abs(lastValue));
+            return Math.abs(value - lastValue) > deadband;
+        }
+
+        @Override
+        public String toString() {
+            return "abs:" + absoluteDeadband + ",pct:" + percentDeadband + ",min:" + minIntervalNanos / DeviceClock.NANOS_PER_MILLI + ",max:"
+                    + maxSilenceNanos / DeviceClock.NANOS_PER_MILLI;
+        }
+    }
+
+    private static final class Entry {
+        private final String device, metric;
+        private final Rule rule;
+
+        Entry(String device, String metric, Rule rule) {
+            this.device = device;
+            this.metric = metric;
+            this.rule = rule;
+        }
+
+        int specificity(String device, String metric) {
+            boolean d = null != this.device, m = null != this.metric;
+            if ((d && !this.device.equals(device)) || (m && !this.metric.equals(metric))) {
+                return -1;
+            }
+            return (m ? 2 : 0) + (d ? 1 : 0);
+        }
+    }
+
+    // Stands in for "no rule" in the cache, which cannot hold nulls
+    private static final Rule NONE = new Rule(0f, 0f, 0L, 0L);
+
+    private final List<Entry> entries;
+    private final String deviceAlias;
+    private final Map<String, Rule> cache = new ConcurrentHashMap<String, Rule>();
+
+    public NumericPublishPolicy(String spec) {
+        this(parse(spec), null);
+    }
+
+    private NumericPublishPolicy(List<Entry> entries, String deviceAlias) {
+        this.entries = entries;
+        this.deviceAlias = deviceAlias;
+    }
+
+    /**
+     * @return the rules that apply to one type of device
+     */
+    public NumericPublishPolicy forDeviceType(String deviceAlias) {
+        return new NumericPublishPolicy(entries, deviceAlias);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the rule for the metric or null if every sample should be published
+     */
+    public Rule ruleFor(String metric_id) {
+        Rule rule = cache.get(metric_id);
+        if (null == rule) {
+            rule = NONE;
+            int best = -1;
+            for (Entry e : entries) {
+                int s = e.specificity(deviceAlias, metric_id);
+                if (s > best) {
+                    best = s;
+                    rule = e.rule;
+                }
+            }
+            cache.put(metric_id, rule);
+        }
+        return NONE == rule ? null : rule;
+    }
+
+    static List<Entry> parse(String spec) {
+        if (null == spec || spec.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry> entries = new ArrayList<Entry>();
+        for (String item : spec.split(";")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int eq = item.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected [device/]metric=options in numeric publish policy: " + item);
+            }
+            String key = item.substring(0, eq).trim();
+            String device = null, metric = key;
+            int slash = key.indexOf('/');
+            if (slash >= 0) {
+                device = key.substring(0, slash).trim();
+                metric = key.substring(slash + 1).trim();
+            }
+            entries.add(new Entry("*".equals(device) ? null : device, "*".equals(metric) ? null : metric, parseRule(item.substring(eq + 1))));
+        }
+        return entries;
+    }
+
+    static Rule parseRule(String options) {
+        float abs = 0f, pct = 0f;
+        long min = 0L, max = DEFAULT_MAX_SILENCE_MS;
+        for (String option : options.split(",")) {
+            option = option.trim();
+            if (option.isEmpty()) {
+                continue;
+            }
+            int colon = option.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Expected name:value in numeric publish policy: " + option);
+            }
+            String name = option.substring(0, colon).trim();
+            String value = option.substring(colon + 1).trim();
+            switch (name) {
+            case "abs":
+                abs = Float.parseFloat(value);
+                break;
+            case "pct":
+                pct = Float.parseFloat(value);
+                break;
+            case "min":
+                min = Long.parseLong(value);
+                break;
+            case "max":
+                max = Long.parseLong(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + name + " in numeric publish policy");
+            }
+        }
+        return new Rule(abs, pct, min, max);
+    }
+}
@@ -23,7 +23,6 @@ import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -109,8 +108,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
     // Theoretical maximum 16 streams, practical limit seems to be 3
     // Buffering ten points is for testing, size of this buffer might be
     // a function of the sampling rate
-    @SuppressWarnings("unchecked")
-    private final List<Number>[] realtimeBuffer = new List[16];
+    private final RealtimeBuffer[] realtimeBuffer = new RealtimeBuffer[16];
     private final RTMedibus.RTDataConfig[] realtimeConfig = new RTMedibus.RTDataConfig[16];
     private final int[] realtimeUpsample = new int[16];
     private final int[] realtimeFrequency = new int[16];
@@ -139,9 +137,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
             }
             realtimeFrequency[streamIndex] = 1000000 / (config.interval*multiplier/realtimeUpsample[streamIndex]);
         }
-        for(int i = 0; i < realtimeUpsample[streamIndex]; i++) {
-            realtimeBuffer[streamIndex].add(value);
-        }
+        realtimeBuffer[streamIndex].add((float) value, realtimeUpsample[streamIndex]);
         startEmitFastData(realtimeFrequency[streamIndex]);
     }
 
@@ -253,12 +249,23 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
             receiveDeviceId(idNumber, name);
         }
 
+        // Stack traces here are too noisy on our EvitaXL so only the text
+        // is logged when a value is not a number
+        private Float parseData(Data d, String message) {
+            float f = d.floatValue();
+            if (Float.isNaN(f)) {
+                log.error(message + d.code + " \"" + d.data() + "\"");
+                return null;
+            }
+            return f;
+        }
+
         @Override
         protected void receiveTextMessage(Data[] data) {
             markOldTechnicalAlertInstances();
             for (Data d : data) {
                 if (null != d) {
-                    writeTechnicalAlert(d.code.toString(), d.data);
+                    writeTechnicalAlert(d.code.toString(), d.data());
                 }
             }
             clearOldTechnicalAlertInstances();
@@ -272,15 +279,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                     // custom types in the ice package
                     String metric = numerics.get(d.code);
                     metric = metricOrCode(metric, d.code, "SETTING");
-                    String s = null == d.data ? null : d.data.toString().trim();
-                    Float f = null;
-                    try {
-                        f = Float.parseFloat(s);
-                    } catch (NumberFormatException nfe) {
-                        // Stack traces here are too noisy
-                        // on our EvitaXL 
-                        log.error("Bad number format for device setting " + d.code + " " + nfe.getMessage());
-                    }
+                    Float f = parseData(d, "Bad number format for device setting ");
                     settingUpdates.put(d.code,
                                        numericSample(settingUpdates.get(d.code), f, metric, codeToString(d.code), units(d.code), deviceClock.instant()));
                 }
@@ -293,13 +292,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                 if (null != d) {
                     String metric = numerics.get(d.code);
                     metric = metricOrCode(metric, d.code, "MEASURED_CP"+codepage);
-                    String s = null == d.data ? null : d.data.toString().trim();
-                    Float f = null;
-                    try {
-                        f = Float.parseFloat(s);
-                    } catch (NumberFormatException nfe) {
-                        log.error("Bad measured data number format " + d.code + " " + nfe.getMessage());
-                    }
+                    Float f = parseData(d, "Bad measured data number format ");
                     numericUpdates.put(d.code,
                                        numericSample(numericUpdates.get(d.code), f, metric, codeToString(d.code), units(d.code), deviceClock.instant()));
                 }
@@ -339,12 +332,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
         protected void receiveLowAlarmLimits(int codepage, Data[] data) {
             for (Data d : data) {
                 if (null != d) {
-                    Float f = null;
-                    try {
-                        f = Float.parseFloat(d.data);
-                    } catch (NumberFormatException nfe) {
-                        log.error("Bad number format for low alarm " + d.code + " " + nfe.getMessage());
-                    }
+                    Float f = parseData(d, "Bad number format for low alarm ");
                     InstanceHolder<ice.AlarmLimit> a = alarmLowLimitUpdates.get(d.code);
                     String metric = numerics.get(d.code);
                     metric = metricOrCode(metric, d.code, "ALARM_LIMIT_CP"+codepage);
@@ -357,12 +345,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
         protected void receiveHighAlarmLimits(int codepage, Data[] data) {
             for (Data d : data) {
                 if (null != d) {
-                    Float f = null;
-                    try {
-                        f = Float.parseFloat(d.data);
-                    } catch (NumberFormatException nfe) {
-                        log.error("Bad number format for high alarm " + d.code + " " + nfe.getMessage());
-                    }
+                    Float f = parseData(d, "Bad number format for high alarm ");
                     InstanceHolder<ice.AlarmLimit> a = alarmHighLimitUpdates.get(d.code);
                     String metric = numerics.get(d.code);
                     metric = metricOrCode(metric, d.code, "ALARM_LIMIT_CP"+codepage);
@@ -376,7 +359,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
         protected void receiveAlarms(Alarm[] alarms) {
             for (Alarm a : alarms) {
                 if (a != null) {
-                    writePatientAlert(a.alarmCode.toString(), a.alarmPhrase+" "+priorityText(a.priority));
+                    writePatientAlert(a.alarmCode.toString(), a.alarmPhrase()+" "+priorityText(a.priority));
                 }
             }
         }
@@ -483,20 +466,17 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                         if (null == realtimeConfig[i] || realtimeFrequency[i] != this.frequency) {
                             continue;
                         }
+                        float[] window = realtimeBuffer[i].emit(BUFFER_SAMPLES);
+                        if (null == window) {
+                            continue;
+                        }
                         Object code = realtimeConfig[i].realtimeData;
                         InstanceHolder<ice.SampleArray> sa = sampleArrayUpdates.get(code);
                         if (null != sa) {
                             // In this implementation we're not changing the
                             // requested realtime data; so we
                             // expedite here using the same preregistered instance
-                            synchronized (realtimeBuffer[i]) {
-                                if (realtimeBuffer[i].size() >= BUFFER_SAMPLES) {
-                                    if (realtimeBuffer[i].size() > BUFFER_SAMPLES) {
-                                        realtimeBuffer[i].subList(0, realtimeBuffer[i].size() - BUFFER_SAMPLES).clear();
-                                    }
-                                    sampleArraySample(sa, realtimeBuffer[i], deviceClock.instant());
-                                }
-                            }
+                            sampleArraySample(sa, window, deviceClock.instant());
                         } else {
     
                             String metric_id = null;
@@ -515,15 +495,8 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                             // realtimeConfig[i].multiplier);
     
                             metric_id = metricOrCode(metric_id, code, "RT");
-                            synchronized (realtimeBuffer[i]) {
-                                if (realtimeBuffer[i].size() >= BUFFER_SAMPLES) {
-                                    if (realtimeBuffer[i].size() > BUFFER_SAMPLES) {
-                                        realtimeBuffer[i].subList(0, realtimeBuffer[i].size() - BUFFER_SAMPLES).clear();
-                                    }
-                                    sampleArrayUpdates.put(code,
-                                            sampleArraySample(sa, realtimeBuffer[i], metric_id, codeToString(code), 0, units(code), realtimeFrequency[i], deviceClock.instant()));
-                                }
-                            }
+                            sampleArrayUpdates.put(code,
+                                    sampleArraySample(sa, window, metric_id, codeToString(code), 0, units(code), realtimeFrequency[i], deviceClock.instant()));
                         }
     
                     }
@@ -751,7 +724,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
     public AbstractDraegerVent(final Subscriber subscriber, final Publisher publisher, EventLoop eventLoop) {
         super(subscriber, publisher, eventLoop, RTMedibus.class);
         for (int i = 0; i < realtimeBuffer.length; i++) {
-            realtimeBuffer[i] = Collections.synchronizedList(new ArrayList<Number>());
+            realtimeBuffer[i] = new RealtimeBuffer();
         }
         loadMap(numerics, waveforms);
     }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.util.Arrays;
+
+/**
+ * Realtime values of one Medibus stream on their way from the thread decoding
+ * the serial line to the task that publishes them at a fixed period. Each
+ * value is written into a float ring as many times as the stream is
+ * upsampled; each emission returns a window of the newest samples, as the
+ * boxed list this replaces did after trimming.
+ * 
+ * Exactly one thread may call {@link #add(float, int)} and exactly one
+ * (possibly another) may call {@link #emit(int)}.
+ */
+public class RealtimeBuffer {
+    // about 40 emissions of 25 samples
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final float[] ring;
+    private final int mask;
+    // total samples ever written and read; the difference is what the ring holds
+    private volatile long written, read;
+
+    // producer state
+    private long dropped;
+
+    // consumer state
+    private float[] window = new float[0];
+    private int history;
+    private long skipped;
+
+    public RealtimeBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RealtimeBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        ring = new float[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Samples added and not yet emitted
+     */
+    public int available() {
+        return (int) (written - read);
+    }
+
+    /**
+     * Samples that did not fit in the ring and were discarded
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Samples older than the newest window when an emission found more than a
+     * window's worth; they were never published
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Producer; adds value count times, which is how a stream is upsampled
+     * to a whole number of Hertz.
+     * 
+     * @return the number of samples added
+     */
+    public int add(float value, int count) {
+        long w = written;
+        int free = ring.length - (int) (w - read);
+        int n = Math.min(count, free);
+        if (n < count) {
+            dropped += count - n;
+        }
+        int from = (int) w & mask;
+        int first = Math.min(n, ring.length - from);
+        Arrays.fill(ring, from, from + first, value);
+        Arrays.fill(ring, 0, n - first, value);
+        // publishes the samples to the consumer
+        written = w + n;
+        return n;
+    }
+
+    /**
+     * Consumer; moves new samples into the window of the newest n samples.
+     * 
+     * @param n
+     *            samples per emission
+     * @return the window, valid until the next call, or null if there were no
+     *         new samples or fewer than n have ever arrived
+     */
+    public float[] emit(int n) {
+        long r = read;
+        int available = (int) (written - r);
+        if (0 == available) {
+            return null;
+        }
+        if (window.length != n) {
+            // keep the newest samples right-aligned
+            float[] resized = new float[n];
+            int keep = Math.min(history, Math.min(n, window.length));
+            System.arraycopy(window, window.length - keep, resized, n - keep, keep);
+            window = resized;
+            history = keep;
+        }
+
+        int k = Math.min(n, available);
+        skipped += available - k;
+        System.arraycopy(window, k, window, 0, n - k);
+        int from = (int) (r + available - k) & mask;
+        int first = Math.min(k, ring.length - from);
+        System.arraycopy(ring, from, window, n - k, first);
+        System.arraycopy(ring, 0, window, n - k + first, k - first);
+        // releases the slots to the producer
+        read = r + available;
+
+        history = Math.min(n, history + k);
+        return history < n ? null : window;
+    }
+}
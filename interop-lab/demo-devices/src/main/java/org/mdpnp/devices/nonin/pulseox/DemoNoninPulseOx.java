@@ -74,7 +74,7 @@ public class DemoNoninPulseOx extends AbstractDelegatingSerialDevice<NoninPulseO
 
     }
     
-    protected Integer[] plethBuffer = new Integer[NoninPulseOx.FREQUENCY];
+    protected float[] plethBuffer = new float[NoninPulseOx.FREQUENCY];
     protected int plethBufferCount = 0;
     
     protected static final byte[][] WRISTOX = new byte[][] { {0x18, 0x05, 0x09} };
@@ -355,7 +355,7 @@ public class DemoCapnostream20 extends AbstractDelegatingSerialDevice<Capnostrea
     }
 
     private static final int BUFFER_SAMPLES = 5;
-    private final Number[] realtimeBuffer = new Number[BUFFER_SAMPLES];
+    private final float[] realtimeBuffer = new float[BUFFER_SAMPLES];
     private int realtimeBufferCount = 0;
 
     public class CapnostreamExt extends Capnostream {
@@ -459,7 +459,7 @@ public class DemoCapnostream20 extends AbstractDelegatingSerialDevice<Capnostrea
             if (0 != (0x40 & status)) {
                 // filter line not connected
                 // TODO should we flush a partially filled buffer first?
-                DemoCapnostream20.this.co2 = sampleArraySample(DemoCapnostream20.this.co2, null,
+                DemoCapnostream20.this.co2 = sampleArraySample(DemoCapnostream20.this.co2, (float[]) null,
                                                                rosetta.MDC_AWAY_CO2.VALUE, "",
                                                                units(this.currentUnits), 20,
                                                                sampleTime);
@@ -467,7 +467,7 @@ public class DemoCapnostream20 extends AbstractDelegatingSerialDevice<Capnostrea
                 return true;
             }
 
-            realtimeBuffer[realtimeBufferCount++] = co2 / divisor(this.currentUnits);
+            realtimeBuffer[realtimeBufferCount++] = (float) (co2 / divisor(this.currentUnits));
             if (realtimeBufferCount == realtimeBuffer.length) {
                 realtimeBufferCount = 0;
                 DemoCapnostream20.this.co2 = sampleArraySample(DemoCapnostream20.this.co2, realtimeBuffer,
@@ -16,20 +16,20 @@ import ice.ConnectionState;
 import ice.SampleArray;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.text.Normalizer;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
+import java.text.SimpleDateFormat;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
@@ -41,6 +41,7 @@ import org.mdpnp.devices.connected.AbstractConnectedDevice;
 import org.mdpnp.devices.io.util.StateMachine;
 import org.mdpnp.devices.net.NetworkLoop;
 import org.mdpnp.devices.net.TaskQueue;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataHandler;
 import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataResult;
 import org.mdpnp.devices.philips.intellivue.action.ObservationPoll;
 import org.mdpnp.devices.philips.intellivue.action.SingleContextPoll;
@@ -54,6 +55,7 @@ import org.mdpnp.devices.philips.intellivue.association.AssociationRefuse;
 import org.mdpnp.devices.philips.intellivue.association.impl.AssociationFinishImpl;
 import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
 import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.mdpnp.devices.philips.intellivue.capture.CaptureWriter;
 import org.mdpnp.devices.philips.intellivue.connectindication.ConnectIndication;
 import org.mdpnp.devices.philips.intellivue.data.AbsoluteTime;
 import org.mdpnp.devices.philips.intellivue.data.AttributeId;
@@ -68,6 +70,7 @@ import org.mdpnp.devices.philips.intellivue.data.EnumValue;
 import org.mdpnp.devices.philips.intellivue.data.Handle;
 import org.mdpnp.devices.philips.intellivue.data.IPAddressInformation;
 import org.mdpnp.devices.philips.intellivue.data.Label;
+import org.mdpnp.devices.philips.intellivue.data.MeasurementState;
 import org.mdpnp.devices.philips.intellivue.data.MetricSpecification;
 import org.mdpnp.devices.philips.intellivue.data.NomPartition;
 import org.mdpnp.devices.philips.intellivue.data.NumericObservedValue;
@@ -163,6 +166,10 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
     private long lastMessageReceived = 0L;
     private long lastKeepAlive = 0L;
     private long lastMessageSentTime = 0L;
+
+    // System.nanoTime() of the last data poll request still awaiting its first result, 0 when answered
+    private volatile long pollRequested = 0L;
+    private volatile long samplesReceived = 0L;
     
     
     private enum DisconnectState {
@@ -194,6 +201,8 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
     protected void watchdog() {
         long now = System.currentTimeMillis();
+        // runs on the NetworkLoop that also reads, so it may touch the linked results
+        myIntellivue.expireLinkedResults();
         switch (stateMachine.getState().ordinal()) {
         case ice.ConnectionState._Negotiating:
             // In the negotiating state we are emitting association requests
@@ -247,6 +256,7 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
                     myIntellivue.requestExtendedPoll(ObjectClass.NOM_MOC_VMO_AL_MON, CONTINUOUS_POLL_INTERVAL, AttributeId.NOM_ATTR_GRP_AL_MON);
                     myIntellivue.requestSinglePoll(ObjectClass.NOM_MOC_PT_DEMOG, AttributeId.NOM_ATTR_GRP_PT_DEMOG);
                     lastDataPoll = now;
+                    pollRequested = System.nanoTime();
                 } catch (IOException e) {
                     log.error("requesting data polls", e);
                 }
@@ -274,9 +284,8 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         }
 
         @Override
-        public synchronized boolean send(Message message) throws IOException {
+        protected void sending() {
             lastMessageSentTime = System.currentTimeMillis();
-            return super.send(message);
         }
 
         @Override
@@ -528,6 +537,7 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
         @Override
         protected void handle(ExtendedPollDataResult result) {
+            pollAnswered();
 
             DeviceClock.Reading sampleTime = deviceClock.instant(result.getRelativeTime());
 
@@ -630,25 +640,94 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
             super.handle(result);
         }
 
+        private final ExtendedPollDataHandler pollDataHandler = new ExtendedPollDataHandler() {
+            private final RelativeTime relativeTime = new RelativeTime();
+            private DeviceClock.Reading sampleTime;
+            private long now;
+            private short[] sampleBytes = new short[256];
+
+            @Override
+            public boolean beginPoll(int pollNumber, int sequenceNumber, long relativeTime, int objectPartition, int objectType, int attributeGroup) {
+                pollAnswered();
+                if (objectPartition == NomPartition.Object.asShort() && objectType == ObjectClass.NOM_MOC_VMO_AL_MON.asInt()) {
+                    // alerts are read from the parsed AttributeValueLists
+                    return false;
+                }
+                now = System.currentTimeMillis();
+                lastMessageReceived = now;
+                this.relativeTime.setRelativeTime(relativeTime);
+                sampleTime = deviceClock.instant(this.relativeTime);
+                return true;
+            }
+
+            @Override
+            public void numeric(int handle, int physioId, int state, int unitCode, double value) {
+                handleNumeric(handle, sampleTime, physioId, unitCode, MeasurementState.isUnavailable(state), (float) value);
+            }
+
+            @Override
+            public void sampleArray(int handle, int physioId, int state, ByteBuffer samples, int length) {
+                if (sampleBytes.length < length) {
+                    sampleBytes = new short[length];
+                }
+                for (int i = 0; i < length; i++) {
+                    sampleBytes[i] = (short) (0xFF & samples.get());
+                }
+                handleSampleArray(handle, sampleTime, physioId, sampleBytes, length, now);
+            }
+
+            @Override
+            public void attribute(int handle, int attributeId, ByteBuffer value, int length) {
+                // the attributes handle(ExtendedPollDataResult) looks for
+                if (attributeId == AttributeId.NOM_ATTR_UNIT_CODE.asInt()) {
+                    unitCode.getValue().parse(value);
+                    IntellivueExt.this.handle(handle, unitCode.getValue().getEnum());
+                } else if (attributeId == AttributeId.NOM_ATTR_TIME_PD_SAMP.asInt()) {
+                    period.getValue().parse(value);
+                    IntellivueExt.this.handle(handle, period.getValue());
+                } else if (attributeId == AttributeId.NOM_ATTR_SCALE_SPECN_I16.asInt()) {
+                    sar.getValue().parse(value);
+                    IntellivueExt.this.handle(handle, sar.getValue());
+                } else if (attributeId == AttributeId.NOM_ATTR_SA_SPECN.asInt()) {
+                    spec.getValue().parse(value);
+                    IntellivueExt.this.handle(handle, spec.getValue());
+                }
+            }
+
+            @Override
+            public void endPoll() {
+            }
+        };
+
+        @Override
+        protected ExtendedPollDataHandler getExtendedPollDataHandler() {
+            return pollDataHandler;
+        }
+
         private final void handle(int handle, DeviceClock.Reading sampleTime, NumericObservedValue observed) {
             // log.debug(observed.toString());
-            ObservedValue ov = ObservedValue.valueOf(observed.getPhysioId().getType());
+            handleNumeric(handle, sampleTime, observed.getPhysioId().getType(), observed.getUnitCode().getType(),
+                    observed.getMsmtState().isUnavailable(), observed.getValue().floatValue());
+        }
+
+        private final void handleNumeric(int handle, DeviceClock.Reading sampleTime, int physioId, int unitCode, boolean unavailable, float value) {
+            ObservedValue ov = ObservedValue.valueOf(physioId);
             if (null != ov) {
                 String metricId = numericMetricIds.get(ov);
                 if (null != metricId) {
 
-                    UnitCode unit = UnitCode.valueOf(observed.getUnitCode().getType());
+                    UnitCode unit = UnitCode.valueOf(unitCode);
 
-                    if (observed.getMsmtState().isUnavailable()) {
+                    if (unavailable) {
                         putNumericUpdate(ov, handle, numericSample(getNumericUpdate(ov, handle), (Float) null, metricId, ov.toString(), handle, 
                                 RosettaUnits.units(unit), sampleTime));
                     } else {
                         putNumericUpdate(ov, handle,
-                                numericSample(getNumericUpdate(ov, handle), observed.getValue().floatValue(), metricId, ov.toString(), handle,
+                                numericSample(getNumericUpdate(ov, handle), value, metricId, ov.toString(), handle,
                                     RosettaUnits.units(unit), sampleTime));
                     }
                 } else {
-                    log.debug("Unknown numeric:" + observed);
+                    log.debug("Unknown numeric:" + ov + " handle=" + handle);
                 }
             }
 
@@ -679,10 +758,13 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
 
         protected void handle(int handle, DeviceClock.Reading time, SampleArrayObservedValue v, long now) {
-            short[] bytes = v.getValue();
-            ObservedValue ov = ObservedValue.valueOf(v.getPhysioId().getType());
+            handleSampleArray(handle, time, v.getPhysioId().getType(), v.getValue(), v.getLength(), now);
+        }
+
+        protected void handleSampleArray(int handle, DeviceClock.Reading time, int physioId, short[] bytes, int length, long now) {
+            ObservedValue ov = ObservedValue.valueOf(physioId);
             if (null == ov) {
-                log.warn("No ObservedValue for " + v.getPhysioId().getType());
+                log.warn("No ObservedValue for " + physioId);
             } else {
                 String metricId = sampleArrayMetricIds.get(ov);
                 if (null == metricId) {
@@ -695,47 +777,24 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
                     if (null == sas || null == rt || null == sar || null == unitCode) {
                         log.warn("No SampleArraySpecification or RelativeTime for handle=" + handle + " rt=" + rt + " sas=" + sas + " sar="+sar+ " unitCode="+unitCode);
                     } else {
-                        int cnt = sas.getArraySize();
-                        // TODO these were once cached, no?
-                        MySampleArray w = new MySampleArray();
-                        
-                        w.setSampleArraySpecification(sas);
-                        w.setScaleAndRangeSpecification(sar);
-                        
-                        int cnt_sa = v.getLength() / (sas.getSampleSize() / Byte.SIZE);
+                        Map<Integer, WaveformBuffer> handleToWaveformBuffer = sampleArrayCache.get(ov);
+                        if(null == handleToWaveformBuffer) {
+                            handleToWaveformBuffer = Collections.synchronizedMap( new HashMap<Integer, WaveformBuffer>() );
+                            sampleArrayCache.put(ov, handleToWaveformBuffer);
+                        }
+                        WaveformBuffer waveformBuffer = handleToWaveformBuffer.get(handle);
+                        if(null == waveformBuffer) {
+                            waveformBuffer = new WaveformBuffer();
+                            handleToWaveformBuffer.put(handle, waveformBuffer);
+                        }
 
-                        if (cnt_sa < cnt) {
-                            log.warn("Ignoring insufficient data (" + cnt_sa + ") in the samplearray observation when " + cnt + " expected for " + ov
-                                    + " " + handle + " v.getLength()=" + v.getLength() + " sampleSize=" + sas.getSampleSize());
-                            return;
+                        waveformBuffer.setSpecification(sas, sar);
+                        int added = waveformBuffer.add(bytes, length);
+                        if (added >= 0) {
+                            samplesReceived += added;
                         } else {
-                            if (cnt < cnt_sa) {
-//                                log.info("Expanding to accomodate " + cnt_sa + " samples where only " + cnt + " were expected");
-                                w.setArraySize(cnt_sa);
-                                cnt = cnt_sa;
-                            }
-                            if (w.getArraySize() < cnt) {
-//                                log.info("Expanding to accomodate " + cnt + " samples where " + w.getArraySize() + " were expected");
-                                w.setArraySize(cnt);
-                            }
-                            
-                            // 
-                            for (int i = 0; i < cnt; i++) {
-                                w.applyValue(i, bytes);
-                            }
-                            
-                            Map<Integer, SampleCache> handleToSampleCache = sampleArrayCache.get(ov);
-                            if(null == handleToSampleCache) {
-                                handleToSampleCache = Collections.synchronizedMap( new HashMap<Integer, SampleCache>() );
-                                sampleArrayCache.put(ov, handleToSampleCache);
-                            }
-                            SampleCache sampleCache = handleToSampleCache.get(handle);
-                            if(null == sampleCache) {
-                                sampleCache = new SampleCache();
-                                handleToSampleCache.put(handle, sampleCache);
-                            }
-                            
-                            sampleCache.addNewSamples(w.getNumbers());
+                            log.warn("Ignoring insufficient data in the samplearray observation when " + sas.getArraySize() + " samples expected for " + ov
+                                    + " " + handle + " length=" + length + " sampleSize=" + sas.getSampleSize());
                         }
                     }
                 }
@@ -791,41 +850,38 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
                     if(null == ov) {
                         break;
                     }
-                    Map<Integer, SampleCache> sampleCacheByHandle = sampleArrayCache.get(ov);
-                    handles = sampleCacheByHandle.keySet().toArray(handles);
+                    Map<Integer, WaveformBuffer> waveformBufferByHandle = sampleArrayCache.get(ov);
+                    handles = waveformBufferByHandle.keySet().toArray(handles);
                     for(Integer handle : handles) {
                         if(null == handle) {
                             break;
                         }
-                        SampleCache sampleCache = sampleCacheByHandle.get(handle);
+                        WaveformBuffer waveformBuffer = waveformBufferByHandle.get(handle);
                         InstanceHolder<ice.SampleArray> sa = getSampleArrayUpdate(ov, handle);
                         RelativeTime rt = handleToUpdatePeriod.get(handle);
-                        if (null == rt || null == sampleCache || null == unitCode) {
-                            log.warn("No RelativeTime for handle=" + handle + " rt=" + rt + " sampleCache=" + sampleCache + " unitCode="+unitCode);
+                        if (null == rt || null == waveformBuffer || null == unitCode) {
+                            log.warn("No RelativeTime for handle=" + handle + " rt=" + rt + " waveformBuffer=" + waveformBuffer + " unitCode="+unitCode);
                             continue;
                         }
                         int samples = (int) (PERIOD / rt.toMilliseconds());
 
+                        // this task is the only consumer of the buffer so the window needs no lock
                         if(null != sa) {
-                            synchronized(sampleCache) {
-                                Collection<Number> c = sampleCache.emitSamples(samples, sa.data.metric_id+" "+sa.data.instance_id);
-                                if(null == c) {
-                                    putSampleArrayUpdate(ov, handle, null);
-                                } else {
-                                    sampleArraySample(sa, c, fakeSampleTime);
-                                }
+                            float[] window = waveformBuffer.emit(samples, sa.data.metric_id+" "+sa.data.instance_id);
+                            if(null == window) {
+                                putSampleArrayUpdate(ov, handle, null);
+                            } else {
+                                sampleArraySample(sa, window, fakeSampleTime);
                             }
                         } else {
                             String metric_id = sampleArrayMetricIds.get(ov);
                             UnitCode unitCode = handleToUnitCode.get(handle);
-                            synchronized(sampleCache) {
-                                putSampleArrayUpdate(
-                                        ov, handle,
-                                        sampleArraySample(getSampleArrayUpdate(ov, handle), sampleCache.emitSamples(samples, metric_id+" "+handle),
-                                        metric_id, ov.toString(), handle, 
-                                        RosettaUnits.units(unitCode),
-                                        (int)(1000L / rt.toMilliseconds()), fakeSampleTime));
-                            }
+                            putSampleArrayUpdate(
+                                    ov, handle,
+                                    sampleArraySample(getSampleArrayUpdate(ov, handle), waveformBuffer.emit(samples, metric_id+" "+handle),
+                                    metric_id, ov.toString(), handle, 
+                                    RosettaUnits.units(unitCode),
+                                    (int)(1000L / rt.toMilliseconds()), fakeSampleTime));
                         }
                     }
                 }
@@ -857,50 +913,9 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
     protected final Map<ObservedValue, Label> sampleArrayLabels = new HashMap<ObservedValue, Label>();
 
     
-    private static final class SampleCache {
-        private final List<Number> newSamples = Collections.synchronizedList(new ArrayList<Number>());
-        private final List<Number> oldSamples = Collections.synchronizedList(new ArrayList<Number>());
-        
-        public void addNewSamples(Collection<Number> coll) {
-            newSamples.addAll(coll);
-        }
-        
-        public Collection<Number> emitSamples(int n, String s) {
-            synchronized(newSamples) {
-                if(newSamples.isEmpty()) {
-                    log.warn(s+" no new samples to emit");
-                    return null;
-                }
-                
-                if(newSamples.size() < n) {
-                    log.warn(s+" will repeat " + (n - newSamples.size()) + " old samples to make up a shortfall");
-                }
-                // Move up to n samples from the old list to the new
-                List<Number> oldestNewSamples = newSamples.subList(0, n > newSamples.size() ? newSamples.size() : n);
-                
-                oldSamples.addAll(oldestNewSamples);
-                oldestNewSamples.clear();
-            }
-            synchronized(oldSamples) {
-                // If we have insufficient oldSamples (shouldn't happen except maybe at initialization) fill in values
-                if(oldSamples.size() < n) {
-                    log.warn(s+" filling in " + (n - oldSamples.size()) + " zeros; this should not continue happening");
-                    while(oldSamples.size() < n) {
-                        oldSamples.add(0, 0);
-                    }
-                }
-                // If we have extra oldSamples then remove them
-                if(oldSamples.size() > n) {
-                    oldSamples.subList(0, oldSamples.size()-n).clear();
-                }
-            }
-            return oldSamples;
-        }
-    }
-    
     protected final Map<ObservedValue, Map<Integer, InstanceHolder<ice.Numeric>>> numericUpdates = new HashMap<ObservedValue, Map<Integer, InstanceHolder<ice.Numeric>>>();
     protected final Map<ObservedValue, Map<Integer, InstanceHolder<ice.SampleArray>>> sampleArrayUpdates = new HashMap<ObservedValue, Map<Integer, InstanceHolder<ice.SampleArray>>>();
-    protected final Map<ObservedValue, Map<Integer, SampleCache>> sampleArrayCache = Collections.synchronizedMap(new HashMap<ObservedValue, Map<Integer, SampleCache>>());
+    protected final Map<ObservedValue, Map<Integer, WaveformBuffer>> sampleArrayCache = Collections.synchronizedMap(new HashMap<ObservedValue, Map<Integer, WaveformBuffer>>());
 
     static void loadMap(Map<ObservedValue, String> numericMetricIds,
                         Map<ObservedValue, Label> numericLabels,
@@ -1024,144 +1039,6 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         }
     }
     
-    protected static class MySampleArray {
-        private short sampleSize, significantBits;
-        private double lowerAbsoluteValue, upperAbsoluteValue;
-        private int lowerScaledValue, upperScaledValue;
-        private final List<Number> numbers = new ArrayList<Number>();
-
-        public MySampleArray() {
-
-        }
-
-        public List<Number> getNumbers() {
-            return numbers;
-        }
-
-        private int[] mask = new int[0];
-        private int[] shift = new int[0];
-
-        public void applyValue(int sampleNumber, short[] values) {
-            int value = 0;
-            for (int i = 0; i < sampleSize; i++) {
-                int idx = sampleNumber * sampleSize + i;
-                if (idx >= values.length) {
-                    log.warn("Cannot locate index " + idx + " where values.length=" + values.length + " sampleSize=" + sampleSize + " sampleNumber="
-                            + sampleNumber + " i=" + i);
-                } else {
-                    if (i >= mask.length) {
-                        log.warn("Cannot access i=" + i + " where mask.length=" + mask.length);
-                    } else {
-                        if (i >= shift.length) {
-                            log.warn("Cannot access i=" + i + " where shift.length=" + shift.length);
-                        } else {
-                            value |= (mask[i] & values[idx]) << shift[i];
-                        }
-                    }
-                }
-            }
-            if (sampleNumber >= numbers.size()) {
-                log.warn("Received sampleNumber=" + sampleNumber + " where expected size was " + numbers.size());
-            } else {
-                // Scale and range the value
-                
-                if(!Double.isNaN(lowerAbsoluteValue) && !Double.isNaN(upperAbsoluteValue)) {
-                    if(upperScaledValue == lowerScaledValue) {
-                        log.error("Not scaling " + value + " between scaled " + lowerScaledValue + " and " + upperScaledValue);
-                    } else {
-                        double prop = 1.0 * (value - lowerScaledValue) / (upperScaledValue - lowerScaledValue);
-                        if(lowerAbsoluteValue == upperAbsoluteValue) {
-                            log.error("Not scaling " + value + " (proportionally " + prop+ ") between " + lowerAbsoluteValue + " and " + upperScaledValue);
-                        } else {
-                            prop = lowerAbsoluteValue + prop * (upperAbsoluteValue - lowerAbsoluteValue);
-                            numbers.set(sampleNumber, prop);
-                        }
-                    } 
-                } else {
-                    numbers.set(sampleNumber, value);
-                }
-            }
-        }
-
-        public static final int createMask(int prefix) {
-            int mask = 0;
-
-            for (int i = 0; i < prefix; i++) {
-                mask |= (1 << i);
-            }
-            return mask;
-        }
-
-        private void buildMaskAndShift() {
-            if (this.shift.length < sampleSize) {
-                this.shift = new int[sampleSize];
-            }
-            if (this.mask.length < sampleSize) {
-                this.mask = new int[sampleSize];
-            }
-            int significantBits = this.significantBits;
-            for (int i = sampleSize - 1; i >= 0; i--) {
-                shift[i] = (sampleSize - i - 1) * Byte.SIZE;
-                mask[i] = significantBits >= Byte.SIZE ? 0xFF : createMask(significantBits);
-                significantBits -= Byte.SIZE;
-            }
-            log.debug("Mask:" + Arrays.toString(mask) + " Shift:" + Arrays.toString(shift) + " sampleSize=" + sampleSize + " sigBits="
-                    + this.significantBits);
-        }
-
-        public short getSampleSize() {
-            return sampleSize;
-        }
-
-        public short getSignificantBits() {
-            return significantBits;
-        }
-
-        public void setSampleSize(short s) {
-            s /= Byte.SIZE;
-            if (sampleSize != s) {
-                this.sampleSize = s;
-                buildMaskAndShift();
-            }
-        }
-
-        public void setSignificantBits(short s) {
-            if (significantBits != s) {
-                this.significantBits = s;
-                buildMaskAndShift();
-            }
-        }
-
-        public int getArraySize() {
-            return numbers.size();
-        }
-
-        public void setArraySize(int size) {
-            if (size != numbers.size()) {
-                while (numbers.size() < size) {
-                    numbers.add(0);
-                }
-                while (numbers.size() > size) {
-                    numbers.remove(0);
-                }
-            }
-        }
-
-        public void setSampleArraySpecification(SampleArraySpecification sas) {
-            setSampleSize(sas.getSampleSize());
-            setSignificantBits(sas.getSignificantBits());
-            setArraySize(sas.getArraySize());
-            buildMaskAndShift();
-        }
-        
-        public void setScaleAndRangeSpecification(ScaleAndRangeSpecification sar) {
-            this.lowerAbsoluteValue = sar.getLowerAbsoluteValue().doubleValue();
-            this.upperAbsoluteValue = sar.getUpperAbsoluteValue().doubleValue();
-            this.lowerScaledValue = sar.getLowerScaledValue();
-            this.upperScaledValue = sar.getUpperScaledValue();
-        }
-    }
-
     protected final void state(ice.ConnectionState state, String connectionInfo) {
         // So actually the state transition will emit the connection info
         if (!stateMachine.transitionWhenLegal(state, 5000L, connectionInfo)) {
@@ -1276,11 +1153,75 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         channel.bind(local);
         channel.connect(remote);
 
+        startCapture(remote);
+
         registrationKeys.add(networkLoop.register(myIntellivue, channel));
 
         state(ice.ConnectionState.Negotiating, "Requesting Association");
     }
 
+    /**
+     * Directory in which to record each connection's datagrams for later replay
+     * (see DemoReplayIntellivue); unset to record nothing
+     */
+    public static final String CAPTURE_DIRECTORY_PROPERTY = "mdpnp.intellivue.capture";
+
+    // closes the previous connection's capture so that each connection replays on its own
+    private void startCapture(InetSocketAddress remote) {
+        String directory = System.getProperty(CAPTURE_DIRECTORY_PROPERTY);
+        if (null == directory) {
+            return;
+        }
+        stopCapture();
+        String name = "intellivue-" + remote.getAddress().getHostAddress().replace(':', '_') + "-"
+                + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".ivc";
+        File file = new File(directory, name);
+        try {
+            myIntellivue.setCapture(new CaptureWriter(file));
+            log.info("capturing datagrams to " + file);
+        } catch (IOException e) {
+            log.error("unable to capture to " + file, e);
+        }
+    }
+
+    private void pollAnswered() {
+        long requested = pollRequested;
+        if (0L != requested) {
+            pollRequested = 0L;
+            pollRoundTrip(System.nanoTime() - requested);
+        }
+    }
+
+    /**
+     * Called on the network loop with the time between requesting the data
+     * polls and the first result arriving. Load tests override this to
+     * collect a distribution.
+     */
+    protected void pollRoundTrip(long nanos) {
+        if (log.isDebugEnabled()) {
+            log.debug("first poll result " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms after the request");
+        }
+    }
+
+    /**
+     * @return the number of waveform samples decoded since construction
+     */
+    public long getSamplesReceived() {
+        return samplesReceived;
+    }
+
+    private void stopCapture() {
+        CaptureWriter capture = myIntellivue.getCapture();
+        if (null != capture) {
+            myIntellivue.setCapture(null);
+            try {
+                capture.close();
+            } catch (IOException e) {
+                log.error("closing capture", e);
+            }
+        }
+    }
+
     @Override
     public void disconnect() {
         synchronized (stateMachine) {
@@ -1304,16 +1245,20 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
     @Override
     public void shutdown() {
-        networkLoop.clearTasks();
-        networkLoop.cancelThread();
         if (null != networkLoopThread) {
+            networkLoop.clearTasks();
+            networkLoop.cancelThread();
             try {
                 networkLoopThread.join();
             } catch (InterruptedException e) {
                 log.error("Interrupted", e);
             }
+        } else {
+            // the loop is shared with other devices; withdraw only from it
+            networkLoop.cancel(watchdogTask);
+            unregisterAll();
         }
-
+        stopCapture();
 
         super.shutdown();
     }
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.mdpnp.devices.net.NetworkLoop;
 import org.mdpnp.rtiapi.data.EventLoop;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +39,10 @@ public class DemoEthernetIntellivue extends AbstractDemoIntellivue {
         super(subscriber, publisher, eventLoop);
     }
 
+    public DemoEthernetIntellivue(final Subscriber subscriber, final Publisher publisher, EventLoop eventLoop, NetworkLoop loop) throws IOException {
+        super(subscriber, publisher, eventLoop, loop);
+    }
+
     @Override
     protected ice.ConnectionType getConnectionType() {
         return ice.ConnectionType.Network;
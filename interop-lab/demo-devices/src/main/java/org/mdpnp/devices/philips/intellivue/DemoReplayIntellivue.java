@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue;
+
+import ice.ConnectionState;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.philips.intellivue.capture.CaptureReader;
+import org.mdpnp.devices.philips.intellivue.capture.ReplayConnection;
+import org.mdpnp.rtiapi.data.EventLoop;
+
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Plays back a capture recorded with the mdpnp.intellivue.capture property in
+ * place of a monitor. The address is the capture file, optionally followed by
+ * :speed where speed is a multiple of the recorded rate (1 by default) or max.
+ */
+public class DemoReplayIntellivue extends AbstractDemoIntellivue {
+
+    public DemoReplayIntellivue(final Subscriber subscriber, final Publisher publisher, EventLoop eventLoop) throws IOException {
+        super(subscriber, publisher, eventLoop);
+    }
+
+    public DemoReplayIntellivue(final Subscriber subscriber, final Publisher publisher, EventLoop eventLoop, NetworkLoop loop) throws IOException {
+        super(subscriber, publisher, eventLoop, loop);
+    }
+
+    @Override
+    protected ice.ConnectionType getConnectionType() {
+        return ice.ConnectionType.Simulated;
+    }
+
+    @Override
+    public void shutdown() {
+        if (null != replay) {
+            replay.shutdown();
+            try {
+                capture.close();
+            } catch (IOException e) {
+                log.error("closing capture", e);
+            }
+        }
+        super.shutdown();
+    }
+
+    protected CaptureReader capture;
+    protected ReplayConnection replay;
+
+    public ReplayConnection getReplay() {
+        return replay;
+    }
+
+    static double parseSpeed(String speed) {
+        return "max".equalsIgnoreCase(speed) ? ReplayConnection.MAX_SPEED : Double.parseDouble(speed);
+    }
+
+    @Override
+    public boolean connect(String address) {
+        if (null != replay) {
+            throw new IllegalStateException("Multiple calls to connect are not currently supported");
+        }
+        String path = address;
+        double speed = 1.0;
+        int colon = address.lastIndexOf(':');
+        if (colon > 1) {
+            // beyond a drive letter
+            try {
+                speed = parseSpeed(address.substring(colon + 1));
+                path = address.substring(0, colon);
+            } catch (NumberFormatException e) {
+                // part of the path
+            }
+        }
+        try {
+            state(ConnectionState.Connecting, "opening capture " + path);
+            capture = new CaptureReader(new File(path));
+            replay = new ReplayConnection(capture, speed, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), networkLoop);
+            connect((InetSocketAddress) replay.getReplaySideAddress(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            if (null == replay && null != capture) {
+                try {
+                    capture.close();
+                } catch (IOException e1) {
+                    log.error("closing capture", e1);
+                }
+            }
+            state(ConnectionState.Terminal, "error replaying " + path + " " + e.getMessage());
+            log.error("error replaying " + path, e);
+            return false;
+        }
+    }
+}
@@ -17,7 +17,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.mdpnp.devices.connected.AbstractConnectedDevice;
 import org.mdpnp.devices.connected.TimeAwareInputStream;
@@ -96,7 +102,7 @@ public abstract class AbstractSerialDevice extends AbstractConnectedDevice {
         this.lastError = new Throwable[countSerialPorts];
         this.socket = new SerialSocket[countSerialPorts];
         this.timeAwareInputStream = new TimeAwareInputStream[countSerialPorts];
-        this.currentThread = new Thread[countSerialPorts];
+        this.pendingConnect = new AtomicReferenceArray<Future<?>>(countSerialPorts);
         this.portIdentifier = new String[countSerialPorts];
         this.previousAttempt = new long[countSerialPorts];
         this.lastIssueInitCommands = new long[countSerialPorts];
@@ -166,6 +172,7 @@ public abstract class AbstractSerialDevice extends AbstractConnectedDevice {
                 shouldClose = true;
             }
         }
+        cancelPendingConnect();
         if (shouldCancel) {
             for(int idx = 0; idx < serialProvider.length; idx++) {
                 serialProvider[idx].cancelConnect();
@@ -203,16 +210,42 @@ public abstract class AbstractSerialDevice extends AbstractConnectedDevice {
         }
     }
 
-    private final Thread[] currentThread;
+    // written by connecting threads and the executor, cancelled from disconnect
+    private final AtomicReferenceArray<Future<?>> pendingConnect;
 
     private final String[] portIdentifier;
 
-    private final ThreadGroup threadGroup = new ThreadGroup("AbstractSerialDevice group") {
+    private static final ThreadGroup threadGroup = new ThreadGroup("AbstractSerialDevice group") {
         public void uncaughtException(Thread t, Throwable e) {
             log.error("Unexpected in thread " + t.getId() + ":" + t.getName(), e);
         };
     };
 
+    /**
+     * The blocking processing loops of all serial devices share these threads. A thread is
+     * held only while a port is open; waiting out the connect interval is scheduled on the
+     * device executor and idle threads expire.
+     */
+    private static final ExecutorService processingPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(threadGroup, r, "AbstractSerialDevice Processing-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private void cancelPendingConnect() {
+        for(int idx = 0; idx < pendingConnect.length(); idx++) {
+            Future<?> f = pendingConnect.getAndSet(idx, null);
+            if (null != f) {
+                f.cancel(false);
+            }
+        }
+    }
+
     
     /**
      * Connect to the specified address.  If the connection is lost attempts will be made
@@ -250,29 +283,54 @@ public abstract class AbstractSerialDevice extends AbstractConnectedDevice {
         return true;
     }
     
+    /**
+     * Open the idx'th port and process its data. If the previous attempt was less than
+     * getConnectInterval(idx) ago the attempt is scheduled for when that interval has passed.
+     */
     protected void connect(int idx) {
-        currentThread[idx] = new Thread(threadGroup, new SerialDevice(idx), "AbstractSerialDevice("+idx+") Processing");
-        currentThread[idx].setDaemon(true);
-        currentThread[idx].start();
+        if (ice.ConnectionState.Terminal.equals(getState())) {
+            log.trace("not connecting("+idx+") in Terminal state");
+            return;
+        }
+        long delay = previousAttempt[idx] + getConnectInterval(idx) - System.currentTimeMillis();
+        if (delay > 0L && null != executor) {
+            // Staying in the Connecting state while awaiting another time interval
+            if(idx == 0) {
+                setConnectionInfo("Waiting to reconnect... " + delay + "ms");
+            }
+            pendingConnect.set(idx, executor.schedule(new Runnable() {
+                public void run() {
+                    pendingConnect.set(idx, null);
+                    if (!ice.ConnectionState.Terminal.equals(getState())) {
+                        processingPool.execute(new SerialDevice(idx, false));
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS));
+        } else {
+            // without an executor to time the attempt the processing thread waits out the interval
+            processingPool.execute(new SerialDevice(idx, delay > 0L));
+        }
     }
 
     protected final long [] previousAttempt;
     
     private class SerialDevice implements Runnable {
         private final int idx;
-        public SerialDevice(final int idx) {
+        private final boolean awaitInterval;
+        public SerialDevice(final int idx, final boolean awaitInterval) {
             this.idx = idx;
+            this.awaitInterval = awaitInterval;
         }
         
         public void run() {
-            log.info(Thread.currentThread().getName() + " (" + Thread.currentThread().getId() + ") begins");
+            log.info(Thread.currentThread().getName() + " (" + Thread.currentThread().getId() + ") begins for port " + idx);
     
             SerialSocket socket = null;
     
             long now = System.currentTimeMillis();
     
             // Staying in the Connecting state while awaiting another time interval
-            while (now < (previousAttempt[idx] + getConnectInterval(idx))) {
+            while (awaitInterval && now < (previousAttempt[idx] + getConnectInterval(idx))) {
                 if(idx == 0) {
                     setConnectionInfo("Waiting to reconnect... " + ((previousAttempt[idx] + getConnectInterval(idx)) - now) + "ms");
                 }
@@ -286,7 +344,7 @@ public abstract class AbstractSerialDevice extends AbstractConnectedDevice {
             if(idx == 0) {
                 setConnectionInfo("");
             }
-            previousAttempt[idx] = now;
+            previousAttempt[idx] = System.currentTimeMillis();
             try {
                 log.trace("Invoking SerialProvider("+idx+").connect(" + portIdentifier[idx] + ")");
                 socket = getSerialProvider(idx).connect(portIdentifier[idx], 1000L);
@@ -397,6 +455,7 @@ public abstract class AbstractSerialDevice extends AbstractConnectedDevice {
 
     @Override
     public void shutdown() {
+        cancelPendingConnect();
         close();
         super.shutdown();
     }
@@ -36,7 +36,7 @@ public class MultiSimPulseOximeter extends AbstractSimulatedConnectedDevice {
         }
 
         @Override
-        protected void receivePulseOx(DeviceClock.Reading timestamp, int heartRate, int SpO2, Number[] plethValues, int frequency) {
+        protected void receivePulseOx(DeviceClock.Reading timestamp, int heartRate, int SpO2, float[] plethValues, int frequency) {
             pleth[ordinal] = sampleArraySample(pleth[ordinal], plethValues,
                                                rosetta.MDC_PULS_OXIM_PLETH.VALUE, "", ordinal,
                                                rosetta.MDC_DIM_DIMLESS.VALUE, frequency, timestamp);
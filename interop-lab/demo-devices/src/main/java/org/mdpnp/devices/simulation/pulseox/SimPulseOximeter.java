@@ -41,7 +41,7 @@ public class SimPulseOximeter extends AbstractSimulatedConnectedDevice {
         }
 
         @Override
-        protected void receivePulseOx(DeviceClock.Reading sampleTime, int heartRate, int SpO2, Number[] plethValues, int frequency) {
+        protected void receivePulseOx(DeviceClock.Reading sampleTime, int heartRate, int SpO2, float[] plethValues, int frequency) {
             numericSample(pulse, heartRate, sampleTime);
             numericSample(SimPulseOximeter.this.SpO2, SpO2, sampleTime);
             pleth = sampleArraySample(pleth, plethValues, rosetta.MDC_PULS_OXIM_PLETH.VALUE, "", 0, 
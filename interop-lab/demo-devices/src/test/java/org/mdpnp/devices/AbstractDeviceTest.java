@@ -61,4 +61,23 @@ public class AbstractDeviceTest {
         }
         Assert.assertEquals(n, 5);
     }
+
+    @Test
+    public void testFillPrimitiveMatchesBoxed() throws Exception {
+        float f[] = new float[] { 9f, 1f, 2f, 3f, 4f, 5f, 9f };
+        Number boxed[] = new Number[] { 1f, 2f, 3f, 4f, 5f };
+
+        ice.SampleArray fromPrimitive = new ice.SampleArray();
+        ice.SampleArray fromBoxed = new ice.SampleArray();
+        fromPrimitive.values.userData.addFloat(42f);
+
+        AbstractDevice.fill(fromPrimitive, f, 1, 5);
+        AbstractDevice.fill(fromBoxed, new AbstractDevice.ArrayContainer<>(boxed));
+
+        Assert.assertEquals(5, fromPrimitive.values.userData.size());
+        Assert.assertEquals(fromBoxed.values.userData.size(), fromPrimitive.values.userData.size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(fromBoxed.values.userData.getFloat(i), fromPrimitive.values.userData.getFloat(i), 0f);
+        }
+    }
 }
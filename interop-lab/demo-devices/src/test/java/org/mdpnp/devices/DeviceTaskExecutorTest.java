@@ -0,0 +1,132 @@
+package org.mdpnp.devices;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceTaskExecutorTest {
+
+    @Test
+    public void testShutdownLeavesSharedExecutorRunning() throws Exception {
+        ScheduledExecutorService shared = Executors.newScheduledThreadPool(2);
+        try {
+            DeviceTaskExecutor a = new DeviceTaskExecutor(shared, "a");
+            DeviceTaskExecutor b = new DeviceTaskExecutor(shared, "b");
+
+            final CountDownLatch aRuns = new CountDownLatch(3);
+            final CountDownLatch bRuns = new CountDownLatch(3);
+            ScheduledFuture<?> fa = a.scheduleAtFixedRate(aRuns::countDown, 0L, 5L, TimeUnit.MILLISECONDS);
+            b.scheduleAtFixedRate(bRuns::countDown, 0L, 5L, TimeUnit.MILLISECONDS);
+            Assert.assertTrue(aRuns.await(5, TimeUnit.SECONDS));
+
+            a.shutdown();
+            Assert.assertTrue(fa.isCancelled());
+            Assert.assertTrue(a.awaitTermination(5, TimeUnit.SECONDS));
+            Assert.assertFalse(shared.isShutdown());
+            Assert.assertTrue("the other device keeps running", bRuns.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, b.getPendingTasks());
+
+            try {
+                a.execute(() -> {});
+                Assert.fail("a shut down view must reject new tasks");
+            } catch (RejectedExecutionException ree) {
+            }
+            b.shutdownNow();
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailuresAreCountedPerDevice() throws Exception {
+        ScheduledExecutorService shared = Executors.newScheduledThreadPool(1);
+        try {
+            DeviceTaskExecutor a = new DeviceTaskExecutor(shared, "a");
+            DeviceTaskExecutor b = new DeviceTaskExecutor(shared, "b");
+
+            ScheduledFuture<?> f = a.scheduleAtFixedRate(() -> { throw new IllegalStateException("expected"); }, 0L, 1L, TimeUnit.MILLISECONDS);
+            try {
+                f.get(5, TimeUnit.SECONDS);
+                Assert.fail("the failure must reach the future");
+            } catch (ExecutionException ee) {
+                Assert.assertTrue(ee.getCause() instanceof IllegalStateException);
+            }
+            Assert.assertEquals("a failing periodic task is not run again", 1L, a.getTaskFailures());
+            Assert.assertEquals(1L, a.getTasksRun());
+
+            Assert.assertEquals(Integer.valueOf(42), b.submit(() -> 42).get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0L, b.getTaskFailures());
+            Assert.assertEquals(1L, b.getTasksRun());
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDeviceTasksRunOneAtATime() throws Exception {
+        ScheduledExecutorService shared = Executors.newScheduledThreadPool(4);
+        try {
+            DeviceTaskExecutor a = new DeviceTaskExecutor(shared, "a");
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger overlaps = new AtomicInteger();
+            final CountDownLatch runs = new CountDownLatch(200);
+            Runnable task = () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(1L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                runs.countDown();
+            };
+            for (int i = 0; i < 4; i++) {
+                a.scheduleAtFixedRate(task, 0L, 1L, TimeUnit.MILLISECONDS);
+            }
+            for (int i = 0; i < 50; i++) {
+                a.execute(task);
+            }
+            Assert.assertTrue(runs.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, overlaps.get());
+            a.shutdown();
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNotTerminatedWhileATaskRuns() throws Exception {
+        ScheduledExecutorService shared = Executors.newScheduledThreadPool(1);
+        try {
+            DeviceTaskExecutor a = new DeviceTaskExecutor(shared, "a");
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            a.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            a.shutdown();
+            Assert.assertFalse(a.isTerminated());
+            Assert.assertFalse(a.awaitTermination(50, TimeUnit.MILLISECONDS));
+            release.countDown();
+            Assert.assertTrue(a.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+}
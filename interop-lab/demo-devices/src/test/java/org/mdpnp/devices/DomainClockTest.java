@@ -39,9 +39,26 @@ public class DomainClockTest {
             Instant i1 = DomainClock.timeSampleArrayResolution(resolutionNsPerSample, i0);
 
             Assert.assertEquals("Failed @resolutionNs=" + resolutionNsPerSample, DomainClock.toMilliseconds(t1), i1.toEpochMilli());
+
+            long n1 = DomainClock.timeSampleArrayResolution(resolutionNsPerSample, DeviceClock.toNanos(i0));
+            Assert.assertEquals("Failed @resolutionNs=" + resolutionNsPerSample, DeviceClock.toNanos(i1), n1);
         }
     }
 
+    @Test
+    public void testNanosToDDSTime() {
+        long n0 = 1426017249228000123L;
+        Time_t t = new Time_t(0, 0);
+        DomainClock.nanosToDDSTime(n0, t);
+        Assert.assertEquals(1426017249, t.sec);
+        Assert.assertEquals(228000123, t.nanosec);
+
+        ice.Time_t it = new ice.Time_t();
+        DomainClock.nanosToDDSTime(n0, it);
+        Assert.assertEquals(t.sec, it.sec);
+        Assert.assertEquals(t.nanosec, it.nanosec);
+    }
+
     @Test
     public void testClockDecoration() {
 
@@ -0,0 +1,166 @@
+package org.mdpnp.devices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mdpnp.rtiapi.data.EventLoop;
+
+import com.rti.dds.infrastructure.Condition;
+import com.rti.dds.infrastructure.GuardCondition;
+
+public class EventLoopTest {
+
+    @Test
+    public void testShardsServiceConcurrently() throws Exception {
+        EventLoop eventLoop = new EventLoop(2);
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        try {
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch other = new CountDownLatch(1);
+
+            GuardCondition slow = new GuardCondition();
+            GuardCondition fast = new GuardCondition();
+            eventLoop.addHandler(0, slow, (c) -> {
+                ((GuardCondition) c).set_trigger_value(false);
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            });
+            eventLoop.addHandler(1, fast, (c) -> {
+                ((GuardCondition) c).set_trigger_value(false);
+                other.countDown();
+            });
+
+            slow.set_trigger_value(true);
+            Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            fast.set_trigger_value(true);
+            Assert.assertTrue("a slow handler on one shard must not hold up another shard", other.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            eventLoop.removeHandler(slow);
+            eventLoop.removeHandler(fast);
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    public void testDoNowRunsOnShardZero() throws Exception {
+        EventLoop eventLoop = new EventLoop(2);
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        try {
+            final CountDownLatch done = new CountDownLatch(1);
+            final List<Boolean> onShardZero = Collections.synchronizedList(new ArrayList<Boolean>());
+
+            GuardCondition gc = new GuardCondition();
+            eventLoop.addHandler(1, gc, (c) -> {
+                ((GuardCondition) c).set_trigger_value(false);
+                eventLoop.doNow(() -> {
+                    onShardZero.add(eventLoop.isCurrentServiceThread(0));
+                    onShardZero.add(eventLoop.isCurrentServiceThread(1));
+                });
+                done.countDown();
+            });
+            gc.set_trigger_value(true);
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals("[true, false]", onShardZero.toString());
+
+            eventLoop.removeHandler(gc);
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    public void testCrossShardWaitFailsInsteadOfDeadlocking() throws Exception {
+        EventLoop eventLoop = new EventLoop(2);
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        try {
+            final CountDownLatch inShardOne = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(2);
+            final List<Throwable> refused = Collections.synchronizedList(new ArrayList<Throwable>());
+
+            GuardCondition removed = new GuardCondition();
+            GuardCondition remover = new GuardCondition();
+            // shard 1 waits on shard 0 through doNow ...
+            eventLoop.addHandler(1, removed, (c) -> {
+                ((GuardCondition) c).set_trigger_value(false);
+                inShardOne.countDown();
+                try {
+                    eventLoop.doNow(() -> {
+                    });
+                } catch (IllegalStateException e) {
+                    refused.add(e);
+                }
+                done.countDown();
+            });
+            // ... while shard 0 waits for that handler to complete; whichever comes second is refused
+            eventLoop.addHandler(0, remover, (c) -> {
+                ((GuardCondition) c).set_trigger_value(false);
+                try {
+                    inShardOne.await();
+                    eventLoop.removeHandler(removed);
+                } catch (IllegalStateException e) {
+                    refused.add(e);
+                } catch (InterruptedException e) {
+                }
+                done.countDown();
+            });
+            removed.set_trigger_value(true);
+            remover.set_trigger_value(true);
+            Assert.assertTrue("shards deadlocked", done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, refused.size());
+
+            eventLoop.removeHandler(remover);
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRemoveHandlerFromAnyThread() throws Exception {
+        EventLoop eventLoop = new EventLoop(4);
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        try {
+            final AtomicInteger invocations = new AtomicInteger();
+            final List<Condition> seen = Collections.synchronizedList(new ArrayList<Condition>());
+            List<GuardCondition> conditions = new ArrayList<GuardCondition>();
+            for (int i = 0; i < 32; i++) {
+                GuardCondition gc = new GuardCondition();
+                conditions.add(gc);
+                eventLoop.addHandler(gc, (c) -> {
+                    ((GuardCondition) c).set_trigger_value(false);
+                    invocations.incrementAndGet();
+                    seen.add(c);
+                });
+                gc.set_trigger_value(true);
+            }
+            long giveup = System.currentTimeMillis() + 5000L;
+            while (invocations.get() < conditions.size() && System.currentTimeMillis() < giveup) {
+                Thread.sleep(10L);
+            }
+            Assert.assertEquals(conditions.size(), invocations.get());
+
+            for (GuardCondition gc : conditions) {
+                eventLoop.removeHandler(gc);
+            }
+            int before = invocations.get();
+            for (GuardCondition gc : conditions) {
+                gc.set_trigger_value(true);
+            }
+            Thread.sleep(100L);
+            Assert.assertEquals("removed handlers must not be invoked", before, invocations.get());
+        } finally {
+            handler.shutdown();
+        }
+    }
+}
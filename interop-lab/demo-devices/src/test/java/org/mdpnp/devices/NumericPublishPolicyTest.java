@@ -0,0 +1,54 @@
+package org.mdpnp.devices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NumericPublishPolicyTest {
+
+    private static final long MS = DeviceClock.NANOS_PER_MILLI;
+
+    @Test
+    public void testEmptyPolicy() {
+        NumericPublishPolicy policy = new NumericPublishPolicy("");
+        Assert.assertTrue(policy.isEmpty());
+        Assert.assertNull(policy.ruleFor("MDC_PULS_OXIM_SAT_O2"));
+    }
+
+    @Test
+    public void testSpecificity() {
+        NumericPublishPolicy policy = new NumericPublishPolicy(
+                "*=max:1000; PO_Simulator/*=abs:2; MDC_PULS_RATE=abs:3; PO_Simulator/MDC_PULS_OXIM_SAT_O2=abs:4");
+        NumericPublishPolicy po = policy.forDeviceType("PO_Simulator");
+        NumericPublishPolicy other = policy.forDeviceType("Capno_Simulator");
+
+        Assert.assertFalse(po.ruleFor("MDC_PULS_OXIM_SAT_O2").shouldPublish(90f, 0L, 94f, 10 * MS));
+        Assert.assertTrue(po.ruleFor("MDC_PULS_OXIM_SAT_O2").shouldPublish(90f, 0L, 94.5f, 10 * MS));
+        Assert.assertFalse(po.ruleFor("MDC_PULS_RATE").shouldPublish(60f, 0L, 63f, 10 * MS));
+        Assert.assertFalse(po.ruleFor("MDC_TEMP").shouldPublish(37f, 0L, 39f, 10 * MS));
+        Assert.assertTrue(other.ruleFor("MDC_TEMP").shouldPublish(37f, 0L, 39f, 10 * MS));
+    }
+
+    @Test
+    public void testIntervals() {
+        NumericPublishPolicy.Rule rule = NumericPublishPolicy.parseRule("pct:10,min:500,max:5000");
+
+        Assert.assertFalse("within the minimum interval", rule.shouldPublish(100f, 0L, 200f, 499 * MS));
+        Assert.assertTrue(rule.shouldPublish(100f, 0L, 200f, 500 * MS));
+        Assert.assertFalse("within the deadband", rule.shouldPublish(100f, 0L, 110f, 1000 * MS));
+        Assert.assertTrue("refreshed after maximum silence", rule.shouldPublish(100f, 0L, 100f, 5000 * MS));
+        Assert.assertTrue("clock stepped backwards", rule.shouldPublish(100f, 1000 * MS, 100f, 0L));
+        Assert.assertTrue(rule.shouldPublish(100f, 0L, Float.NaN, 1000 * MS));
+    }
+
+    @Test
+    public void testChangeDriven() {
+        NumericPublishPolicy.Rule rule = new NumericPublishPolicy("*=max:0").ruleFor("MDC_PULS_RATE");
+        Assert.assertFalse(rule.shouldPublish(60f, 0L, 60f, 3600000 * MS));
+        Assert.assertTrue(rule.shouldPublish(60f, 0L, 61f, 1 * MS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOption() {
+        new NumericPublishPolicy("*=foo:1");
+    }
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mdpnp.devices.DomainParticipantFactory;
+import org.mdpnp.devices.EventLoopHandler;
+import org.mdpnp.devices.PublisherFactory;
+import org.mdpnp.devices.SubscriberFactory;
+import org.mdpnp.devices.serial.TCPSerialProvider;
+import org.mdpnp.rtiapi.data.EventLoop;
+import org.mdpnp.rtiapi.qos.IceQos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Many Draeger ventilator drivers against a MedibusLoadGenerator on the
+ * loopback interface, each connected with a TCPSerialProvider. Measures the
+ * time from a simulator writing a realtime cycle to the driver decoding it,
+ * the values decoded, and the CPU and heap the drivers cost, and writes them
+ * to a JSON report so runs can be compared.
+ * Skipped unless run with -Dtest.load=true.
+ */
+public class DraegerVentLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(DraegerVentLoadTest.class);
+
+    private static final int VENTS = Integer.getInteger("test.draeger.vents", 20);
+    private static final long DURATION = Long.getLong("test.draeger.duration", 10000L);
+    private static final String REPORT = System.getProperty("test.draeger.report", "build/draeger-load.json");
+
+    // realtime latency histogram in tenths of a millisecond, the last bucket
+    // collects everything slower
+    private static final AtomicLongArray latency = new AtomicLongArray(10001);
+
+    static class LoadedVent extends DemoEvitaXL {
+        private final MedibusLoadGenerator generator;
+        private final int vent;
+        // airway pressure values decoded; the simulator sends one a cycle
+        volatile long values;
+
+        LoadedVent(Subscriber subscriber, Publisher publisher, EventLoop eventLoop, MedibusLoadGenerator generator, int vent) {
+            super(subscriber, publisher, eventLoop);
+            this.generator = generator;
+            this.vent = vent;
+        }
+
+        @Override
+        protected void processRealtime(RTMedibus.RTDataConfig config, int multiplier, int streamIndex, Object code, double value) {
+            super.processRealtime(config, multiplier, streamIndex, code, value);
+            if (0 == streamIndex) {
+                MedibusSimulator simulator = generator.getSimulator(vent);
+                long sent = null == simulator ? -1L : simulator.getCycleTime(values++);
+                if (sent > 0L) {
+                    long tenths = (System.nanoTime() - sent) / 100000L;
+                    latency.incrementAndGet((int) Math.min(tenths, latency.length() - 1));
+                }
+            }
+        }
+    }
+
+    private static int countConnected(List<LoadedVent> devices) {
+        int n = 0;
+        for (LoadedVent d : devices) {
+            if (ice.ConnectionState.Connected.equals(d.getState())) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static int countStreaming(List<LoadedVent> devices) {
+        int n = 0;
+        for (LoadedVent d : devices) {
+            if (d.values > 0L) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static long valuesReceived(List<LoadedVent> devices) {
+        long n = 0L;
+        for (LoadedVent d : devices) {
+            n += d.values;
+        }
+        return n;
+    }
+
+    private static long processCpuTime() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+        }
+        return -1L;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // milliseconds at the given fraction of the latency histogram
+    private static double percentile(double p) {
+        long total = 0L;
+        for (int i = 0; i < latency.length(); i++) {
+            total += latency.get(i);
+        }
+        long target = (long) Math.ceil(total * p), seen = 0L;
+        for (int i = 0; i < latency.length(); i++) {
+            seen += latency.get(i);
+            if (seen >= target) {
+                return i / 10.0;
+            }
+        }
+        return (latency.length() - 1) / 10.0;
+    }
+
+    @Test
+    public void testManyDraegerVents() throws Exception {
+        Assume.assumeTrue("load test; run with -Dtest.load=true", Boolean.getBoolean("test.load"));
+
+        IceQos.LoadStatus qosStatus = IceQos.loadAndSetIceQos();
+        if (qosStatus == IceQos.LoadStatus.NONE)
+            Assert.fail("Failed to load QOS settings");
+
+        EventLoop eventLoop = new EventLoop();
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        DomainParticipantFactory dpf = new DomainParticipantFactory(0);
+        SubscriberFactory sf = new SubscriberFactory(dpf.getObject());
+        PublisherFactory pf = new PublisherFactory(dpf.getObject());
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+        MedibusLoadGenerator generator = new MedibusLoadGenerator(0);
+        List<LoadedVent> devices = new ArrayList<LoadedVent>();
+        try {
+            generator.start(VENTS, 0);
+            long heapBefore = usedHeap();
+
+            for (int i = 0; i < VENTS; i++) {
+                LoadedVent device = new LoadedVent(sf.getObject(), pf.getObject(), eventLoop, generator, i);
+                device.setSerialProvider(0, new TCPSerialProvider());
+                device.setExecutor(scheduler);
+                devices.add(device);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < VENTS; i++) {
+                InetSocketAddress address = generator.getAddresses().get(i);
+                devices.get(i).connect(address.getAddress().getHostAddress() + ":" + address.getPort());
+            }
+            long giveup = System.currentTimeMillis() + 30000L;
+            while ((countConnected(devices) < VENTS || countStreaming(devices) < VENTS) && System.currentTimeMillis() < giveup) {
+                Thread.sleep(10L);
+            }
+            long streaming = System.nanoTime() - start;
+            Assert.assertEquals("vents connected", VENTS, countConnected(devices));
+            Assert.assertEquals("vents streaming", VENTS, countStreaming(devices));
+
+            // steady state
+            for (int i = 0; i < latency.length(); i++) {
+                latency.set(i, 0L);
+            }
+            long cpu0 = processCpuTime(), generatorCpu0 = generator.getCpuTime(), values0 = valuesReceived(devices),
+                    sent0 = generator.getValuesSent(), t0 = System.nanoTime();
+            Thread.sleep(DURATION);
+            long cpu1 = processCpuTime(), generatorCpu1 = generator.getCpuTime(), values1 = valuesReceived(devices),
+                    sent1 = generator.getValuesSent(), t1 = System.nanoTime();
+            long heapAfter = usedHeap();
+
+            double seconds = (t1 - t0) / 1e9;
+            double adapterCores = cpu0 < 0L || generatorCpu0 < 0L ? -1.0
+                    : Math.round(((cpu1 - cpu0) - (generatorCpu1 - generatorCpu0)) / 1e7 / seconds) / 100.0;
+
+            String json = "{\"vents\":" + VENTS + ",\"durationMs\":" + TimeUnit.NANOSECONDS.toMillis(t1 - t0) + ",\"processors\":"
+                    + Runtime.getRuntime().availableProcessors() + ",\"streamingMs\":" + TimeUnit.NANOSECONDS.toMillis(streaming)
+                    + ",\"realtimeLatencyMs\":{\"p50\":" + percentile(0.5) + ",\"p90\":" + percentile(0.9) + ",\"p99\":" + percentile(0.99)
+                    + ",\"max\":" + percentile(1.0) + "},\"valuesSentPerSecond\":" + Math.round((sent1 - sent0) / seconds)
+                    + ",\"airwayValuesReceivedPerSecond\":" + Math.round((values1 - values0) / seconds) + ",\"adapterCores\":" + adapterCores
+                    + ",\"adapterCoresPerVent\":" + (adapterCores < 0.0 ? -1.0 : Math.round(adapterCores * 10000.0 / VENTS) / 10000.0)
+                    + ",\"generatorCores\":" + Math.round((generatorCpu1 - generatorCpu0) / 1e7 / seconds) / 100.0 + ",\"heapPerVent\":"
+                    + (heapAfter - heapBefore) / VENTS + "}";
+            log.info(json);
+
+            File report = new File(REPORT);
+            if (null != report.getParentFile()) {
+                report.getParentFile().mkdirs();
+            }
+            Writer w = new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8);
+            try {
+                w.write(json);
+                w.write("\n");
+            } finally {
+                w.close();
+            }
+
+            Assert.assertTrue("no realtime values decoded", values1 > values0);
+            Assert.assertTrue("p99 realtime latency " + percentile(0.99) + "ms", percentile(0.99) < 1000.0);
+        } finally {
+            for (LoadedVent device : devices) {
+                device.disconnect();
+                device.shutdown();
+            }
+            generator.shutdown();
+            scheduler.shutdownNow();
+            handler.shutdown();
+        }
+    }
+}
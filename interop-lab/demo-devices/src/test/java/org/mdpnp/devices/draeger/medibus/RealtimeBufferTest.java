@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class RealtimeBufferTest {
+    private static final Logger log = LoggerFactory.getLogger(RealtimeBufferTest.class);
+
+    @Test
+    public void testUpsampleAcrossTheEnd() {
+        RealtimeBuffer buffer = new RealtimeBuffer(8);
+        assertEquals(8, buffer.capacity());
+        buffer.add(1f, 3);
+        assertNull(buffer.emit(4));
+        buffer.add(2f, 3);
+        assertArrayEquals(new float[] { 1f, 2f, 2f, 2f }, buffer.emit(4), 0f);
+        // wraps around the end of the ring
+        buffer.add(3f, 3);
+        buffer.add(4f, 2);
+        assertArrayEquals(new float[] { 3f, 3f, 4f, 4f }, buffer.emit(4), 0f);
+        assertEquals(1L, buffer.getSkipped());
+        assertEquals(0, buffer.available());
+    }
+
+    @Test
+    public void testWindowSlides() {
+        RealtimeBuffer buffer = new RealtimeBuffer();
+        for (int i = 0; i < 4; i++) {
+            buffer.add(i, 1);
+        }
+        assertArrayEquals(new float[] { 0f, 1f, 2f, 3f }, buffer.emit(4), 0f);
+        // nothing new, nothing to publish
+        assertNull(buffer.emit(4));
+        buffer.add(4f, 1);
+        assertArrayEquals(new float[] { 1f, 2f, 3f, 4f }, buffer.emit(4), 0f);
+        assertEquals(0L, buffer.getSkipped());
+    }
+
+    @Test
+    public void testFull() {
+        RealtimeBuffer buffer = new RealtimeBuffer(4);
+        assertEquals(4, buffer.add(1f, 4));
+        assertEquals(0, buffer.add(2f, 2));
+        assertEquals(2L, buffer.getDropped());
+        assertArrayEquals(new float[] { 1f, 1f, 1f, 1f }, buffer.emit(4), 0f);
+        assertEquals(2, buffer.add(2f, 2));
+    }
+
+    private static final int STREAMS = 16;
+    // the V500's 8ms, the shortest interval in MedibusStreams; 125Hz needs no upsampling
+    private static final int INTERVAL = 8000;
+    private static final int WINDOW = 25;
+
+    /**
+     * Sixteen streams from one decoding thread to one publishing thread. At
+     * the device's pace the producer adds without waiting and nothing may be
+     * dropped; flat out the producer waits for space, and the rate both
+     * threads sustain is logged.
+     */
+    @Test
+    public void testSixteenStreams() throws Exception {
+        final RealtimeBuffer[] buffers = new RealtimeBuffer[STREAMS];
+        for (int i = 0; i < STREAMS; i++) {
+            buffers[i] = new RealtimeBuffer();
+        }
+        // a second of realtime at the device's pace
+        long paced = run(buffers, 1000000 / INTERVAL, TimeUnit.MICROSECONDS.toNanos(INTERVAL));
+        for (RealtimeBuffer b : buffers) {
+            assertEquals(0L, b.getDropped());
+        }
+        log.info(STREAMS + " streams at " + INTERVAL + "us took " + TimeUnit.NANOSECONDS.toMillis(paced) + "ms for a second of data");
+
+        for (int i = 0; i < STREAMS; i++) {
+            buffers[i] = new RealtimeBuffer();
+        }
+        int cycles = 1000000;
+        long flat = run(buffers, cycles, 0L);
+        log.info(STREAMS + " streams flat out: " + (1000000000L * STREAMS * cycles / flat) + " samples/s without drops");
+    }
+
+    private static long run(final RealtimeBuffer[] buffers, final int cycles, final long intervalNanos) throws InterruptedException {
+        final float[][] last = new float[buffers.length][];
+        final boolean[] done = new boolean[1];
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long period = intervalNanos * WINDOW;
+                while (true) {
+                    boolean finished;
+                    synchronized (done) {
+                        finished = done[0];
+                    }
+                    for (int i = 0; i < buffers.length; i++) {
+                        float[] w = buffers[i].emit(WINDOW);
+                        if (null != w) {
+                            last[i] = w;
+                        }
+                    }
+                    if (finished) {
+                        return;
+                    }
+                    if (period > 0L) {
+                        LockSupport.parkNanos(period);
+                    }
+                }
+            }
+        }, "Emit Fast Data");
+        consumer.start();
+
+        long start = System.nanoTime();
+        long next = start;
+        for (int c = 0; c < cycles; c++) {
+            for (int i = 0; i < buffers.length; i++) {
+                // flat out only the wait for space keeps the producer from overrunning the consumer
+                while (intervalNanos == 0L && buffers[i].capacity() - buffers[i].available() < 1) {
+                    Thread.yield();
+                }
+                buffers[i].add(c, 1);
+            }
+            if (intervalNanos > 0L) {
+                next += intervalNanos;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (done) {
+            done[0] = true;
+        }
+        consumer.join();
+        for (int i = 0; i < buffers.length; i++) {
+            assertEquals(cycles - 1, last[i][WINDOW - 1], 0f);
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,217 @@
+package org.mdpnp.devices.philips.intellivue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mdpnp.devices.DomainParticipantFactory;
+import org.mdpnp.devices.EventLoopHandler;
+import org.mdpnp.devices.PublisherFactory;
+import org.mdpnp.devices.SubscriberFactory;
+import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.net.NetworkLoopGroup;
+import org.mdpnp.rtiapi.data.EventLoop;
+import org.mdpnp.rtiapi.qos.IceQos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Many Intellivue adapters against an IntellivueLoadGenerator on the loopback
+ * interface. Measures how long associations take, how long the first poll
+ * result takes to arrive, the samples decoded, and the CPU and heap the
+ * adapters cost, and writes them to a JSON report so runs can be compared.
+ * Skipped unless run with -Dtest.load=true.
+ */
+public class IntellivueLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(IntellivueLoadTest.class);
+
+    private static final int MONITORS = Integer.getInteger("test.intellivue.monitors", 20);
+    private static final int NUMERICS = Integer.getInteger("test.intellivue.numerics", 8);
+    private static final int WAVES = Integer.getInteger("test.intellivue.waves", 4);
+    private static final long DURATION = Long.getLong("test.intellivue.duration", 10000L);
+    private static final String REPORT = System.getProperty("test.intellivue.report", "build/intellivue-load.json");
+
+    static class LoadedIntellivue extends DemoEthernetIntellivue {
+        volatile long pollRoundTrip = -1L;
+
+        LoadedIntellivue(Subscriber subscriber, Publisher publisher, EventLoop eventLoop, NetworkLoop loop) throws IOException {
+            super(subscriber, publisher, eventLoop, loop);
+        }
+
+        @Override
+        protected void pollRoundTrip(long nanos) {
+            pollRoundTrip = nanos;
+        }
+    }
+
+    private static int countConnected(List<LoadedIntellivue> devices, long[] associated, long start) {
+        int n = 0;
+        for (int i = 0; i < devices.size(); i++) {
+            if (ice.ConnectionState.Connected.equals(devices.get(i).getState())) {
+                if (associated[i] < 0L) {
+                    associated[i] = System.nanoTime() - start;
+                }
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static int countPolled(List<LoadedIntellivue> devices) {
+        int n = 0;
+        for (LoadedIntellivue d : devices) {
+            if (d.pollRoundTrip >= 0L) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static long samplesReceived(List<LoadedIntellivue> devices) {
+        long n = 0L;
+        for (LoadedIntellivue d : devices) {
+            n += d.getSamplesReceived();
+        }
+        return n;
+    }
+
+    private static long processCpuTime() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+        }
+        return -1L;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // milliseconds at the given fraction of the sorted nanosecond values
+    private static double percentile(long[] sorted, double p) {
+        if (0 == sorted.length) {
+            return -1.0;
+        }
+        int i = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * p) - 1);
+        return Math.round(sorted[Math.max(0, i)] / 1e4) / 100.0;
+    }
+
+    private static String distribution(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int first = 0;
+        while (first < sorted.length && sorted[first] < 0L) {
+            first++;
+        }
+        sorted = Arrays.copyOfRange(sorted, first, sorted.length);
+        return "{\"count\":" + sorted.length + ",\"p50\":" + percentile(sorted, 0.5) + ",\"p90\":" + percentile(sorted, 0.9) + ",\"p99\":"
+                + percentile(sorted, 0.99) + ",\"max\":" + percentile(sorted, 1.0) + "}";
+    }
+
+    @Test
+    public void testManyIntellivueMonitors() throws Exception {
+        Assume.assumeTrue("load test; run with -Dtest.load=true", Boolean.getBoolean("test.load"));
+
+        IceQos.LoadStatus qosStatus = IceQos.loadAndSetIceQos();
+        if (qosStatus == IceQos.LoadStatus.NONE)
+            Assert.fail("Failed to load QOS settings");
+
+        EventLoop eventLoop = new EventLoop();
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        DomainParticipantFactory dpf = new DomainParticipantFactory(0);
+        SubscriberFactory sf = new SubscriberFactory(dpf.getObject());
+        PublisherFactory pf = new PublisherFactory(dpf.getObject());
+        NetworkLoopGroup loops = new NetworkLoopGroup(0);
+
+        IntellivueLoadGenerator generator = new IntellivueLoadGenerator(0);
+        List<LoadedIntellivue> devices = new ArrayList<LoadedIntellivue>();
+        try {
+            generator.start(MONITORS, 0, NUMERICS, WAVES);
+            long heapBefore = usedHeap();
+
+            for (int i = 0; i < MONITORS; i++) {
+                devices.add(new LoadedIntellivue(sf.getObject(), pf.getObject(), eventLoop, loops.next()));
+            }
+
+            long[] associated = new long[MONITORS];
+            Arrays.fill(associated, -1L);
+            long start = System.nanoTime();
+            for (int i = 0; i < MONITORS; i++) {
+                InetSocketAddress address = generator.getAddresses().get(i);
+                devices.get(i).connect(address.getAddress().getHostAddress() + ":" + address.getPort());
+            }
+            long giveup = System.currentTimeMillis() + 30000L;
+            while ((countConnected(devices, associated, start) < MONITORS || countPolled(devices) < MONITORS)
+                    && System.currentTimeMillis() < giveup) {
+                Thread.sleep(10L);
+            }
+            Assert.assertEquals("monitors associated", MONITORS, countConnected(devices, associated, start));
+            Assert.assertEquals("monitors answering polls", MONITORS, countPolled(devices));
+
+            // steady state
+            long cpu0 = processCpuTime(), generatorCpu0 = generator.getCpuTime(), samples0 = samplesReceived(devices),
+                    sent0 = generator.getSamplesSent(), t0 = System.nanoTime();
+            Thread.sleep(DURATION);
+            long cpu1 = processCpuTime(), generatorCpu1 = generator.getCpuTime(), samples1 = samplesReceived(devices),
+                    sent1 = generator.getSamplesSent(), t1 = System.nanoTime();
+            long heapAfter = usedHeap();
+
+            double seconds = (t1 - t0) / 1e9;
+            double adapterCores = cpu0 < 0L || generatorCpu0 < 0L ? -1.0
+                    : Math.round(((cpu1 - cpu0) - (generatorCpu1 - generatorCpu0)) / 1e7 / seconds) / 100.0;
+            long[] pollRoundTrips = new long[MONITORS];
+            for (int i = 0; i < MONITORS; i++) {
+                pollRoundTrips[i] = devices.get(i).pollRoundTrip;
+            }
+
+            String json = "{\"monitors\":" + MONITORS + ",\"numerics\":" + NUMERICS + ",\"waves\":" + WAVES + ",\"durationMs\":"
+                    + TimeUnit.NANOSECONDS.toMillis(t1 - t0) + ",\"processors\":" + Runtime.getRuntime().availableProcessors()
+                    + ",\"associationMs\":" + distribution(associated) + ",\"pollRoundTripMs\":" + distribution(pollRoundTrips)
+                    + ",\"samplesSentPerSecond\":" + Math.round((sent1 - sent0) / seconds)
+                    + ",\"samplesReceivedPerSecond\":" + Math.round((samples1 - samples0) / seconds) + ",\"adapterCores\":" + adapterCores
+                    + ",\"generatorCores\":" + Math.round((generatorCpu1 - generatorCpu0) / 1e7 / seconds) / 100.0 + ",\"heapPerMonitor\":"
+                    + (heapAfter - heapBefore) / MONITORS + "}";
+            log.info(json);
+
+            File report = new File(REPORT);
+            if (null != report.getParentFile()) {
+                report.getParentFile().mkdirs();
+            }
+            Writer w = new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8);
+            try {
+                w.write(json);
+                w.write("\n");
+            } finally {
+                w.close();
+            }
+
+            Assert.assertTrue("no waveform samples decoded", samples1 > samples0);
+        } finally {
+            for (LoadedIntellivue device : devices) {
+                device.disconnect();
+                device.shutdown();
+            }
+            generator.shutdown();
+            loops.shutdown();
+            handler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.mdpnp.devices.serial;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mdpnp.devices.DomainParticipantFactory;
+import org.mdpnp.devices.EventLoopHandler;
+import org.mdpnp.devices.PublisherFactory;
+import org.mdpnp.devices.SubscriberFactory;
+import org.mdpnp.devices.simulation.AbstractSimulatedDevice;
+import org.mdpnp.rtiapi.data.EventLoop;
+import org.mdpnp.rtiapi.qos.IceQos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Many serial-over-TCP devices against simulated peers on the loopback interface. The peers
+ * are served by a single thread; each device holds a processing thread only while its port is open.
+ * Skipped unless run with -Dtest.load=true.
+ */
+public class SerialDeviceScalingTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SerialDeviceScalingTest.class);
+
+    private static final int PEERS = Integer.getInteger("test.serial.peers", 200);
+
+    // latency histogram in milliseconds, the last bucket collects everything slower
+    private static final AtomicLongArray latency = new AtomicLongArray(1001);
+
+    static class LineDevice extends AbstractSerialDevice {
+        // ports opened so far
+        final AtomicInteger connections = new AtomicInteger();
+
+        LineDevice(Subscriber subscriber, Publisher publisher, EventLoop eventLoop) {
+            super(subscriber, publisher, eventLoop);
+            AbstractSimulatedDevice.randomUDI(deviceIdentity);
+            writeDeviceIdentity();
+        }
+
+        @Override
+        protected void doInitCommands(int idx) throws IOException {
+        }
+
+        @Override
+        protected void process(int idx, InputStream inputStream, OutputStream outputStream) throws IOException {
+            connections.incrementAndGet();
+            BufferedReader br = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII));
+            String line;
+            while (null != (line = br.readLine())) {
+                long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - Long.parseLong(line));
+                latency.incrementAndGet((int) Math.min(ms, latency.length() - 1));
+                reportConnected("receiving");
+            }
+        }
+
+        @Override
+        protected long getMaximumQuietTime(int idx) {
+            return 2000L;
+        }
+
+        @Override
+        protected long getConnectInterval(int idx) {
+            return 5000L;
+        }
+    }
+
+    /**
+     * The simulated peers: accepts connections and writes the current System.nanoTime() to all of them.
+     */
+    static class Peers {
+        final ServerSocket serverSocket;
+        final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+        final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        final Thread acceptor;
+
+        Peers() throws IOException {
+            serverSocket = new ServerSocket(0, PEERS, InetAddress.getLoopbackAddress());
+            acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        sockets.add(serverSocket.accept());
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }, "SerialDeviceScalingTest Acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            timer.scheduleAtFixedRate(() -> {
+                byte[] b = (Long.toString(System.nanoTime()) + "\n").getBytes(StandardCharsets.US_ASCII);
+                for (Socket s : sockets) {
+                    try {
+                        s.getOutputStream().write(b);
+                    } catch (IOException e) {
+                        sockets.remove(s);
+                    }
+                }
+            }, 20L, 20L, TimeUnit.MILLISECONDS);
+        }
+
+        String address() {
+            return serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+        }
+
+        // drop every connection but keep accepting new ones
+        void hangUp() throws IOException {
+            for (Socket s : sockets) {
+                sockets.remove(s);
+                s.close();
+            }
+        }
+
+        void close() throws IOException {
+            timer.shutdownNow();
+            serverSocket.close();
+            hangUp();
+        }
+    }
+
+    private static int countConnected(List<LineDevice> devices, int connections) {
+        int n = 0;
+        for (LineDevice d : devices) {
+            if (d.connections.get() >= connections && ice.ConnectionState.Connected.equals(d.getState())) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // until every device is Connected on at least its given numbered connection
+    private static boolean awaitConnected(List<LineDevice> devices, int connections, long timeout) throws InterruptedException {
+        long giveup = System.currentTimeMillis() + timeout;
+        while (countConnected(devices, connections) < devices.size()) {
+            if (System.currentTimeMillis() >= giveup) {
+                return false;
+            }
+            Thread.sleep(50L);
+        }
+        return true;
+    }
+
+    private static long percentile(double p) {
+        long total = 0L;
+        for (int i = 0; i < latency.length(); i++) {
+            total += latency.get(i);
+        }
+        long target = (long) Math.ceil(total * p), seen = 0L;
+        for (int i = 0; i < latency.length(); i++) {
+            seen += latency.get(i);
+            if (seen >= target) {
+                return i;
+            }
+        }
+        return latency.length() - 1;
+    }
+
+    @Test
+    public void testManyTCPSerialPeers() throws Exception {
+        Assume.assumeTrue("load test; run with -Dtest.load=true", Boolean.getBoolean("test.load"));
+
+        IceQos.LoadStatus qosStatus = IceQos.loadAndSetIceQos();
+        if (qosStatus == IceQos.LoadStatus.NONE)
+            Assert.fail("Failed to load QOS settings");
+
+        EventLoop eventLoop = new EventLoop();
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        DomainParticipantFactory dpf = new DomainParticipantFactory(0);
+        SubscriberFactory sf = new SubscriberFactory(dpf.getObject());
+        PublisherFactory pf = new PublisherFactory(dpf.getObject());
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+        Peers peers = new Peers();
+        List<LineDevice> devices = new ArrayList<LineDevice>();
+        try {
+            int threadsBefore = Thread.activeCount();
+
+            for (int i = 0; i < PEERS; i++) {
+                LineDevice device = new LineDevice(sf.getObject(), pf.getObject(), eventLoop);
+                device.setSerialProvider(0, new TCPSerialProvider());
+                device.setExecutor(scheduler);
+                devices.add(device);
+                device.connect(peers.address());
+            }
+            Assert.assertTrue("only " + countConnected(devices, 1) + " of " + PEERS + " connected", awaitConnected(devices, 1, 30000L));
+            Thread.sleep(2000L);
+
+            int threadsConnected = Thread.activeCount() - threadsBefore;
+            log.info(PEERS + " peers connected with " + threadsConnected + " additional threads, latency p50=" + percentile(0.5) + "ms p99="
+                    + percentile(0.99) + "ms");
+            Assert.assertTrue("one processing thread per open port, got " + threadsConnected, threadsConnected <= PEERS + 16);
+
+            // every peer hangs up; devices wait out the connect interval on the scheduler and come back
+            // on a second connection, which tells a reconnect apart from a device yet to notice the hang up
+            peers.hangUp();
+            Assert.assertTrue("only " + countConnected(devices, 2) + " of " + PEERS + " reconnected", awaitConnected(devices, 2, 30000L));
+            int threadsReconnected = Thread.activeCount() - threadsBefore;
+            log.info(PEERS + " peers reconnected with " + threadsReconnected + " additional threads, latency p50=" + percentile(0.5)
+                    + "ms p99=" + percentile(0.99) + "ms");
+            Assert.assertTrue("processing threads are reused across reconnects, got " + threadsReconnected, threadsReconnected <= PEERS + 16);
+            Assert.assertTrue("p99 latency " + percentile(0.99) + "ms", percentile(0.99) < 1000L);
+        } finally {
+            for (LineDevice device : devices) {
+                device.disconnect();
+                device.shutdown();
+            }
+            peers.close();
+            scheduler.shutdownNow();
+            handler.shutdown();
+        }
+    }
+}